@@ -0,0 +1,117 @@
+package spring.academy.restful.common.datetime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SimpleDate}, created for every dining: construction from
+ * fields and from a time, conversion, comparison, equality and hashing, and
+ * formatting, directly and through {@link SimpleDateEditor}. Each operation
+ * goes through a <tt>GregorianCalendar</tt>, so run with the GC profiler to
+ * get the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimpleDateBenchmark {
+
+	private int month;
+
+	private int day;
+
+	private int year;
+
+	private long time;
+
+	private Date date;
+
+	private SimpleDate simpleDate;
+
+	private SimpleDate other;
+
+	private SimpleDate same;
+
+	private String text;
+
+	private SimpleDateEditor editor;
+
+	@Setup
+	public void setup() {
+		month = 12;
+		day = 29;
+		year = 1977;
+		simpleDate = new SimpleDate(month, day, year);
+		time = simpleDate.inMilliseconds() + 12 * 60 * 60 * 1000;
+		date = new Date(time);
+		other = new SimpleDate(1, 1, 2024);
+		same = new SimpleDate(month, day, year);
+		editor = new SimpleDateEditor();
+		editor.setValue(simpleDate);
+		text = editor.getAsText();
+	}
+
+	@Benchmark
+	public SimpleDate construct() {
+		return new SimpleDate(month, day, year);
+	}
+
+	@Benchmark
+	public SimpleDate valueOfTime() {
+		return SimpleDate.valueOf(time);
+	}
+
+	@Benchmark
+	public SimpleDate valueOfDate() {
+		return SimpleDate.valueOf(date);
+	}
+
+	@Benchmark
+	public long inMilliseconds() {
+		return simpleDate.inMilliseconds();
+	}
+
+	@Benchmark
+	public int compareTo() {
+		return simpleDate.compareTo(other);
+	}
+
+	@Benchmark
+	public boolean equalsSameValue() {
+		return simpleDate.equals(same);
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return simpleDate.hashCode();
+	}
+
+	@Benchmark
+	public String format() {
+		return simpleDate.toString();
+	}
+
+	@Benchmark
+	public Object editorSetAsText() {
+		editor.setAsText(text);
+		return editor.getValue();
+	}
+
+	@Benchmark
+	public String editorGetAsText() {
+		return editor.getAsText();
+	}
+}
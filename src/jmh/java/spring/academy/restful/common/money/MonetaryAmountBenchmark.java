@@ -0,0 +1,137 @@
+package spring.academy.restful.common.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MonetaryAmount}, which every reward and contribution goes
+ * through: construction, parsing, arithmetic, equality and hashing, and
+ * formatting, directly and through {@link MonetaryAmountEditor}. Run with
+ * the GC profiler to get the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MonetaryAmountBenchmark {
+
+	private BigDecimal decimal;
+
+	private double number;
+
+	private String text;
+
+	private String dollars;
+
+	private MonetaryAmount amount;
+
+	private MonetaryAmount other;
+
+	private MonetaryAmount same;
+
+	private Percentage percentage;
+
+	private BigDecimal divisor;
+
+	private MonetaryAmountEditor editor;
+
+	@Setup
+	public void setup() {
+		decimal = new BigDecimal("100.00");
+		number = 100.0;
+		text = "100.00";
+		dollars = "$100.00";
+		amount = MonetaryAmount.valueOf("100.00");
+		other = MonetaryAmount.valueOf("8.00");
+		same = MonetaryAmount.valueOf("100.00");
+		percentage = Percentage.valueOf("33%");
+		// divideBy needs an exact quotient
+		divisor = new BigDecimal("4");
+		editor = new MonetaryAmountEditor();
+		editor.setValue(amount);
+	}
+
+	@Benchmark
+	public MonetaryAmount constructFromBigDecimal() {
+		return new MonetaryAmount(decimal);
+	}
+
+	@Benchmark
+	public MonetaryAmount constructFromDouble() {
+		return new MonetaryAmount(number);
+	}
+
+	@Benchmark
+	public MonetaryAmount valueOf() {
+		return MonetaryAmount.valueOf(text);
+	}
+
+	@Benchmark
+	public MonetaryAmount valueOfDollars() {
+		return MonetaryAmount.valueOf(dollars);
+	}
+
+	@Benchmark
+	public MonetaryAmount add() {
+		return amount.add(other);
+	}
+
+	@Benchmark
+	public MonetaryAmount subtract() {
+		return amount.subtract(other);
+	}
+
+	@Benchmark
+	public MonetaryAmount multiplyByPercentage() {
+		return amount.multiplyBy(percentage);
+	}
+
+	@Benchmark
+	public MonetaryAmount divideBy() {
+		return amount.divideBy(divisor);
+	}
+
+	@Benchmark
+	public boolean greaterThan() {
+		return amount.greaterThan(other);
+	}
+
+	@Benchmark
+	public boolean equalsSameValue() {
+		return amount.equals(same);
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return amount.hashCode();
+	}
+
+	@Benchmark
+	public String format() {
+		return amount.toString();
+	}
+
+	@Benchmark
+	public Object editorSetAsText() {
+		editor.setAsText(dollars);
+		return editor.getValue();
+	}
+
+	@Benchmark
+	public String editorGetAsText() {
+		return editor.getAsText();
+	}
+}
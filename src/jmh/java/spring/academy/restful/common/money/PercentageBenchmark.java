@@ -0,0 +1,111 @@
+package spring.academy.restful.common.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Percentage}, read for every beneficiary allocation and
+ * restaurant benefit: construction, parsing of both notations, addition,
+ * equality and hashing, and formatting, directly and through
+ * {@link PercentageEditor}. Run with the GC profiler to get the bytes
+ * allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PercentageBenchmark {
+
+	private BigDecimal decimal;
+
+	private double number;
+
+	private String percent;
+
+	private String fraction;
+
+	private Percentage percentage;
+
+	private Percentage other;
+
+	private Percentage same;
+
+	private PercentageEditor editor;
+
+	@Setup
+	public void setup() {
+		decimal = new BigDecimal("0.25");
+		number = 0.25;
+		percent = "25%";
+		fraction = "0.25";
+		percentage = Percentage.valueOf("25%");
+		other = Percentage.valueOf("50%");
+		same = Percentage.valueOf("0.25");
+		editor = new PercentageEditor();
+		editor.setValue(percentage);
+	}
+
+	@Benchmark
+	public Percentage constructFromBigDecimal() {
+		return new Percentage(decimal);
+	}
+
+	@Benchmark
+	public Percentage constructFromDouble() {
+		return new Percentage(number);
+	}
+
+	@Benchmark
+	public Percentage valueOfPercent() {
+		return Percentage.valueOf(percent);
+	}
+
+	@Benchmark
+	public Percentage valueOfFraction() {
+		return Percentage.valueOf(fraction);
+	}
+
+	@Benchmark
+	public Percentage add() {
+		return percentage.add(other);
+	}
+
+	@Benchmark
+	public boolean equalsSameValue() {
+		return percentage.equals(same);
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return percentage.hashCode();
+	}
+
+	@Benchmark
+	public String format() {
+		return percentage.toString();
+	}
+
+	@Benchmark
+	public Object editorSetAsText() {
+		editor.setAsText(percent);
+		return editor.getValue();
+	}
+
+	@Benchmark
+	public String editorGetAsText() {
+		return editor.getAsText();
+	}
+}
@@ -0,0 +1,127 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import spring.academy.restful.accounts.internal.AllocationRebalancer;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.AccountContribution;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link Account} operations whose cost grows with the number of
+ * beneficiaries, from 1 to 1000: making a contribution, validating the
+ * allocations, looking up, adding and removing a beneficiary, equality and
+ * hashing, and the {@link AllocationRebalancer} run when a beneficiary is
+ * removed. Run with the GC profiler to get the bytes allocated per operation.
+ * <p>
+ * Allocations add up to 100% in whole percents, so beyond 100 beneficiaries
+ * the rest are allocated 0%.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	private int beneficiaries;
+
+	private Account account;
+
+	private Account copy;
+
+	private MonetaryAmount amount;
+
+	private String lastName;
+
+	private Map<String, Percentage> remainingAllocations;
+
+	private Percentage removedAllocation;
+
+	@Setup
+	public void setup() {
+		account = new Account("123456789", "Keith and Keri Donald");
+		account.setEntityId(0L);
+		int percents = 100 / Math.min(beneficiaries, 100);
+		int remainder = 100 - percents * Math.min(beneficiaries, 100);
+		for (int i = 0; i < beneficiaries; i++) {
+			int allocation = i < 100 ? percents + (i == 0 ? remainder : 0) : 0;
+			account.addBeneficiary(name(i), new Percentage(BigDecimal.valueOf(allocation, 2)));
+		}
+		if (!account.isValid()) {
+			throw new IllegalStateException("Allocations of " + beneficiaries + " beneficiaries do not add up to 100%");
+		}
+		// Shares the beneficiaries, so equals compares every one of them
+		copy = new Account(account.getNumber(), account.getName());
+		copy.setEntityId(account.getEntityId());
+		for (Beneficiary beneficiary : account.getBeneficiaries()) {
+			copy.restoreBeneficiary(beneficiary);
+		}
+		amount = MonetaryAmount.valueOf("8.00");
+		lastName = name(beneficiaries - 1);
+
+		// Removing the first beneficiary, as AccountManager.removeBeneficiary would
+		remainingAllocations = new HashMap<String, Percentage>();
+		for (Beneficiary beneficiary : account.getBeneficiaries()) {
+			remainingAllocations.put(beneficiary.getName(), beneficiary.getAllocationPercentage());
+		}
+		removedAllocation = remainingAllocations.remove(name(0));
+	}
+
+	private static String name(int i) {
+		return String.format("Beneficiary %04d", i);
+	}
+
+	@Benchmark
+	public AccountContribution makeContribution() {
+		return account.makeContribution(amount);
+	}
+
+	@Benchmark
+	public boolean isValid() {
+		return account.isValid();
+	}
+
+	@Benchmark
+	public Beneficiary getBeneficiary() {
+		return account.getBeneficiary(lastName);
+	}
+
+	@Benchmark
+	public Account addAndRemoveBeneficiary() {
+		account.addBeneficiary("Added", Percentage.zero());
+		account.removeBeneficiary("Added");
+		return account;
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return account.hashCode();
+	}
+
+	@Benchmark
+	public boolean equalsSameBeneficiaries() {
+		return account.equals(copy);
+	}
+
+	@Benchmark
+	public Map<String, Percentage> rebalance() {
+		return AllocationRebalancer.rebalance(remainingAllocations, removedAllocation);
+	}
+}
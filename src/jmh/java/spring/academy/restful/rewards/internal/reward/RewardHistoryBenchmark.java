@@ -0,0 +1,177 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import spring.academy.restful.rewards.RewardRecord;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reward history queries on a generated <tt>T_REWARD</tt> of 10M rows
+ * spread over 10k accounts: the first and a deep keyset page of an account,
+ * the same deep page read with OFFSET, and a lookup by confirmation number.
+ * <p>
+ * By default the table lives in a file-based HSQLDB under
+ * <tt>build/jmh-rewards</tt>, generated on the first run only (it takes a
+ * few minutes). Set <tt>-Drewards.bench.jdbc-url</tt> (and
+ * <tt>.username</tt>, <tt>.password</tt>) to run against a MySQL database
+ * created with <tt>mysql_schema.sql</tt> instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RewardHistoryBenchmark {
+
+	static final String DEFAULT_URL = "jdbc:hsqldb:file:build/jmh-rewards/rewards;hsqldb.default_table_type=cached;hsqldb.log_data=false";
+
+	static final String OFFSET_PAGE_SQL = "select " + JdbcRewardHistoryRepository.COLUMNS
+			+ " from T_REWARD r where r.ACCOUNT_NUMBER = ? order by r.REWARD_DATE desc, r.ID desc limit ? offset ?";
+
+	static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+
+	@Param({ "10000000" })
+	private int rows;
+
+	@Param({ "10000" })
+	private int accounts;
+
+	@Param({ "20" })
+	private int pageSize;
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private JdbcRewardHistoryRepository repository;
+
+	private int rewardsPerAccount;
+
+	@Setup
+	public void setup() throws Exception {
+		String url = System.getProperty("rewards.bench.jdbc-url", DEFAULT_URL);
+		dataSource = new SingleConnectionDataSource(url, System.getProperty("rewards.bench.jdbc-url.username", "sa"),
+				System.getProperty("rewards.bench.jdbc-url.password", ""), true);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		repository = new JdbcRewardHistoryRepository(dataSource);
+		rewardsPerAccount = rows / accounts;
+		if (existingRows() != rows) {
+			generate(url.startsWith("jdbc:hsqldb:"));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (dataSource.getUrl().startsWith("jdbc:hsqldb:")) {
+			jdbcTemplate.execute("shutdown");
+		}
+		dataSource.destroy();
+	}
+
+	@Benchmark
+	public List<RewardRecord> firstPage() {
+		return repository.findByAccountNumber(randomAccount(), null, 0, pageSize);
+	}
+
+	@Benchmark
+	public List<RewardRecord> deepKeysetPage() {
+		// The page 90% into the history of an account
+		return repository.findByAccountNumber(randomAccount(), dayOf(rewardsPerAccount / 10), Long.MAX_VALUE,
+				pageSize);
+	}
+
+	@Benchmark
+	public List<RewardRecord> deepOffsetPage() {
+		return jdbcTemplate.query(OFFSET_PAGE_SQL, (rs, rowNum) -> new RewardRecord(rs.getLong("ID"),
+				rs.getString("CONFIRMATION_NUMBER"), rs.getBigDecimal("REWARD_AMOUNT"),
+				rs.getDate("REWARD_DATE").toLocalDate(), rs.getString("ACCOUNT_NUMBER"),
+				rs.getString("DINING_MERCHANT_NUMBER"), rs.getDate("DINING_DATE").toLocalDate(),
+				rs.getBigDecimal("DINING_AMOUNT"), null), randomAccount(), pageSize, rewardsPerAccount * 9 / 10);
+	}
+
+	@Benchmark
+	public RewardRecord byConfirmationNumber() {
+		return repository.findByConfirmationNumber(Long.toString(ThreadLocalRandom.current().nextInt(rows), 36));
+	}
+
+	private int existingRows() {
+		try {
+			return jdbcTemplate.queryForObject("select count(*) from T_REWARD", Integer.class);
+		} catch (RuntimeException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Inserts the rewards in time order, interleaving the accounts as real
+	 * traffic would.
+	 */
+	private void generate(boolean hsqldb) throws Exception {
+		if (hsqldb) {
+			new ResourceDatabasePopulator(new ClassPathResource("devdb/schema.sql")).execute(dataSource);
+		} else {
+			jdbcTemplate.execute("delete from T_REWARD");
+		}
+		Connection connection = dataSource.getConnection();
+		connection.setAutoCommit(false);
+		try (PreparedStatement insert = connection.prepareStatement("insert into T_REWARD (CONFIRMATION_NUMBER,"
+				+ " REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT)"
+				+ " values (?, ?, ?, ?, ?, ?, ?)")) {
+			for (int row = 0; row < rows; row++) {
+				Date date = Date.valueOf(dayOf(row / accounts));
+				insert.setString(1, Long.toString(row, 36));
+				insert.setBigDecimal(2, BigDecimal.valueOf(800 + row % 500, 2));
+				insert.setDate(3, date);
+				insert.setString(4, accountNumber(row % accounts));
+				insert.setString(5, String.format("%010d", row % 1000));
+				insert.setDate(6, date);
+				insert.setBigDecimal(7, BigDecimal.valueOf(10000 + row % 6000, 2));
+				insert.addBatch();
+				if (row % 10000 == 9999) {
+					insert.executeBatch();
+					connection.commit();
+				}
+			}
+			insert.executeBatch();
+			connection.commit();
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	private LocalDate dayOf(int reward) {
+		// Two rewards a day per account, so pages cross ties on the date
+		return FIRST_DAY.plusDays(reward / 2);
+	}
+
+	private String randomAccount() {
+		return accountNumber(ThreadLocalRandom.current().nextInt(accounts));
+	}
+
+	private static String accountNumber(int account) {
+		return String.format("%09d", account);
+	}
+}
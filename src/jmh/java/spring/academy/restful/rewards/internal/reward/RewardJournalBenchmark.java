@@ -0,0 +1,106 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Durable reward appends per second from many threads: through the
+ * {@link RewardJournal} group commit with several commit delays, and
+ * forcing the file after every append as a baseline. Run on the disk the
+ * journal is meant for; tmpfs makes <tt>force()</tt> free.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class RewardJournalBenchmark {
+
+	@Param({ "0", "500", "2000" })
+	private long commitDelayMicros;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private Path directory;
+
+	private RewardJournal journal;
+
+	private FileChannel baseline;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("reward-journal-benchmark");
+		journal = new RewardJournal(directory.resolve("journal"), Duration.ofNanos(commitDelayMicros * 1000));
+		baseline = FileChannel.open(directory.resolve("baseline.wal"), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	@Setup(Level.Iteration)
+	public void seal() throws IOException {
+		// Keep segments small, like the scheduled apply does
+		long sealed = journal.seal();
+		for (long segment : journal.segments()) {
+			if (segment <= sealed) {
+				journal.delete(segment);
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		journal.close();
+		baseline.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public void groupCommit() throws IOException {
+		journal.append(entry());
+	}
+
+	@Benchmark
+	public void forceEachAppend() throws IOException {
+		ByteBuffer buffer = RewardJournal.encode(entry());
+		synchronized (baseline) {
+			while (buffer.hasRemaining()) {
+				baseline.write(buffer);
+			}
+			baseline.force(false);
+		}
+	}
+
+	private RewardJournal.Entry entry() {
+		return new RewardJournal.Entry("bench-" + Long.toString(sequence.incrementAndGet(), 36),
+				new BigDecimal("8.00"), new Date(0), "123456789", "1234567890", new Date(0), new BigDecimal("100.00"));
+	}
+}
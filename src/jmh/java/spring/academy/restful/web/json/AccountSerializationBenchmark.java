@@ -0,0 +1,88 @@
+package spring.academy.restful.web.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a list of 10k accounts (the <tt>GET /accounts</tt> payload) with
+ * the default reflective bean serialization and with
+ * {@link AccountJsonSerializers}. Run with the GC profiler to get the
+ * allocation rate; the <tt>bytes</tt> counter gives the output bytes/sec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountSerializationBenchmark {
+
+	@Param({ "10000" })
+	private int accounts;
+
+	private List<Account> payload;
+
+	private ObjectMapper reflectiveMapper;
+
+	private ObjectMapper customMapper;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Written {
+
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		payload = new ArrayList<Account>(accounts);
+		for (int i = 0; i < accounts; i++) {
+			Account account = new Account(String.format("%09d", i), "Account holder " + i);
+			account.setEntityId((long) i);
+			account.addBeneficiary("Annabelle", Percentage.valueOf("50%"));
+			account.addBeneficiary("Corgan", Percentage.valueOf("50%"));
+			account.makeContribution(MonetaryAmount.valueOf("100.00"));
+			payload.add(account);
+		}
+		reflectiveMapper = new ObjectMapper();
+		customMapper = new ObjectMapper().registerModule(AccountJsonSerializers.module());
+	}
+
+	@Benchmark
+	public byte[] reflective(Written written) throws Exception {
+		byte[] json = reflectiveMapper.writeValueAsBytes(payload);
+		written.bytes += json.length;
+		return json;
+	}
+
+	@Benchmark
+	public byte[] custom(Written written) throws Exception {
+		byte[] json = customMapper.writeValueAsBytes(payload);
+		written.bytes += json.length;
+		return json;
+	}
+}
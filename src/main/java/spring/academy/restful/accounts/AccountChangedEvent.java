@@ -0,0 +1,60 @@
+package spring.academy.restful.accounts;
+
+/**
+ * Published by an {@link AccountManager} whenever an account, or any of its
+ * beneficiaries, has been created, changed or removed.
+ * <p>
+ * Listeners interested only in committed changes should use a
+ * <tt>@TransactionalEventListener</tt>. A node-local change is only visible
+ * on the node publishing it, like a savings credit buffered in memory, and
+ * is not published outside the process.
+ *
+ * A value object. Immutable.
+ */
+public class AccountChangedEvent {
+
+	private final Long accountId;
+
+	private final boolean nodeLocal;
+
+	/**
+	 * Creates a new account changed event.
+	 *
+	 * @param accountId
+	 *            the id of the account that changed
+	 */
+	public AccountChangedEvent(Long accountId) {
+		this(accountId, false);
+	}
+
+	/**
+	 * Creates a new account changed event.
+	 *
+	 * @param accountId
+	 *            the id of the account that changed
+	 * @param nodeLocal
+	 *            true if the change is only visible on this node
+	 */
+	public AccountChangedEvent(Long accountId, boolean nodeLocal) {
+		this.accountId = accountId;
+		this.nodeLocal = nodeLocal;
+	}
+
+	/**
+	 * Returns the id of the account that changed.
+	 */
+	public Long getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * Returns true if the change is only visible on this node.
+	 */
+	public boolean isNodeLocal() {
+		return nodeLocal;
+	}
+
+	public String toString() {
+		return "Account " + accountId + " changed";
+	}
+}
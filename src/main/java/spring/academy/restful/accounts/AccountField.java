@@ -0,0 +1,60 @@
+package spring.academy.restful.accounts;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of an account that a client can ask for in a sparse fieldset,
+ * named as they appear in the JSON representation of an account.
+ */
+public enum AccountField {
+
+	ENTITY_ID("entityId"), NUMBER("number"), NAME("name"), BENEFICIARIES("beneficiaries"), VALID("valid");
+
+	private final String jsonName;
+
+	AccountField(String jsonName) {
+		this.jsonName = jsonName;
+	}
+
+	/**
+	 * Returns the name of this field in the JSON representation of an account.
+	 */
+	public String getJsonName() {
+		return jsonName;
+	}
+
+	/**
+	 * Returns true if this field can only be computed from the account's
+	 * beneficiaries.
+	 */
+	public boolean needsBeneficiaries() {
+		return this == BENEFICIARIES || this == VALID;
+	}
+
+	/**
+	 * Converts JSON field names (e.g. "number", "name") to account fields.
+	 * 
+	 * @param jsonNames
+	 *            the requested field names
+	 * @return the account fields
+	 * @throws IllegalArgumentException
+	 *             if a name is not an account field
+	 */
+	public static Set<AccountField> fromJsonNames(Iterable<String> jsonNames) {
+		Set<AccountField> fields = EnumSet.noneOf(AccountField.class);
+		for (String jsonName : jsonNames) {
+			fields.add(fromJsonName(jsonName.trim()));
+		}
+		return fields;
+	}
+
+	private static AccountField fromJsonName(String jsonName) {
+		for (AccountField field : values()) {
+			if (field.jsonName.equals(jsonName)) {
+				return field;
+			}
+		}
+		throw new IllegalArgumentException("Not an account field '" + jsonName + "'");
+	}
+}
@@ -5,6 +5,7 @@ import spring.academy.restful.rewards.internal.account.Account;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Manages access to account information. Used as the service layer component in
@@ -27,6 +28,28 @@ public interface AccountManager {
 	 */
 	public List<Account> getAllAccounts();
 
+	/**
+	 * Get a summary of all accounts in the system restricted to the given
+	 * fields. Beneficiaries are only read if a requested field needs them.
+	 * 
+	 * @param fields
+	 *            the requested fields
+	 * @return the account summaries, ordered by account id
+	 */
+	public List<AccountSummary> getAccountSummaries(Set<AccountField> fields);
+
+	/**
+	 * Get a summary of an account restricted to the given fields.
+	 * Beneficiaries are only read if a requested field needs them.
+	 * 
+	 * @param id
+	 *            the account id
+	 * @param fields
+	 *            the requested fields
+	 * @return the account summary, or null if there is no such account
+	 */
+	public AccountSummary getAccountSummary(Long id, Set<AccountField> fields);
+
 	/**
 	 * Find an account by its number.
 	 * 
@@ -36,6 +59,16 @@ public interface AccountManager {
 	 */
 	public Account getAccount(Long id);
 
+	/**
+	 * Find the current version of an account without loading its
+	 * beneficiaries.
+	 * 
+	 * @param id
+	 *            the account id
+	 * @return the account version, or null if there is no such account
+	 */
+	public AccountVersion getAccountVersion(Long id);
+
 	/**
 	 * Takes a transient account and persists it.
 	 * 
@@ -67,6 +100,37 @@ public interface AccountManager {
 	public void updateBeneficiaryAllocationPercentages(Long accountId,
 			Map<String, Percentage> allocationPercentages);
 
+	/**
+	 * Updates the allocation percentages for the entire collection of
+	 * beneficiaries in an account, provided the account is still at the
+	 * expected version.
+	 * 
+	 * @param accountId
+	 *            the account id
+	 * @param allocationPercentages
+	 *            A map of beneficiary names and allocation percentages, keyed
+	 *            by beneficiary name
+	 * @param expectedVersion
+	 *            the version the caller last saw
+	 * @throws org.springframework.dao.OptimisticLockingFailureException
+	 *             if the account has been changed since
+	 */
+	public void updateBeneficiaryAllocationPercentages(Long accountId,
+			Map<String, Percentage> allocationPercentages, long expectedVersion);
+
+	/**
+	 * Updates the allocation percentages of many accounts at once. Each
+	 * account is validated on its own: it is only updated if all named
+	 * beneficiaries exist and its allocations then total 100%.
+	 * 
+	 * @param allocationPercentagesByAccount
+	 *            maps of beneficiary names and allocation percentages, keyed
+	 *            by account id
+	 * @return the outcome for each account, in account id order
+	 */
+	public List<AllocationUpdateResult> updateBeneficiaryAllocationPercentagesInBatch(
+			Map<Long, Map<String, Percentage>> allocationPercentagesByAccount);
+
 	/**
 	 * Adds a beneficiary to an account. The new beneficiary will have a 0
 	 * allocation percentage.
@@ -91,6 +155,21 @@ public interface AccountManager {
 	public void removeBeneficiary(Long accountId, String beneficiaryName,
 			Map<String, Percentage> allocationPercentages);
 
+	/**
+	 * Removes a beneficiary from an account, handing its allocation over to
+	 * the remaining beneficiaries so the account keeps its total. The account
+	 * is loaded and flushed once.
+	 * 
+	 * @param accountId
+	 *            the account id
+	 * @param beneficiaryName
+	 *            the name of the beneficiary to remove
+	 * @throws IllegalArgumentException
+	 *             if there is no such account or beneficiary
+	 * @see spring.academy.restful.accounts.internal.AllocationRebalancer
+	 */
+	public void removeBeneficiaryAndRebalance(Long accountId, String beneficiaryName);
+
 	/**
 	 * Remove an
 	 * @param accountId
@@ -0,0 +1,140 @@
+package spring.academy.restful.accounts;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A projection of an account restricted to the fields a client asked for.
+ * Fields that were not requested are left out of its JSON representation.
+ * <p>
+ * Built from a JPQL constructor expression over <tt>T_ACCOUNT</tt>;
+ * beneficiaries are only added when they, or the validity they determine,
+ * were requested.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountSummary {
+
+	private final Long entityId;
+
+	private final String number;
+
+	private final String name;
+
+	private final List<BeneficiarySummary> beneficiaries = new ArrayList<BeneficiarySummary>();
+
+	private Set<AccountField> fields = EnumSet.allOf(AccountField.class);
+
+	private Long version;
+
+	/**
+	 * Creates a new account summary. Used as a JPQL constructor expression.
+	 * 
+	 * @param entityId
+	 *            the account id
+	 * @param number
+	 *            the account number
+	 * @param name
+	 *            the name on the account
+	 */
+	public AccountSummary(Long entityId, String number, String name) {
+		this.entityId = entityId;
+		this.number = number;
+		this.name = name;
+	}
+
+	/**
+	 * Restricts the JSON representation of this summary to the given fields.
+	 * 
+	 * @param fields
+	 *            the requested fields
+	 */
+	public void includeOnly(Set<AccountField> fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * Sets the version of the account, for summaries that serve as the whole
+	 * account and carry an ETag. Left unset for JPQL projections.
+	 * 
+	 * @param version
+	 *            the account version
+	 */
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Adds a beneficiary of this account. Should only be called while the
+	 * summary is being built.
+	 * 
+	 * @param beneficiary
+	 *            the beneficiary
+	 */
+	public void addBeneficiary(BeneficiarySummary beneficiary) {
+		beneficiaries.add(beneficiary);
+	}
+
+	public Long getEntityId() {
+		return fields.contains(AccountField.ENTITY_ID) ? entityId : null;
+	}
+
+	public String getNumber() {
+		return fields.contains(AccountField.NUMBER) ? number : null;
+	}
+
+	public String getName() {
+		return fields.contains(AccountField.NAME) ? name : null;
+	}
+
+	public List<BeneficiarySummary> getBeneficiaries() {
+		return fields.contains(AccountField.BENEFICIARIES) ? Collections.unmodifiableList(beneficiaries) : null;
+	}
+
+	public Boolean getValid() {
+		if (!fields.contains(AccountField.VALID)) {
+			return null;
+		}
+		BigDecimal total = BigDecimal.ZERO;
+		for (BeneficiarySummary beneficiary : beneficiaries) {
+			total = total.add(beneficiary.getAllocationPercentage().asBigDecimal());
+		}
+		return Account.isValidAllocationTotal(total);
+	}
+
+	/**
+	 * Returns the account id whatever fields were requested.
+	 */
+	@JsonIgnore
+	public Long getAccountId() {
+		return entityId;
+	}
+
+	/**
+	 * Returns the account version, or null if it was not read.
+	 */
+	@JsonIgnore
+	public Long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the name on the account whatever fields were requested. Used to
+	 * authorize access to the summary.
+	 */
+	@JsonIgnore
+	public String getOwner() {
+		return name;
+	}
+
+	public String toString() {
+		return entityId + ": Number = '" + number + "', name = " + name + "', beneficiaries = " + beneficiaries;
+	}
+}
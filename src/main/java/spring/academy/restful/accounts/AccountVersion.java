@@ -0,0 +1,83 @@
+package spring.academy.restful.accounts;
+
+import spring.academy.restful.common.money.MonetaryAmount;
+
+/**
+ * The current version of an account together with its owner name, read
+ * without loading the account's beneficiaries. Lets callers answer
+ * conditional requests cheaply.
+ *
+ * A value object. Immutable.
+ */
+public class AccountVersion {
+
+	private final Long accountId;
+
+	private final String name;
+
+	private final long version;
+
+	private final MonetaryAmount pendingSavings;
+
+	/**
+	 * Creates a new account version. Used as a JPQL constructor expression.
+	 *
+	 * @param accountId
+	 *            the account id
+	 * @param name
+	 *            the name on the account
+	 * @param version
+	 *            the version of the account
+	 */
+	public AccountVersion(Long accountId, String name, Long version) {
+		this(accountId, name, version == null ? 0 : version, MonetaryAmount.zero());
+	}
+
+	private AccountVersion(Long accountId, String name, long version, MonetaryAmount pendingSavings) {
+		this.accountId = accountId;
+		this.name = name;
+		this.version = version;
+		this.pendingSavings = pendingSavings;
+	}
+
+	/**
+	 * Returns a copy of this account version with the given pending savings.
+	 */
+	public AccountVersion withPendingSavings(MonetaryAmount pendingSavings) {
+		return new AccountVersion(accountId, name, version, pendingSavings);
+	}
+
+	/**
+	 * Returns the account id.
+	 */
+	public Long getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * Returns the name on the account.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the version of the account.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the savings of the account's beneficiaries still pending in the
+	 * savings ledger or buffered on this node, which do not change the
+	 * version.
+	 */
+	public MonetaryAmount getPendingSavings() {
+		return pendingSavings;
+	}
+
+	public String toString() {
+		return "Account " + accountId + " at version " + version;
+	}
+}
@@ -0,0 +1,69 @@
+package spring.academy.restful.accounts;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The outcome of updating the allocation percentages of one account as part
+ * of a batch. Accounts that fail validation are left unchanged and do not
+ * affect the other accounts of the batch.
+ *
+ * A value object. Immutable.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AllocationUpdateResult {
+
+	/**
+	 * What happened to an account of the batch.
+	 */
+	public enum Outcome {
+		/** The allocation percentages were updated. */
+		UPDATED,
+		/** There is no account with the given id. */
+		NOT_FOUND,
+		/** The allocation percentages were rejected, see the message. */
+		INVALID
+	}
+
+	private final Long accountId;
+
+	private final Outcome outcome;
+
+	private final String message;
+
+	private AllocationUpdateResult(Long accountId, Outcome outcome, String message) {
+		this.accountId = accountId;
+		this.outcome = outcome;
+		this.message = message;
+	}
+
+	public static AllocationUpdateResult updated(Long accountId) {
+		return new AllocationUpdateResult(accountId, Outcome.UPDATED, null);
+	}
+
+	public static AllocationUpdateResult notFound(Long accountId) {
+		return new AllocationUpdateResult(accountId, Outcome.NOT_FOUND, "No such account with id " + accountId);
+	}
+
+	public static AllocationUpdateResult invalid(Long accountId, String message) {
+		return new AllocationUpdateResult(accountId, Outcome.INVALID, message);
+	}
+
+	public Long getAccountId() {
+		return accountId;
+	}
+
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Returns why the account was not updated, or null if it was.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	public String toString() {
+		return "Account " + accountId + ": " + outcome + (message == null ? "" : " (" + message + ")");
+	}
+}
@@ -0,0 +1,98 @@
+package spring.academy.restful.accounts;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+
+import java.math.BigDecimal;
+
+/**
+ * A beneficiary as part of an {@link AccountSummary}. Serialized exactly like
+ * a beneficiary of a full account.
+ *
+ * A value object. Immutable.
+ */
+public class BeneficiarySummary {
+
+	private final Long accountId;
+
+	private final Long entityId;
+
+	private final String name;
+
+	private final Percentage allocationPercentage;
+
+	private final MonetaryAmount savings;
+
+	/**
+	 * Creates a new beneficiary summary. Used as a JPQL constructor expression.
+	 * 
+	 * @param accountId
+	 *            the id of the account of the beneficiary
+	 * @param entityId
+	 *            the beneficiary id
+	 * @param name
+	 *            the beneficiary name
+	 * @param allocationPercentage
+	 *            the allocation percentage as a decimal
+	 * @param savings
+	 *            the savings as a decimal
+	 */
+	public BeneficiarySummary(Long accountId, Long entityId, String name, BigDecimal allocationPercentage,
+			BigDecimal savings) {
+		this.accountId = accountId;
+		this.entityId = entityId;
+		this.name = name;
+		this.allocationPercentage = new Percentage(allocationPercentage);
+		this.savings = new MonetaryAmount(savings);
+	}
+
+	private BeneficiarySummary(Long accountId, Long entityId, String name, Percentage allocationPercentage,
+			MonetaryAmount savings) {
+		this.accountId = accountId;
+		this.entityId = entityId;
+		this.name = name;
+		this.allocationPercentage = allocationPercentage;
+		this.savings = savings;
+	}
+
+	/**
+	 * Returns a copy of this beneficiary with an amount added to its savings,
+	 * for instance contributions not yet folded into the savings column.
+	 * 
+	 * @param amount
+	 *            the amount to add
+	 */
+	public BeneficiarySummary withSavingsAdded(MonetaryAmount amount) {
+		return new BeneficiarySummary(accountId, entityId, name, allocationPercentage, savings.add(amount));
+	}
+
+	/**
+	 * Returns the id of the account of this beneficiary.
+	 */
+	@JsonIgnore
+	public Long getAccountId() {
+		return accountId;
+	}
+
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Percentage getAllocationPercentage() {
+		return allocationPercentage;
+	}
+
+	public MonetaryAmount getSavings() {
+		return savings;
+	}
+
+	public String toString() {
+		return "name = '" + name + "' (" + entityId + "), allocationPercentage = " + allocationPercentage
+				+ ", savings = " + savings;
+	}
+}
@@ -0,0 +1,115 @@
+package spring.academy.restful.accounts;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link AccountManager}, used as the service
+ * layer component of the <tt>reactive</tt> profile.
+ * <p>
+ * Accounts are returned as {@link AccountSummary} objects with all fields
+ * included and their version set, which serialize exactly like
+ * {@link Account}. Operations on an account that does not exist signal an
+ * {@link IllegalArgumentException}.
+ */
+public interface ReactiveAccountManager {
+
+	/**
+	 * Indicates implementation being used. Actual implementation is hidden
+	 * behind a proxy, so this makes it easy to determine.
+	 * 
+	 * @return Implementation information.
+	 */
+	public String getInfo();
+
+	/**
+	 * Streams all accounts in the system, in account id order.
+	 * 
+	 * @return all accounts
+	 */
+	public Flux<AccountSummary> getAllAccounts();
+
+	/**
+	 * Find an account by its id.
+	 * 
+	 * @param id
+	 *            the account id
+	 * @return the account, or empty if there is no such account
+	 */
+	public Mono<AccountSummary> getAccount(Long id);
+
+	/**
+	 * Takes a transient account and persists it with its beneficiaries.
+	 * 
+	 * @param account
+	 *            The account to save
+	 * @return the id of the new account
+	 */
+	public Mono<Long> save(Account account);
+
+	/**
+	 * Updates the allocation percentages for the entire collection of
+	 * beneficiaries in an account
+	 * 
+	 * @param accountId
+	 *            the account id
+	 * @param allocationPercentages
+	 *            A map of beneficiary names and allocation percentages, keyed
+	 *            by beneficiary name
+	 */
+	public Mono<Void> updateBeneficiaryAllocationPercentages(Long accountId,
+			Map<String, Percentage> allocationPercentages);
+
+	/**
+	 * Updates the allocation percentages for the entire collection of
+	 * beneficiaries in an account, provided the account is still at the
+	 * expected version.
+	 * 
+	 * @param accountId
+	 *            the account id
+	 * @param allocationPercentages
+	 *            A map of beneficiary names and allocation percentages, keyed
+	 *            by beneficiary name
+	 * @param expectedVersion
+	 *            the version the caller last saw
+	 * @return signals an
+	 *         {@link org.springframework.dao.OptimisticLockingFailureException}
+	 *         if the account has been changed since
+	 */
+	public Mono<Void> updateBeneficiaryAllocationPercentages(Long accountId,
+			Map<String, Percentage> allocationPercentages, long expectedVersion);
+
+	/**
+	 * Adds a beneficiary to an account. The new beneficiary will have a 0
+	 * allocation percentage.
+	 * 
+	 * @param accountId
+	 *            the account id
+	 * @param beneficiaryName
+	 *            the name of the beneficiary to add
+	 */
+	public Mono<Void> addBeneficiary(Long accountId, String beneficiaryName);
+
+	/**
+	 * Removes a beneficiary from an account, handing its allocation over to
+	 * the remaining beneficiaries so the account stays at 100%.
+	 * 
+	 * @param accountId
+	 *            the account id
+	 * @param beneficiaryName
+	 *            the name of the beneficiary to remove
+	 */
+	public Mono<Void> removeBeneficiary(Long accountId, String beneficiaryName);
+
+	/**
+	 * Remove an account and its beneficiaries.
+	 * 
+	 * @param accountId
+	 *            the account id
+	 */
+	public Mono<Void> removeAccount(Long accountId);
+}
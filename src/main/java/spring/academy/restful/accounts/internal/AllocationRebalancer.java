@@ -0,0 +1,57 @@
+package spring.academy.restful.accounts.internal;
+
+import spring.academy.restful.common.money.Percentage;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hands the allocation of a removed beneficiary over to the remaining
+ * beneficiaries of an account, so an account totalling 100% still does.
+ * <p>
+ * The removed allocation is split in equal shares, rounded down to whole
+ * percents. What cannot be split evenly goes to the first remaining
+ * beneficiary by name, so the outcome only depends on the allocations, never
+ * on iteration order.
+ */
+public final class AllocationRebalancer {
+
+	private AllocationRebalancer() {
+	}
+
+	/**
+	 * Computes the new allocations of the remaining beneficiaries.
+	 * 
+	 * @param remainingAllocations
+	 *            the current allocation of each remaining beneficiary, keyed by
+	 *            beneficiary name
+	 * @param removedAllocation
+	 *            the allocation of the removed beneficiary
+	 * @return the new allocation of each remaining beneficiary in name order,
+	 *         or an empty map if nothing needs to change
+	 */
+	public static Map<String, Percentage> rebalance(Map<String, Percentage> remainingAllocations,
+			Percentage removedAllocation) {
+		BigDecimal removed = removedAllocation.asBigDecimal();
+		if (remainingAllocations.isEmpty() || removed.signum() == 0) {
+			return Collections.emptyMap();
+		}
+		BigDecimal count = BigDecimal.valueOf(remainingAllocations.size());
+		BigDecimal share = removed.divide(count, 2, RoundingMode.DOWN);
+		BigDecimal remainder = removed.subtract(share.multiply(count));
+
+		Map<String, Percentage> rebalanced = new LinkedHashMap<String, Percentage>();
+		for (Map.Entry<String, Percentage> entry : new TreeMap<String, Percentage>(remainingAllocations).entrySet()) {
+			BigDecimal allocation = entry.getValue().asBigDecimal().add(share);
+			if (rebalanced.isEmpty()) {
+				allocation = allocation.add(remainder);
+			}
+			rebalanced.put(entry.getKey(), new Percentage(allocation));
+		}
+		return rebalanced;
+	}
+}
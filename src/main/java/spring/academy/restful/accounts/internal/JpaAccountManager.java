@@ -1,25 +1,71 @@
 package spring.academy.restful.accounts.internal;
 
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.accounts.AccountField;
+import spring.academy.restful.accounts.AccountSummary;
+import spring.academy.restful.accounts.AccountVersion;
+import spring.academy.restful.accounts.AllocationUpdateResult;
+import spring.academy.restful.accounts.BeneficiarySummary;
+import spring.academy.restful.common.money.MonetaryAmount;
 import spring.academy.restful.common.money.Percentage;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import spring.academy.restful.rewards.internal.account.Account;
+import spring.academy.restful.rewards.internal.account.Beneficiary;
+import spring.academy.restful.rewards.internal.account.BufferedSavingsRepository;
+import spring.academy.restful.rewards.internal.account.LedgerSavingsRepository;
 
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 /**
  * An account manager that uses JPA to find accounts.
+ * <p>
+ * Every mutation publishes an {@link AccountChangedEvent} in the current
+ * transaction and increments the account version, including changes made
+ * only to beneficiaries.
  */
 @Repository
-public class JpaAccountManager extends AbstractAccountManager {
+@Profile("!reactive")
+public class JpaAccountManager extends AbstractAccountManager implements ApplicationEventPublisherAware {
+
+	/**
+	 * Number of accounts loaded with a single IN query, and flushed together,
+	 * by batch operations.
+	 */
+	static final int CHUNK_SIZE = 500;
+
+	static final String INCREMENT_VERSION_SQL = "update T_ACCOUNT set VERSION = VERSION + 1"
+			+ " where ID = ? and VERSION = ?";
 
 	private EntityManager entityManager;
 
+	private ApplicationEventPublisher eventPublisher;
+
+	private ObjectProvider<LedgerSavingsRepository> ledgerSavingsRepository;
+
+	private ObjectProvider<BufferedSavingsRepository> bufferedSavingsRepository;
+
 	/**
 	 * Creates a new JPA account manager.
 	 * <p>
@@ -34,6 +80,30 @@ public class JpaAccountManager extends AbstractAccountManager {
 		this.entityManager = entityManager;
 	}
 
+	/**
+	 * Sets the savings ledger, available only when it is enabled, whose
+	 * pending entries are added to the savings of the accounts and account
+	 * summaries read.
+	 */
+	@Autowired
+	public void setLedgerSavingsRepository(ObjectProvider<LedgerSavingsRepository> ledgerSavingsRepository) {
+		this.ledgerSavingsRepository = ledgerSavingsRepository;
+	}
+
+	/**
+	 * Sets the savings buffer, available only when it is enabled, whose
+	 * credits not yet flushed are added to the savings of account summaries.
+	 */
+	@Autowired
+	public void setBufferedSavingsRepository(ObjectProvider<BufferedSavingsRepository> bufferedSavingsRepository) {
+		this.bufferedSavingsRepository = bufferedSavingsRepository;
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	@SuppressWarnings("unchecked")
@@ -50,9 +120,95 @@ public class JpaAccountManager extends AbstractAccountManager {
 				result.add(a);
 		}
 
+		overlayLedgerSavings(result);
 		return result;
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public List<AccountSummary> getAccountSummaries(Set<AccountField> fields) {
+		return findAccountSummaries(null, fields);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public AccountSummary getAccountSummary(Long id, Set<AccountField> fields) {
+		List<AccountSummary> summaries = findAccountSummaries(id, fields);
+		return summaries.isEmpty() ? null : summaries.get(0);
+	}
+
+	/**
+	 * Reads account summaries with constructor expressions. The account
+	 * columns come from T_ACCOUNT alone; T_ACCOUNT_BENEFICIARY is only joined,
+	 * in a second query, when a requested field needs the beneficiaries. The
+	 * savings ledger is only read, in a third query, when it is in use, and
+	 * the credits a savings buffer has not flushed are added from memory.
+	 */
+	private List<AccountSummary> findAccountSummaries(Long id, Set<AccountField> fields) {
+		String where = id == null ? "" : " where a.entityId = :id";
+		TypedQuery<AccountSummary> accountQuery = entityManager.createQuery(
+				"select new spring.academy.restful.accounts.AccountSummary(a.entityId, a.number, a.name) "
+						+ "from Account a" + where + " order by a.entityId", AccountSummary.class);
+		if (id != null)
+			accountQuery.setParameter("id", id);
+		List<AccountSummary> summaries = accountQuery.getResultList();
+
+		Map<Long, AccountSummary> summariesById = new HashMap<Long, AccountSummary>();
+		for (AccountSummary summary : summaries) {
+			summary.includeOnly(fields);
+			summariesById.put(summary.getAccountId(), summary);
+		}
+
+		if (!summaries.isEmpty() && fields.stream().anyMatch(AccountField::needsBeneficiaries)) {
+			TypedQuery<BeneficiarySummary> beneficiaryQuery = entityManager.createQuery(
+					"select new spring.academy.restful.accounts.BeneficiarySummary(a.entityId, b.entityId, b.name, "
+							+ "b.allocationPercentage.value, b.savings.value) "
+							+ "from Account a join a.beneficiaries b" + where, BeneficiarySummary.class);
+			if (id != null)
+				beneficiaryQuery.setParameter("id", id);
+			Map<Long, MonetaryAmount> pending = getPendingSavingsOfAccount(id);
+			for (BeneficiarySummary beneficiary : beneficiaryQuery.getResultList()) {
+				MonetaryAmount pendingSavings = pending.get(beneficiary.getEntityId());
+				summariesById.get(beneficiary.getAccountId()).addBeneficiary(
+						pendingSavings == null ? beneficiary : beneficiary.withSavingsAdded(pendingSavings));
+			}
+		}
+
+		return summaries;
+	}
+
+	/**
+	 * Returns the savings not yet in <tt>SAVINGS</tt>, by beneficiary id: the
+	 * credits buffered on this node plus the ledger entries not compacted.
+	 */
+	private Map<Long, MonetaryAmount> getPendingSavingsOfAccount(Long id) {
+		BufferedSavingsRepository buffer = bufferedSavingsRepository == null ? null
+				: bufferedSavingsRepository.getIfAvailable();
+		LedgerSavingsRepository ledger = ledgerSavingsRepository == null ? null
+				: ledgerSavingsRepository.getIfAvailable();
+		if (buffer == null) {
+			return ledger == null ? Collections.emptyMap() : ledger.getPendingSavingsOfAccount(id);
+		}
+		Map<Long, MonetaryAmount> pending = buffer.getPendingSavingsOfAccount(id);
+		if (ledger != null) {
+			ledger.getPendingSavingsOfAccount(id).forEach((beneficiaryId, amount) -> pending.merge(beneficiaryId,
+					amount, MonetaryAmount::add));
+		}
+		return pending;
+	}
+
+	/**
+	 * Adds the ledger entries not compacted yet to the beneficiaries of the
+	 * accounts loaded, with one query for all of them.
+	 */
+	private void overlayLedgerSavings(List<Account> accounts) {
+		LedgerSavingsRepository ledger = ledgerSavingsRepository == null ? null
+				: ledgerSavingsRepository.getIfAvailable();
+		if (ledger != null) {
+			ledger.overlayPendingSavings(accounts);
+		}
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	public Account getAccount(Long id) {
@@ -61,15 +217,35 @@ public class JpaAccountManager extends AbstractAccountManager {
 		if (account != null) {
 			// Force beneficiaries to load too - avoid Hibernate lazy loading error
 			account.getBeneficiaries().size();
+			overlayLedgerSavings(List.of(account));
 		}
 
 		return account;
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public AccountVersion getAccountVersion(Long id) {
+		List<AccountVersion> versions = entityManager.createQuery(
+				"select new spring.academy.restful.accounts.AccountVersion(a.entityId, a.name, a.version) "
+						+ "from Account a where a.entityId = :id", AccountVersion.class)
+				.setParameter("id", id)
+				.getResultList();
+		if (versions.isEmpty()) {
+			return null;
+		}
+		MonetaryAmount pendingSavings = MonetaryAmount.zero();
+		for (MonetaryAmount amount : getPendingSavingsOfAccount(id).values()) {
+			pendingSavings = pendingSavings.add(amount);
+		}
+		return versions.get(0).withPendingSavings(pendingSavings);
+	}
+
 	@Override
 	@Transactional
 	public Account save(Account account) {
 		entityManager.persist(account);
+		accountChanged(account.getEntityId());
 		return account;
 	}
 
@@ -77,6 +253,7 @@ public class JpaAccountManager extends AbstractAccountManager {
 	@Transactional
 	public void update(Account account) {
 		entityManager.merge(account);
+		accountChanged(account.getEntityId());
 	}
 
 	@Override
@@ -86,28 +263,203 @@ public class JpaAccountManager extends AbstractAccountManager {
 		for (Entry<String, Percentage> entry : allocationPercentages.entrySet()) {
 			account.getBeneficiary(entry.getKey()).setAllocationPercentage(entry.getValue());
 		}
+		incrementVersion(account);
+	}
+
+	@Override
+	@Transactional
+	public void updateBeneficiaryAllocationPercentages(Long accountId, Map<String, Percentage> allocationPercentages,
+			long expectedVersion) {
+		Account account = getAccount(accountId);
+		if (account == null) {
+			throw new IllegalArgumentException("No such account with id " + accountId);
+		}
+		if (account.getVersion() == null || account.getVersion() != expectedVersion) {
+			throw new OptimisticLockingFailureException("Account " + accountId + " is at version "
+					+ account.getVersion() + ", expected " + expectedVersion);
+		}
+		// The version check on the forced increment makes this atomic with
+		// respect to concurrent updates committing in between.
+		updateBeneficiaryAllocationPercentages(accountId, allocationPercentages);
+	}
+
+	/**
+	 * Loads the accounts a chunk at a time, beneficiaries included, and
+	 * flushes each chunk before clearing the persistence context. With
+	 * <tt>hibernate.jdbc.batch_size</tt> set, the UPDATEs of a chunk go to
+	 * <tt>T_ACCOUNT_BENEFICIARY</tt> as JDBC batches.
+	 * <p>
+	 * The versions of the updated accounts of a chunk are incremented with
+	 * one more JDBC batch before the chunk is cleared, rather than at commit,
+	 * as the accounts are detached by then, see
+	 * {@link #incrementVersions(Map)}.
+	 */
+	@Override
+	@Transactional
+	public List<AllocationUpdateResult> updateBeneficiaryAllocationPercentagesInBatch(
+			Map<Long, Map<String, Percentage>> allocationPercentagesByAccount) {
+		List<Long> accountIds = new ArrayList<Long>(allocationPercentagesByAccount.keySet());
+		Collections.sort(accountIds);
+		List<AllocationUpdateResult> results = new ArrayList<AllocationUpdateResult>(accountIds.size());
+
+		for (int from = 0; from < accountIds.size(); from += CHUNK_SIZE) {
+			List<Long> chunk = accountIds.subList(from, Math.min(from + CHUNK_SIZE, accountIds.size()));
+			Map<Long, Account> accounts = new HashMap<Long, Account>();
+			for (Account account : entityManager.createQuery(
+					"select distinct a from Account a left join fetch a.beneficiaries where a.entityId in :ids",
+					Account.class).setParameter("ids", chunk).getResultList()) {
+				accounts.put(account.getEntityId(), account);
+			}
+			Map<Long, Long> updatedVersions = new LinkedHashMap<Long, Long>();
+			for (Long accountId : chunk) {
+				AllocationUpdateResult result = applyAllocationPercentages(accountId, accounts.get(accountId),
+						allocationPercentagesByAccount.get(accountId));
+				if (result.getOutcome() == AllocationUpdateResult.Outcome.UPDATED) {
+					updatedVersions.put(accountId, accounts.get(accountId).getVersion());
+				}
+				results.add(result);
+			}
+			entityManager.flush();
+			incrementVersions(updatedVersions);
+			entityManager.clear();
+		}
+		return results;
+	}
+
+	/**
+	 * Validates the new allocations of an account in memory and only then
+	 * applies them, so a rejected account is left untouched.
+	 */
+	private AllocationUpdateResult applyAllocationPercentages(Long accountId, Account account,
+			Map<String, Percentage> allocationPercentages) {
+		if (account == null) {
+			return AllocationUpdateResult.notFound(accountId);
+		}
+		if (allocationPercentages == null || allocationPercentages.isEmpty()) {
+			return AllocationUpdateResult.invalid(accountId, "No allocation percentages given");
+		}
+		Set<String> names = new HashSet<String>();
+		BigDecimal total = BigDecimal.ZERO;
+		for (Beneficiary beneficiary : account.getBeneficiaries()) {
+			names.add(beneficiary.getName());
+			Percentage allocation = allocationPercentages.get(beneficiary.getName());
+			if (allocation == null) {
+				allocation = beneficiary.getAllocationPercentage();
+			}
+			total = total.add(allocation.asBigDecimal());
+		}
+		for (String name : allocationPercentages.keySet()) {
+			if (!names.contains(name)) {
+				return AllocationUpdateResult.invalid(accountId, "No such beneficiary with name '" + name + "'");
+			}
+		}
+		if (!Account.isValidAllocationTotal(total)) {
+			return AllocationUpdateResult.invalid(accountId, "Allocation percentages do not total 100%");
+		}
+		for (Entry<String, Percentage> entry : allocationPercentages.entrySet()) {
+			account.getBeneficiary(entry.getKey()).setAllocationPercentage(entry.getValue());
+		}
+		return AllocationUpdateResult.updated(accountId);
 	}
 
 	@Override
 	@Transactional
 	public void addBeneficiary(Long accountId, String beneficiaryName) {
-		getAccount(accountId).addBeneficiary(beneficiaryName, Percentage.zero());
+		Account account = getAccount(accountId);
+		account.addBeneficiary(beneficiaryName, Percentage.zero());
+		incrementVersion(account);
 	}
 
 	@Override
 	@Transactional
 	public void removeBeneficiary(Long accountId, String beneficiaryName,
 			Map<String, Percentage> allocationPercentages) {
-		getAccount(accountId).removeBeneficiary(beneficiaryName);
+		Account account = getAccount(accountId);
+		account.removeBeneficiary(beneficiaryName);
 
 		if (allocationPercentages != null)
 			updateBeneficiaryAllocationPercentages(accountId, allocationPercentages);
+
+		incrementVersion(account);
+	}
+
+	@Override
+	@Transactional
+	public void removeBeneficiaryAndRebalance(Long accountId, String beneficiaryName) {
+		Account account = getAccount(accountId);
+		if (account == null) {
+			throw new IllegalArgumentException("No such account with id " + accountId);
+		}
+		Beneficiary removed = account.getBeneficiary(beneficiaryName);
+		account.removeBeneficiary(beneficiaryName);
+
+		Map<String, Percentage> remainingAllocations = new HashMap<String, Percentage>();
+		for (Beneficiary beneficiary : account.getBeneficiaries()) {
+			remainingAllocations.put(beneficiary.getName(), beneficiary.getAllocationPercentage());
+		}
+		Map<String, Percentage> rebalanced = AllocationRebalancer.rebalance(remainingAllocations,
+				removed.getAllocationPercentage());
+		for (Entry<String, Percentage> entry : rebalanced.entrySet()) {
+			account.getBeneficiary(entry.getKey()).setAllocationPercentage(entry.getValue());
+		}
+
+		incrementVersion(account);
 	}
 
 	@Override
 	@Transactional
 	public void removeAccount(Long accountId) {
 		entityManager.remove(getAccount(accountId));
+		accountChanged(accountId);
+	}
+
+	/**
+	 * Beneficiaries are separate entities, so changing one does not make the
+	 * account dirty: force the version increment and publish the change.
+	 */
+	private void incrementVersion(Account account) {
+		entityManager.lock(account, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+		accountChanged(account.getEntityId());
+	}
+
+	/**
+	 * Increments the versions of accounts a batch operation detaches before
+	 * commit, checked against the versions loaded, with a single JDBC batch:
+	 * the increment of {@link #incrementVersion(Account)} only runs at commit,
+	 * and only for accounts still in the persistence context.
+	 * 
+	 * @param loadedVersions
+	 *            the version loaded of each account, by account id
+	 */
+	private void incrementVersions(Map<Long, Long> loadedVersions) {
+		if (loadedVersions.isEmpty()) {
+			return;
+		}
+		entityManager.unwrap(Session.class).doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(INCREMENT_VERSION_SQL)) {
+				for (Entry<Long, Long> entry : loadedVersions.entrySet()) {
+					statement.setLong(1, entry.getKey());
+					statement.setLong(2, entry.getValue());
+					statement.addBatch();
+				}
+				int[] counts = statement.executeBatch();
+				int i = 0;
+				for (Entry<Long, Long> entry : loadedVersions.entrySet()) {
+					if (counts[i++] == 0) {
+						throw new OptimisticLockingFailureException("Account " + entry.getKey()
+								+ " changed after it was loaded at version " + entry.getValue());
+					}
+				}
+			}
+		});
+		for (Long accountId : loadedVersions.keySet()) {
+			accountChanged(accountId);
+		}
+	}
+
+	private void accountChanged(Long accountId) {
+		if (eventPublisher != null)
+			eventPublisher.publishEvent(new AccountChangedEvent(accountId));
 	}
 
 }
@@ -0,0 +1,212 @@
+package spring.academy.restful.accounts.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.academy.restful.accounts.AccountSummary;
+import spring.academy.restful.accounts.BeneficiarySummary;
+import spring.academy.restful.accounts.ReactiveAccountManager;
+import spring.academy.restful.accounts.internal.r2dbc.AccountRow;
+import spring.academy.restful.accounts.internal.r2dbc.AccountRowRepository;
+import spring.academy.restful.accounts.internal.r2dbc.BeneficiaryRow;
+import spring.academy.restful.accounts.internal.r2dbc.BeneficiaryRowRepository;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An account manager that uses R2DBC to find accounts, for the
+ * <tt>reactive</tt> profile.
+ * <p>
+ * Like {@link JpaAccountManager} it increments the account version on every
+ * change, including changes made only to beneficiaries, so the ETags served
+ * by both stacks agree.
+ */
+public class R2dbcAccountManager implements ReactiveAccountManager {
+
+	/**
+	 * Number of accounts whose beneficiaries are read with a single query
+	 * while streaming all accounts.
+	 */
+	private static final int BATCH_SIZE = 100;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final AccountRowRepository accountRows;
+
+	private final BeneficiaryRowRepository beneficiaryRows;
+
+	public R2dbcAccountManager(AccountRowRepository accountRows, BeneficiaryRowRepository beneficiaryRows) {
+		this.accountRows = accountRows;
+		this.beneficiaryRows = beneficiaryRows;
+		logger.info("Created " + getInfo() + " account-manager");
+	}
+
+	@Override
+	public String getInfo() {
+		return "R2DBC";
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Flux<AccountSummary> getAllAccounts() {
+		return accountRows.findAll(Sort.by("entityId"))
+				.buffer(BATCH_SIZE)
+				.concatMap(batch -> beneficiaryRows.findByAccountIdIn(batch.stream().map(AccountRow::entityId).toList())
+						.collectMultimap(BeneficiaryRow::accountId)
+						.flatMapIterable(beneficiaries -> batch.stream()
+								.map(row -> summary(row, beneficiaries.get(row.entityId())))
+								.toList()));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Mono<AccountSummary> getAccount(Long id) {
+		return accountRows.findById(id)
+				.flatMap(row -> beneficiaryRows.findByAccountId(id).collectList().map(list -> summary(row, list)));
+	}
+
+	@Override
+	@Transactional
+	public Mono<Long> save(Account account) {
+		return accountRows.save(new AccountRow(null, account.getNumber(), account.getName(), 0L))
+				.flatMap(saved -> Flux.fromIterable(account.getBeneficiaries())
+						.concatMap(b -> beneficiaryRows.save(new BeneficiaryRow(null, saved.entityId(), b.getName(),
+								b.getAllocationPercentage().asBigDecimal(), b.getSavings().asBigDecimal())))
+						.then(Mono.just(saved.entityId())));
+	}
+
+	@Override
+	@Transactional
+	public Mono<Void> updateBeneficiaryAllocationPercentages(Long accountId,
+			Map<String, Percentage> allocationPercentages) {
+		return beneficiaries(accountId).flatMap(rows -> {
+			List<BeneficiaryRow> changed = allocate(rows, accountId, allocationPercentages);
+			return beneficiaryRows.saveAll(changed).then(incrementVersion(accountId));
+		});
+	}
+
+	@Override
+	@Transactional
+	public Mono<Void> updateBeneficiaryAllocationPercentages(Long accountId,
+			Map<String, Percentage> allocationPercentages, long expectedVersion) {
+		return beneficiaries(accountId).flatMap(rows -> {
+			List<BeneficiaryRow> changed = allocate(rows, accountId, allocationPercentages);
+			// Claim the expected version first, so a stale update writes nothing
+			return accountRows.incrementVersion(accountId, expectedVersion)
+					.flatMap(updated -> updated == 0
+							? Mono.error(new OptimisticLockingFailureException("Account " + accountId
+									+ " is no longer at version " + expectedVersion))
+							: beneficiaryRows.saveAll(changed).then());
+		});
+	}
+
+	@Override
+	@Transactional
+	public Mono<Void> addBeneficiary(Long accountId, String beneficiaryName) {
+		return accountRows.findById(accountId)
+				.switchIfEmpty(Mono.error(() -> noSuchAccount(accountId)))
+				.flatMap(account -> beneficiaryRows.save(new BeneficiaryRow(null, accountId, beneficiaryName,
+						BigDecimal.ZERO, BigDecimal.ZERO)))
+				.then(incrementVersion(accountId));
+	}
+
+	@Override
+	@Transactional
+	public Mono<Void> removeBeneficiary(Long accountId, String beneficiaryName) {
+		return beneficiaries(accountId).flatMap(rows -> {
+			BeneficiaryRow removed = find(rows, accountId, beneficiaryName);
+			List<BeneficiaryRow> remaining = new ArrayList<BeneficiaryRow>(rows);
+			remaining.remove(removed);
+			return beneficiaryRows.delete(removed)
+					.then(beneficiaryRows.saveAll(rebalance(remaining, removed.allocationPercentage())).then())
+					.then(incrementVersion(accountId));
+		});
+	}
+
+	@Override
+	@Transactional
+	public Mono<Void> removeAccount(Long accountId) {
+		return beneficiaryRows.deleteByAccountId(accountId)
+				.then(accountRows.deleteById(accountId));
+	}
+
+	private static List<BeneficiaryRow> allocate(List<BeneficiaryRow> rows, Long accountId,
+			Map<String, Percentage> allocationPercentages) {
+		List<BeneficiaryRow> changed = new ArrayList<BeneficiaryRow>();
+		for (String name : allocationPercentages.keySet()) {
+			BeneficiaryRow row = find(rows, accountId, name);
+			changed.add(row.withAllocationPercentage(allocationPercentages.get(name).asBigDecimal()));
+		}
+		return changed;
+	}
+
+	/**
+	 * Applies the {@link AllocationRebalancer} rule shared with
+	 * {@link JpaAccountManager}.
+	 * 
+	 * @return the beneficiaries whose allocation changed
+	 */
+	private static List<BeneficiaryRow> rebalance(List<BeneficiaryRow> remaining, BigDecimal removedAllocation) {
+		Map<String, Percentage> remainingAllocations = new HashMap<String, Percentage>();
+		for (BeneficiaryRow row : remaining) {
+			remainingAllocations.put(row.name(), new Percentage(row.allocationPercentage()));
+		}
+		Map<String, Percentage> rebalanced = AllocationRebalancer.rebalance(remainingAllocations,
+				new Percentage(removedAllocation));
+		List<BeneficiaryRow> changed = new ArrayList<BeneficiaryRow>(rebalanced.size());
+		for (BeneficiaryRow row : remaining) {
+			Percentage allocation = rebalanced.get(row.name());
+			if (allocation != null) {
+				changed.add(row.withAllocationPercentage(allocation.asBigDecimal()));
+			}
+		}
+		return changed;
+	}
+
+	private Mono<List<BeneficiaryRow>> beneficiaries(Long accountId) {
+		return accountRows.existsById(accountId)
+				.flatMap(exists -> exists ? beneficiaryRows.findByAccountId(accountId).collectList()
+						: Mono.error(noSuchAccount(accountId)));
+	}
+
+	private Mono<Void> incrementVersion(Long accountId) {
+		return accountRows.incrementVersion(accountId).then();
+	}
+
+	private static BeneficiaryRow find(List<BeneficiaryRow> rows, Long accountId, String beneficiaryName) {
+		for (BeneficiaryRow row : rows) {
+			if (row.name().equals(beneficiaryName)) {
+				return row;
+			}
+		}
+		throw new IllegalArgumentException("No such beneficiary with name '" + beneficiaryName
+				+ "' on account " + accountId);
+	}
+
+	private static IllegalArgumentException noSuchAccount(Long accountId) {
+		return new IllegalArgumentException("No such account with id " + accountId);
+	}
+
+	private static AccountSummary summary(AccountRow row, Collection<BeneficiaryRow> beneficiaries) {
+		AccountSummary summary = new AccountSummary(row.entityId(), row.number(), row.name());
+		summary.setVersion(row.version());
+		if (beneficiaries != null) {
+			for (BeneficiaryRow b : beneficiaries) {
+				summary.addBeneficiary(new BeneficiarySummary(b.accountId(), b.entityId(), b.name(),
+						b.allocationPercentage(), b.savings()));
+			}
+		}
+		return summary;
+	}
+}
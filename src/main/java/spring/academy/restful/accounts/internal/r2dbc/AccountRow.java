@@ -0,0 +1,16 @@
+package spring.academy.restful.accounts.internal.r2dbc;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of <tt>T_ACCOUNT</tt>, as read and written through R2DBC.
+ */
+@Table("T_ACCOUNT")
+public record AccountRow(
+		@Id @Column("ID") Long entityId,
+		@Column("NUMBER") String number,
+		@Column("NAME") String name,
+		@Column("VERSION") Long version) {
+}
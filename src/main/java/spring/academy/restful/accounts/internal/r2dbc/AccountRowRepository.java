@@ -0,0 +1,32 @@
+package spring.academy.restful.accounts.internal.r2dbc;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.data.repository.reactive.ReactiveSortingRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive access to <tt>T_ACCOUNT</tt>.
+ */
+public interface AccountRowRepository
+		extends ReactiveCrudRepository<AccountRow, Long>, ReactiveSortingRepository<AccountRow, Long> {
+
+	/**
+	 * Increments the version of an account, as the JPA stack does on every
+	 * change, so ETags stay consistent between both stacks.
+	 * @return the number of rows updated
+	 */
+	@Modifying
+	@Query("update T_ACCOUNT set VERSION = VERSION + 1 where ID = :id")
+	Mono<Integer> incrementVersion(Long id);
+
+	/**
+	 * Increments the version of an account only if it is still at the
+	 * expected version.
+	 * @return the number of rows updated, 0 if the version moved on
+	 */
+	@Modifying
+	@Query("update T_ACCOUNT set VERSION = VERSION + 1 where ID = :id and VERSION = :expectedVersion")
+	Mono<Integer> incrementVersion(Long id, long expectedVersion);
+}
@@ -0,0 +1,26 @@
+package spring.academy.restful.accounts.internal.r2dbc;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+
+/**
+ * A row of <tt>T_ACCOUNT_BENEFICIARY</tt>, as read and written through R2DBC.
+ */
+@Table("T_ACCOUNT_BENEFICIARY")
+public record BeneficiaryRow(
+		@Id @Column("ID") Long entityId,
+		@Column("ACCOUNT_ID") Long accountId,
+		@Column("NAME") String name,
+		@Column("ALLOCATION_PERCENTAGE") BigDecimal allocationPercentage,
+		@Column("SAVINGS") BigDecimal savings) {
+
+	/**
+	 * Returns a copy of this row with another allocation percentage.
+	 */
+	public BeneficiaryRow withAllocationPercentage(BigDecimal allocationPercentage) {
+		return new BeneficiaryRow(entityId, accountId, name, allocationPercentage, savings);
+	}
+}
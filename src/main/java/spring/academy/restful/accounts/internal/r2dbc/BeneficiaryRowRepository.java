@@ -0,0 +1,23 @@
+package spring.academy.restful.accounts.internal.r2dbc;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Reactive access to <tt>T_ACCOUNT_BENEFICIARY</tt>.
+ */
+public interface BeneficiaryRowRepository extends ReactiveCrudRepository<BeneficiaryRow, Long> {
+
+	Flux<BeneficiaryRow> findByAccountId(Long accountId);
+
+	Flux<BeneficiaryRow> findByAccountIdIn(Collection<Long> accountIds);
+
+	@Modifying
+	@Query("delete from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = :accountId")
+	Mono<Integer> deleteByAccountId(Long accountId);
+}
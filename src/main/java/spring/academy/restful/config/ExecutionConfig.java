@@ -0,0 +1,18 @@
+package spring.academy.restful.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables <tt>@Async</tt> methods and <tt>@Scheduled</tt> tasks. Spring Boot
+ * provides the executor and the scheduler; both use virtual threads when
+ * <tt>spring.threads.virtual.enabled</tt> is set (see
+ * {@link VirtualThreadsConfig}).
+ */
+@Configuration
+@EnableAsync
+@EnableScheduling
+public class ExecutionConfig {
+
+}
@@ -0,0 +1,43 @@
+package spring.academy.restful.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import spring.academy.restful.monitoring.ComponentObservationInterceptor;
+import spring.academy.restful.monitoring.ComponentObservationPostProcessor;
+import spring.academy.restful.monitoring.ObservedJsonHttpMessageConverter;
+
+/**
+ * Observations of the parts of a request, next to the
+ * <tt>http.server.requests</tt> observation of the whole request and the
+ * <tt>spring.security.*</tt> observations of the security filters that Spring
+ * Boot and Spring Security add:
+ * <ul>
+ * <li><tt>rewards.component.calls</tt>, the calls of the account manager and
+ * of the repositories, see {@link ComponentObservationInterceptor}</li>
+ * <li><tt>rewards.serialization</tt>, the JSON serialization of response
+ * bodies, see {@link ObservedJsonHttpMessageConverter}</li>
+ * </ul>
+ * Both carry the <tt>uri</tt> of the request, so the time of a request can be
+ * split between them on <tt>/actuator/prometheus</tt>. Their SLO buckets are
+ * set under <tt>management.metrics.distribution.slo</tt>.
+ */
+@Configuration
+public class ObservationConfig {
+
+    @Bean
+    public static ComponentObservationPostProcessor componentObservationPostProcessor(
+            ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new ComponentObservationPostProcessor(() -> observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ObservedJsonHttpMessageConverter observedJsonHttpMessageConverter(ObjectMapper objectMapper,
+                                                                              ObservationRegistry observationRegistry) {
+        return new ObservedJsonHttpMessageConverter(objectMapper, observationRegistry);
+    }
+}
@@ -0,0 +1,58 @@
+package spring.academy.restful.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+import spring.academy.restful.outbox.FileOutboxSink;
+import spring.academy.restful.outbox.InMemoryOutboxSink;
+import spring.academy.restful.outbox.OutboxPoller;
+import spring.academy.restful.outbox.OutboxSink;
+import spring.academy.restful.outbox.OutboxWriter;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Opt-in transactional outbox, activated with
+ * <tt>rewards.outbox.enabled=true</tt>: account changes and reward
+ * confirmations are written to <tt>T_OUTBOX</tt> in the transaction making
+ * them, and drained into the sink selected by <tt>rewards.outbox.sink</tt>
+ * (<tt>memory</tt>, the default, or <tt>file</tt>).
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "rewards.outbox.enabled", havingValue = "true")
+public class OutboxConfig {
+
+    @Bean
+    public OutboxWriter outboxWriter(DataSource dataSource, ObjectMapper objectMapper) {
+        return new OutboxWriter(dataSource, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rewards.outbox.sink", havingValue = "memory", matchIfMissing = true)
+    public InMemoryOutboxSink inMemoryOutboxSink() {
+        return new InMemoryOutboxSink();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rewards.outbox.sink", havingValue = "file")
+    public FileOutboxSink fileOutboxSink(@Value("${rewards.outbox.file}") Path file) {
+        return new FileOutboxSink(file);
+    }
+
+    @Bean
+    public OutboxPoller outboxPoller(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                     OutboxSink sink, MeterRegistry meterRegistry,
+                                     @Value("${rewards.outbox.batch-size:500}") int batchSize,
+                                     @Value("${rewards.outbox.claim-timeout:PT1M}") Duration claimTimeout,
+                                     @Value("${rewards.outbox.node-id:local}") String nodeId) {
+        return new OutboxPoller(dataSource, transactionManager, sink, batchSize, claimTimeout, nodeId, meterRegistry);
+    }
+}
@@ -0,0 +1,80 @@
+package spring.academy.restful.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.csrf.CsrfWebFilter;
+import org.springframework.security.web.server.util.matcher.AndServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.NegatedServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import spring.academy.restful.accounts.ReactiveAccountManager;
+import spring.academy.restful.accounts.internal.R2dbcAccountManager;
+import spring.academy.restful.accounts.internal.r2dbc.AccountRowRepository;
+import spring.academy.restful.accounts.internal.r2dbc.BeneficiaryRowRepository;
+import spring.academy.restful.web.reactive.ReactiveAccountHandler;
+
+/**
+ * The WebFlux and R2DBC variant of the application, activated with the
+ * <tt>reactive</tt> profile. It replaces the servlet stack configured by
+ * {@link ServicesConfig}, {@link RepositoriesConfig} and
+ * {@link SecurityConfig}, exposing the same <tt>/accounts</tt> contract with
+ * the same JWT scopes.
+ */
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+public class ReactiveConfig {
+
+    @Bean
+    public ReactiveAccountManager reactiveAccountManager(AccountRowRepository accountRows,
+                                                         BeneficiaryRowRepository beneficiaryRows) {
+        return new R2dbcAccountManager(accountRows, beneficiaryRows);
+    }
+
+    @Bean
+    public ReactiveAccountHandler reactiveAccountHandler(ReactiveAccountManager reactiveAccountManager) {
+        return new ReactiveAccountHandler(reactiveAccountManager);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> accountRoutes(ReactiveAccountHandler handler) {
+        return RouterFunctions.route()
+                .GET("/accounts", handler::accountSummary)
+                .POST("/accounts", handler::createAccount)
+                .GET("/accounts/{accountId}", handler::accountDetails)
+                .PUT("/accounts/{accountId}", handler::updateBeneficiaryAllocationPercentages)
+                .DELETE("/accounts/{accountId}", handler::removeAccount)
+                .POST("/accounts/{accountId}/beneficiaries", handler::addBeneficiary)
+                .GET("/accounts/{accountId}/beneficiaries/{beneficiaryName}", handler::getBeneficiary)
+                .DELETE("/accounts/{accountId}/beneficiaries/{beneficiaryName}", handler::removeBeneficiary)
+                .build();
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        http
+                .authorizeExchange(authorize -> authorize
+                        .pathMatchers(HttpMethod.GET, "/accounts/**").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
+                        .pathMatchers(HttpMethod.POST, "/accounts/{accountId}/beneficiaries").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
+                        .pathMatchers(HttpMethod.DELETE, "/accounts/{accountId}/beneficiaries/{beneficiaryId}").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
+                        .pathMatchers(HttpMethod.PUT, "/accounts/{accountId}").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
+                        .pathMatchers(HttpMethod.POST, "/accounts").hasAuthority("SCOPE_rewards:BANKER")
+                        .pathMatchers(HttpMethod.DELETE, "/accounts/{accountId}").hasAuthority("SCOPE_rewards:BANKER")
+                        .pathMatchers("/actuator/**").hasAuthority("SCOPE_rewards:PROMETHEUS")
+                        .anyExchange().authenticated()
+                )
+                .oauth2ResourceServer((oauth2) -> oauth2.jwt(Customizer.withDefaults()))
+                .csrf((csrf) -> csrf.requireCsrfProtectionMatcher(new AndServerWebExchangeMatcher(
+                        CsrfWebFilter.DEFAULT_CSRF_MATCHER,
+                        new NegatedServerWebExchangeMatcher(ServerWebExchangeMatchers.pathMatchers("/accounts/**")))));
+        return http.build();
+    }
+}
@@ -1,17 +1,38 @@
 package spring.academy.restful.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
 import spring.academy.restful.rewards.internal.account.AccountRepository;
+import spring.academy.restful.rewards.internal.account.BufferedSavingsRepository;
+import spring.academy.restful.rewards.internal.account.JdbcSavingsRepository;
 import spring.academy.restful.rewards.internal.account.JpaAccountRepository;
+import spring.academy.restful.rewards.internal.account.LedgerCompactor;
+import spring.academy.restful.rewards.internal.account.LedgerSavingsRepository;
+import spring.academy.restful.rewards.internal.account.SavingsRepository;
+import spring.academy.restful.rewards.internal.account.StatementGenerator;
+import spring.academy.restful.rewards.internal.restaurant.DiningCounterLoader;
 import spring.academy.restful.rewards.internal.restaurant.JpaRestaurantRepository;
 import spring.academy.restful.rewards.internal.restaurant.RestaurantRepository;
+import spring.academy.restful.rewards.internal.reward.JdbcRewardHistoryRepository;
 import spring.academy.restful.rewards.internal.reward.JdbcRewardRepository;
+import spring.academy.restful.rewards.internal.reward.JournaledRewardRepository;
+import spring.academy.restful.rewards.internal.reward.RewardAggregateRebuilder;
+import spring.academy.restful.rewards.internal.reward.RewardHistoryRepository;
+import spring.academy.restful.rewards.internal.reward.RewardRecomputation;
 import spring.academy.restful.rewards.internal.reward.RewardRepository;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
 
 @Configuration
+@Profile("!reactive")
 public class RepositoriesConfig {
 
     @Bean
@@ -19,14 +40,88 @@ public class RepositoriesConfig {
         return new JpaAccountRepository();
     }
 
+    @Bean
+    @ConditionalOnExpression("!${rewards.savings.ledger.enabled:false} and !${rewards.savings.buffer.enabled:false}")
+    public SavingsRepository savingsRepository(DataSource dataSource) {
+        return new JdbcSavingsRepository(dataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rewards.savings.ledger.enabled", havingValue = "true")
+    public LedgerSavingsRepository ledgerSavingsRepository(DataSource dataSource) {
+        return new LedgerSavingsRepository(dataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rewards.savings.ledger.enabled", havingValue = "true")
+    public LedgerCompactor ledgerCompactor(DataSource dataSource,
+                                           @Value("${rewards.savings.ledger.compaction-batch-size:10000}") int batchSize) {
+        return new LedgerCompactor(dataSource, batchSize);
+    }
+
+    @Bean
+    @ConditionalOnExpression("!${rewards.savings.ledger.enabled:false} and ${rewards.savings.buffer.enabled:false}")
+    public BufferedSavingsRepository bufferedSavingsRepository(DataSource dataSource,
+                                                               PlatformTransactionManager transactionManager,
+                                                               @Value("${rewards.savings.buffer.wal-directory}") Path walDirectory,
+                                                               @Value("${rewards.savings.buffer.node-id}") String nodeId) {
+        return new BufferedSavingsRepository(dataSource, transactionManager, walDirectory, nodeId);
+    }
+
+    @Bean
+    public StatementGenerator statementGenerator(DataSource dataSource,
+                                                 @Value("${rewards.statements.directory}") Path directory,
+                                                 @Value("${rewards.statements.shards:4}") int shards,
+                                                 MeterRegistry meterRegistry) {
+        return new StatementGenerator(dataSource, directory, shards, meterRegistry);
+    }
+
     @Bean
     public RestaurantRepository restaurantRepository() {
         return new JpaRestaurantRepository();
     }
 
     @Bean
+    public DiningCounterLoader diningCounterLoader(DataSource dataSource) {
+        return new DiningCounterLoader(dataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rewards.reward-journal.enabled", havingValue = "false", matchIfMissing = true)
     public RewardRepository rewardRepository(DataSource dataSource) {
         return new JdbcRewardRepository(dataSource);
     }
 
+    @Bean
+    public RewardHistoryRepository rewardHistoryRepository(DataSource dataSource) {
+        return new JdbcRewardHistoryRepository(dataSource);
+    }
+
+    @Bean
+    public RewardAggregateRebuilder rewardAggregateRebuilder(DataSource dataSource,
+                                                             PlatformTransactionManager transactionManager,
+                                                             @Value("${rewards.reward-aggregates.rebuild.parallelism:4}") int parallelism,
+                                                             @Value("${rewards.reward-aggregates.rebuild.range-size:100000}") int rangeSize) {
+        return new RewardAggregateRebuilder(dataSource, transactionManager, parallelism, rangeSize);
+    }
+
+    @Bean
+    public RewardRecomputation rewardRecomputation(DataSource dataSource,
+                                                   PlatformTransactionManager transactionManager,
+                                                   @Value("${rewards.reward-recomputation.parallelism:4}") int parallelism,
+                                                   @Value("${rewards.reward-recomputation.range-size:10000}") int rangeSize,
+                                                   @Value("${rewards.reward-recomputation.max-rewards-per-second:20000}") int maxRewardsPerSecond) {
+        return new RewardRecomputation(dataSource, transactionManager, parallelism, rangeSize, maxRewardsPerSecond);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rewards.reward-journal.enabled", havingValue = "true")
+    public JournaledRewardRepository journaledRewardRepository(DataSource dataSource,
+                                                               PlatformTransactionManager transactionManager,
+                                                               @Value("${rewards.reward-journal.directory}") Path directory,
+                                                               @Value("${rewards.reward-journal.commit-delay}") Duration commitDelay,
+                                                               @Value("${rewards.reward-journal.node-id}") String nodeId) {
+        return new JournaledRewardRepository(dataSource, transactionManager, directory, commitDelay, nodeId);
+    }
+
 }
@@ -2,6 +2,7 @@ package spring.academy.restful.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -10,6 +11,7 @@ import org.springframework.security.web.SecurityFilterChain;
 
 @EnableMethodSecurity
 @Configuration
+@Profile("!reactive")
 public class SecurityConfig {
 
     @Bean
@@ -19,9 +21,16 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/accounts/**").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
                         .requestMatchers(HttpMethod.POST, "/accounts/{accountId}/beneficiaries").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
                         .requestMatchers(HttpMethod.DELETE, "/accounts/{accountId}/beneficiaries/{beneficiaryId}").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
+                        .requestMatchers(HttpMethod.PUT, "/accounts/allocations").hasAuthority("SCOPE_rewards:BANKER")
                         .requestMatchers(HttpMethod.PUT, "/accounts/{accountId}").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
                         .requestMatchers(HttpMethod.POST, "/accounts").hasAuthority("SCOPE_rewards:BANKER")
                         .requestMatchers(HttpMethod.DELETE, "/accounts/{accountId}").hasAuthority("SCOPE_rewards:BANKER")
+                        .requestMatchers(HttpMethod.GET, "/merchants/**").hasAuthority("SCOPE_rewards:BANKER")
+                        .requestMatchers(HttpMethod.POST, "/rewards/totals/rebuild").hasAuthority("SCOPE_rewards:BANKER")
+                        .requestMatchers(HttpMethod.POST, "/rewards/recompute").hasAuthority("SCOPE_rewards:BANKER")
+                        .requestMatchers(HttpMethod.POST, "/rewards/statements/{month}").hasAuthority("SCOPE_rewards:BANKER")
+                        .requestMatchers(HttpMethod.GET, "/rewards/jobs/**").hasAuthority("SCOPE_rewards:BANKER")
+                        .requestMatchers(HttpMethod.GET, "/rewards/**").hasAnyAuthority("SCOPE_rewards:CUSTOMER", "SCOPE_rewards:BANKER")
                         .requestMatchers("/actuator/**").hasAuthority("SCOPE_rewards:PROMETHEUS")
                         .anyRequest().authenticated()
                 )
@@ -2,10 +2,12 @@ package spring.academy.restful.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import spring.academy.restful.accounts.AccountManager;
 import spring.academy.restful.accounts.internal.JpaAccountManager;
 
 @Configuration
+@Profile("!reactive")
 public class ServicesConfig {
 
 	@Bean
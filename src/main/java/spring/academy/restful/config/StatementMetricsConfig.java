@@ -0,0 +1,55 @@
+package spring.academy.restful.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import spring.academy.restful.jdbc.StatementCountingDataSource;
+import spring.academy.restful.monitoring.StatementMetrics;
+import spring.academy.restful.monitoring.StatementSamplingFilter;
+
+import javax.sql.DataSource;
+
+/**
+ * Opt-in SQL statement metrics, activated with
+ * <tt>rewards.jdbc.statements.enabled=true</tt>: the data source is wrapped in
+ * a {@link StatementCountingDataSource}, and the statements of a sample of
+ * requests and transactions (<tt>rewards.jdbc.statements.sample-rate</tt>)
+ * are counted and checked for repeated statements, see
+ * {@link StatementMetrics}. Spring Boot registers the metrics with the
+ * transaction manager as a transaction execution listener.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rewards.jdbc.statements.enabled", havingValue = "true")
+public class StatementMetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+                    return new StatementCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public StatementMetrics statementMetrics(MeterRegistry meterRegistry,
+                                             @Value("${rewards.jdbc.statements.sample-rate:0.01}") double sampleRate,
+                                             @Value("${rewards.jdbc.statements.repeat-threshold:5}") int repeatThreshold) {
+        return new StatementMetrics(meterRegistry, sampleRate, repeatThreshold);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public StatementSamplingFilter statementSamplingFilter(StatementMetrics statementMetrics) {
+        return new StatementSamplingFilter(statementMetrics);
+    }
+}
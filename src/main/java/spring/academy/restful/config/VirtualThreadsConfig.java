@@ -0,0 +1,56 @@
+package spring.academy.restful.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import spring.academy.restful.jdbc.ConcurrencyLimitingDataSource;
+import spring.academy.restful.monitoring.VirtualThreadPinningMetrics;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Opt-in virtual thread execution model, activated with the
+ * <tt>virtual-threads</tt> profile (or <tt>spring.threads.virtual.enabled=true</tt>).
+ * Spring Boot then runs Tomcat requests, <tt>@Async</tt> methods and
+ * <tt>@Scheduled</tt> tasks on virtual threads; this configuration adds:
+ * <ul>
+ * <li>a {@link ConcurrencyLimitingDataSource} in front of the connection pool,
+ * so an unbounded number of virtual threads queue on a fair semaphore rather
+ * than inside Hikari</li>
+ * <li>{@link VirtualThreadPinningMetrics}, reporting pinned carrier threads
+ * from JFR</li>
+ * </ul>
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+
+    @Bean
+    public static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(Environment environment) {
+        int maxConcurrentConnections = environment.getProperty("rewards.jdbc.max-concurrent-connections",
+                Integer.class, 10);
+        Duration acquireTimeout = environment.getProperty("rewards.jdbc.acquire-timeout",
+                Duration.class, Duration.ofSeconds(30));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitingDataSource)) {
+                    return new ConcurrencyLimitingDataSource(dataSource, maxConcurrentConnections, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public VirtualThreadPinningMetrics virtualThreadPinningMetrics(MeterRegistry meterRegistry, Environment environment) {
+        return new VirtualThreadPinningMetrics(meterRegistry,
+                environment.getProperty("rewards.threads.pinned-threshold", Duration.class, Duration.ofMillis(20)));
+    }
+}
@@ -1,11 +1,13 @@
 package spring.academy.restful.config.authz;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import spring.academy.restful.accounts.AccountManager;
 
 @Component("authz")
+@Profile("!reactive")
 public class AccountAuthorization {
 
     @Autowired
@@ -0,0 +1,124 @@
+package spring.academy.restful.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A data source that lets at most a fixed number of threads hold a connection
+ * at the same time; the others wait in FIFO order for a permit.
+ * <p>
+ * Meant to sit in front of a connection pool when requests run on virtual
+ * threads: there can be far more of those than pooled connections, and
+ * parking them on a fair semaphore is cheaper and more predictable than
+ * letting all of them contend inside the pool. A permit is released when the
+ * connection is closed (returned to the pool).
+ */
+public class ConcurrencyLimitingDataSource extends DelegatingDataSource {
+
+	private final Semaphore permits;
+
+	private final int maxConcurrentConnections;
+
+	private final Duration acquireTimeout;
+
+	/**
+	 * Creates a new concurrency limiting data source.
+	 * @param targetDataSource the data source (pool) to limit access to
+	 * @param maxConcurrentConnections the number of connections that can be in use at the same time
+	 * @param acquireTimeout how long to wait for a permit before giving up
+	 */
+	public ConcurrencyLimitingDataSource(DataSource targetDataSource, int maxConcurrentConnections,
+			Duration acquireTimeout) {
+		super(targetDataSource);
+		this.permits = new Semaphore(maxConcurrentConnections, true);
+		this.maxConcurrentConnections = maxConcurrentConnections;
+		this.acquireTimeout = acquireTimeout;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		acquire();
+		try {
+			return limited(super.getConnection());
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		acquire();
+		try {
+			return limited(super.getConnection(username, password));
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of threads currently holding a connection.
+	 */
+	public int getActiveConnections() {
+		return maxConcurrentConnections - permits.availablePermits();
+	}
+
+	/**
+	 * Returns an estimate of the number of threads waiting for a connection.
+	 */
+	public int getWaitingThreads() {
+		return permits.getQueueLength();
+	}
+
+	private void acquire() throws SQLException {
+		try {
+			if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				throw new SQLTransientConnectionException("No connection available within " + acquireTimeout
+						+ " (" + maxConcurrentConnections + " in use, " + permits.getQueueLength() + " waiting)");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+		}
+	}
+
+	private Connection limited(Connection target) {
+		AtomicBoolean released = new AtomicBoolean();
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+					if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+						try {
+							target.close();
+						} finally {
+							permits.release();
+						}
+						return null;
+					}
+					if (method.getName().equals("equals")) {
+						return proxy == args[0];
+					}
+					if (method.getName().equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					if (method.getName().equals("unwrap") && ((Class<?>) args[0]).isInstance(target)) {
+						return target;
+					}
+					try {
+						return method.invoke(target, args);
+					} catch (InvocationTargetException e) {
+						throw e.getTargetException();
+					}
+				});
+	}
+}
@@ -0,0 +1,105 @@
+package spring.academy.restful.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A data source that counts the SQL statements executed through its
+ * connections in the {@link StatementTally tallies} open on the executing
+ * thread: each execution of a prepared statement, a batch of a prepared
+ * statement once, and each SQL string executed or batched on a plain
+ * statement.
+ * <p>
+ * Without an open tally, a statement costs one thread local lookup, so the
+ * data source can stay in place in production while only sampled requests
+ * are tallied.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+	/**
+	 * Creates a new statement counting data source.
+	 * @param targetDataSource the data source to count the statements of
+	 */
+	public StatementCountingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return counting(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return counting(super.getConnection(username, password));
+	}
+
+	private Connection counting(Connection target) {
+		return proxy(Connection.class, target, (method, args, result) -> {
+			if (method.getName().equals("prepareCall")) {
+				return counting(CallableStatement.class, (CallableStatement) result, (String) args[0]);
+			}
+			if (method.getName().equals("prepareStatement")) {
+				return counting(PreparedStatement.class, (PreparedStatement) result, (String) args[0]);
+			}
+			if (method.getName().equals("createStatement")) {
+				return counting(Statement.class, (Statement) result, null);
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Counts the executions of a statement.
+	 * @param sql the SQL of a prepared statement, null for a plain statement
+	 */
+	private static <S extends Statement> S counting(Class<S> type, S target, String sql) {
+		return proxy(type, target, (method, args, result) -> {
+			String name = method.getName();
+			if (sql != null && name.startsWith("execute") && (args == null || args.length == 0)) {
+				StatementTally.record(sql);
+			} else if (sql == null && (name.startsWith("execute") || name.equals("addBatch")) && args != null
+					&& args[0] instanceof String statementSql) {
+				StatementTally.record(statementSql);
+			}
+			return result;
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, T target, Interceptor interceptor) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					if (method.getName().equals("equals")) {
+						return proxy == args[0];
+					}
+					if (method.getName().equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					if (method.getName().equals("unwrap") && ((Class<?>) args[0]).isInstance(target)) {
+						return target;
+					}
+					Object result;
+					try {
+						result = method.invoke(target, args);
+					} catch (InvocationTargetException e) {
+						throw e.getTargetException();
+					}
+					return interceptor.intercept(method, args, result);
+				}));
+	}
+
+	@FunctionalInterface
+	private interface Interceptor {
+
+		Object intercept(Method method, Object[] args, Object result) throws SQLException;
+	}
+}
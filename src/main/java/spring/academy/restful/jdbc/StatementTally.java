@@ -0,0 +1,172 @@
+package spring.academy.restful.jdbc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The SQL statements a thread executed through a
+ * {@link StatementCountingDataSource} while the tally was open, counted by
+ * statement shape: the SQL with its literals and IN lists replaced by
+ * placeholders, so <tt>where ID = 1</tt> and <tt>where ID = 2</tt> count as
+ * the same statement. A shape executed over and over within one request or
+ * transaction is the mark of an N+1 select, see {@link #getRepeated(int)}.
+ * <p>
+ * Tallies nest: a statement is counted in every tally open on the thread,
+ * e.g. in the tally of a transaction and in the tally of the request it runs
+ * in. They must be closed in the reverse order, typically with
+ * try-with-resources:
+ *
+ * <pre>
+ * try (StatementTally tally = StatementTally.open("request")) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * A tally is only read and written by the thread that opened it.
+ */
+public final class StatementTally implements AutoCloseable {
+
+	private static final ThreadLocal<StatementTally> current = new ThreadLocal<StatementTally>();
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+	private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final String scope;
+
+	private final StatementTally parent;
+
+	private final Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+
+	private int count;
+
+	private boolean closed;
+
+	private StatementTally(String scope, StatementTally parent) {
+		this.scope = scope;
+		this.parent = parent;
+	}
+
+	/**
+	 * Opens a tally of the statements the current thread executes until it is
+	 * closed.
+	 * @param scope what is tallied, e.g. <tt>request</tt>
+	 */
+	public static StatementTally open(String scope) {
+		StatementTally tally = new StatementTally(scope, current.get());
+		current.set(tally);
+		return tally;
+	}
+
+	/**
+	 * Returns the innermost tally open on the current thread, or null.
+	 */
+	public static StatementTally current() {
+		return current.get();
+	}
+
+	/**
+	 * Counts a statement executed by the current thread in every tally open on
+	 * it; does nothing when none is.
+	 */
+	static void record(String sql) {
+		StatementTally tally = current.get();
+		if (tally == null) {
+			return;
+		}
+		String shape = normalize(sql);
+		for (; tally != null; tally = tally.parent) {
+			tally.count++;
+			tally.counts.merge(shape, 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Returns the shape of a statement: its SQL with string and number
+	 * literals replaced by <tt>?</tt>, IN lists of placeholders collapsed to
+	 * <tt>in (?)</tt> and whitespace collapsed to single spaces.
+	 */
+	public static String normalize(String sql) {
+		String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+		shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+		shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+		return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Stops counting, and makes the enclosing tally, if any, the current one.
+	 * @throws IllegalStateException if a tally opened after this one is still open
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		if (current.get() != this) {
+			throw new IllegalStateException("The " + current.get() + " tally opened within the " + scope
+					+ " tally must be closed first");
+		}
+		closed = true;
+		if (parent == null) {
+			current.remove();
+		} else {
+			current.set(parent);
+		}
+	}
+
+	public String getScope() {
+		return scope;
+	}
+
+	/**
+	 * Returns the number of statements executed.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of executions of each statement shape, in the order
+	 * they were first executed.
+	 */
+	public Map<String, Integer> getCounts() {
+		return Collections.unmodifiableMap(counts);
+	}
+
+	/**
+	 * Returns the statement shapes executed at least a number of times, with
+	 * their number of executions: the likely N+1 selects.
+	 * @param threshold the number of executions of a shape from which it is reported
+	 */
+	public Map<String, Integer> getRepeated(int threshold) {
+		Map<String, Integer> repeated = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<String, Integer> shape : counts.entrySet()) {
+			if (shape.getValue() >= threshold) {
+				repeated.put(shape.getKey(), shape.getValue());
+			}
+		}
+		return repeated;
+	}
+
+	/**
+	 * Returns the most executions of a single statement shape.
+	 */
+	public int getMaxRepetitions() {
+		int max = 0;
+		for (int executions : counts.values()) {
+			max = Math.max(max, executions);
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return scope + " (" + count + " statements, " + counts.size() + " shapes)";
+	}
+}
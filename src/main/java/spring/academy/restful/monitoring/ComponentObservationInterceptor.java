@@ -0,0 +1,152 @@
+package spring.academy.restful.monitoring;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.util.function.SingletonSupplier;
+import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.rewards.internal.account.AccountRepository;
+import spring.academy.restful.rewards.internal.restaurant.RestaurantRepository;
+import spring.academy.restful.rewards.internal.reward.RewardRepository;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Observes the calls of the methods of the account manager and of the
+ * repositories as <tt>rewards.component.calls</tt>, tagged with:
+ * <ul>
+ * <li><tt>component</tt>, the interface, e.g. <tt>AccountManager</tt></li>
+ * <li><tt>operation</tt>, the method, e.g. <tt>getAccount</tt></li>
+ * <li><tt>implementation</tt>, as returned by <tt>getInfo()</tt>, e.g.
+ * <tt>JPA</tt></li>
+ * <li><tt>outcome</tt>, <tt>SUCCESS</tt> or <tt>ERROR</tt></li>
+ * <li><tt>uri</tt>, the path pattern of the request the call is made for, or
+ * <tt>none</tt></li>
+ * </ul>
+ * The observation is current while the method runs, so the calls a method
+ * makes, e.g. the account manager calling a repository, nest within it, and
+ * all of them within the request.
+ */
+public class ComponentObservationInterceptor implements MethodInterceptor {
+
+	public static final String OBSERVATION_NAME = "rewards.component.calls";
+
+	/**
+	 * The observed interfaces. Each has a <tt>getInfo()</tt> method, which is
+	 * not observed.
+	 */
+	static final List<Class<?>> COMPONENTS = List.of(AccountManager.class, AccountRepository.class,
+			RestaurantRepository.class, RewardRepository.class);
+
+	private final Supplier<ObservationRegistry> observationRegistry;
+
+	private final Map<Class<?>, String> implementations = new ConcurrentHashMap<Class<?>, String>();
+
+	/**
+	 * The observed interface of each method called, by method and target
+	 * class, or empty if the method is not observed.
+	 */
+	private final Map<MethodKey, Optional<Class<?>>> components = new ConcurrentHashMap<MethodKey, Optional<Class<?>>>();
+
+	/**
+	 * Creates a new interceptor.
+	 * @param observationRegistry supplies the registry on the first call, so the
+	 * interceptor can be created before it
+	 */
+	public ComponentObservationInterceptor(Supplier<ObservationRegistry> observationRegistry) {
+		this.observationRegistry = SingletonSupplier.of(observationRegistry);
+	}
+
+	/**
+	 * Returns the observed interface declaring a method of a class, or null if
+	 * the method is not observed.
+	 */
+	static Class<?> componentOf(Method method, Class<?> targetClass) {
+		if (method.getName().equals("getInfo") && method.getParameterCount() == 0) {
+			return null;
+		}
+		for (Class<?> component : COMPONENTS) {
+			if (component.isAssignableFrom(targetClass)) {
+				try {
+					component.getMethod(method.getName(), method.getParameterTypes());
+					return component;
+				} catch (NoSuchMethodException e) {
+					// Declared by another interface or by the class
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the path pattern of the HTTP request being handled within the
+	 * current observation, e.g. <tt>/accounts/{id}</tt>, or <tt>none</tt>
+	 * outside of requests.
+	 */
+	public static String enclosingRequestPattern(ObservationRegistry registry) {
+		for (ObservationView view = registry.getCurrentObservation(); view != null;
+				view = view.getContextView().getParentObservation()) {
+			if (view.getContextView() instanceof ServerRequestObservationContext request) {
+				return request.getPathPattern() != null ? request.getPathPattern() : "UNKNOWN";
+			}
+		}
+		return "none";
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		ObservationRegistry registry = observationRegistry.get();
+		Object target = invocation.getThis();
+		Class<?> component = target == null ? null
+				: components.computeIfAbsent(new MethodKey(invocation.getMethod(), target.getClass()),
+						key -> Optional.ofNullable(componentOf(key.method(), key.targetClass()))).orElse(null);
+		if (component == null || registry.isNoop()) {
+			return invocation.proceed();
+		}
+		String operation = invocation.getMethod().getName();
+		Observation observation = Observation.createNotStarted(OBSERVATION_NAME, registry)
+				.contextualName(component.getSimpleName() + " " + operation)
+				.lowCardinalityKeyValue("component", component.getSimpleName())
+				.lowCardinalityKeyValue("operation", operation)
+				.lowCardinalityKeyValue("implementation", implementations.computeIfAbsent(target.getClass(),
+						type -> implementation(target)))
+				.lowCardinalityKeyValue("uri", enclosingRequestPattern(registry));
+		observation.start();
+		try (Observation.Scope scope = observation.openScope()) {
+			Object result = invocation.proceed();
+			observation.lowCardinalityKeyValue("outcome", "SUCCESS");
+			return result;
+		} catch (Throwable ex) {
+			observation.lowCardinalityKeyValue("outcome", "ERROR");
+			observation.error(ex);
+			throw ex;
+		} finally {
+			observation.stop();
+		}
+	}
+
+	private record MethodKey(Method method, Class<?> targetClass) {
+	}
+
+	private static String implementation(Object target) {
+		String info = null;
+		if (target instanceof AccountManager accountManager) {
+			info = accountManager.getInfo();
+		} else if (target instanceof AccountRepository accountRepository) {
+			info = accountRepository.getInfo();
+		} else if (target instanceof RestaurantRepository restaurantRepository) {
+			info = restaurantRepository.getInfo();
+		} else if (target instanceof RewardRepository rewardRepository) {
+			info = rewardRepository.getInfo();
+		}
+		return info != null ? info : "UNKNOWN";
+	}
+}
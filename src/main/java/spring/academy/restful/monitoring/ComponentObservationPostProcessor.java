@@ -0,0 +1,36 @@
+package spring.academy.restful.monitoring;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * Applies a {@link ComponentObservationInterceptor} to the beans
+ * implementing the account manager or repository interfaces. A bean already
+ * proxied, e.g. for its transactions, gets the interceptor in front of its
+ * other advice, so the observed time includes the commit.
+ * <p>
+ * An advisor rather than <tt>@Observed</tt> or <tt>@Timed</tt> aspects, as
+ * those need AspectJ weaving and an annotation on every method.
+ */
+public class ComponentObservationPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+	/**
+	 * Creates a new post processor.
+	 * @param observationRegistry supplies the registry on the first observed call
+	 */
+	public ComponentObservationPostProcessor(Supplier<ObservationRegistry> observationRegistry) {
+		this.advisor = new DefaultPointcutAdvisor(new StaticMethodMatcherPointcut() {
+			@Override
+			public boolean matches(Method method, Class<?> targetClass) {
+				return ComponentObservationInterceptor.componentOf(method, targetClass) != null;
+			}
+		}, new ComponentObservationInterceptor(observationRegistry));
+		setBeforeExistingAdvisors(true);
+		setProxyTargetClass(true);
+	}
+}
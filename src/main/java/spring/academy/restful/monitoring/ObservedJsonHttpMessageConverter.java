@@ -0,0 +1,41 @@
+package spring.academy.restful.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Observes the JSON serialization of response bodies as
+ * <tt>rewards.serialization</tt>, tagged with the <tt>uri</tt> of the request,
+ * so it can be told apart from the component calls of the request, see
+ * {@link ComponentObservationInterceptor}. The time includes writing to the
+ * response buffer. Responses written from pre-serialized bytes, such as the
+ * account details, do not go through this converter.
+ */
+public class ObservedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+	public static final String OBSERVATION_NAME = "rewards.serialization";
+
+	private final ObservationRegistry observationRegistry;
+
+	public ObservedJsonHttpMessageConverter(ObjectMapper objectMapper, ObservationRegistry observationRegistry) {
+		super(objectMapper);
+		this.observationRegistry = observationRegistry;
+	}
+
+	@Override
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		Observation.createNotStarted(OBSERVATION_NAME, observationRegistry)
+				.contextualName("serialize json")
+				.lowCardinalityKeyValue("format", "json")
+				.lowCardinalityKeyValue("uri", ComponentObservationInterceptor.enclosingRequestPattern(observationRegistry))
+				.observeChecked(() -> super.writeInternal(object, type, outputMessage));
+	}
+}
@@ -0,0 +1,153 @@
+package spring.academy.restful.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import spring.academy.restful.jdbc.StatementCountingDataSource;
+import spring.academy.restful.jdbc.StatementTally;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tallies the SQL statements of a sample of requests and transactions, see
+ * {@link StatementTally}, and reports them as metrics. The data source must
+ * be a {@link StatementCountingDataSource}. Requests are tallied by
+ * {@link StatementSamplingFilter}, transactions by this listener of the
+ * transaction manager; a transaction within a sampled request is always
+ * tallied.
+ * <p>
+ * Publishes, tagged with the <tt>scope</tt> (<tt>request</tt> or
+ * <tt>transaction</tt>):
+ * <ul>
+ * <li><tt>rewards.jdbc.statements</tt>, the statements per sampled scope</li>
+ * <li><tt>rewards.jdbc.statements.repeated</tt>, the sampled scopes that
+ * executed a statement shape at least the repeat threshold times, the likely
+ * N+1 selects</li>
+ * </ul>
+ * and the <tt>rewards.jdbc.statements.repeated.shapes</tt> gauge, the number
+ * of distinct shapes found repeated so far. Each of those is logged once at
+ * warn level, since the SQL is too high-cardinality for a tag.
+ */
+public class StatementMetrics implements TransactionExecutionListener {
+
+	public static final String REQUEST = "request";
+
+	public static final String TRANSACTION = "transaction";
+
+	/**
+	 * Repeated shapes remembered, so each is only logged once.
+	 */
+	static final int MAX_REPEATED_SHAPES = 1000;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final double sampleRate;
+
+	private final int repeatThreshold;
+
+	private final Map<String, DistributionSummary> statements;
+
+	private final Map<String, Counter> repeated;
+
+	private final Set<String> repeatedShapes = ConcurrentHashMap.newKeySet();
+
+	private final Map<TransactionExecution, StatementTally> transactionTallies = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates new statement metrics.
+	 * @param registry the registry to publish to
+	 * @param sampleRate the fraction of requests and transactions tallied, from 0 to 1
+	 * @param repeatThreshold the number of executions of a statement shape within one
+	 * request or transaction from which it is reported as repeated
+	 */
+	public StatementMetrics(MeterRegistry registry, double sampleRate, int repeatThreshold) {
+		this.sampleRate = sampleRate;
+		this.repeatThreshold = repeatThreshold;
+		this.statements = Map.of(REQUEST, statements(registry, REQUEST), TRANSACTION, statements(registry, TRANSACTION));
+		this.repeated = Map.of(REQUEST, repeated(registry, REQUEST), TRANSACTION, repeated(registry, TRANSACTION));
+		Gauge.builder("rewards.jdbc.statements.repeated.shapes", repeatedShapes, Set::size)
+				.description("Distinct statement shapes executed repeatedly within one request or transaction")
+				.register(registry);
+	}
+
+	private static DistributionSummary statements(MeterRegistry registry, String scope) {
+		return DistributionSummary.builder("rewards.jdbc.statements")
+				.description("SQL statements executed per sampled request or transaction")
+				.tag("scope", scope)
+				.register(registry);
+	}
+
+	private static Counter repeated(MeterRegistry registry, String scope) {
+		return Counter.builder("rewards.jdbc.statements.repeated")
+				.description("Sampled requests or transactions that executed the same statement shape repeatedly")
+				.tag("scope", scope)
+				.register(registry);
+	}
+
+	/**
+	 * Opens a tally of a request or transaction if it is sampled, or if it runs
+	 * within one that is.
+	 * @param scope {@link #REQUEST} or {@link #TRANSACTION}
+	 * @return the open tally, or null when not sampled
+	 */
+	public StatementTally open(String scope) {
+		if (StatementTally.current() == null && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			return null;
+		}
+		return StatementTally.open(scope);
+	}
+
+	/**
+	 * Closes a tally opened by {@link #open(String)} and reports it.
+	 */
+	public void close(StatementTally tally) {
+		tally.close();
+		statements.get(tally.getScope()).record(tally.getCount());
+		Map<String, Integer> shapes = tally.getRepeated(repeatThreshold);
+		if (shapes.isEmpty()) {
+			return;
+		}
+		repeated.get(tally.getScope()).increment();
+		for (Map.Entry<String, Integer> shape : shapes.entrySet()) {
+			if (repeatedShapes.size() < MAX_REPEATED_SHAPES && repeatedShapes.add(shape.getKey())) {
+				logger.warn("Statement executed {} times in one {}, possibly an N+1 select: {}", shape.getValue(),
+						tally.getScope(), shape.getKey());
+			}
+		}
+	}
+
+	@Override
+	public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+		if (beginFailure == null) {
+			StatementTally tally = open(TRANSACTION);
+			if (tally != null) {
+				transactionTallies.put(transaction, tally);
+			}
+		}
+	}
+
+	@Override
+	public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+		end(transaction);
+	}
+
+	@Override
+	public void afterRollback(TransactionExecution transaction, Throwable rollbackFailure) {
+		end(transaction);
+	}
+
+	private void end(TransactionExecution transaction) {
+		StatementTally tally = transactionTallies.remove(transaction);
+		if (tally != null) {
+			close(tally);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package spring.academy.restful.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import spring.academy.restful.jdbc.StatementTally;
+
+import java.io.IOException;
+
+/**
+ * Tallies the SQL statements of a sample of requests, see
+ * {@link StatementMetrics}. Only the thread that handles the request is
+ * tallied, not the async dispatches of a streaming response.
+ */
+public class StatementSamplingFilter extends OncePerRequestFilter {
+
+	private final StatementMetrics statementMetrics;
+
+	public StatementSamplingFilter(StatementMetrics statementMetrics) {
+		this.statementMetrics = statementMetrics;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		StatementTally tally = statementMetrics.open(StatementMetrics.REQUEST);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			if (tally != null) {
+				statementMetrics.close(tally);
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package spring.academy.restful.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+
+/**
+ * Reports virtual threads pinned to their carrier thread (typically while
+ * blocking inside a <tt>synchronized</tt> block of a JDBC driver) as metrics,
+ * using an in-process JFR event stream.
+ * <p>
+ * Publishes the <tt>jvm.threads.virtual.pinned</tt> timer; the frame where the
+ * thread blocked is logged at debug level, since it is too high-cardinality
+ * for a tag.
+ */
+public class VirtualThreadPinningMetrics implements SmartLifecycle {
+
+	static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Timer pinned;
+
+	private final Counter submitFailed;
+
+	private final Duration threshold;
+
+	private RecordingStream recordingStream;
+
+	/**
+	 * Creates new pinning metrics.
+	 * @param registry the registry to publish to
+	 * @param threshold pinning shorter than this is not reported
+	 */
+	public VirtualThreadPinningMetrics(MeterRegistry registry, Duration threshold) {
+		this.threshold = threshold;
+		this.pinned = Timer.builder("jvm.threads.virtual.pinned")
+				.description("Time virtual threads spent pinned to their carrier thread while blocked")
+				.register(registry);
+		this.submitFailed = Counter.builder("jvm.threads.virtual.submit.failed")
+				.description("Virtual threads that could not be scheduled or unparked")
+				.register(registry);
+	}
+
+	@Override
+	public synchronized void start() {
+		recordingStream = new RecordingStream();
+		recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+		recordingStream.enable("jdk.VirtualThreadSubmitFailed");
+		recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+		recordingStream.onEvent("jdk.VirtualThreadSubmitFailed", event -> submitFailed.increment());
+		recordingStream.startAsync();
+		logger.info("Reporting virtual threads pinned for more than {}", threshold);
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (recordingStream != null) {
+			recordingStream.close();
+			recordingStream = null;
+		}
+	}
+
+	@Override
+	public synchronized boolean isRunning() {
+		return recordingStream != null;
+	}
+
+	private void onPinned(RecordedEvent event) {
+		pinned.record(event.getDuration());
+		if (logger.isDebugEnabled() && event.getStackTrace() != null && !event.getStackTrace().getFrames().isEmpty()) {
+			RecordedFrame top = event.getStackTrace().getFrames().get(0);
+			logger.debug("Virtual thread pinned for {} at {}.{}", event.getDuration(),
+					top.getMethod().getType().getName(), top.getMethod().getName());
+		}
+	}
+}
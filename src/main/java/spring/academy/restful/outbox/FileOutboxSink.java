@@ -0,0 +1,51 @@
+package spring.academy.restful.outbox;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends outbox events to a file, one JSON object per line. Each batch is
+ * flushed before {@link #publish(List)} returns.
+ */
+public class FileOutboxSink implements OutboxSink {
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	private final Path file;
+
+	public FileOutboxSink(Path file) {
+		this.file = file;
+	}
+
+	@Override
+	public synchronized void publish(List<OutboxEvent> events) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			for (OutboxEvent event : events) {
+				JsonGenerator json = jsonFactory.createGenerator(writer);
+				json.writeStartObject();
+				json.writeNumberField("id", event.getId());
+				json.writeStringField("type", event.getType());
+				json.writeStringField("aggregateId", event.getAggregateId());
+				json.writeStringField("createdAt", event.getCreatedAt().toString());
+				json.writeFieldName("payload");
+				json.writeRawValue(event.getPayload());
+				json.writeEndObject();
+				json.flush();
+				writer.write('\n');
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package spring.academy.restful.outbox;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Hands outbox events to in-process subscribers, in the poller's thread.
+ * Useful for local development and tests.
+ */
+public class InMemoryOutboxSink implements OutboxSink {
+
+	private final List<Consumer<OutboxEvent>> subscribers = new CopyOnWriteArrayList<Consumer<OutboxEvent>>();
+
+	/**
+	 * Subscribes to all events delivered from now on.
+	 *
+	 * @param subscriber
+	 *            called once per event, must not block
+	 * @return cancels the subscription when run
+	 */
+	public Runnable subscribe(Consumer<OutboxEvent> subscriber) {
+		subscribers.add(subscriber);
+		return () -> subscribers.remove(subscriber);
+	}
+
+	@Override
+	public void publish(List<OutboxEvent> events) {
+		for (OutboxEvent event : events) {
+			for (Consumer<OutboxEvent> subscriber : subscribers) {
+				subscriber.accept(event);
+			}
+		}
+	}
+}
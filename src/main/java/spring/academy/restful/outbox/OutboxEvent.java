@@ -0,0 +1,68 @@
+package spring.academy.restful.outbox;
+
+import java.time.Instant;
+
+/**
+ * An event read from the <tt>T_OUTBOX</tt> table, ready to be handed to an
+ * {@link OutboxSink}.
+ *
+ * A value object. Immutable.
+ */
+public class OutboxEvent {
+
+	private final long id;
+
+	private final String type;
+
+	private final String aggregateId;
+
+	private final String payload;
+
+	private final Instant createdAt;
+
+	/**
+	 * Creates a new outbox event.
+	 *
+	 * @param id
+	 *            the outbox id, increasing in commit order on a single node
+	 * @param type
+	 *            the event type, e.g. <tt>AccountChanged</tt>
+	 * @param aggregateId
+	 *            the id of the account or reward the event is about
+	 * @param payload
+	 *            the event as a JSON object
+	 * @param createdAt
+	 *            when the event was written to the outbox
+	 */
+	public OutboxEvent(long id, String type, String aggregateId, String payload, Instant createdAt) {
+		this.id = id;
+		this.type = type;
+		this.aggregateId = aggregateId;
+		this.payload = payload;
+		this.createdAt = createdAt;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getAggregateId() {
+		return aggregateId;
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+
+	public String toString() {
+		return type + " " + aggregateId + " (" + id + ")";
+	}
+}
@@ -0,0 +1,217 @@
+package spring.academy.restful.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the <tt>T_OUTBOX</tt> table into an {@link OutboxSink}, a batch at a
+ * time and oldest first, deleting each batch once delivered.
+ * <p>
+ * Several pollers can drain the same outbox. On MySQL a batch is claimed
+ * with <tt>SELECT ... FOR UPDATE SKIP LOCKED</tt> and delivered before the
+ * claiming transaction commits, so pollers never wait on each other's rows.
+ * HSQLDB has no <tt>SKIP LOCKED</tt>: there a batch is claimed by
+ * conditionally stamping its rows with a lease, delivered outside any
+ * transaction, then deleted; a lease older than the claim timeout is taken
+ * over, so the events of a poller that died are delivered again.
+ * <p>
+ * Publishes <tt>rewards.outbox.published</tt> (events delivered), and
+ * <tt>rewards.outbox.lag</tt> (time from writing an event to delivering it).
+ */
+public class OutboxPoller {
+
+	static final String COLUMNS = "ID, EVENT_TYPE, AGGREGATE_ID, PAYLOAD, CREATED_AT";
+
+	static final String SKIP_LOCKED_SQL = "select " + COLUMNS
+			+ " from T_OUTBOX order by ID limit ? for update skip locked";
+
+	static final String CANDIDATES_SQL = "select " + COLUMNS
+			+ " from T_OUTBOX where CLAIMED_AT is null or CLAIMED_AT < ? order by ID";
+
+	static final String CLAIM_SQL = "update T_OUTBOX set CLAIMED_BY = ?, CLAIMED_AT = ?"
+			+ " where ID = ? and (CLAIMED_AT is null or CLAIMED_AT < ?)";
+
+	static final String DELETE_SQL = "delete from T_OUTBOX where ID = ?";
+
+	private static final Logger logger = LoggerFactory.getLogger(OutboxPoller.class);
+
+	private static final RowMapper<OutboxEvent> EVENT_MAPPER = (rs, rowNum) -> new OutboxEvent(rs.getLong("ID"),
+			rs.getString("EVENT_TYPE"), rs.getString("AGGREGATE_ID"), rs.getString("PAYLOAD"),
+			rs.getTimestamp("CREATED_AT").toInstant());
+
+	private final DataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final JdbcTemplate candidatesTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final OutboxSink sink;
+
+	private final int batchSize;
+
+	private final Duration claimTimeout;
+
+	private final String nodeId;
+
+	private final Counter published;
+
+	private final Timer lag;
+
+	private Boolean skipLocked;
+
+	/**
+	 * Creates a new outbox poller.
+	 *
+	 * @param dataSource
+	 *            the rewards database
+	 * @param transactionManager
+	 *            the transaction manager of the rewards database
+	 * @param sink
+	 *            where to deliver the events
+	 * @param batchSize
+	 *            the maximum number of events claimed at once
+	 * @param claimTimeout
+	 *            how long a lease protects a claimed batch, HSQLDB only
+	 * @param nodeId
+	 *            identifies this poller in leases
+	 * @param registry
+	 *            the registry to publish to
+	 */
+	public OutboxPoller(DataSource dataSource, PlatformTransactionManager transactionManager, OutboxSink sink,
+			int batchSize, Duration claimTimeout, String nodeId, MeterRegistry registry) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.candidatesTemplate = new JdbcTemplate(dataSource);
+		this.candidatesTemplate.setMaxRows(batchSize);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.sink = sink;
+		this.batchSize = batchSize;
+		this.claimTimeout = claimTimeout;
+		this.nodeId = nodeId;
+		this.published = Counter.builder("rewards.outbox.published")
+				.description("Outbox events delivered to the sink")
+				.register(registry);
+		this.lag = Timer.builder("rewards.outbox.lag")
+				.description("Time from writing an outbox event to delivering it")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+	}
+
+	/**
+	 * Delivers batches until the outbox is empty or a batch fails.
+	 *
+	 * @return the number of events delivered
+	 */
+	@Scheduled(fixedDelayString = "${rewards.outbox.poll-interval:PT0.5S}")
+	public int drain() {
+		int delivered = 0;
+		try {
+			int batch;
+			do {
+				batch = poll();
+				delivered += batch;
+			} while (batch == batchSize);
+		} catch (RuntimeException e) {
+			logger.warn("Unable to deliver outbox events, will retry", e);
+		}
+		return delivered;
+	}
+
+	/**
+	 * Claims, delivers and deletes a single batch.
+	 *
+	 * @return the number of events delivered
+	 */
+	public int poll() {
+		if (isSkipLocked()) {
+			return transactionTemplate.execute(status -> {
+				List<OutboxEvent> events = jdbcTemplate.query(SKIP_LOCKED_SQL, EVENT_MAPPER, batchSize);
+				deliver(events);
+				delete(events);
+				return events.size();
+			});
+		}
+
+		Instant now = Instant.now();
+		Timestamp expired = Timestamp.from(now.minus(claimTimeout));
+		List<OutboxEvent> events = transactionTemplate.execute(status -> {
+			List<OutboxEvent> candidates = candidatesTemplate.query(CANDIDATES_SQL, EVENT_MAPPER, expired);
+			List<Object[]> claims = new ArrayList<Object[]>(candidates.size());
+			for (OutboxEvent candidate : candidates) {
+				claims.add(new Object[] { nodeId, Timestamp.from(now), candidate.getId(), expired });
+			}
+			int[] counts = jdbcTemplate.batchUpdate(CLAIM_SQL, claims);
+			List<OutboxEvent> claimed = new ArrayList<OutboxEvent>(candidates.size());
+			for (int i = 0; i < counts.length; i++) {
+				// Another poller claimed the rest since they were read
+				if (counts[i] != 0) {
+					claimed.add(candidates.get(i));
+				}
+			}
+			return claimed;
+		});
+		deliver(events);
+		transactionTemplate.executeWithoutResult(status -> delete(events));
+		return events.size();
+	}
+
+	private void deliver(List<OutboxEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		try {
+			sink.publish(events);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException("Outbox sink failed to publish " + events.size() + " events", e);
+		}
+		Instant now = Instant.now();
+		for (OutboxEvent event : events) {
+			lag.record(Duration.between(event.getCreatedAt(), now));
+		}
+		published.increment(events.size());
+	}
+
+	private void delete(List<OutboxEvent> events) {
+		List<Object[]> deletes = new ArrayList<Object[]>(events.size());
+		for (OutboxEvent event : events) {
+			deletes.add(new Object[] { event.getId() });
+		}
+		jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+	}
+
+	private synchronized boolean isSkipLocked() {
+		if (skipLocked == null) {
+			try {
+				String product = JdbcUtils.extractDatabaseMetaData(dataSource,
+						DatabaseMetaData::getDatabaseProductName);
+				skipLocked = product != null && product.toLowerCase().contains("mysql");
+			} catch (MetaDataAccessException e) {
+				skipLocked = false;
+			}
+			logger.info("Claiming outbox events with {}", skipLocked ? "SKIP LOCKED" : "leases");
+		}
+		return skipLocked;
+	}
+}
@@ -0,0 +1,21 @@
+package spring.academy.restful.outbox;
+
+import java.util.List;
+
+/**
+ * Where the {@link OutboxPoller} delivers the events drained from the outbox.
+ * <p>
+ * Delivery is at least once: a batch whose delivery fails, or whose poller
+ * dies before deleting it, is delivered again. Sinks receive batches in
+ * outbox id order but should tolerate duplicates.
+ */
+public interface OutboxSink {
+
+	/**
+	 * Delivers a batch of events; throwing leaves them in the outbox.
+	 *
+	 * @param events
+	 *            the events, in outbox id order
+	 */
+	void publish(List<OutboxEvent> events) throws Exception;
+}
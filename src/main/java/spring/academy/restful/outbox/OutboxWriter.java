@@ -0,0 +1,71 @@
+package spring.academy.restful.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.rewards.RewardConfirmation;
+import spring.academy.restful.rewards.RewardConfirmedEvent;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes account changes and reward confirmations to the <tt>T_OUTBOX</tt>
+ * table. The listeners are plain <tt>@EventListener</tt>s, so they run in
+ * the thread, and the transaction, publishing the event: the outbox row
+ * commits or rolls back together with the change it describes. Node-local
+ * account changes are skipped: they are published again once they reach the
+ * database.
+ */
+public class OutboxWriter {
+
+	public static final String ACCOUNT_CHANGED = "AccountChanged";
+
+	public static final String REWARD_CONFIRMED = "RewardConfirmed";
+
+	static final String INSERT_SQL = "insert into T_OUTBOX (EVENT_TYPE, AGGREGATE_ID, PAYLOAD, CREATED_AT) values (?, ?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final ObjectMapper objectMapper;
+
+	public OutboxWriter(DataSource dataSource, ObjectMapper objectMapper) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.objectMapper = objectMapper;
+	}
+
+	@EventListener
+	public void onAccountChanged(AccountChangedEvent event) {
+		if (event.isNodeLocal()) {
+			return;
+		}
+		Map<String, Object> payload = new LinkedHashMap<String, Object>();
+		payload.put("accountId", event.getAccountId());
+		append(ACCOUNT_CHANGED, String.valueOf(event.getAccountId()), payload);
+	}
+
+	@EventListener
+	public void onRewardConfirmed(RewardConfirmedEvent event) {
+		RewardConfirmation confirmation = event.getConfirmation();
+		Map<String, Object> payload = new LinkedHashMap<String, Object>();
+		payload.put("confirmationNumber", confirmation.getConfirmationNumber());
+		payload.put("accountNumber", confirmation.getAccountContribution().getAccountNumber());
+		payload.put("amount", confirmation.getAccountContribution().getAmount().asBigDecimal());
+		payload.put("merchantNumber", event.getDining().getMerchantNumber());
+		append(REWARD_CONFIRMED, confirmation.getConfirmationNumber(), payload);
+	}
+
+	private void append(String type, String aggregateId, Map<String, Object> payload) {
+		try {
+			jdbcTemplate.update(INSERT_SQL, type, aggregateId, objectMapper.writeValueAsString(payload),
+					Timestamp.from(Instant.now()));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Unable to serialize " + type + " event for " + aggregateId, e);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package spring.academy.restful.rewards;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * What a reward recomputation found, or would correct in a dry run: how many
+ * rewards were scanned and corrected, the sum of the corrections and a
+ * sample of the rewards that differ.
+ *
+ * A value object. Immutable.
+ */
+public class RecomputationReport {
+
+	private final String jobId;
+
+	private final boolean dryRun;
+
+	private final long rewardsScanned;
+
+	private final long rewardsCorrected;
+
+	private final long rangesSkipped;
+
+	private final BigDecimal totalCorrection;
+
+	private final List<Difference> differences;
+
+	/**
+	 * Creates a new recomputation report.
+	 *
+	 * @param jobId
+	 *            the id of the recomputation, under which its progress is
+	 *            checkpointed
+	 * @param dryRun
+	 *            true if nothing was written
+	 * @param rewardsScanned
+	 *            the number of rewards recomputed
+	 * @param rewardsCorrected
+	 *            the number of rewards that differ from their recomputation
+	 * @param rangesSkipped
+	 *            the number of id ranges already done by an earlier run
+	 * @param totalCorrection
+	 *            the sum of the differences
+	 * @param differences
+	 *            a sample of the rewards that differ
+	 */
+	public RecomputationReport(String jobId, boolean dryRun, long rewardsScanned, long rewardsCorrected,
+			long rangesSkipped, BigDecimal totalCorrection, List<Difference> differences) {
+		this.jobId = jobId;
+		this.dryRun = dryRun;
+		this.rewardsScanned = rewardsScanned;
+		this.rewardsCorrected = rewardsCorrected;
+		this.rangesSkipped = rangesSkipped;
+		this.totalCorrection = totalCorrection;
+		this.differences = List.copyOf(differences);
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	public long getRewardsScanned() {
+		return rewardsScanned;
+	}
+
+	public long getRewardsCorrected() {
+		return rewardsCorrected;
+	}
+
+	public long getRangesSkipped() {
+		return rangesSkipped;
+	}
+
+	public BigDecimal getTotalCorrection() {
+		return totalCorrection;
+	}
+
+	public List<Difference> getDifferences() {
+		return differences;
+	}
+
+	public String toString() {
+		return (dryRun ? "Dry run " : "Run ") + jobId + ": " + rewardsCorrected + " of " + rewardsScanned
+				+ " rewards differ by " + totalCorrection;
+	}
+
+	/**
+	 * A reward as recorded, including earlier corrections, and as recomputed.
+	 *
+	 * A value object. Immutable.
+	 */
+	public static class Difference {
+
+		private final long rewardId;
+
+		private final String confirmationNumber;
+
+		private final String accountNumber;
+
+		private final String merchantNumber;
+
+		private final BigDecimal recorded;
+
+		private final BigDecimal recomputed;
+
+		public Difference(long rewardId, String confirmationNumber, String accountNumber, String merchantNumber,
+				BigDecimal recorded, BigDecimal recomputed) {
+			this.rewardId = rewardId;
+			this.confirmationNumber = confirmationNumber;
+			this.accountNumber = accountNumber;
+			this.merchantNumber = merchantNumber;
+			this.recorded = recorded;
+			this.recomputed = recomputed;
+		}
+
+		public long getRewardId() {
+			return rewardId;
+		}
+
+		public String getConfirmationNumber() {
+			return confirmationNumber;
+		}
+
+		public String getAccountNumber() {
+			return accountNumber;
+		}
+
+		public String getMerchantNumber() {
+			return merchantNumber;
+		}
+
+		public BigDecimal getRecorded() {
+			return recorded;
+		}
+
+		public BigDecimal getRecomputed() {
+			return recomputed;
+		}
+
+		/**
+		 * Returns the correction of the reward, the recomputed amount less the
+		 * recorded one.
+		 */
+		public BigDecimal getCorrection() {
+			return recomputed.subtract(recorded);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package spring.academy.restful.rewards;
+
+/**
+ * Published by a reward repository, in the transaction recording the
+ * reward, once a reward has been confirmed.
+ *
+ * A value object. Immutable.
+ */
+public class RewardConfirmedEvent {
+
+	private final RewardConfirmation confirmation;
+
+	private final Dining dining;
+
+	/**
+	 * Creates a new reward confirmed event.
+	 *
+	 * @param confirmation
+	 *            the confirmation of the reward
+	 * @param dining
+	 *            the dining event that resulted in the reward
+	 */
+	public RewardConfirmedEvent(RewardConfirmation confirmation, Dining dining) {
+		this.confirmation = confirmation;
+		this.dining = dining;
+	}
+
+	/**
+	 * Returns the confirmation of the reward.
+	 */
+	public RewardConfirmation getConfirmation() {
+		return confirmation;
+	}
+
+	/**
+	 * Returns the dining event that resulted in the reward.
+	 */
+	public Dining getDining() {
+		return dining;
+	}
+
+	public String toString() {
+		return "Reward " + confirmation.getConfirmationNumber() + " confirmed";
+	}
+}
@@ -0,0 +1,113 @@
+package spring.academy.restful.rewards;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A reward as recorded in <tt>T_REWARD</tt> when it was confirmed, read
+ * back for reporting.
+ *
+ * A value object. Immutable.
+ */
+public class RewardRecord {
+
+	private final long id;
+
+	private final String confirmationNumber;
+
+	private final BigDecimal rewardAmount;
+
+	private final LocalDate rewardDate;
+
+	private final String accountNumber;
+
+	private final String merchantNumber;
+
+	private final LocalDate diningDate;
+
+	private final BigDecimal diningAmount;
+
+	private final String owner;
+
+	/**
+	 * Creates a new reward record.
+	 *
+	 * @param id
+	 *            the row id, used to page through rewards of the same date
+	 * @param confirmationNumber
+	 *            the confirmation number
+	 * @param rewardAmount
+	 *            the amount contributed to the account
+	 * @param rewardDate
+	 *            the date of the reward
+	 * @param accountNumber
+	 *            the number of the account rewarded
+	 * @param merchantNumber
+	 *            the merchant number of the restaurant
+	 * @param diningDate
+	 *            the date of the dining
+	 * @param diningAmount
+	 *            the amount of the dining
+	 * @param owner
+	 *            the name on the account rewarded, if it was read
+	 */
+	public RewardRecord(long id, String confirmationNumber, BigDecimal rewardAmount, LocalDate rewardDate,
+			String accountNumber, String merchantNumber, LocalDate diningDate, BigDecimal diningAmount, String owner) {
+		this.id = id;
+		this.confirmationNumber = confirmationNumber;
+		this.rewardAmount = rewardAmount;
+		this.rewardDate = rewardDate;
+		this.accountNumber = accountNumber;
+		this.merchantNumber = merchantNumber;
+		this.diningDate = diningDate;
+		this.diningAmount = diningAmount;
+		this.owner = owner;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getConfirmationNumber() {
+		return confirmationNumber;
+	}
+
+	public BigDecimal getRewardAmount() {
+		return rewardAmount;
+	}
+
+	public LocalDate getRewardDate() {
+		return rewardDate;
+	}
+
+	public String getAccountNumber() {
+		return accountNumber;
+	}
+
+	public String getMerchantNumber() {
+		return merchantNumber;
+	}
+
+	public LocalDate getDiningDate() {
+		return diningDate;
+	}
+
+	public BigDecimal getDiningAmount() {
+		return diningAmount;
+	}
+
+	/**
+	 * Returns the name on the account rewarded, used to authorize access to
+	 * the reward, or null if it was not read.
+	 */
+	@JsonIgnore
+	public String getOwner() {
+		return owner;
+	}
+
+	public String toString() {
+		return "Reward " + confirmationNumber + " of " + rewardAmount + " to account " + accountNumber;
+	}
+}
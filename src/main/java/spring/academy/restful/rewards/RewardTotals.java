@@ -0,0 +1,56 @@
+package spring.academy.restful.rewards;
+
+import java.math.BigDecimal;
+
+/**
+ * The number and totals of the rewards confirmed for an account in a month,
+ * or for a restaurant on a day.
+ *
+ * A value object. Immutable.
+ */
+public class RewardTotals {
+
+	/**
+	 * The totals of a period without rewards.
+	 */
+	public static final RewardTotals NONE = new RewardTotals(0, BigDecimal.ZERO.setScale(2),
+			BigDecimal.ZERO.setScale(2));
+
+	private final long rewardCount;
+
+	private final BigDecimal rewardTotal;
+
+	private final BigDecimal diningTotal;
+
+	/**
+	 * Creates new reward totals.
+	 *
+	 * @param rewardCount
+	 *            the number of rewards
+	 * @param rewardTotal
+	 *            the sum of the amounts contributed to accounts
+	 * @param diningTotal
+	 *            the sum of the amounts of the dinings rewarded
+	 */
+	public RewardTotals(long rewardCount, BigDecimal rewardTotal, BigDecimal diningTotal) {
+		this.rewardCount = rewardCount;
+		this.rewardTotal = rewardTotal;
+		this.diningTotal = diningTotal;
+	}
+
+	public long getRewardCount() {
+		return rewardCount;
+	}
+
+	public BigDecimal getRewardTotal() {
+		return rewardTotal;
+	}
+
+	public BigDecimal getDiningTotal() {
+		return diningTotal;
+	}
+
+	public String toString() {
+		return rewardCount + " rewards totalling " + rewardTotal + " for dinings totalling " + diningTotal;
+	}
+}
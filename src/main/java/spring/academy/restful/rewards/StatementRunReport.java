@@ -0,0 +1,95 @@
+package spring.academy.restful.rewards;
+
+import java.util.List;
+
+/**
+ * What a run of the month-end statements wrote: how many statements and
+ * lines, to which files and how fast.
+ *
+ * A value object. Immutable.
+ */
+public class StatementRunReport {
+
+	private final String month;
+
+	private final long accounts;
+
+	private final long beneficiaries;
+
+	private final long rewards;
+
+	private final List<String> files;
+
+	private final long bytes;
+
+	private final long elapsedMillis;
+
+	/**
+	 * Creates a new statement run report.
+	 *
+	 * @param month
+	 *            the month of the statements, e.g. 2024-05
+	 * @param accounts
+	 *            the number of statements written, one per account
+	 * @param beneficiaries
+	 *            the number of beneficiary lines written
+	 * @param rewards
+	 *            the number of reward lines written
+	 * @param files
+	 *            the compressed files written, one per shard
+	 * @param bytes
+	 *            the compressed size of the files
+	 * @param elapsedMillis
+	 *            how long the run took
+	 */
+	public StatementRunReport(String month, long accounts, long beneficiaries, long rewards, List<String> files,
+			long bytes, long elapsedMillis) {
+		this.month = month;
+		this.accounts = accounts;
+		this.beneficiaries = beneficiaries;
+		this.rewards = rewards;
+		this.files = List.copyOf(files);
+		this.bytes = bytes;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public String getMonth() {
+		return month;
+	}
+
+	public long getAccounts() {
+		return accounts;
+	}
+
+	public long getBeneficiaries() {
+		return beneficiaries;
+	}
+
+	public long getRewards() {
+		return rewards;
+	}
+
+	public List<String> getFiles() {
+		return files;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * Returns the number of statements written per second.
+	 */
+	public long getAccountsPerSecond() {
+		return accounts * 1000 / Math.max(elapsedMillis, 1);
+	}
+
+	public String toString() {
+		return "Statements " + month + ": " + accounts + " accounts in " + elapsedMillis + " ms, " + files.size()
+				+ " files of " + bytes + " bytes";
+	}
+}
@@ -1,5 +1,6 @@
 package spring.academy.restful.rewards.internal.account;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import spring.academy.restful.common.money.MonetaryAmount;
 import spring.academy.restful.common.money.Percentage;
 import jakarta.persistence.CascadeType;
@@ -11,9 +12,11 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import spring.academy.restful.rewards.AccountContribution;
 import spring.academy.restful.rewards.AccountContribution.Distribution;
 
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
@@ -43,6 +46,10 @@ public class Account {
 	@Column(name = "NAME")
 	private String name;
 
+	@Version
+	@Column(name = "VERSION")
+	private Long version;
+
 	@OneToMany(cascade = CascadeType.ALL)
 	@JoinColumn(name = "ACCOUNT_ID")
 	private Set<Beneficiary> beneficiaries = new HashSet<Beneficiary>();
@@ -87,6 +94,30 @@ public class Account {
 		this.entityId = entityId;
 	}
 
+	/**
+	 * Returns the version of this account, incremented every time the account
+	 * or any of its beneficiaries change. Maintained by the ORM; null for an
+	 * account that has never been persisted.
+	 */
+	@JsonIgnore
+	public Long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the savings of the beneficiaries of this account still pending
+	 * in the savings ledger or buffered on this node, as of loading. The
+	 * version does not change with them, so they are part of the entity tag.
+	 */
+	@JsonIgnore
+	public MonetaryAmount getPendingSavings() {
+		MonetaryAmount total = MonetaryAmount.zero();
+		for (Beneficiary beneficiary : beneficiaries) {
+			total = total.add(beneficiary.getPendingSavings());
+		}
+		return total;
+	}
+
 	/**
 	 * Returns the number used to uniquely identify this account.
 	 */
@@ -192,21 +223,26 @@ public class Account {
 	 * allocation adds up to 100%.
 	 */
 	public boolean isValid() {
-		Percentage totalPercentage = Percentage.zero();
+		// Sum the raw decimals: allocations are never negative, so a running
+		// total over 100% can only end over 100% and no intermediate
+		// Percentage (or exception) needs to be created.
+		BigDecimal total = BigDecimal.ZERO;
 		for (Beneficiary b : beneficiaries) {
-			try {
-				totalPercentage = totalPercentage.add(b
-						.getAllocationPercentage());
-			} catch (IllegalArgumentException e) {
-				// total would have been over 100% - return invalid
-				return false;
-			}
-		}
-		if (totalPercentage.equals(Percentage.oneHundred())) {
-			return true;
-		} else {
-			return false;
+			total = total.add(b.getAllocationPercentage().asBigDecimal());
 		}
+		return isValidAllocationTotal(total);
+	}
+
+	/**
+	 * Returns true if the given sum of beneficiary allocation percentages
+	 * represents a valid (100%) allocation. Lets callers that already walk
+	 * the beneficiaries, like the JSON serializer, avoid a second pass.
+	 *
+	 * @param total
+	 *            the sum of the allocation percentages as decimals
+	 */
+	public static boolean isValidAllocationTotal(BigDecimal total) {
+		return total.compareTo(BigDecimal.ONE) == 0;
 	}
 
 	public void setValid(boolean valid) {
@@ -216,7 +252,9 @@ public class Account {
 	/**
 	 * Make a monetary contribution to this account. The contribution amount is
 	 * distributed among the account's beneficiaries based on each beneficiary's
-	 * allocation percentage.
+	 * allocation percentage. Persisted through JPA, the contribution must be
+	 * made with {@link AccountRepository#makeContribution(Account, MonetaryAmount)},
+	 * which also increments the account version.
 	 * 
 	 * @param amount
 	 *            the total amount to contribute
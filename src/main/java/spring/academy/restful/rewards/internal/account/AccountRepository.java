@@ -1,5 +1,8 @@
 package spring.academy.restful.rewards.internal.account;
 
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.rewards.AccountContribution;
+
 /**
  * Loads account aggregates. Called by the reward network to find and reconstitute Account entities from an external
  * form such as a set of RDMS rows.
@@ -23,4 +26,15 @@ public interface AccountRepository {
 	 */
 	public Account findByCreditCard(String creditCardNumber);
 
+	/**
+	 * Makes a contribution to an account loaded by this repository in the
+	 * current transaction, see {@link Account#makeContribution(MonetaryAmount)},
+	 * and increments the account version, so the entity tag of the account
+	 * changes with the savings of its beneficiaries.
+	 * @param account the account, loaded in the current transaction
+	 * @param amount the total amount to contribute
+	 * @return the contribution summary
+	 */
+	public AccountContribution makeContribution(Account account, MonetaryAmount amount);
+
 }
\ No newline at end of file
@@ -6,10 +6,12 @@ import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.Column;
 import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 /**
  * A single beneficiary allocated to an account. Each beneficiary has a name
@@ -17,6 +19,7 @@ import jakarta.persistence.Table;
  * money has been saved for them to date (e.g. $1000).
  */
 @Entity
+@EntityListeners(SavingsOverlayListener.class)
 @Table(name = "T_ACCOUNT_BENEFICIARY")
 public class Beneficiary {
 
@@ -36,6 +39,21 @@ public class Beneficiary {
 	@AttributeOverride(name = "value", column = @Column(name = "SAVINGS"))
 	private MonetaryAmount savings = MonetaryAmount.zero();
 
+	/**
+	 * Contributions appended to T_BENEFICIARY_LEDGER by the
+	 * {@link LedgerSavingsRepository} and not yet folded into SAVINGS by the
+	 * {@link LedgerCompactor}, as of loading.
+	 */
+	@Transient
+	private MonetaryAmount ledgerSavings;
+
+	/**
+	 * Contributions buffered in memory on this node by the
+	 * {@link BufferedSavingsRepository} and not yet flushed, as of loading.
+	 */
+	@Transient
+	private MonetaryAmount bufferedSavings;
+
 	protected Beneficiary() {
 	}
 
@@ -122,10 +140,54 @@ public class Beneficiary {
 	}
 
 	/**
-	 * Returns the amount of savings this beneficiary has accrued.
+	 * Returns the amount of savings this beneficiary has accrued, including
+	 * contributions still pending in the savings ledger or buffered on this
+	 * node.
 	 */
 	public MonetaryAmount getSavings() {
-		return savings;
+		MonetaryAmount total = savings;
+		if (total == null) {
+			return null;
+		}
+		if (ledgerSavings != null) {
+			total = total.add(ledgerSavings);
+		}
+		if (bufferedSavings != null) {
+			total = total.add(bufferedSavings);
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the contributions pending in the savings ledger or buffered on
+	 * this node, as of loading, included in {@link #getSavings()}.
+	 */
+	MonetaryAmount getPendingSavings() {
+		MonetaryAmount total = MonetaryAmount.zero();
+		if (ledgerSavings != null) {
+			total = total.add(ledgerSavings);
+		}
+		if (bufferedSavings != null) {
+			total = total.add(bufferedSavings);
+		}
+		return total;
+	}
+
+	/**
+	 * Sets the buffered contributions not yet flushed to the database. Called
+	 * by the {@link SavingsOverlayListener} when the beneficiary is loaded.
+	 */
+	void setBufferedSavings(MonetaryAmount bufferedSavings) {
+		this.bufferedSavings = bufferedSavings;
+	}
+
+	/**
+	 * Sets the ledger contributions not yet compacted. Called by
+	 * {@link LedgerSavingsRepository#overlayPendingSavings} for
+	 * all beneficiaries of the accounts loaded at once.
+	 */
+	void setLedgerSavings(MonetaryAmount ledgerSavings) {
+		this.ledgerSavings = ledgerSavings;
 	}
 
 	/**
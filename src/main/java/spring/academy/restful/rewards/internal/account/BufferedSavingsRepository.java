@@ -0,0 +1,422 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Savings repository that never writes to the database on the contribution
+ * path. Each distribution is recorded in a {@link SavingsWriteAheadLog} and
+ * added, in cents, to an in-memory {@link LongAdder} per beneficiary; a
+ * scheduled {@link #flush()} then applies everything credited since the last
+ * flush with one batched update per interval.
+ * <p>
+ * Credits survive a crash of the process: the log segments not yet applied
+ * are replayed into the database when the repository starts. The last
+ * applied segment is recorded in <tt>T_SAVINGS_CHECKPOINT</tt> in the same
+ * transaction as the updates, so a segment is never applied twice. Forcing
+ * the log to disk only when a segment is sealed means a power loss can lose
+ * up to one flush interval of credits.
+ * <p>
+ * Until they are flushed, credits are only visible on this node:
+ * {@link SavingsOverlayListener} adds them to the savings of every
+ * {@link Beneficiary} loaded here. Like {@link LedgerSavingsRepository}, all
+ * contributions must go through this repository while buffering is enabled,
+ * and account versions only change when a flush applies their credits: the
+ * entity tag of an account adds the pending amount to the version.
+ */
+public class BufferedSavingsRepository
+		implements SavingsRepository, SmartLifecycle, ApplicationEventPublisherAware {
+
+	public static final String TYPE = "buffered";
+
+	static final String ALLOCATIONS_SQL = "select ID, ALLOCATION_PERCENTAGE from T_ACCOUNT_BENEFICIARY"
+			+ " where ACCOUNT_ID = ? order by ID";
+
+	static final String CHECKPOINT_SQL = "select SEGMENT from T_SAVINGS_CHECKPOINT where NODE_ID = ?";
+
+	static final String UPDATE_CHECKPOINT_SQL = "update T_SAVINGS_CHECKPOINT set SEGMENT = ? where NODE_ID = ?";
+
+	static final String INSERT_CHECKPOINT_SQL = "insert into T_SAVINGS_CHECKPOINT (SEGMENT, NODE_ID) values (?, ?)";
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Path walDirectory;
+
+	private final String nodeId;
+
+	private final ConcurrentMap<Long, Delta> deltas = new ConcurrentHashMap<Long, Delta>();
+
+	/**
+	 * Credits hold the read lock while logging and counting, so sealing a
+	 * segment under the write lock sees exactly the credits it holds.
+	 */
+	private final ReadWriteLock sealLock = new ReentrantReadWriteLock();
+
+	private volatile SavingsWriteAheadLog wal;
+
+	private ApplicationEventPublisher eventPublisher;
+
+	/**
+	 * Creates a new buffered savings repository.
+	 * 
+	 * @param dataSource
+	 *            the rewards database
+	 * @param transactionManager
+	 *            the transaction manager of the rewards database
+	 * @param walDirectory
+	 *            the directory of the write-ahead log, private to this node
+	 * @param nodeId
+	 *            identifies this node in <tt>T_SAVINGS_CHECKPOINT</tt>
+	 */
+	public BufferedSavingsRepository(DataSource dataSource, PlatformTransactionManager transactionManager,
+			Path walDirectory, String nodeId) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.walDirectory = walDirectory;
+		this.nodeId = nodeId;
+		logger.info("Created BufferedSavingsRepository");
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	@Override
+	public String getInfo() {
+		return TYPE;
+	}
+
+	@Override
+	public boolean creditSavings(Long accountId, MonetaryAmount amount) {
+		List<Allocation> allocations = jdbcTemplate.query(ALLOCATIONS_SQL,
+				(rs, rowNum) -> new Allocation(rs.getLong("ID"),
+						new Percentage(rs.getBigDecimal("ALLOCATION_PERCENTAGE"))),
+				accountId);
+		BigDecimal total = BigDecimal.ZERO;
+		for (Allocation allocation : allocations) {
+			total = total.add(allocation.percentage().asBigDecimal());
+		}
+		if (allocations.isEmpty() || !Account.isValidAllocationTotal(total)) {
+			return false;
+		}
+
+		SavingsWriteAheadLog wal = runningWal();
+		sealLock.readLock().lock();
+		try {
+			for (Allocation allocation : allocations) {
+				long cents = toCents(amount.multiplyBy(allocation.percentage()));
+				wal.append(accountId, allocation.beneficiaryId(), cents);
+				deltas.computeIfAbsent(allocation.beneficiaryId(), id -> new Delta(accountId)).credited.add(cents);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to log the credit of account " + accountId, e);
+		} finally {
+			sealLock.readLock().unlock();
+		}
+		// Only visible here until flushed: for the caches and the change feed
+		if (eventPublisher != null)
+			eventPublisher.publishEvent(new AccountChangedEvent(accountId, true));
+		return true;
+	}
+
+	@Override
+	public Set<Long> creditSavings(Map<Long, MonetaryAmount> amountsByAccount) {
+		Set<Long> credited = new LinkedHashSet<Long>();
+		for (Map.Entry<Long, MonetaryAmount> entry : amountsByAccount.entrySet()) {
+			if (creditSavings(entry.getKey(), entry.getValue())) {
+				credited.add(entry.getKey());
+			}
+		}
+		return credited;
+	}
+
+	/**
+	 * Returns the amount credited to a beneficiary on this node and not yet
+	 * flushed to the database.
+	 * 
+	 * @param beneficiaryId
+	 *            the beneficiary id
+	 */
+	public MonetaryAmount getPendingSavings(Long beneficiaryId) {
+		Delta delta = beneficiaryId == null ? null : deltas.get(beneficiaryId);
+		if (delta == null) {
+			return MonetaryAmount.zero();
+		}
+		return new MonetaryAmount(BigDecimal.valueOf(delta.pending(), 2));
+	}
+
+	/**
+	 * Returns the amounts credited on this node and not yet flushed, by
+	 * beneficiary id, for the beneficiaries of an account or of all accounts.
+	 * Beneficiaries without pending credits are left out.
+	 * 
+	 * @param accountId
+	 *            the account id, or null for all accounts
+	 */
+	public Map<Long, MonetaryAmount> getPendingSavingsOfAccount(Long accountId) {
+		Map<Long, MonetaryAmount> pending = new HashMap<Long, MonetaryAmount>();
+		for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+			Delta delta = entry.getValue();
+			long cents = delta.pending();
+			if ((accountId == null || accountId == delta.accountId) && cents != 0) {
+				pending.put(entry.getKey(), new MonetaryAmount(BigDecimal.valueOf(cents, 2)));
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * Applies everything credited since the last flush to the database.
+	 * 
+	 * @return the number of beneficiaries whose savings were updated
+	 */
+	@Scheduled(fixedDelayString = "${rewards.savings.buffer.flush-interval:PT2S}")
+	public synchronized int flush() {
+		SavingsWriteAheadLog wal = this.wal;
+		if (wal == null) {
+			return 0;
+		}
+		long sealed;
+		Map<Delta, Long> targets = new HashMap<Delta, Long>();
+		sealLock.writeLock().lock();
+		try {
+			sealed = wal.seal();
+			for (Delta delta : deltas.values()) {
+				targets.put(delta, delta.credited.sum());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to seal the savings write-ahead log", e);
+		} finally {
+			sealLock.writeLock().unlock();
+		}
+
+		Map<Long, Long> amounts = new HashMap<Long, Long>();
+		Set<Long> accountIds = new TreeSet<Long>();
+		for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+			Delta delta = entry.getValue();
+			Long target = targets.get(delta);
+			if (target != null && target != delta.flushed) {
+				amounts.put(entry.getKey(), target - delta.flushed);
+				accountIds.add(delta.accountId);
+			}
+		}
+		Map<Delta, Long> previous = new HashMap<Delta, Long>();
+		for (Delta delta : targets.keySet()) {
+			previous.put(delta, delta.flushed);
+		}
+		try {
+			// Marked flushed before the commit, so a reader never counts a
+			// credit twice, and the caches reload once it has committed
+			apply(amounts, accountIds, sealed, () -> {
+				for (Map.Entry<Delta, Long> target : targets.entrySet()) {
+					target.getKey().flushed = target.getValue();
+				}
+			});
+		} catch (RuntimeException e) {
+			for (Map.Entry<Delta, Long> flushed : previous.entrySet()) {
+				flushed.getKey().flushed = flushed.getValue();
+			}
+			throw e;
+		}
+		removeFlushedDeltas();
+		deleteSegmentsUpTo(wal, sealed);
+		logger.debug("Flushed buffered savings of {} beneficiaries", amounts.size());
+		return amounts.size();
+	}
+
+	/**
+	 * Replays the log segments not yet applied, then opens a new segment.
+	 */
+	@Override
+	public synchronized void start() {
+		if (wal != null) {
+			return;
+		}
+		try {
+			long checkpoint = checkpoint();
+			SavingsWriteAheadLog log = new SavingsWriteAheadLog(walDirectory, checkpoint);
+			Map<Long, Long> amounts = new HashMap<Long, Long>();
+			Set<Long> accountIds = new TreeSet<Long>();
+			long last = checkpoint;
+			for (long segment : log.segments()) {
+				if (segment > checkpoint && segment != log.currentSegment()) {
+					log.read(segment, (accountId, beneficiaryId, cents) -> {
+						amounts.merge(beneficiaryId, cents, Long::sum);
+						accountIds.add(accountId);
+					});
+					last = segment;
+				}
+			}
+			if (last != checkpoint) {
+				apply(amounts, accountIds, last, () -> { });
+				logger.info("Replayed buffered savings of {} beneficiaries up to segment {}", amounts.size(), last);
+			}
+			deleteSegmentsUpTo(log, log.currentSegment() - 1);
+			wal = log;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to replay the savings write-ahead log in " + walDirectory, e);
+		}
+	}
+
+	/**
+	 * Flushes what is still buffered before closing the log.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (wal == null) {
+			return;
+		}
+		flush();
+		try {
+			wal.close();
+		} catch (IOException e) {
+			logger.warn("Unable to close the savings write-ahead log", e);
+		}
+		wal = null;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return wal != null;
+	}
+
+	/**
+	 * Applies the amounts and checkpoints the segment in one transaction, then
+	 * runs the given callback and publishes the account changes in it, so the
+	 * outbox rows commit with the savings and the caches and change feed only
+	 * hear of them once committed.
+	 */
+	private void apply(Map<Long, Long> amounts, Set<Long> accountIds, long segment, Runnable applied) {
+		List<Object[]> folds = new ArrayList<Object[]>(amounts.size());
+		for (Map.Entry<Long, Long> amount : amounts.entrySet()) {
+			folds.add(new Object[] { BigDecimal.valueOf(amount.getValue(), 2), amount.getKey() });
+		}
+		List<Object[]> versions = new ArrayList<Object[]>(accountIds.size());
+		for (Long accountId : accountIds) {
+			versions.add(new Object[] { accountId });
+		}
+		transactionTemplate.executeWithoutResult(status -> {
+			if (!folds.isEmpty()) {
+				jdbcTemplate.batchUpdate(LedgerCompactor.FOLD_SQL, folds);
+				jdbcTemplate.batchUpdate(JdbcSavingsRepository.INCREMENT_VERSION_SQL, versions);
+			}
+			if (jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, segment, nodeId) == 0) {
+				jdbcTemplate.update(INSERT_CHECKPOINT_SQL, segment, nodeId);
+			}
+			applied.run();
+			for (Long accountId : accountIds) {
+				accountChanged(accountId);
+			}
+		});
+	}
+
+	/**
+	 * Forgets the beneficiaries with nothing left to flush, so the deltas only
+	 * hold the beneficiaries credited since the last flush. Under the write
+	 * lock, no credit is being added to a delta removed.
+	 */
+	private void removeFlushedDeltas() {
+		sealLock.writeLock().lock();
+		try {
+			deltas.values().removeIf(delta -> delta.pending() == 0);
+		} finally {
+			sealLock.writeLock().unlock();
+		}
+	}
+
+	int getBufferedBeneficiaryCount() {
+		return deltas.size();
+	}
+
+	private long checkpoint() {
+		List<Long> segments = jdbcTemplate.queryForList(CHECKPOINT_SQL, Long.class, nodeId);
+		return segments.isEmpty() ? 0 : segments.get(0);
+	}
+
+	private void deleteSegmentsUpTo(SavingsWriteAheadLog log, long last) {
+		try {
+			for (long segment : log.segments()) {
+				if (segment <= last) {
+					log.delete(segment);
+				}
+			}
+		} catch (IOException e) {
+			// Harmless: segments up to the checkpoint are skipped on replay
+			logger.warn("Unable to delete applied savings write-ahead log segments", e);
+		}
+	}
+
+	private SavingsWriteAheadLog runningWal() {
+		SavingsWriteAheadLog wal = this.wal;
+		if (wal == null) {
+			throw new IllegalStateException("BufferedSavingsRepository has not been started");
+		}
+		return wal;
+	}
+
+	private void accountChanged(Long accountId) {
+		if (eventPublisher != null)
+			eventPublisher.publishEvent(new AccountChangedEvent(accountId));
+	}
+
+	private static long toCents(MonetaryAmount amount) {
+		return amount.asBigDecimal().movePointRight(2).longValueExact();
+	}
+
+	private record Allocation(long beneficiaryId, Percentage percentage) {
+	}
+
+	/**
+	 * What has been credited to one beneficiary on this node. Both totals only
+	 * grow, so a credit made while a flush runs is never lost.
+	 */
+	private static final class Delta {
+
+		final long accountId;
+
+		final LongAdder credited = new LongAdder();
+
+		volatile long flushed;
+
+		Delta(long accountId) {
+			this.accountId = accountId;
+		}
+
+		long pending() {
+			return credited.sum() - flushed;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.common.money.MonetaryAmount;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC implementation of a savings repository that credits all beneficiaries
+ * of an account with a single UPDATE.
+ * <p>
+ * {@link MonetaryAmount#multiplyBy(spring.academy.restful.common.money.Percentage)}
+ * rounds half-even to cents, while SQL <tt>ROUND</tt> rounds half-up. The
+ * product of an amount and an allocation percentage has exactly four
+ * decimals, so the two only differ on a tie whose cent digit is even, i.e.
+ * when the product modulo 0.02 is 0.005. Such ties are truncated instead.
+ * <p>
+ * Credited accounts get their version incremented, as any other change to an
+ * account does.
+ */
+public class JdbcSavingsRepository implements SavingsRepository, ApplicationEventPublisherAware {
+
+	public static final String TYPE = "jdbc";
+
+	private static final String CONTRIBUTION = "cast(? as decimal(10,2)) * ALLOCATION_PERCENTAGE";
+
+	/**
+	 * The amount distributed to a row of <tt>T_ACCOUNT_BENEFICIARY</tt>, with
+	 * the contribution bound three times.
+	 */
+	static final String DISTRIBUTION_SQL = "case"
+			+ " when mod(" + CONTRIBUTION + ", 0.02) = 0.005 then truncate(" + CONTRIBUTION + ", 2)"
+			+ " else round(" + CONTRIBUTION + ", 2) end";
+
+	/**
+	 * Restricts rows of <tt>T_ACCOUNT_BENEFICIARY</tt> to those of an account
+	 * whose allocations total 100%, with the account id bound twice.
+	 */
+	static final String VALID_ACCOUNT_SQL = "ACCOUNT_ID = ? and ACCOUNT_ID in (select ACCOUNT_ID from"
+			// Derived table, as MySQL cannot select from the table being updated
+			+ " (select ACCOUNT_ID from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = ?"
+			+ " group by ACCOUNT_ID having sum(ALLOCATION_PERCENTAGE) = 1) VALID_ACCOUNT)";
+
+	static final String CREDIT_SAVINGS_SQL = "update T_ACCOUNT_BENEFICIARY set SAVINGS = SAVINGS + "
+			+ DISTRIBUTION_SQL + " where " + VALID_ACCOUNT_SQL;
+
+	static final String INCREMENT_VERSION_SQL = "update T_ACCOUNT set VERSION = VERSION + 1 where ID = ?";
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ApplicationEventPublisher eventPublisher;
+
+	public JdbcSavingsRepository(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		logger.info("Created JdbcSavingsRepository");
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	@Override
+	public String getInfo() {
+		return TYPE;
+	}
+
+	@Override
+	@Transactional
+	public boolean creditSavings(Long accountId, MonetaryAmount amount) {
+		if (jdbcTemplate.update(CREDIT_SAVINGS_SQL, creditArguments(accountId, amount)) == 0) {
+			return false;
+		}
+		jdbcTemplate.update(INCREMENT_VERSION_SQL, accountId);
+		accountChanged(accountId);
+		return true;
+	}
+
+	@Override
+	@Transactional
+	public Set<Long> creditSavings(Map<Long, MonetaryAmount> amountsByAccount) {
+		List<Long> accountIds = new ArrayList<Long>(amountsByAccount.size());
+		List<Object[]> arguments = new ArrayList<Object[]>(amountsByAccount.size());
+		for (Map.Entry<Long, MonetaryAmount> entry : amountsByAccount.entrySet()) {
+			accountIds.add(entry.getKey());
+			arguments.add(creditArguments(entry.getKey(), entry.getValue()));
+		}
+		int[] updateCounts = jdbcTemplate.batchUpdate(CREDIT_SAVINGS_SQL, arguments);
+
+		// A driver may only report that a statement succeeded, not its row
+		// count; bumping a version too many is harmless.
+		Set<Long> credited = new LinkedHashSet<Long>();
+		List<Object[]> versionArguments = new ArrayList<Object[]>();
+		for (int i = 0; i < updateCounts.length; i++) {
+			if (updateCounts[i] != 0) {
+				credited.add(accountIds.get(i));
+				versionArguments.add(new Object[] { accountIds.get(i) });
+			}
+		}
+		if (!versionArguments.isEmpty()) {
+			jdbcTemplate.batchUpdate(INCREMENT_VERSION_SQL, versionArguments);
+		}
+		for (Long accountId : credited) {
+			accountChanged(accountId);
+		}
+		return credited;
+	}
+
+	/**
+	 * Returns the arguments of {@link #DISTRIBUTION_SQL} followed by those of
+	 * {@link #VALID_ACCOUNT_SQL}.
+	 */
+	static Object[] creditArguments(Long accountId, MonetaryAmount amount) {
+		BigDecimal value = amount.asBigDecimal();
+		return new Object[] { value, value, value, accountId, accountId };
+	}
+
+	private void accountChanged(Long accountId) {
+		if (eventPublisher != null)
+			eventPublisher.publishEvent(new AccountChangedEvent(accountId));
+	}
+}
@@ -1,16 +1,25 @@
 package spring.academy.restful.rewards.internal.account;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.rewards.AccountContribution;
 
 /**
  * An account repository that uses JPA to find accounts.
  */
 @Repository
-public class JpaAccountRepository implements AccountRepository {
+@Profile("!reactive")
+public class JpaAccountRepository implements AccountRepository, ApplicationEventPublisherAware {
 
 	public static final String ACCOUNT_BY_CC_QUERY = "select ACCOUNT_ID from T_ACCOUNT_CREDIT_CARD where NUMBER = :ccn";
 
@@ -20,6 +29,8 @@ public class JpaAccountRepository implements AccountRepository {
 	
 	private EntityManager entityManager;
 
+	private ApplicationEventPublisher eventPublisher;
+
 	public JpaAccountRepository() {
 		logger.info("Created JpaAccountManager");
 	}
@@ -29,6 +40,11 @@ public class JpaAccountRepository implements AccountRepository {
 		this.entityManager = entityManager;
 	}
 
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
 	@Override
 	public String getInfo() {
 		return INFO;
@@ -49,4 +65,16 @@ public class JpaAccountRepository implements AccountRepository {
 		return account;
 	}
 
-}
\ No newline at end of file
+	@Override
+	@Transactional
+	public AccountContribution makeContribution(Account account, MonetaryAmount amount) {
+		AccountContribution contribution = account.makeContribution(amount);
+		// Crediting the beneficiaries, separate entities, does not make the
+		// account dirty: force the version increment, like the JDBC paths do
+		entityManager.lock(account, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+		if (eventPublisher != null)
+			eventPublisher.publishEvent(new AccountChangedEvent(account.getEntityId()));
+		return contribution;
+	}
+
+}
@@ -0,0 +1,125 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.annotation.Transactional;
+import spring.academy.restful.accounts.AccountChangedEvent;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Periodically folds the entries of <tt>T_BENEFICIARY_LEDGER</tt> into
+ * <tt>T_ACCOUNT_BENEFICIARY.SAVINGS</tt>, oldest first and a bounded number
+ * of entries at a time.
+ * <p>
+ * The entries are read, deleted by id and summed per beneficiary in memory,
+ * in one transaction, so an entry committed while a compaction runs is
+ * either folded and deleted, or left for the next run. Folding leaves the
+ * savings a reader sees unchanged, but increments the version of the
+ * accounts involved: that is when their ETags catch up with the ledger.
+ */
+public class LedgerCompactor implements ApplicationEventPublisherAware {
+
+	static final String PENDING_ENTRIES_SQL = "select l.ID, l.BENEFICIARY_ID, b.ACCOUNT_ID, l.AMOUNT"
+			+ " from T_BENEFICIARY_LEDGER l left join T_ACCOUNT_BENEFICIARY b on b.ID = l.BENEFICIARY_ID"
+			+ " order by l.ID";
+
+	static final String FOLD_SQL = "update T_ACCOUNT_BENEFICIARY set SAVINGS = SAVINGS + ? where ID = ?";
+
+	static final String DELETE_SQL = "delete from T_BENEFICIARY_LEDGER where ID = ?";
+
+	private static final Logger logger = LoggerFactory.getLogger(LedgerCompactor.class);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private ApplicationEventPublisher eventPublisher;
+
+	/**
+	 * Creates a new compactor.
+	 * 
+	 * @param dataSource
+	 *            the rewards database
+	 * @param batchSize
+	 *            the maximum number of entries folded by one run
+	 */
+	public LedgerCompactor(DataSource dataSource, int batchSize) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setMaxRows(batchSize);
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Folds the oldest pending entries into the beneficiaries' savings.
+	 * 
+	 * @return the number of entries folded
+	 */
+	@Scheduled(fixedDelayString = "${rewards.savings.ledger.compaction-interval:PT5S}")
+	@Transactional
+	public int compact() {
+		List<LedgerEntry> entries = jdbcTemplate.query(PENDING_ENTRIES_SQL, (rs, rowNum) -> {
+			long accountId = rs.getLong("ACCOUNT_ID");
+			// Entries of a removed beneficiary have no account and are dropped
+			return new LedgerEntry(rs.getLong("ID"), rs.getLong("BENEFICIARY_ID"),
+					rs.wasNull() ? null : accountId, rs.getBigDecimal("AMOUNT"));
+		});
+		if (entries.isEmpty()) {
+			return 0;
+		}
+
+		// Delete first: an entry another compactor already claimed is not
+		// deleted again, and therefore not folded twice
+		List<Object[]> deletes = new ArrayList<Object[]>(entries.size());
+		for (LedgerEntry entry : entries) {
+			deletes.add(new Object[] { entry.id() });
+		}
+		int[] deleteCounts = jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+
+		Map<Long, BigDecimal> amounts = new HashMap<Long, BigDecimal>();
+		Set<Long> accountIds = new TreeSet<Long>();
+		for (int i = 0; i < deleteCounts.length; i++) {
+			LedgerEntry entry = entries.get(i);
+			if (deleteCounts[i] != 0 && entry.accountId() != null) {
+				amounts.merge(entry.beneficiaryId(), entry.amount(), BigDecimal::add);
+				accountIds.add(entry.accountId());
+			}
+		}
+		if (!amounts.isEmpty()) {
+			List<Object[]> folds = new ArrayList<Object[]>(amounts.size());
+			for (Map.Entry<Long, BigDecimal> amount : amounts.entrySet()) {
+				folds.add(new Object[] { amount.getValue(), amount.getKey() });
+			}
+			List<Object[]> versions = new ArrayList<Object[]>(accountIds.size());
+			for (Long accountId : accountIds) {
+				versions.add(new Object[] { accountId });
+			}
+			jdbcTemplate.batchUpdate(FOLD_SQL, folds);
+			jdbcTemplate.batchUpdate(JdbcSavingsRepository.INCREMENT_VERSION_SQL, versions);
+		}
+
+		if (eventPublisher != null) {
+			for (Long accountId : accountIds) {
+				eventPublisher.publishEvent(new AccountChangedEvent(accountId));
+			}
+		}
+		logger.debug("Folded {} ledger entries into the savings of {} beneficiaries", entries.size(), amounts.size());
+		return entries.size();
+	}
+
+	private record LedgerEntry(long id, long beneficiaryId, Long accountId, BigDecimal amount) {
+	}
+}
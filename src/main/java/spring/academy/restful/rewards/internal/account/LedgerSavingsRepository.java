@@ -0,0 +1,173 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.common.money.MonetaryAmount;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import static spring.academy.restful.rewards.internal.account.JdbcSavingsRepository.DISTRIBUTION_SQL;
+import static spring.academy.restful.rewards.internal.account.JdbcSavingsRepository.VALID_ACCOUNT_SQL;
+import static spring.academy.restful.rewards.internal.account.JdbcSavingsRepository.creditArguments;
+
+/**
+ * Savings repository that appends each distribution to
+ * <tt>T_BENEFICIARY_LEDGER</tt> instead of updating
+ * <tt>T_ACCOUNT_BENEFICIARY</tt>, so concurrent contributions to the same
+ * account never wait on each other's row locks. A {@link LedgerCompactor}
+ * later folds the entries into <tt>SAVINGS</tt>; until then
+ * {@link Beneficiary#getSavings()} and the account summaries add them to the
+ * compacted balance of the accounts the account manager loads, read with
+ * {@link #overlayPendingSavings(Collection)} and
+ * {@link #getPendingSavingsOfAccount(Long)}. Nothing reads the ledger while
+ * this repository is not in use.
+ * <p>
+ * Distributions are rounded exactly like {@link JdbcSavingsRepository} does.
+ * Incrementing the account version would bring back a hot row, so here the
+ * version only changes when the compactor folds the entries of an account:
+ * the entity tag of an account adds the pending amount to the version.
+ * While entries are pending, all contributions must go through this
+ * repository: the JPA aggregate writes SAVINGS as an absolute value.
+ */
+public class LedgerSavingsRepository implements SavingsRepository, ApplicationEventPublisherAware {
+
+	public static final String TYPE = "ledger";
+
+	static final String APPEND_SQL = "insert into T_BENEFICIARY_LEDGER (BENEFICIARY_ID, AMOUNT) select ID, "
+			+ DISTRIBUTION_SQL + " from T_ACCOUNT_BENEFICIARY where " + VALID_ACCOUNT_SQL;
+
+	static final String PENDING_SQL = "select coalesce(sum(AMOUNT), 0) from T_BENEFICIARY_LEDGER"
+			+ " where BENEFICIARY_ID = ?";
+
+	static final String ALL_PENDING_SQL = "select BENEFICIARY_ID, sum(AMOUNT) as AMOUNT from T_BENEFICIARY_LEDGER"
+			+ " group by BENEFICIARY_ID";
+
+	static final String ACCOUNT_PENDING_SQL = "select l.BENEFICIARY_ID, sum(l.AMOUNT) as AMOUNT"
+			+ " from T_BENEFICIARY_LEDGER l join T_ACCOUNT_BENEFICIARY b on b.ID = l.BENEFICIARY_ID"
+			+ " where b.ACCOUNT_ID = ? group by l.BENEFICIARY_ID";
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ApplicationEventPublisher eventPublisher;
+
+	public LedgerSavingsRepository(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		logger.info("Created LedgerSavingsRepository");
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	@Override
+	public String getInfo() {
+		return TYPE;
+	}
+
+	@Override
+	@Transactional
+	public boolean creditSavings(Long accountId, MonetaryAmount amount) {
+		if (jdbcTemplate.update(APPEND_SQL, creditArguments(accountId, amount)) == 0) {
+			return false;
+		}
+		accountChanged(accountId);
+		return true;
+	}
+
+	@Override
+	@Transactional
+	public Set<Long> creditSavings(Map<Long, MonetaryAmount> amountsByAccount) {
+		List<Long> accountIds = new ArrayList<Long>(amountsByAccount.size());
+		List<Object[]> arguments = new ArrayList<Object[]>(amountsByAccount.size());
+		for (Map.Entry<Long, MonetaryAmount> entry : amountsByAccount.entrySet()) {
+			accountIds.add(entry.getKey());
+			arguments.add(creditArguments(entry.getKey(), entry.getValue()));
+		}
+		int[] insertCounts = jdbcTemplate.batchUpdate(APPEND_SQL, arguments);
+
+		Set<Long> credited = new LinkedHashSet<Long>();
+		for (int i = 0; i < insertCounts.length; i++) {
+			if (insertCounts[i] != 0) {
+				credited.add(accountIds.get(i));
+				accountChanged(accountIds.get(i));
+			}
+		}
+		return credited;
+	}
+
+	/**
+	 * Returns the amount appended for a beneficiary and not yet compacted.
+	 * 
+	 * @param beneficiaryId
+	 *            the beneficiary id
+	 */
+	public MonetaryAmount getPendingSavings(Long beneficiaryId) {
+		if (beneficiaryId == null) {
+			return MonetaryAmount.zero();
+		}
+		return new MonetaryAmount(jdbcTemplate.queryForObject(PENDING_SQL, BigDecimal.class, beneficiaryId));
+	}
+
+	/**
+	 * Returns the amounts appended and not yet compacted, by beneficiary id,
+	 * for the beneficiaries of an account or of all accounts. Beneficiaries
+	 * without pending entries are left out.
+	 * 
+	 * @param accountId
+	 *            the account id, or null for all accounts
+	 */
+	public Map<Long, MonetaryAmount> getPendingSavingsOfAccount(Long accountId) {
+		Map<Long, MonetaryAmount> pending = new HashMap<Long, MonetaryAmount>();
+		RowCallbackHandler handler = rs -> pending.put(rs.getLong("BENEFICIARY_ID"),
+				new MonetaryAmount(rs.getBigDecimal("AMOUNT")));
+		if (accountId == null) {
+			jdbcTemplate.query(ALL_PENDING_SQL, handler);
+		} else {
+			jdbcTemplate.query(ACCOUNT_PENDING_SQL, handler, accountId);
+		}
+		return pending;
+	}
+
+	/**
+	 * Adds the amounts appended and not yet compacted to the beneficiaries of
+	 * the given accounts, with one query for a single account and one for all
+	 * accounts otherwise.
+	 * 
+	 * @param accounts
+	 *            the accounts just loaded
+	 */
+	public void overlayPendingSavings(Collection<Account> accounts) {
+		if (accounts.isEmpty()) {
+			return;
+		}
+		Map<Long, MonetaryAmount> pending = getPendingSavingsOfAccount(
+				accounts.size() == 1 ? accounts.iterator().next().getEntityId() : null);
+		for (Account account : accounts) {
+			for (Beneficiary beneficiary : account.getBeneficiaries()) {
+				beneficiary.setLedgerSavings(pending.get(beneficiary.getEntityId()));
+			}
+		}
+	}
+
+	private void accountChanged(Long accountId) {
+		if (eventPublisher != null)
+			eventPublisher.publishEvent(new AccountChangedEvent(accountId));
+	}
+}
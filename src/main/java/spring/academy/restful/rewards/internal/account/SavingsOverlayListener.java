@@ -0,0 +1,33 @@
+package spring.academy.restful.rewards.internal.account;
+
+import jakarta.persistence.PostLoad;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Adds the credits a {@link BufferedSavingsRepository} has not flushed yet to
+ * every {@link Beneficiary} loaded, so a node always reads its own writes.
+ * They are held in memory, so adding them per beneficiary costs no query;
+ * the entries of a {@link LedgerSavingsRepository} are added per batch of
+ * accounts instead, see {@link LedgerSavingsRepository#overlayPendingSavings}.
+ * Instantiated by Hibernate through Spring; does nothing when buffering is
+ * not enabled or the listener is created outside a Spring context.
+ */
+public class SavingsOverlayListener {
+
+	private ObjectProvider<BufferedSavingsRepository> savingsRepository;
+
+	@Autowired
+	public void setSavingsRepository(ObjectProvider<BufferedSavingsRepository> savingsRepository) {
+		this.savingsRepository = savingsRepository;
+	}
+
+	@PostLoad
+	public void overlayBufferedSavings(Beneficiary beneficiary) {
+		BufferedSavingsRepository repository = savingsRepository == null ? null
+				: savingsRepository.getIfAvailable();
+		if (repository != null) {
+			beneficiary.setBufferedSavings(repository.getPendingSavings(beneficiary.getEntityId()));
+		}
+	}
+}
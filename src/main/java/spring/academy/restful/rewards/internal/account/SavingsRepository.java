@@ -0,0 +1,46 @@
+package spring.academy.restful.rewards.internal.account;
+
+import spring.academy.restful.common.money.MonetaryAmount;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Credits contributions to the savings of beneficiaries directly in the
+ * database, without loading {@link Account} aggregates. Each beneficiary is
+ * credited exactly what {@link Account#makeContribution(MonetaryAmount)}
+ * would credit it.
+ */
+public interface SavingsRepository {
+
+	/**
+	 * Indicates implementation being used. Actual implementation is hidden
+	 * behind a proxy, so this makes it easy to determine when testing.
+	 * 
+	 * @return Implementation information.
+	 */
+	public String getInfo();
+
+	/**
+	 * Distributes a contribution among the beneficiaries of an account.
+	 * 
+	 * @param accountId
+	 *            the account id
+	 * @param amount
+	 *            the total amount to contribute, not negative
+	 * @return false if the account does not exist or its beneficiary
+	 *         allocations do not total 100%, in which case nothing is credited
+	 */
+	public boolean creditSavings(Long accountId, MonetaryAmount amount);
+
+	/**
+	 * Distributes contributions among the beneficiaries of many accounts.
+	 * 
+	 * @param amountsByAccount
+	 *            the total amount to contribute, not negative, keyed by
+	 *            account id
+	 * @return the ids of the accounts that were credited; the others do not
+	 *         exist or have invalid allocations
+	 */
+	public Set<Long> creditSavings(Map<Long, MonetaryAmount> amountsByAccount);
+}
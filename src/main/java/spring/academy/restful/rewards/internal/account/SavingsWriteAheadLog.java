@@ -0,0 +1,135 @@
+package spring.academy.restful.rewards.internal.account;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log of the credits buffered by a {@link BufferedSavingsRepository}.
+ * <p>
+ * The log is a sequence of numbered segment files of fixed size records
+ * (account id, beneficiary id, cents). Records are written to the operating
+ * system as they are appended, so they survive a crash of the process; they
+ * are only forced to disk when a segment is sealed. A torn record at the end
+ * of a segment is ignored when reading.
+ * <p>
+ * Appending is thread-safe. {@link #seal()} must not run concurrently with
+ * {@link #append(long, long, long)}.
+ */
+class SavingsWriteAheadLog implements AutoCloseable {
+
+	static final int RECORD_SIZE = 3 * Long.BYTES;
+
+	private static final String PREFIX = "savings-";
+
+	private static final String SUFFIX = ".wal";
+
+	/**
+	 * Receives the records of a segment.
+	 */
+	interface RecordHandler {
+		void handle(long accountId, long beneficiaryId, long cents);
+	}
+
+	private final Path directory;
+
+	private long segment;
+
+	private FileChannel channel;
+
+	/**
+	 * Opens a new segment numbered after all existing ones and after the
+	 * given checkpoint.
+	 * 
+	 * @param directory
+	 *            the directory holding the segments
+	 * @param checkpoint
+	 *            the last segment known to have been applied
+	 */
+	SavingsWriteAheadLog(Path directory, long checkpoint) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		List<Long> segments = segments();
+		long last = segments.isEmpty() ? checkpoint : Math.max(checkpoint, segments.get(segments.size() - 1));
+		open(last + 1);
+	}
+
+	/**
+	 * Returns the number of the segment being appended to.
+	 */
+	synchronized long currentSegment() {
+		return segment;
+	}
+
+	void append(long accountId, long beneficiaryId, long cents) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).putLong(accountId).putLong(beneficiaryId).putLong(cents)
+				.flip();
+		FileChannel channel = this.channel;
+		// FileChannel serializes writes, so records never interleave
+		while (record.hasRemaining()) {
+			channel.write(record);
+		}
+	}
+
+	/**
+	 * Forces the current segment to disk and starts a new one.
+	 * 
+	 * @return the number of the sealed segment
+	 */
+	synchronized long seal() throws IOException {
+		long sealed = segment;
+		channel.force(false);
+		channel.close();
+		open(sealed + 1);
+		return sealed;
+	}
+
+	/**
+	 * Returns the numbers of all segments on disk, current one included, in
+	 * ascending order.
+	 */
+	List<Long> segments() throws IOException {
+		List<Long> segments = new ArrayList<Long>();
+		try (Stream<Path> files = Files.list(directory)) {
+			files.map(file -> file.getFileName().toString())
+					.filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+					.forEach(name -> segments.add(
+							Long.valueOf(name.substring(PREFIX.length(), name.length() - SUFFIX.length()))));
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	void read(long segment, RecordHandler handler) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path(segment)));
+		while (buffer.remaining() >= RECORD_SIZE) {
+			handler.handle(buffer.getLong(), buffer.getLong(), buffer.getLong());
+		}
+	}
+
+	void delete(long segment) throws IOException {
+		Files.deleteIfExists(path(segment));
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.force(false);
+		channel.close();
+	}
+
+	private void open(long segment) throws IOException {
+		this.channel = FileChannel.open(path(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		this.segment = segment;
+	}
+
+	private Path path(long segment) {
+		return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+	}
+}
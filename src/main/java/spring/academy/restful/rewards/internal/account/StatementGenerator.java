@@ -0,0 +1,416 @@
+package spring.academy.restful.rewards.internal.account;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.StatementRunReport;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the month-end statements of all accounts: the rewards of the month
+ * and, per beneficiary, the allocation, the contribution of the month and
+ * the savings. One JSON statement per line, in gzip compressed files.
+ * <p>
+ * All accounts are read with a single cursor over <tt>T_ACCOUNT</tt> joined
+ * with <tt>T_ACCOUNT_BENEFICIARY</tt> and the rewards of the month in
+ * <tt>T_REWARD</tt>, in account order, so only the statement of the current
+ * account is held in memory. The join repeats the rewards of an account for
+ * each of its beneficiaries; the rewards are listed once, and each repetition
+ * adds to the contribution of its beneficiary. Statements are handed as bytes
+ * to one writer per shard, chosen by account number, which compress them
+ * in parallel into <tt>statements-yyyy-MM-nn.jsonl.gz</tt>. A bounded queue
+ * per shard keeps the cursor from running ahead of the writers. Files only
+ * replace those of an earlier run of the same month once all shards are
+ * written.
+ * <p>
+ * Savings are those of <tt>T_ACCOUNT_BENEFICIARY</tt> when the statement is
+ * written; corrective rewards are listed but were not distributed to the
+ * beneficiaries, so do not add to the contributions.
+ * <p>
+ * Publishes <tt>rewards.statements.accounts</tt> (statements written),
+ * <tt>rewards.statements.bytes</tt> (uncompressed bytes written) and
+ * <tt>rewards.statements.run</tt> (time of a run).
+ */
+public class StatementGenerator {
+
+	static final String STATEMENTS_SQL = "select a.NUMBER, a.NAME,"
+			+ " b.NAME as BENEFICIARY_NAME, b.ALLOCATION_PERCENTAGE, b.SAVINGS,"
+			+ " r.CONFIRMATION_NUMBER, r.REWARD_DATE, r.REWARD_AMOUNT, r.DINING_MERCHANT_NUMBER,"
+			+ " r.DINING_AMOUNT, r.DINING_DATE, r.CORRECTS_ID"
+			+ " from T_ACCOUNT a"
+			+ " left join T_ACCOUNT_BENEFICIARY b on b.ACCOUNT_ID = a.ID"
+			+ " left join T_REWARD r on r.ACCOUNT_NUMBER = a.NUMBER and r.REWARD_DATE >= ? and r.REWARD_DATE < ?"
+			+ " order by a.NUMBER, b.NAME, r.REWARD_DATE, r.ID";
+
+	static final int QUEUE_CAPACITY = 1024;
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Tells a shard writer there are no more statements.
+	 */
+	private static final byte[] END = new byte[0];
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	private final DataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final Path directory;
+
+	private final int shards;
+
+	private final Counter accountsWritten;
+
+	private final Counter bytesWritten;
+
+	private final Timer runs;
+
+	private boolean fetchSizeSet;
+
+	/**
+	 * Creates a new statement generator.
+	 *
+	 * @param dataSource
+	 *            the rewards database
+	 * @param directory
+	 *            where to write the statement files
+	 * @param shards
+	 *            the number of files, each written by its own thread
+	 * @param registry
+	 *            the registry to publish to
+	 */
+	public StatementGenerator(DataSource dataSource, Path directory, int shards, MeterRegistry registry) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.directory = directory;
+		this.shards = shards;
+		this.accountsWritten = Counter.builder("rewards.statements.accounts")
+				.description("Month-end statements written")
+				.register(registry);
+		this.bytesWritten = Counter.builder("rewards.statements.bytes")
+				.description("Uncompressed bytes of month-end statements written")
+				.baseUnit("bytes")
+				.register(registry);
+		this.runs = Timer.builder("rewards.statements.run")
+				.description("Time to write the month-end statements of all accounts")
+				.register(registry);
+	}
+
+	/**
+	 * Writes the statements of all accounts for a month, replacing those
+	 * written before for the same month.
+	 *
+	 * @param month
+	 *            the month
+	 * @return what was written
+	 */
+	public synchronized StatementRunReport generate(YearMonth month) {
+		setFetchSize();
+		long start = System.nanoTime();
+		List<Path> files = new ArrayList<Path>(shards);
+		List<Path> partFiles = new ArrayList<Path>(shards);
+		List<BlockingQueue<byte[]>> queues = new ArrayList<BlockingQueue<byte[]>>(shards);
+		Reader reader = new Reader(month, queues);
+		try {
+			Files.createDirectories(directory);
+			try (ExecutorService executor = Executors.newFixedThreadPool(shards)) {
+				List<Future<Long>> writers = new ArrayList<Future<Long>>(shards);
+				for (int shard = 0; shard < shards; shard++) {
+					Path file = directory.resolve(String.format("statements-%s-%02d.jsonl.gz", month, shard));
+					Path partFile = directory.resolve(file.getFileName() + ".part");
+					BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+					files.add(file);
+					partFiles.add(partFile);
+					queues.add(queue);
+					writers.add(executor.submit(() -> write(queue, partFile)));
+				}
+				try {
+					jdbcTemplate.query(STATEMENTS_SQL, reader, Date.valueOf(month.atDay(1)),
+							Date.valueOf(month.plusMonths(1).atDay(1)));
+					reader.finish();
+				} finally {
+					for (BlockingQueue<byte[]> queue : queues) {
+						queue.put(END);
+					}
+				}
+				long bytes = 0;
+				for (Future<Long> writer : writers) {
+					bytes += writer.get();
+				}
+				for (int shard = 0; shard < shards; shard++) {
+					Files.move(partFiles.get(shard), files.get(shard), StandardCopyOption.REPLACE_EXISTING);
+				}
+
+				long elapsed = System.nanoTime() - start;
+				runs.record(elapsed, TimeUnit.NANOSECONDS);
+				StatementRunReport report = new StatementRunReport(month.toString(), reader.accounts,
+						reader.beneficiaries, reader.rewards,
+						files.stream().map(file -> file.getFileName().toString()).toList(), bytes, elapsed / 1000000);
+				logger.info("Wrote {} statements for {} into {} files of {} bytes in {} ms ({} accounts/s)",
+						report.getAccounts(), month, shards, bytes, report.getElapsedMillis(),
+						report.getAccountsPerSecond());
+				return report;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while writing the statements for " + month, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Unable to write the statements for " + month, e.getCause());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to write the statements for " + month, e);
+		} finally {
+			for (Path partFile : partFiles) {
+				try {
+					Files.deleteIfExists(partFile);
+				} catch (IOException e) {
+					logger.warn("Unable to delete {}", partFile, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compresses the statements of a shard into a file until told there are
+	 * no more.
+	 *
+	 * @return the compressed size of the file
+	 */
+	private long write(BlockingQueue<byte[]> queue, Path file) throws IOException, InterruptedException {
+		boolean ended = false;
+		try (OutputStream out = new BufferedOutputStream(
+				new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE), BUFFER_SIZE)) {
+			for (byte[] statement = queue.take(); statement != END; statement = queue.take()) {
+				out.write(statement);
+			}
+			ended = true;
+		} finally {
+			// Keep taking statements after a failure, so the reader is never
+			// blocked by this shard
+			while (!ended) {
+				ended = queue.take() == END;
+			}
+		}
+		return Files.size(file);
+	}
+
+	/**
+	 * Streams rows from the cursor if the driver needs to be told to: MySQL
+	 * Connector/J reads the whole result set into memory otherwise.
+	 */
+	private void setFetchSize() {
+		if (!fetchSizeSet) {
+			boolean mysql;
+			try {
+				String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+				mysql = product != null && product.toLowerCase().contains("mysql");
+			} catch (MetaDataAccessException e) {
+				mysql = false;
+			}
+			jdbcTemplate.setFetchSize(mysql ? Integer.MIN_VALUE : 1000);
+			fetchSizeSet = true;
+		}
+	}
+
+	/**
+	 * Builds the statement of one account at a time from the rows of the
+	 * cursor, handing each complete statement to the writer of its shard.
+	 */
+	private final class Reader implements RowCallbackHandler {
+
+		private final YearMonth month;
+
+		private final List<BlockingQueue<byte[]>> queues;
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+		private String accountNumber;
+
+		private String accountName;
+
+		private String firstBeneficiary;
+
+		private final List<BeneficiaryLine> beneficiaryLines = new ArrayList<BeneficiaryLine>();
+
+		private final List<RewardLine> rewardLines = new ArrayList<RewardLine>();
+
+		private MonetaryAmount rewardTotal;
+
+		private long accounts;
+
+		private long beneficiaries;
+
+		private long rewards;
+
+		Reader(YearMonth month, List<BlockingQueue<byte[]>> queues) {
+			this.month = month;
+			this.queues = queues;
+		}
+
+		@Override
+		public void processRow(ResultSet rs) throws SQLException {
+			String number = rs.getString("NUMBER");
+			if (!number.equals(accountNumber)) {
+				finish();
+				accountNumber = number;
+				accountName = rs.getString("NAME");
+				firstBeneficiary = rs.getString("BENEFICIARY_NAME");
+				rewardTotal = MonetaryAmount.zero();
+			}
+
+			String beneficiaryName = rs.getString("BENEFICIARY_NAME");
+			BeneficiaryLine beneficiary = null;
+			if (beneficiaryName != null) {
+				beneficiary = beneficiaryLines.isEmpty() ? null : beneficiaryLines.get(beneficiaryLines.size() - 1);
+				if (beneficiary == null || !beneficiary.name.equals(beneficiaryName)) {
+					beneficiary = new BeneficiaryLine(beneficiaryName,
+							new Percentage(rs.getBigDecimal("ALLOCATION_PERCENTAGE")),
+							new MonetaryAmount(rs.getBigDecimal("SAVINGS")));
+					beneficiaryLines.add(beneficiary);
+				}
+			}
+
+			String confirmationNumber = rs.getString("CONFIRMATION_NUMBER");
+			if (confirmationNumber == null) {
+				return;
+			}
+			MonetaryAmount amount = new MonetaryAmount(rs.getBigDecimal("REWARD_AMOUNT"));
+			rs.getLong("CORRECTS_ID");
+			boolean correction = !rs.wasNull();
+			if (Objects.equals(beneficiaryName, firstBeneficiary)) {
+				rewardLines.add(new RewardLine(confirmationNumber, rs.getDate("REWARD_DATE"), amount,
+						rs.getString("DINING_MERCHANT_NUMBER"), rs.getBigDecimal("DINING_AMOUNT"),
+						rs.getDate("DINING_DATE"), correction));
+				rewardTotal = rewardTotal.add(amount);
+			}
+			if (beneficiary != null && !correction) {
+				beneficiary.contribution = beneficiary.contribution.add(amount.multiplyBy(beneficiary.allocation));
+			}
+		}
+
+		/**
+		 * Hands the statement of the current account, if any, to its writer.
+		 */
+		void finish() {
+			if (accountNumber == null) {
+				return;
+			}
+			byte[] statement = format();
+			try {
+				queues.get(Math.floorMod(accountNumber.hashCode(), queues.size())).put(statement);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while writing the statements for " + month, e);
+			}
+			accounts++;
+			beneficiaries += beneficiaryLines.size();
+			rewards += rewardLines.size();
+			accountsWritten.increment();
+			bytesWritten.increment(statement.length);
+			accountNumber = null;
+			beneficiaryLines.clear();
+			rewardLines.clear();
+		}
+
+		private byte[] format() {
+			buffer.reset();
+			try (JsonGenerator json = jsonFactory.createGenerator(buffer)) {
+				json.writeStartObject();
+				json.writeStringField("month", month.toString());
+				json.writeStringField("accountNumber", accountNumber);
+				json.writeStringField("name", accountName);
+				json.writeNumberField("rewardTotal", rewardTotal.asBigDecimal());
+				json.writeArrayFieldStart("beneficiaries");
+				for (BeneficiaryLine beneficiary : beneficiaryLines) {
+					json.writeStartObject();
+					json.writeStringField("name", beneficiary.name);
+					json.writeNumberField("allocationPercentage", beneficiary.allocation.asBigDecimal());
+					json.writeNumberField("contribution", beneficiary.contribution.asBigDecimal());
+					json.writeNumberField("savings", beneficiary.savings.asBigDecimal());
+					json.writeEndObject();
+				}
+				json.writeEndArray();
+				json.writeArrayFieldStart("rewards");
+				for (RewardLine reward : rewardLines) {
+					json.writeStartObject();
+					json.writeStringField("confirmationNumber", reward.confirmationNumber);
+					json.writeStringField("rewardDate", reward.rewardDate.toString());
+					json.writeNumberField("amount", reward.amount.asBigDecimal());
+					json.writeStringField("merchantNumber", reward.merchantNumber);
+					json.writeNumberField("diningAmount", reward.diningAmount);
+					json.writeStringField("diningDate", reward.diningDate.toString());
+					if (reward.correction) {
+						json.writeBooleanField("correction", true);
+					}
+					json.writeEndObject();
+				}
+				json.writeEndArray();
+				json.writeEndObject();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to format the statement of account " + accountNumber, e);
+			}
+			buffer.write('\n');
+			return buffer.toByteArray();
+		}
+	}
+
+	private static final class BeneficiaryLine {
+
+		private final String name;
+
+		private final Percentage allocation;
+
+		private final MonetaryAmount savings;
+
+		private MonetaryAmount contribution = MonetaryAmount.zero();
+
+		BeneficiaryLine(String name, Percentage allocation, MonetaryAmount savings) {
+			this.name = name;
+			this.allocation = allocation;
+			this.savings = savings;
+		}
+	}
+
+	private record RewardLine(String confirmationNumber, Date rewardDate, MonetaryAmount amount,
+			String merchantNumber, BigDecimal diningAmount, Date diningDate, boolean correction) {
+	}
+}
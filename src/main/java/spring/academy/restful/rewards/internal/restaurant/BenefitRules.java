@@ -0,0 +1,359 @@
+package spring.academy.restful.rewards.internal.restaurant;
+
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the benefit availability rules stored with restaurants into
+ * {@link BenefitAvailabilityPolicy} trees. A rule combines conditions with
+ * <tt>and</tt>, <tt>or</tt>, <tt>not</tt> and parentheses:
+ * <ul>
+ * <li><tt>always</tt>, <tt>never</tt></li>
+ * <li><tt>weekdays</tt>, <tt>weekends</tt>, <tt>on fri, sat</tt></li>
+ * <li><tt>min-amount 20.00</tt>, the minimum amount of the dining</li>
+ * <li><tt>max 3 per day|week|month</tt>, the maximum number of rewarded
+ * dinings per account at the restaurant in a period</li>
+ * </ul>
+ * For example <tt>weekdays and min-amount 20.00 and max 3 per month</tt>.
+ * Frequency limits may only be combined with <tt>and</tt> at the top of a
+ * rule: they count the dinings they let through, which is only meaningful if
+ * letting a dining through means rewarding it. They are backed by
+ * {@link DiningCounters}, so evaluating a rule never reads the database.
+ * <p>
+ * The single character codes <tt>A</tt> and <tt>N</tt> stored before rules
+ * existed are still understood. Each distinct rule is compiled once and
+ * shared by all restaurants using it.
+ */
+public final class BenefitRules {
+
+	private static final Pattern TOKEN = Pattern.compile("[(),]|[^\\s(),]+");
+
+	private static final Map<String, BenefitAvailabilityPolicy> compiled = new ConcurrentHashMap<String, BenefitAvailabilityPolicy>();
+
+	private BenefitRules() {
+	}
+
+	/**
+	 * Compiles a benefit availability rule.
+	 *
+	 * @param rule
+	 *            the rule, or one of the codes <tt>A</tt> and <tt>N</tt>
+	 * @return the policy
+	 * @throws IllegalArgumentException
+	 *             if the rule is not valid
+	 */
+	public static BenefitAvailabilityPolicy compile(String rule) {
+		if (rule == null) {
+			throw new IllegalArgumentException("Not a supported policy code null");
+		}
+		return compiled.computeIfAbsent(rule, BenefitRules::doCompile);
+	}
+
+	/**
+	 * Compiles the conditions of a benefit availability rule, leaving out its
+	 * frequency limits. Used to re-evaluate dinings that were already counted
+	 * against the limits when they were rewarded.
+	 *
+	 * @param rule
+	 *            the rule, or one of the codes <tt>A</tt> and <tt>N</tt>
+	 * @return the policy
+	 * @throws IllegalArgumentException
+	 *             if the rule is not valid
+	 */
+	public static BenefitAvailabilityPolicy compileConditions(String rule) {
+		BenefitAvailabilityPolicy policy = compile(rule);
+		return policy instanceof RuleBasedAvailability rules ? rules.getCondition() : policy;
+	}
+
+	/**
+	 * Tells if a benefit availability rule has frequency limits, which
+	 * {@link #compileConditions(String)} leaves out.
+	 *
+	 * @param rule
+	 *            the rule, or one of the codes <tt>A</tt> and <tt>N</tt>
+	 * @return true if the rule has a <tt>max ... per ...</tt> limit
+	 * @throws IllegalArgumentException
+	 *             if the rule is not valid
+	 */
+	public static boolean hasLimits(String rule) {
+		return compile(rule) instanceof RuleBasedAvailability rules && !rules.getLimits().isEmpty();
+	}
+
+	private static BenefitAvailabilityPolicy doCompile(String rule) {
+		if ("A".equals(rule)) {
+			return AlwaysAvailable.INSTANCE;
+		} else if ("N".equals(rule)) {
+			return NeverAvailable.INSTANCE;
+		}
+		BenefitAvailabilityPolicy root = new Parser(rule).parse();
+		if (root == AlwaysAvailable.INSTANCE || root == NeverAvailable.INSTANCE) {
+			return root;
+		}
+		List<BenefitAvailabilityPolicy> conditions = new ArrayList<BenefitAvailabilityPolicy>();
+		List<FrequencyLimit> limits = new ArrayList<FrequencyLimit>();
+		for (BenefitAvailabilityPolicy policy : root instanceof AllOf all ? all.policies() : List.of(root)) {
+			if (policy instanceof FrequencyLimit limit) {
+				limits.add(limit);
+			} else if (containsLimit(policy)) {
+				throw new IllegalArgumentException("Not a valid benefit rule '" + rule
+						+ "': 'max ... per ...' may only be combined with 'and' at the top of a rule");
+			} else {
+				conditions.add(policy);
+			}
+		}
+		BenefitAvailabilityPolicy condition = conditions.isEmpty() ? AlwaysAvailable.INSTANCE
+				: conditions.size() == 1 ? conditions.get(0) : new AllOf(conditions);
+		return new RuleBasedAvailability(rule.trim(), condition, limits);
+	}
+
+	private static boolean containsLimit(BenefitAvailabilityPolicy policy) {
+		if (policy instanceof FrequencyLimit) {
+			return true;
+		} else if (policy instanceof AllOf all) {
+			return all.policies().stream().anyMatch(BenefitRules::containsLimit);
+		} else if (policy instanceof AnyOf any) {
+			return any.policies().stream().anyMatch(BenefitRules::containsLimit);
+		} else if (policy instanceof Not not) {
+			return containsLimit(not.policy());
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the day of a dining in the default time zone, as it is stored.
+	 */
+	static LocalDate dayOf(Dining dining) {
+		return Instant.ofEpochMilli(dining.getDate().inMilliseconds()).atZone(ZoneId.systemDefault()).toLocalDate();
+	}
+
+	record AllOf(List<BenefitAvailabilityPolicy> policies) implements BenefitAvailabilityPolicy {
+
+		public boolean isBenefitAvailableFor(Account account, Dining dining) {
+			for (BenefitAvailabilityPolicy policy : policies) {
+				if (!policy.isBenefitAvailableFor(account, dining)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	record AnyOf(List<BenefitAvailabilityPolicy> policies) implements BenefitAvailabilityPolicy {
+
+		public boolean isBenefitAvailableFor(Account account, Dining dining) {
+			for (BenefitAvailabilityPolicy policy : policies) {
+				if (policy.isBenefitAvailableFor(account, dining)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	record Not(BenefitAvailabilityPolicy policy) implements BenefitAvailabilityPolicy {
+
+		public boolean isBenefitAvailableFor(Account account, Dining dining) {
+			return !policy.isBenefitAvailableFor(account, dining);
+		}
+	}
+
+	record OnDays(Set<DayOfWeek> days) implements BenefitAvailabilityPolicy {
+
+		public boolean isBenefitAvailableFor(Account account, Dining dining) {
+			return days.contains(dayOf(dining).getDayOfWeek());
+		}
+	}
+
+	record MinimumAmount(MonetaryAmount amount) implements BenefitAvailabilityPolicy {
+
+		public boolean isBenefitAvailableFor(Account account, Dining dining) {
+			return !amount.greaterThan(dining.getAmount());
+		}
+	}
+
+	/**
+	 * At most a number of rewarded dinings per account at a restaurant in a
+	 * period. Only evaluated by {@link RuleBasedAvailability}, which counts
+	 * the dinings it rewards.
+	 */
+	record FrequencyLimit(int max, DiningCounters.Period period, DiningCounters counters)
+			implements BenefitAvailabilityPolicy {
+
+		public boolean isBenefitAvailableFor(Account account, Dining dining) {
+			return counters.count(key(account, dining)) < max;
+		}
+
+		boolean tryCount(Account account, Dining dining) {
+			return counters.tryIncrement(key(account, dining), max);
+		}
+
+		void uncount(Account account, Dining dining) {
+			counters.decrement(key(account, dining));
+		}
+
+		private DiningCounters.Key key(Account account, Dining dining) {
+			return DiningCounters.Key.of(account.getNumber(), dining.getMerchantNumber(), period, dayOf(dining));
+		}
+	}
+
+	/**
+	 * A recursive descent parser of rules.
+	 */
+	private static final class Parser {
+
+		private final String rule;
+
+		private final List<String> tokens = new ArrayList<String>();
+
+		private int position;
+
+		Parser(String rule) {
+			this.rule = rule;
+			Matcher matcher = TOKEN.matcher(rule);
+			while (matcher.find()) {
+				tokens.add(matcher.group());
+			}
+		}
+
+		BenefitAvailabilityPolicy parse() {
+			BenefitAvailabilityPolicy policy = disjunction();
+			if (position < tokens.size()) {
+				throw invalid("'and', 'or' or the end of the rule");
+			}
+			return policy;
+		}
+
+		private BenefitAvailabilityPolicy disjunction() {
+			List<BenefitAvailabilityPolicy> policies = new ArrayList<BenefitAvailabilityPolicy>();
+			policies.add(conjunction());
+			while (accept("or")) {
+				policies.add(conjunction());
+			}
+			return policies.size() == 1 ? policies.get(0) : new AnyOf(policies);
+		}
+
+		private BenefitAvailabilityPolicy conjunction() {
+			List<BenefitAvailabilityPolicy> policies = new ArrayList<BenefitAvailabilityPolicy>();
+			policies.add(unary());
+			while (accept("and")) {
+				policies.add(unary());
+			}
+			return policies.size() == 1 ? policies.get(0) : new AllOf(policies);
+		}
+
+		private BenefitAvailabilityPolicy unary() {
+			if (accept("not")) {
+				return new Not(unary());
+			} else if (accept("(")) {
+				BenefitAvailabilityPolicy policy = disjunction();
+				expect(")");
+				return policy;
+			}
+			return condition();
+		}
+
+		private BenefitAvailabilityPolicy condition() {
+			String token = peek("a condition").toLowerCase();
+			switch (token) {
+			case "always":
+				position++;
+				return AlwaysAvailable.INSTANCE;
+			case "never":
+				position++;
+				return NeverAvailable.INSTANCE;
+			case "weekdays":
+				position++;
+				return new OnDays(EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+			case "weekends":
+				position++;
+				return new OnDays(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+			case "on":
+				position++;
+				Set<DayOfWeek> days = EnumSet.of(day());
+				while (accept(",")) {
+					days.add(day());
+				}
+				return new OnDays(days);
+			case "min-amount":
+				position++;
+				try {
+					MonetaryAmount amount = MonetaryAmount.valueOf(peek("an amount"));
+					position++;
+					return new MinimumAmount(amount);
+				} catch (RuntimeException e) {
+					throw invalid("an amount");
+				}
+			case "max":
+				position++;
+				int max;
+				try {
+					max = Integer.parseInt(peek("a number of dinings"));
+				} catch (NumberFormatException e) {
+					throw invalid("a number of dinings");
+				}
+				position++;
+				expect("per");
+				try {
+					DiningCounters.Period period = DiningCounters.Period.valueOf(peek("day, week or month").toUpperCase());
+					position++;
+					return new FrequencyLimit(max, period, DiningCounters.INSTANCE);
+				} catch (IllegalArgumentException e) {
+					throw invalid("day, week or month");
+				}
+			default:
+				throw invalid("a condition");
+			}
+		}
+
+		private DayOfWeek day() {
+			String token = peek("a day of the week").toUpperCase();
+			for (DayOfWeek day : DayOfWeek.values()) {
+				if (token.length() >= 3 && day.name().startsWith(token)) {
+					position++;
+					return day;
+				}
+			}
+			throw invalid("a day of the week");
+		}
+
+		private boolean accept(String keyword) {
+			if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(String keyword) {
+			if (!accept(keyword)) {
+				throw invalid("'" + keyword + "'");
+			}
+		}
+
+		private String peek(String expected) {
+			if (position == tokens.size()) {
+				throw invalid(expected);
+			}
+			return tokens.get(position);
+		}
+
+		private IllegalArgumentException invalid(String expected) {
+			return new IllegalArgumentException("Not a valid benefit rule '" + rule + "': expected " + expected
+					+ (position < tokens.size() ? " at '" + tokens.get(position) + "'" : " at the end"));
+		}
+	}
+}
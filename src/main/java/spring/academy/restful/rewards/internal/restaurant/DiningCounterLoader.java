@@ -0,0 +1,127 @@
+package spring.academy.restful.rewards.internal.restaurant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Seeds the {@link DiningCounters} of the frequency limits of benefit rules
+ * from the rewards of the current periods when the application starts, and
+ * evicts the counters of past periods.
+ * <p>
+ * Only restaurants whose rule has frequency limits are counted, each with
+ * one range scan of the <tt>IX_REWARD_MERCHANT_DATE</tt> index. Counters are
+ * kept for {@value #GRACE_DAYS} days after their period ended, for dinings
+ * that are rewarded late.
+ */
+public class DiningCounterLoader implements SmartLifecycle {
+
+	static final int GRACE_DAYS = 7;
+
+	static final String RULES_SQL = "select MERCHANT_NUMBER, BENEFIT_AVAILABILITY_POLICY from T_RESTAURANT"
+			+ " where BENEFIT_AVAILABILITY_POLICY not in ('A', 'N')";
+
+	static final String REWARDED_DININGS_SQL = "select ACCOUNT_NUMBER, DINING_DATE from T_REWARD"
+			+ " where DINING_MERCHANT_NUMBER = ? and DINING_DATE >= ? and REWARD_AMOUNT > 0 and CORRECTS_ID is null";
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final DiningCounters counters;
+
+	private volatile boolean running;
+
+	public DiningCounterLoader(DataSource dataSource) {
+		this(dataSource, DiningCounters.INSTANCE);
+	}
+
+	DiningCounterLoader(DataSource dataSource, DiningCounters counters) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.counters = counters;
+	}
+
+	/**
+	 * Counts the rewarded dinings of the current periods of all frequency
+	 * limits, as of a day.
+	 *
+	 * @return the number of rewarded dinings counted
+	 */
+	int load(LocalDate today) {
+		Map<String, Set<DiningCounters.Period>> limitedMerchants = new HashMap<String, Set<DiningCounters.Period>>();
+		jdbcTemplate.query(RULES_SQL, (RowCallbackHandler) rs -> {
+			String merchantNumber = rs.getString("MERCHANT_NUMBER");
+			try {
+				if (BenefitRules.compile(rs.getString("BENEFIT_AVAILABILITY_POLICY")) instanceof RuleBasedAvailability rules) {
+					for (BenefitRules.FrequencyLimit limit : rules.getLimits()) {
+						limitedMerchants.computeIfAbsent(merchantNumber, m -> EnumSet.noneOf(DiningCounters.Period.class))
+								.add(limit.period());
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				logger.warn("Not counting dinings at restaurant {}: {}", merchantNumber, e.getMessage());
+			}
+		});
+		int[] dinings = new int[1];
+		limitedMerchants.forEach((merchantNumber, periods) -> {
+			// From the start of the oldest period whose counters are kept
+			LocalDate kept = today.minusDays(GRACE_DAYS);
+			LocalDate since = kept;
+			for (DiningCounters.Period period : periods) {
+				if (period.start(kept).isBefore(since)) {
+					since = period.start(kept);
+				}
+			}
+			jdbcTemplate.query(REWARDED_DININGS_SQL, (RowCallbackHandler) rs -> {
+				String accountNumber = rs.getString("ACCOUNT_NUMBER");
+				LocalDate day = rs.getDate("DINING_DATE").toLocalDate();
+				for (DiningCounters.Period period : periods) {
+					counters.increment(DiningCounters.Key.of(accountNumber, merchantNumber, period, day));
+				}
+				dinings[0]++;
+			}, merchantNumber, Date.valueOf(since));
+		});
+		logger.info("Counted {} rewarded dinings at {} restaurants with frequency limits", dinings[0],
+				limitedMerchants.size());
+		return dinings[0];
+	}
+
+	/**
+	 * Evicts the counters of periods that ended more than
+	 * {@value #GRACE_DAYS} days ago.
+	 */
+	@Scheduled(fixedDelayString = "${rewards.restaurants.dining-counters.eviction-interval:PT1H}")
+	public void evict() {
+		int evicted = counters.evictPeriodsEndedBefore(LocalDate.now().minusDays(GRACE_DAYS));
+		if (evicted != 0) {
+			logger.debug("Evicted {} dining counters", evicted);
+		}
+	}
+
+	@Override
+	public void start() {
+		load(LocalDate.now());
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+}
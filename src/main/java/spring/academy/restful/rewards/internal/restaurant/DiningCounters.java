@@ -0,0 +1,122 @@
+package spring.academy.restful.rewards.internal.restaurant;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the rewarded dinings of each account at each restaurant per day,
+ * week or month, in memory, for the frequency limits of benefit rules.
+ * <p>
+ * The counters are local to this node and start empty, so they are seeded
+ * from the rewards of the current periods when the application starts, see
+ * {@link DiningCounterLoader}. Counters of periods long past are evicted;
+ * a dining dated in an evicted period counts from zero again.
+ */
+class DiningCounters {
+
+	/**
+	 * The counters used by all compiled benefit rules. Restaurants are created
+	 * by JPA, so their rules cannot be handed the counters by Spring.
+	 */
+	static final DiningCounters INSTANCE = new DiningCounters();
+
+	private final Map<Key, AtomicInteger> counters = new ConcurrentHashMap<Key, AtomicInteger>();
+
+	/**
+	 * Counts a rewarded dining unless the maximum has been reached.
+	 *
+	 * @return true if the dining was counted
+	 */
+	boolean tryIncrement(Key key, int max) {
+		AtomicInteger counter = counters.computeIfAbsent(key, k -> new AtomicInteger());
+		int count;
+		do {
+			count = counter.get();
+			if (count >= max) {
+				return false;
+			}
+		} while (!counter.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	/**
+	 * Counts a rewarded dining regardless of any maximum.
+	 */
+	void increment(Key key) {
+		counters.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+	}
+
+	/**
+	 * Uncounts a dining counted by {@link #tryIncrement(Key, int)} that was
+	 * not rewarded after all.
+	 */
+	void decrement(Key key) {
+		AtomicInteger counter = counters.get(key);
+		if (counter != null) {
+			counter.decrementAndGet();
+		}
+	}
+
+	int count(Key key) {
+		AtomicInteger counter = counters.get(key);
+		return counter == null ? 0 : counter.get();
+	}
+
+	/**
+	 * Evicts the counters of all periods that ended before a day.
+	 *
+	 * @return the number of counters evicted
+	 */
+	int evictPeriodsEndedBefore(LocalDate day) {
+		int size = counters.size();
+		counters.keySet().removeIf(key -> !key.period().next(key.periodStart()).isAfter(day));
+		return size - counters.size();
+	}
+
+	void clear() {
+		counters.clear();
+	}
+
+	/**
+	 * The period of a frequency limit.
+	 */
+	enum Period {
+
+		DAY, WEEK, MONTH;
+
+		/**
+		 * Returns the first day of the period containing a day. Weeks start on
+		 * Monday.
+		 */
+		LocalDate start(LocalDate day) {
+			return switch (this) {
+			case DAY -> day;
+			case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+			case MONTH -> day.withDayOfMonth(1);
+			};
+		}
+
+		/**
+		 * Returns the first day of the period following the one starting on a
+		 * day.
+		 */
+		LocalDate next(LocalDate start) {
+			return switch (this) {
+			case DAY -> start.plusDays(1);
+			case WEEK -> start.plusWeeks(1);
+			case MONTH -> start.plusMonths(1);
+			};
+		}
+	}
+
+	record Key(String accountNumber, String merchantNumber, Period period, LocalDate periodStart) {
+
+		static Key of(String accountNumber, String merchantNumber, Period period, LocalDate day) {
+			return new Key(accountNumber, merchantNumber, period, period.start(day));
+		}
+	}
+}
@@ -51,6 +51,14 @@ public class Restaurant {
 	//@Column(name = "BENEFIT_AVAILABILITY_POLICY")
 	private BenefitAvailabilityPolicy benefitAvailabilityPolicy;
 
+	/**
+	 * The code or rule the policy was read from, returned as it is so that
+	 * loading a restaurant never makes it dirty, or null once the policy was
+	 * set otherwise.
+	 */
+	@Transient
+	private String dbBenefitAvailabilityPolicy;
+
 	protected Restaurant() {
 	}
 
@@ -112,6 +120,7 @@ public class Restaurant {
 	public void setBenefitAvailabilityPolicy(
 			BenefitAvailabilityPolicy benefitAvailabilityPolicy) {
 		this.benefitAvailabilityPolicy = benefitAvailabilityPolicy;
+		this.dbBenefitAvailabilityPolicy = null;
 	}
 
 	/**
@@ -162,35 +171,34 @@ public class Restaurant {
 
 	// Internal methods for JPA only - hence they are protected.
 	/**
-	 * Sets this restaurant's benefit availability policy from the code stored
-	 * in the underlying column. This method is a database specific accessor
-	 * using the JPA 2 @Access annotation.
+	 * Sets this restaurant's benefit availability policy from the rule stored
+	 * in the underlying column, see {@link BenefitRules}. This method is a
+	 * database specific accessor using the JPA 2 @Access annotation.
 	 */
 	@Access(AccessType.PROPERTY)
 	@Column(name = "BENEFIT_AVAILABILITY_POLICY")
 	protected void setDbBenefitAvailabilityPolicy(String policyCode) {
-		if ("A".equals(policyCode)) {
-			benefitAvailabilityPolicy = AlwaysAvailable.INSTANCE;
-		} else if ("N".equals(policyCode)) {
-			benefitAvailabilityPolicy = NeverAvailable.INSTANCE;
-		} else {
-			throw new IllegalArgumentException("Not a supported policy code "
-					+ policyCode);
-		}
+		benefitAvailabilityPolicy = BenefitRules.compile(policyCode);
+		dbBenefitAvailabilityPolicy = policyCode;
 	}
 
 	/**
-	 * Returns this restaurant's benefit availability policy code for storage in
-	 * the underlying column. This method is a database specific accessor using
-	 * the JPA 2 @Access annotation.
+	 * Returns this restaurant's benefit availability policy code or rule for
+	 * storage in the underlying column, exactly as it was read unless the
+	 * policy was changed since. This method is a database specific accessor
+	 * using the JPA 2 @Access annotation.
 	 */
 	@Access(AccessType.PROPERTY)
 	@Column(name = "BENEFIT_AVAILABILITY_POLICY")
 	protected String getDbBenefitAvailabilityPolicy() {
-		if (benefitAvailabilityPolicy == AlwaysAvailable.INSTANCE) {
+		if (dbBenefitAvailabilityPolicy != null) {
+			return dbBenefitAvailabilityPolicy;
+		} else if (benefitAvailabilityPolicy == AlwaysAvailable.INSTANCE) {
 			return "A";
 		} else if (benefitAvailabilityPolicy == NeverAvailable.INSTANCE) {
 			return "N";
+		} else if (benefitAvailabilityPolicy instanceof RuleBasedAvailability rules) {
+			return rules.getRule();
 		} else {
 			throw new IllegalArgumentException("No policy code for "
 					+ benefitAvailabilityPolicy.getClass());
@@ -0,0 +1,84 @@
+package spring.academy.restful.rewards.internal.restaurant;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.util.List;
+
+/**
+ * A benefit availability policy compiled from a rule by {@link BenefitRules},
+ * for instance <tt>weekdays and min-amount 20.00 and max 3 per month</tt>.
+ * <p>
+ * Benefit is available if the dining meets the conditions of the rule and
+ * is within every frequency limit. The limits are checked last, and counting
+ * the dining against one limit is undone if a later one is reached, so a
+ * dining only counts if it is rewarded. Counted in a transaction, the dining
+ * is uncounted again if the transaction does not commit, so a rolled back
+ * reward does not use up a slot of the limits.
+ */
+public class RuleBasedAvailability implements BenefitAvailabilityPolicy {
+
+	private final String rule;
+
+	private final BenefitAvailabilityPolicy condition;
+
+	private final List<BenefitRules.FrequencyLimit> limits;
+
+	RuleBasedAvailability(String rule, BenefitAvailabilityPolicy condition, List<BenefitRules.FrequencyLimit> limits) {
+		this.rule = rule;
+		this.condition = condition;
+		this.limits = List.copyOf(limits);
+	}
+
+	public boolean isBenefitAvailableFor(Account account, Dining dining) {
+		if (!condition.isBenefitAvailableFor(account, dining)) {
+			return false;
+		}
+		for (int i = 0; i < limits.size(); i++) {
+			if (!limits.get(i).tryCount(account, dining)) {
+				for (int j = 0; j < i; j++) {
+					limits.get(j).uncount(account, dining);
+				}
+				return false;
+			}
+		}
+		if (!limits.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status != STATUS_COMMITTED) {
+						uncount(account, dining);
+					}
+				}
+			});
+		}
+		return true;
+	}
+
+	private void uncount(Account account, Dining dining) {
+		for (BenefitRules.FrequencyLimit limit : limits) {
+			limit.uncount(account, dining);
+		}
+	}
+
+	/**
+	 * Returns the rule this policy was compiled from.
+	 */
+	public String getRule() {
+		return rule;
+	}
+
+	BenefitAvailabilityPolicy getCondition() {
+		return condition;
+	}
+
+	List<BenefitRules.FrequencyLimit> getLimits() {
+		return limits;
+	}
+
+	public String toString() {
+		return rule;
+	}
+}
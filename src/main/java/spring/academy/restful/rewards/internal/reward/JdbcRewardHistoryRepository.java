@@ -0,0 +1,107 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import spring.academy.restful.rewards.RewardRecord;
+import spring.academy.restful.rewards.RewardTotals;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * JDBC implementation of a reward history repository.
+ * <p>
+ * Account pages are read in two steps: the ids of the page come from the
+ * <tt>IX_REWARD_ACCOUNT_DATE</tt> index alone, which holds the account
+ * number, the reward date and the id, and only the rows of the page are
+ * then read from the table by id. A deep page costs the same as the first.
+ * Looking a reward up by confirmation number also reads the name on its
+ * account, so callers can authorize access without another query. Totals
+ * are read from the rows maintained by {@link RewardAggregates}.
+ */
+public class JdbcRewardHistoryRepository implements RewardHistoryRepository {
+
+	static final String COLUMNS = "r.ID, r.CONFIRMATION_NUMBER, r.REWARD_AMOUNT, r.REWARD_DATE, r.ACCOUNT_NUMBER,"
+			+ " r.DINING_MERCHANT_NUMBER, r.DINING_DATE, r.DINING_AMOUNT";
+
+	static final String BY_CONFIRMATION_NUMBER_SQL = "select " + COLUMNS + ", a.NAME"
+			+ " from T_REWARD r left join T_ACCOUNT a on a.NUMBER = r.ACCOUNT_NUMBER where r.CONFIRMATION_NUMBER = ?";
+
+	static final String FIRST_PAGE_SQL = "select " + COLUMNS + " from (select ID from T_REWARD"
+			+ " where ACCOUNT_NUMBER = ? order by REWARD_DATE desc, ID desc limit ?) page"
+			+ " join T_REWARD r on r.ID = page.ID order by r.REWARD_DATE desc, r.ID desc";
+
+	static final String NEXT_PAGE_SQL = "select " + COLUMNS + " from (select ID from T_REWARD"
+			+ " where ACCOUNT_NUMBER = ? and (REWARD_DATE < ? or (REWARD_DATE = ? and ID < ?))"
+			+ " order by REWARD_DATE desc, ID desc limit ?) page"
+			+ " join T_REWARD r on r.ID = page.ID order by r.REWARD_DATE desc, r.ID desc";
+
+	static final String ACCOUNT_MONTH_TOTALS_SQL = "select REWARD_COUNT, REWARD_TOTAL, DINING_TOTAL"
+			+ " from T_REWARD_ACCOUNT_MONTH where ACCOUNT_NUMBER = ? and REWARD_MONTH = ?";
+
+	static final String MERCHANT_DAY_TOTALS_SQL = "select REWARD_COUNT, REWARD_TOTAL, DINING_TOTAL"
+			+ " from T_REWARD_MERCHANT_DAY where MERCHANT_NUMBER = ? and DINING_DAY = ?";
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private static final RowMapper<RewardRecord> REWARD_MAPPER = (rs, rowNum) -> mapReward(rs, null);
+
+	private static final RowMapper<RewardRecord> OWNED_REWARD_MAPPER = (rs, rowNum) -> mapReward(rs,
+			rs.getString("NAME"));
+
+	private static final RowMapper<RewardTotals> TOTALS_MAPPER = (rs, rowNum) -> new RewardTotals(
+			rs.getLong("REWARD_COUNT"), rs.getBigDecimal("REWARD_TOTAL"), rs.getBigDecimal("DINING_TOTAL"));
+
+	private JdbcTemplate jdbcTemplate;
+
+	public JdbcRewardHistoryRepository(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		logger.info("Created JdbcRewardHistoryRepository");
+	}
+
+	@Override
+	public RewardRecord findByConfirmationNumber(String confirmationNumber) {
+		List<RewardRecord> rewards = jdbcTemplate.query(BY_CONFIRMATION_NUMBER_SQL, OWNED_REWARD_MAPPER,
+				confirmationNumber);
+		return rewards.isEmpty() ? null : rewards.get(0);
+	}
+
+	@Override
+	public List<RewardRecord> findByAccountNumber(String accountNumber, LocalDate afterDate, long afterId,
+			int limit) {
+		if (afterDate == null) {
+			return jdbcTemplate.query(FIRST_PAGE_SQL, REWARD_MAPPER, accountNumber, limit);
+		}
+		Date date = Date.valueOf(afterDate);
+		return jdbcTemplate.query(NEXT_PAGE_SQL, REWARD_MAPPER, accountNumber, date, date, afterId, limit);
+	}
+
+	@Override
+	public RewardTotals findAccountMonthTotals(String accountNumber, YearMonth month) {
+		return findTotals(ACCOUNT_MONTH_TOTALS_SQL, accountNumber, month.atDay(1));
+	}
+
+	@Override
+	public RewardTotals findMerchantDayTotals(String merchantNumber, LocalDate day) {
+		return findTotals(MERCHANT_DAY_TOTALS_SQL, merchantNumber, day);
+	}
+
+	private RewardTotals findTotals(String sql, String number, LocalDate day) {
+		List<RewardTotals> totals = jdbcTemplate.query(sql, TOTALS_MAPPER, number, Date.valueOf(day));
+		return totals.isEmpty() ? RewardTotals.NONE : totals.get(0);
+	}
+
+	private static RewardRecord mapReward(ResultSet rs, String owner) throws SQLException {
+		return new RewardRecord(rs.getLong("ID"), rs.getString("CONFIRMATION_NUMBER"),
+				rs.getBigDecimal("REWARD_AMOUNT"), rs.getDate("REWARD_DATE").toLocalDate(),
+				rs.getString("ACCOUNT_NUMBER"), rs.getString("DINING_MERCHANT_NUMBER"),
+				rs.getDate("DINING_DATE").toLocalDate(), rs.getBigDecimal("DINING_AMOUNT"), owner);
+	}
+}
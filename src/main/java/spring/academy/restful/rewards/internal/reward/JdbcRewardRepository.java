@@ -4,18 +4,27 @@ import spring.academy.restful.common.datetime.SimpleDate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
 import spring.academy.restful.rewards.AccountContribution;
 import spring.academy.restful.rewards.Dining;
 import spring.academy.restful.rewards.RewardConfirmation;
+import spring.academy.restful.rewards.RewardConfirmedEvent;
 
 import javax.sql.DataSource;
+import java.util.Date;
 
 /**
  * JDBC implementation of a reward repository that records the result of a
  * reward transaction by inserting a reward confirmation record.
+ * <p>
+ * Adds the reward to the totals of its account and month, and of its
+ * restaurant and day, and publishes a {@link RewardConfirmedEvent}, in the
+ * inserting transaction.
  */
-public class JdbcRewardRepository implements RewardRepository {
+public class JdbcRewardRepository implements RewardRepository, ApplicationEventPublisherAware {
 
 	public static final String TYPE = "jdbc";
 
@@ -23,25 +32,45 @@ public class JdbcRewardRepository implements RewardRepository {
 
 	private JdbcTemplate jdbcTemplate;
 
+	private RewardAggregates aggregates;
+
+	private ApplicationEventPublisher eventPublisher;
+
 	@Autowired
 	public JdbcRewardRepository(DataSource dataSource) {
 		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.aggregates = new RewardAggregates(dataSource);
 		logger.info("Created JdbcRewardRepository");
 	}
 
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
 	@Override
 	public String getInfo() {
 		return TYPE;
 	}
 
 	@Override
+	@Transactional
 	public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
 		String sql = "insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT) values (?, ?, ?, ?, ?, ?, ?)";
 		String confirmationNumber = nextConfirmationNumber();
-		jdbcTemplate.update(sql, confirmationNumber, contribution.getAmount().asBigDecimal(),
-				SimpleDate.today().asDate(), contribution.getAccountNumber(), dining.getMerchantNumber(),
-				dining.getDate().asDate(), dining.getAmount().asBigDecimal());
-		return new RewardConfirmation(confirmationNumber, contribution);
+		Date rewardDate = SimpleDate.today().asDate();
+		aggregates.enter();
+		jdbcTemplate.update(sql, confirmationNumber, contribution.getAmount().asBigDecimal(), rewardDate,
+				contribution.getAccountNumber(), dining.getMerchantNumber(), dining.getDate().asDate(),
+				dining.getAmount().asBigDecimal());
+		RewardAggregates.Batch batch = new RewardAggregates.Batch();
+		batch.add(contribution.getAccountNumber(), rewardDate, dining.getMerchantNumber(), dining.getDate().asDate(),
+				contribution.getAmount().asBigDecimal(), dining.getAmount().asBigDecimal());
+		aggregates.add(batch);
+		RewardConfirmation confirmation = new RewardConfirmation(confirmationNumber, contribution);
+		if (eventPublisher != null)
+			eventPublisher.publishEvent(new RewardConfirmedEvent(confirmation, dining));
+		return confirmation;
 	}
 
 	private String nextConfirmationNumber() {
@@ -0,0 +1,271 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.academy.restful.common.datetime.SimpleDate;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.rewards.AccountContribution;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.RewardConfirmation;
+import spring.academy.restful.rewards.RewardConfirmedEvent;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reward repository that acknowledges a reward as soon as it is in a local
+ * {@link RewardJournal}, without waiting for the database. A scheduled
+ * {@link #applyJournal()} inserts the journaled rewards into
+ * <tt>T_REWARD</tt> in JDBC batches, and rewards journaled but not applied
+ * before a crash are applied when the repository starts.
+ * <p>
+ * Confirmation numbers cannot come from the database sequence here. They are
+ * the node id followed by a number that increases across restarts, and
+ * applying skips any confirmation number already in <tt>T_REWARD</tt>, so
+ * replaying a segment twice is harmless. A confirmed reward only shows up in
+ * <tt>T_REWARD</tt> once the journal has been applied, which is also when
+ * its {@link RewardConfirmedEvent} is published and it is added to the
+ * reward totals, in the inserting transaction.
+ */
+public class JournaledRewardRepository
+		implements RewardRepository, SmartLifecycle, ApplicationEventPublisherAware {
+
+	public static final String TYPE = "journal";
+
+	static final int MAX_NODE_ID_LENGTH = 12;
+
+	static final String INSERT_SQL = "insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT) values (?, ?, ?, ?, ?, ?, ?)";
+
+	static final String EXISTING_SQL = "select CONFIRMATION_NUMBER from T_REWARD where CONFIRMATION_NUMBER in (:numbers)";
+
+	static final int BATCH_SIZE = 500;
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final RewardAggregates aggregates;
+
+	private final Path directory;
+
+	private final Duration commitDelay;
+
+	private final String nodeId;
+
+	private final AtomicLong lastNumber = new AtomicLong();
+
+	private volatile RewardJournal journal;
+
+	private ApplicationEventPublisher eventPublisher;
+
+	/**
+	 * Creates a new journaled reward repository.
+	 * 
+	 * @param dataSource
+	 *            the rewards database
+	 * @param transactionManager
+	 *            the transaction manager of the rewards database
+	 * @param directory
+	 *            the directory of the journal, private to this node
+	 * @param commitDelay
+	 *            how long to wait for more rewards before forcing the journal
+	 * @param nodeId
+	 *            identifies this node, prefixes confirmation numbers
+	 */
+	public JournaledRewardRepository(DataSource dataSource, PlatformTransactionManager transactionManager,
+			Path directory, Duration commitDelay, String nodeId) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.aggregates = new RewardAggregates(dataSource);
+		this.directory = directory;
+		this.commitDelay = commitDelay;
+		this.nodeId = nodeId.length() > MAX_NODE_ID_LENGTH ? nodeId.substring(0, MAX_NODE_ID_LENGTH) : nodeId;
+		logger.info("Created JournaledRewardRepository");
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	@Override
+	public String getInfo() {
+		return TYPE;
+	}
+
+	@Override
+	public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
+		RewardJournal journal = this.journal;
+		if (journal == null) {
+			throw new IllegalStateException("JournaledRewardRepository has not been started");
+		}
+		String confirmationNumber = nextConfirmationNumber();
+		try {
+			journal.append(new RewardJournal.Entry(confirmationNumber, contribution.getAmount().asBigDecimal(),
+					new Date(SimpleDate.today().inMilliseconds()), contribution.getAccountNumber(),
+					dining.getMerchantNumber(), new Date(dining.getDate().inMilliseconds()),
+					dining.getAmount().asBigDecimal()));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to journal reward " + confirmationNumber, e);
+		}
+		return new RewardConfirmation(confirmationNumber, contribution);
+	}
+
+	/**
+	 * Inserts the rewards of all sealed journal segments into
+	 * <tt>T_REWARD</tt>, then deletes the segments.
+	 * 
+	 * @return the number of rewards inserted
+	 */
+	@Scheduled(fixedDelayString = "${rewards.reward-journal.apply-interval:PT1S}")
+	public synchronized int applyJournal() {
+		RewardJournal journal = this.journal;
+		if (journal == null) {
+			return 0;
+		}
+		try {
+			long sealed = journal.seal();
+			List<Long> segments = new ArrayList<Long>();
+			List<RewardJournal.Entry> entries = new ArrayList<RewardJournal.Entry>();
+			for (long segment : journal.segments()) {
+				if (segment <= sealed) {
+					journal.read(segment, entries::add);
+					segments.add(segment);
+				}
+			}
+			int inserted = entries.isEmpty() ? 0 : transactionTemplate.execute(status -> insert(entries));
+			for (long segment : segments) {
+				journal.delete(segment);
+			}
+			if (inserted != 0) {
+				logger.debug("Applied {} journaled rewards from {} segments", inserted, segments.size());
+			}
+			return inserted;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to apply the reward journal in " + directory, e);
+		}
+	}
+
+	/**
+	 * Opens the journal and applies what a previous run left in it.
+	 */
+	@Override
+	public synchronized void start() {
+		if (journal != null) {
+			return;
+		}
+		try {
+			journal = new RewardJournal(directory, commitDelay);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to open the reward journal in " + directory, e);
+		}
+		int replayed = applyJournal();
+		if (replayed != 0) {
+			logger.info("Replayed {} journaled rewards", replayed);
+		}
+	}
+
+	/**
+	 * Applies what is still journaled before closing the journal.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (journal == null) {
+			return;
+		}
+		applyJournal();
+		try {
+			journal.close();
+		} catch (IOException e) {
+			logger.warn("Unable to close the reward journal", e);
+		}
+		journal = null;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return journal != null;
+	}
+
+	private int insert(List<RewardJournal.Entry> entries) {
+		int inserted = 0;
+		for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+			List<RewardJournal.Entry> chunk = entries.subList(from, Math.min(from + BATCH_SIZE, entries.size()));
+			List<String> numbers = new ArrayList<String>(chunk.size());
+			for (RewardJournal.Entry entry : chunk) {
+				numbers.add(entry.confirmationNumber());
+			}
+			// Already applied before a crash deleted the segment
+			Set<String> existing = new HashSet<String>(namedJdbcTemplate.queryForList(EXISTING_SQL,
+					new MapSqlParameterSource("numbers", numbers), String.class));
+			List<Object[]> rows = new ArrayList<Object[]>(chunk.size());
+			List<RewardJournal.Entry> applied = new ArrayList<RewardJournal.Entry>(chunk.size());
+			for (RewardJournal.Entry entry : chunk) {
+				if (!existing.contains(entry.confirmationNumber())) {
+					applied.add(entry);
+					rows.add(new Object[] { entry.confirmationNumber(), entry.rewardAmount(), entry.rewardDate(),
+							entry.accountNumber(), entry.diningMerchantNumber(), entry.diningDate(),
+							entry.diningAmount() });
+				}
+			}
+			aggregates.enter();
+			jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+			RewardAggregates.Batch batch = new RewardAggregates.Batch();
+			for (RewardJournal.Entry entry : applied) {
+				batch.add(entry.accountNumber(), entry.rewardDate(), entry.diningMerchantNumber(), entry.diningDate(),
+						entry.rewardAmount(), entry.diningAmount());
+			}
+			aggregates.add(batch);
+			inserted += rows.size();
+			if (eventPublisher != null) {
+				for (RewardJournal.Entry entry : applied) {
+					eventPublisher.publishEvent(confirmedEvent(entry));
+				}
+			}
+		}
+		return inserted;
+	}
+
+	private static RewardConfirmedEvent confirmedEvent(RewardJournal.Entry entry) {
+		AccountContribution contribution = new AccountContribution(entry.accountNumber(),
+				new MonetaryAmount(entry.rewardAmount()), Collections.emptySet());
+		Dining dining = new Dining(new MonetaryAmount(entry.diningAmount()), null, entry.diningMerchantNumber(),
+				SimpleDate.valueOf(entry.diningDate()));
+		return new RewardConfirmedEvent(new RewardConfirmation(entry.confirmationNumber(), contribution), dining);
+	}
+
+	/**
+	 * Returns the node id followed by a number in base 36: the current time
+	 * in milliseconds times 1000, or one more than the last number if that is
+	 * not greater.
+	 */
+	private String nextConfirmationNumber() {
+		long now = System.currentTimeMillis() * 1000;
+		long number = lastNumber.updateAndGet(last -> Math.max(last + 1, now));
+		return nodeId + "-" + Long.toString(number, 36);
+	}
+}
@@ -0,0 +1,146 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Rebuilds the reward totals maintained by {@link RewardAggregates} from
+ * <tt>T_REWARD</tt>, for instance after the aggregate tables were added to an
+ * existing database.
+ * <p>
+ * The highest id of <tt>T_REWARD</tt> is first read with the tables locked,
+ * once the transactions inserting rewards ended, so every reward up to it is
+ * committed. Ids are generated in increasing order, so rewards inserted later
+ * get higher ids. The ids up to it are split into ranges that are summed in
+ * parallel, each by a primary key range scan on its own connection. The
+ * totals then replace the aggregate tables in one transaction that locks the
+ * tables again and sums the rewards above that id. Rewards being confirmed
+ * meanwhile wait for the rebuilt totals to be committed.
+ */
+public class RewardAggregateRebuilder {
+
+	static final String ID_RANGE_SQL = "select min(ID) as MIN_ID, max(ID) as MAX_ID from T_REWARD";
+
+	static final String MAX_ID_SQL = "select coalesce(max(ID), 0) from T_REWARD";
+
+	static final String COLUMNS = "select ACCOUNT_NUMBER, REWARD_DATE, DINING_MERCHANT_NUMBER, DINING_DATE,"
+			+ " REWARD_AMOUNT, DINING_AMOUNT, CORRECTS_ID from T_REWARD";
+
+	static final String RANGE_SQL = COLUMNS + " where ID between ? and ?";
+
+	static final String AFTER_SQL = COLUMNS + " where ID > ?";
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final RewardAggregates aggregates;
+
+	private final int parallelism;
+
+	private final int rangeSize;
+
+	/**
+	 * Creates a new rebuilder.
+	 *
+	 * @param dataSource
+	 *            the rewards database
+	 * @param transactionManager
+	 *            the transaction manager of the rewards database
+	 * @param parallelism
+	 *            the number of ranges scanned at the same time, each holding
+	 *            a connection
+	 * @param rangeSize
+	 *            the number of ids in a range
+	 */
+	public RewardAggregateRebuilder(DataSource dataSource, PlatformTransactionManager transactionManager,
+			int parallelism, int rangeSize) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(1000);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.aggregates = new RewardAggregates(dataSource);
+		this.parallelism = parallelism;
+		this.rangeSize = rangeSize;
+	}
+
+	/**
+	 * Replaces the reward totals with the totals of all rewards in
+	 * <tt>T_REWARD</tt>.
+	 *
+	 * @return the number of rewards summed
+	 */
+	public synchronized long rebuild() {
+		long start = System.nanoTime();
+		// Every reward up to the low-water mark is committed, later ones are above it
+		long lowWaterMark = transactionTemplate.execute(status -> {
+			aggregates.lock();
+			return jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+		});
+		Map<String, Object> ids = jdbcTemplate.queryForMap(ID_RANGE_SQL);
+		long minId = ids.get("MIN_ID") == null ? 0 : ((Number) ids.get("MIN_ID")).longValue();
+		long maxId = Math.min(lowWaterMark, ids.get("MAX_ID") == null ? 0 : ((Number) ids.get("MAX_ID")).longValue());
+
+		RewardAggregates.Batch totals = new RewardAggregates.Batch();
+		if (ids.get("MIN_ID") != null) {
+			try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+				List<Future<RewardAggregates.Batch>> ranges = new ArrayList<Future<RewardAggregates.Batch>>();
+				for (long from = minId; from <= maxId; from += rangeSize) {
+					long first = from;
+					long last = Math.min(from + rangeSize - 1, maxId);
+					ranges.add(executor.submit(() -> scan(RANGE_SQL, first, last)));
+				}
+				for (Future<RewardAggregates.Batch> range : ranges) {
+					totals.addAll(range.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while rebuilding the reward totals", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Unable to rebuild the reward totals", e.getCause());
+			}
+		}
+
+		long rewards = transactionTemplate.execute(status -> {
+			aggregates.lock();
+			aggregates.clear();
+			totals.addAll(scan(AFTER_SQL, lowWaterMark));
+			aggregates.add(totals);
+			return totals.getRewards();
+		});
+		logger.info("Rebuilt reward totals of {} rewards into {} account months and {} merchant days in {} ms",
+				rewards, totals.getAccountMonths(), totals.getMerchantDays(), (System.nanoTime() - start) / 1000000);
+		return rewards;
+	}
+
+	private RewardAggregates.Batch scan(String sql, Object... args) {
+		RewardAggregates.Batch batch = new RewardAggregates.Batch();
+		jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+			rs.getLong("CORRECTS_ID");
+			if (rs.wasNull()) {
+				batch.add(rs.getString("ACCOUNT_NUMBER"), rs.getDate("REWARD_DATE"),
+						rs.getString("DINING_MERCHANT_NUMBER"), rs.getDate("DINING_DATE"),
+						rs.getBigDecimal("REWARD_AMOUNT"), rs.getBigDecimal("DINING_AMOUNT"));
+			} else {
+				batch.addCorrection(rs.getString("ACCOUNT_NUMBER"), rs.getDate("REWARD_DATE"),
+						rs.getString("DINING_MERCHANT_NUMBER"), rs.getDate("DINING_DATE"),
+						rs.getBigDecimal("REWARD_AMOUNT"));
+			}
+		}, args);
+		return batch;
+	}
+}
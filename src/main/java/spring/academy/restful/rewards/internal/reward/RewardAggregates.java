@@ -0,0 +1,267 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the reward totals per account and month in
+ * <tt>T_REWARD_ACCOUNT_MONTH</tt> and per merchant and dining day in
+ * <tt>T_REWARD_MERCHANT_DAY</tt>, by adding the rewards inserted into
+ * <tt>T_REWARD</tt> in the inserting transaction.
+ * <p>
+ * Rewards are first summed per row in a {@link Batch}, then added with one
+ * batched upsert per table: a <tt>MERGE</tt>, or <tt>INSERT ... ON DUPLICATE
+ * KEY UPDATE</tt> on MySQL. Rows are upserted in key order, so transactions
+ * adding to the same rows lock them in the same order and cannot deadlock.
+ * <p>
+ * MySQL has no table lock that waits for the transactions already writing,
+ * so there the single row of <tt>T_REWARD_AGGREGATE_LOCK</tt> coordinates
+ * them: transactions inserting rewards share its lock from before the first
+ * insert, and a rebuild locks it exclusively.
+ */
+class RewardAggregates {
+
+	static final String REWARD_TABLE = "T_REWARD";
+
+	static final String ACCOUNT_MONTH_TABLE = "T_REWARD_ACCOUNT_MONTH";
+
+	static final String MERCHANT_DAY_TABLE = "T_REWARD_MERCHANT_DAY";
+
+	static final String MARKER_SQL = "select ID from T_REWARD_AGGREGATE_LOCK where ID = 1";
+
+	static final int BATCH_SIZE = 1000;
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private final DataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private String accountMonthSql;
+
+	private String merchantDaySql;
+
+	private List<String> lockSql;
+
+	private String enterSql;
+
+	RewardAggregates(DataSource dataSource) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Waits for a rebuild of the totals to end, and keeps the next one from
+	 * starting, until the end of the transaction. Must run in the transaction
+	 * inserting rewards, before the first insert.
+	 */
+	void enter() {
+		initSql();
+		if (enterSql != null) {
+			jdbcTemplate.queryForList(enterSql);
+		}
+	}
+
+	/**
+	 * Adds the rewards of a batch to the totals. Must run in the transaction
+	 * inserting the rewards.
+	 */
+	void add(Batch batch) {
+		initSql();
+		upsert(accountMonthSql, batch.accountMonths);
+		upsert(merchantDaySql, batch.merchantDays);
+	}
+
+	/**
+	 * Deletes all totals. Used before adding totals rebuilt from
+	 * <tt>T_REWARD</tt>, in the same transaction.
+	 */
+	void clear() {
+		jdbcTemplate.update("delete from " + ACCOUNT_MONTH_TABLE);
+		jdbcTemplate.update("delete from " + MERCHANT_DAY_TABLE);
+	}
+
+	/**
+	 * Locks <tt>T_REWARD</tt> and the aggregate tables against writes until
+	 * the end of the transaction, after the transactions writing to them
+	 * ended. Used to rebuild the totals. On MySQL, only the transactions that
+	 * {@link #enter()}ed are waited for and kept out.
+	 */
+	void lock() {
+		initSql();
+		for (String sql : lockSql) {
+			jdbcTemplate.execute(sql);
+		}
+	}
+
+	private void upsert(String sql, Map<Key, Totals> totals) {
+		List<Object[]> rows = new ArrayList<Object[]>(Math.min(totals.size(), BATCH_SIZE));
+		for (Map.Entry<Key, Totals> entry : totals.entrySet()) {
+			Totals value = entry.getValue();
+			rows.add(new Object[] { entry.getKey().number(), java.sql.Date.valueOf(entry.getKey().day()),
+					value.count, value.rewardTotal, value.diningTotal });
+			if (rows.size() == BATCH_SIZE) {
+				jdbcTemplate.batchUpdate(sql, rows);
+				rows.clear();
+			}
+		}
+		if (!rows.isEmpty()) {
+			jdbcTemplate.batchUpdate(sql, rows);
+		}
+	}
+
+	private synchronized void initSql() {
+		if (accountMonthSql != null) {
+			return;
+		}
+		String product;
+		try {
+			product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+		} catch (MetaDataAccessException e) {
+			product = null;
+		}
+		product = product == null ? "" : product.toLowerCase();
+		boolean mysql = product.contains("mysql");
+		lockSql = product.contains("hsql") ? List.of("lock table " + REWARD_TABLE + " write, " + ACCOUNT_MONTH_TABLE
+				+ " write, " + MERCHANT_DAY_TABLE + " write")
+				: mysql ? List.of(MARKER_SQL + " for update")
+				: lockSql("lock table %s in exclusive mode");
+		enterSql = mysql ? MARKER_SQL + " lock in share mode" : null;
+		logger.info("Maintaining reward totals with {}", mysql ? "INSERT ... ON DUPLICATE KEY UPDATE" : "MERGE");
+		merchantDaySql = mysql ? insertOnDuplicateKeySql(MERCHANT_DAY_TABLE, "MERCHANT_NUMBER", "DINING_DAY")
+				: mergeSql(MERCHANT_DAY_TABLE, "MERCHANT_NUMBER", "varchar(10)", "DINING_DAY");
+		accountMonthSql = mysql ? insertOnDuplicateKeySql(ACCOUNT_MONTH_TABLE, "ACCOUNT_NUMBER", "REWARD_MONTH")
+				: mergeSql(ACCOUNT_MONTH_TABLE, "ACCOUNT_NUMBER", "varchar(9)", "REWARD_MONTH");
+	}
+
+	static List<String> lockSql(String format) {
+		return List.of(String.format(format, REWARD_TABLE), String.format(format, ACCOUNT_MONTH_TABLE),
+				String.format(format, MERCHANT_DAY_TABLE));
+	}
+
+	static String mergeSql(String table, String numberColumn, String numberType, String dayColumn) {
+		return "merge into " + table + " t using (values (cast(? as " + numberType + "), cast(? as date),"
+				+ " cast(? as integer), cast(? as decimal(12,2)), cast(? as decimal(14,2))))"
+				+ " as v (" + numberColumn + ", " + dayColumn + ", REWARD_COUNT, REWARD_TOTAL, DINING_TOTAL)"
+				+ " on t." + numberColumn + " = v." + numberColumn + " and t." + dayColumn + " = v." + dayColumn
+				+ " when matched then update set REWARD_COUNT = t.REWARD_COUNT + v.REWARD_COUNT,"
+				+ " REWARD_TOTAL = t.REWARD_TOTAL + v.REWARD_TOTAL, DINING_TOTAL = t.DINING_TOTAL + v.DINING_TOTAL"
+				+ " when not matched then insert (" + numberColumn + ", " + dayColumn
+				+ ", REWARD_COUNT, REWARD_TOTAL, DINING_TOTAL) values (v." + numberColumn + ", v." + dayColumn + ","
+				+ " v.REWARD_COUNT, v.REWARD_TOTAL, v.DINING_TOTAL)";
+	}
+
+	static String insertOnDuplicateKeySql(String table, String numberColumn, String dayColumn) {
+		return "insert into " + table + " (" + numberColumn + ", " + dayColumn
+				+ ", REWARD_COUNT, REWARD_TOTAL, DINING_TOTAL) values (?, ?, ?, ?, ?)"
+				+ " on duplicate key update REWARD_COUNT = REWARD_COUNT + values(REWARD_COUNT),"
+				+ " REWARD_TOTAL = REWARD_TOTAL + values(REWARD_TOTAL), DINING_TOTAL = DINING_TOTAL + values(DINING_TOTAL)";
+	}
+
+	/**
+	 * Rewards summed per row of the aggregate tables, not yet added to them.
+	 */
+	static final class Batch {
+
+		private final Map<Key, Totals> accountMonths = new TreeMap<Key, Totals>();
+
+		private final Map<Key, Totals> merchantDays = new TreeMap<Key, Totals>();
+
+		private long rewards;
+
+		/**
+		 * Adds a reward as inserted into <tt>T_REWARD</tt>.
+		 */
+		void add(String accountNumber, Date rewardDate, String merchantNumber, Date diningDate,
+				BigDecimal rewardAmount, BigDecimal diningAmount) {
+			LocalDate month = localDate(rewardDate).withDayOfMonth(1);
+			accountMonths.computeIfAbsent(new Key(accountNumber, month), key -> new Totals()).add(1, rewardAmount,
+					diningAmount);
+			merchantDays.computeIfAbsent(new Key(merchantNumber, localDate(diningDate)), key -> new Totals())
+					.add(1, rewardAmount, diningAmount);
+			rewards++;
+		}
+
+		/**
+		 * Adds a correction of a reward, inserted into <tt>T_REWARD</tt> as a
+		 * row of its own. It changes the reward total only.
+		 */
+		void addCorrection(String accountNumber, Date rewardDate, String merchantNumber, Date diningDate,
+				BigDecimal amount) {
+			LocalDate month = localDate(rewardDate).withDayOfMonth(1);
+			accountMonths.computeIfAbsent(new Key(accountNumber, month), key -> new Totals()).add(0, amount,
+					BigDecimal.ZERO);
+			merchantDays.computeIfAbsent(new Key(merchantNumber, localDate(diningDate)), key -> new Totals())
+					.add(0, amount, BigDecimal.ZERO);
+		}
+
+		/**
+		 * Adds all the rewards of another batch.
+		 */
+		void addAll(Batch other) {
+			other.accountMonths.forEach((key, totals) -> accountMonths.merge(key, totals, Totals::add));
+			other.merchantDays.forEach((key, totals) -> merchantDays.merge(key, totals, Totals::add));
+			rewards += other.rewards;
+		}
+
+		long getRewards() {
+			return rewards;
+		}
+
+		int getAccountMonths() {
+			return accountMonths.size();
+		}
+
+		int getMerchantDays() {
+			return merchantDays.size();
+		}
+
+		private static LocalDate localDate(Date date) {
+			// As the driver would store it, in the default time zone
+			return date instanceof java.sql.Date sqlDate ? sqlDate.toLocalDate()
+					: new java.sql.Date(date.getTime()).toLocalDate();
+		}
+	}
+
+	record Key(String number, LocalDate day) implements Comparable<Key> {
+
+		@Override
+		public int compareTo(Key other) {
+			int order = number.compareTo(other.number);
+			return order != 0 ? order : day.compareTo(other.day);
+		}
+	}
+
+	static final class Totals {
+
+		long count;
+
+		BigDecimal rewardTotal = BigDecimal.ZERO;
+
+		BigDecimal diningTotal = BigDecimal.ZERO;
+
+		Totals add(long count, BigDecimal rewardAmount, BigDecimal diningAmount) {
+			this.count += count;
+			this.rewardTotal = rewardTotal.add(rewardAmount);
+			this.diningTotal = diningTotal.add(diningAmount);
+			return this;
+		}
+
+		Totals add(Totals other) {
+			return add(other.count, other.rewardTotal, other.diningTotal);
+		}
+	}
+}
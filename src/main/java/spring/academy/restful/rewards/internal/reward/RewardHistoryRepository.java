@@ -0,0 +1,66 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import spring.academy.restful.rewards.RewardRecord;
+import spring.academy.restful.rewards.RewardTotals;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Reads back the rewards recorded by a {@link RewardRepository}.
+ */
+public interface RewardHistoryRepository {
+
+	/**
+	 * Finds a reward by its confirmation number.
+	 *
+	 * @param confirmationNumber
+	 *            the confirmation number
+	 * @return the reward, or null if there is no such reward
+	 */
+	public RewardRecord findByConfirmationNumber(String confirmationNumber);
+
+	/**
+	 * Returns a page of the rewards of an account, most recent first. Pages
+	 * are addressed by the last reward of the previous page rather than by
+	 * offset, so every page costs the same to read.
+	 *
+	 * @param accountNumber
+	 *            the account number
+	 * @param afterDate
+	 *            the reward date of the last reward of the previous page, or
+	 *            null for the first page
+	 * @param afterId
+	 *            the id of the last reward of the previous page, ignored for
+	 *            the first page
+	 * @param limit
+	 *            the maximum number of rewards returned
+	 * @return the rewards, ordered by reward date then id, both descending
+	 */
+	public List<RewardRecord> findByAccountNumber(String accountNumber, LocalDate afterDate, long afterId, int limit);
+
+	/**
+	 * Returns the totals of the rewards of an account in a month, by reward
+	 * date. Reads a single row of the maintained totals.
+	 *
+	 * @param accountNumber
+	 *            the account number
+	 * @param month
+	 *            the month
+	 * @return the totals, {@link RewardTotals#NONE} if there were no rewards
+	 */
+	public RewardTotals findAccountMonthTotals(String accountNumber, YearMonth month);
+
+	/**
+	 * Returns the totals of the rewards for dinings at a restaurant on a day.
+	 * Reads a single row of the maintained totals.
+	 *
+	 * @param merchantNumber
+	 *            the merchant number of the restaurant
+	 * @param day
+	 *            the dining date
+	 * @return the totals, {@link RewardTotals#NONE} if there were no rewards
+	 */
+	public RewardTotals findMerchantDayTotals(String merchantNumber, LocalDate day);
+}
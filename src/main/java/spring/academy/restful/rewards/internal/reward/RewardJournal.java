@@ -0,0 +1,346 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of reward confirmations with group commit.
+ * <p>
+ * {@link #append(Entry)} returns once the entry is on disk, but callers do
+ * not force the file themselves: a single committer thread forces it for
+ * everything appended so far, optionally waiting a short commit delay first
+ * so more appends share each <tt>force()</tt>.
+ * <p>
+ * The journal is a sequence of numbered segment files. Each entry is a
+ * header of its payload length and the CRC32C of the payload, followed by
+ * the payload. Reading a segment stops at the first torn or corrupt entry.
+ * Locks are used instead of monitors, so virtual threads waiting for a
+ * commit do not pin their carrier.
+ */
+class RewardJournal implements AutoCloseable {
+
+	static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+	private static final String PREFIX = "rewards-";
+
+	private static final String SUFFIX = ".wal";
+
+	private static final Logger logger = LoggerFactory.getLogger(RewardJournal.class);
+
+	/**
+	 * A journaled reward confirmation: the values of one <tt>T_REWARD</tt>
+	 * row.
+	 */
+	record Entry(String confirmationNumber, BigDecimal rewardAmount, Date rewardDate, String accountNumber,
+			String diningMerchantNumber, Date diningDate, BigDecimal diningAmount) {
+	}
+
+	private final Path directory;
+
+	private final long commitDelayNanos;
+
+	/** Guards the channel and the counters; held while appending. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Held while forcing, so the channel is not sealed under the committer. */
+	private final ReentrantLock forceLock = new ReentrantLock();
+
+	private final Condition appendedCondition = lock.newCondition();
+
+	private final Condition durableCondition = lock.newCondition();
+
+	private final Thread committer;
+
+	private FileChannel channel;
+
+	private long segment;
+
+	private long appended;
+
+	private long durable;
+
+	private long appendedAtSeal;
+
+	private IOException failure;
+
+	private boolean closed;
+
+	/**
+	 * Opens a new segment numbered after all existing ones and starts the
+	 * committer thread.
+	 * 
+	 * @param directory
+	 *            the directory holding the segments
+	 * @param commitDelay
+	 *            how long the committer waits for more appends before forcing
+	 */
+	RewardJournal(Path directory, Duration commitDelay) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.commitDelayNanos = commitDelay.toNanos();
+		List<Long> segments = segments();
+		open(segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1);
+		this.committer = Thread.ofPlatform().daemon().name("reward-journal-committer").start(this::commit);
+	}
+
+	/**
+	 * Appends an entry and waits until it has been forced to disk.
+	 */
+	void append(Entry entry) throws IOException {
+		ByteBuffer buffer = encode(entry);
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IOException("Reward journal is closed");
+			}
+			if (failure != null) {
+				throw new IOException("Reward journal failed", failure);
+			}
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			long sequence = ++appended;
+			appendedCondition.signal();
+			while (durable < sequence) {
+				if (failure != null) {
+					throw new IOException("Reward journal failed", failure);
+				}
+				durableCondition.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of the segment being appended to.
+	 */
+	long currentSegment() {
+		lock.lock();
+		try {
+			return segment;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Forces the current segment to disk and starts a new one, unless nothing
+	 * was appended to it.
+	 * 
+	 * @return the number of the last sealed segment
+	 */
+	long seal() throws IOException {
+		forceLock.lock();
+		lock.lock();
+		try {
+			if (appended == appendedAtSeal) {
+				return segment - 1;
+			}
+			long sealed = segment;
+			channel.force(false);
+			channel.close();
+			durable = appendedAtSeal = appended;
+			durableCondition.signalAll();
+			open(sealed + 1);
+			return sealed;
+		} finally {
+			lock.unlock();
+			forceLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the numbers of all segments on disk, current one included, in
+	 * ascending order.
+	 */
+	List<Long> segments() throws IOException {
+		List<Long> segments = new ArrayList<Long>();
+		try (Stream<Path> files = Files.list(directory)) {
+			files.map(file -> file.getFileName().toString())
+					.filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+					.forEach(name -> segments.add(
+							Long.valueOf(name.substring(PREFIX.length(), name.length() - SUFFIX.length()))));
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	/**
+	 * Reads the valid entries of a segment.
+	 */
+	void read(long segment, Consumer<Entry> consumer) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path(segment)));
+		CRC32C crc = new CRC32C();
+		while (buffer.remaining() >= HEADER_SIZE) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				logger.warn("Ignoring torn entry at offset {} of reward journal segment {}",
+						buffer.position() - HEADER_SIZE, segment);
+				return;
+			}
+			crc.reset();
+			crc.update(buffer.array(), buffer.position(), length);
+			if ((int) crc.getValue() != checksum) {
+				logger.warn("Ignoring corrupt entries from offset {} of reward journal segment {}",
+						buffer.position() - HEADER_SIZE, segment);
+				return;
+			}
+			consumer.accept(decode(buffer.array(), buffer.position(), length));
+			buffer.position(buffer.position() + length);
+		}
+	}
+
+	void delete(long segment) throws IOException {
+		Files.deleteIfExists(path(segment));
+	}
+
+	@Override
+	public void close() throws IOException {
+		forceLock.lock();
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			channel.force(false);
+			channel.close();
+			durable = appended;
+			durableCondition.signalAll();
+			appendedCondition.signal();
+		} finally {
+			lock.unlock();
+			forceLock.unlock();
+		}
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void commit() {
+		while (true) {
+			lock.lock();
+			try {
+				while (!closed && appended == durable) {
+					appendedCondition.awaitUninterruptibly();
+				}
+				if (closed) {
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (commitDelayNanos > 0) {
+				LockSupport.parkNanos(commitDelayNanos);
+			}
+			forceLock.lock();
+			try {
+				long target;
+				FileChannel channel;
+				lock.lock();
+				try {
+					if (closed) {
+						return;
+					}
+					target = appended;
+					channel = this.channel;
+				} finally {
+					lock.unlock();
+				}
+				// Appends continue while forcing: they are the next group
+				channel.force(false);
+				lock.lock();
+				try {
+					durable = Math.max(durable, target);
+					durableCondition.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			} catch (IOException e) {
+				logger.error("Unable to force the reward journal, rejecting further appends", e);
+				lock.lock();
+				try {
+					failure = e;
+					durableCondition.signalAll();
+				} finally {
+					lock.unlock();
+				}
+				return;
+			} finally {
+				forceLock.unlock();
+			}
+		}
+	}
+
+	private void open(long segment) throws IOException {
+		this.channel = FileChannel.open(path(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		this.segment = segment;
+	}
+
+	private Path path(long segment) {
+		return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+	}
+
+	static ByteBuffer encode(Entry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeLong(0); // header placeholder
+		out.writeUTF(entry.confirmationNumber());
+		writeDecimal(out, entry.rewardAmount());
+		out.writeLong(entry.rewardDate().getTime());
+		out.writeUTF(entry.accountNumber());
+		out.writeUTF(entry.diningMerchantNumber());
+		out.writeLong(entry.diningDate().getTime());
+		writeDecimal(out, entry.diningAmount());
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		int length = buffer.capacity() - HEADER_SIZE;
+		CRC32C crc = new CRC32C();
+		crc.update(buffer.array(), HEADER_SIZE, length);
+		buffer.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+		return buffer;
+	}
+
+	static Entry decode(byte[] bytes, int offset, int length) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+		return new Entry(in.readUTF(), readDecimal(in), new Date(in.readLong()), in.readUTF(), in.readUTF(),
+				new Date(in.readLong()), readDecimal(in));
+	}
+
+	private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+		out.writeByte(value.scale());
+		out.writeLong(value.unscaledValue().longValueExact());
+	}
+
+	private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+		int scale = in.readByte();
+		return new BigDecimal(BigInteger.valueOf(in.readLong()), scale);
+	}
+}
@@ -0,0 +1,361 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.academy.restful.common.datetime.SimpleDate;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.RecomputationReport;
+import spring.academy.restful.rewards.internal.account.Account;
+import spring.academy.restful.rewards.internal.restaurant.BenefitRules;
+import spring.academy.restful.rewards.internal.restaurant.Restaurant;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recomputes recorded rewards with the current benefit percentages and
+ * rules of the restaurants, for instance after a percentage was corrected
+ * retroactively, and records the differences as corrective rewards.
+ * <p>
+ * The ids of <tt>T_REWARD</tt> are split into fixed ranges that a fork/join
+ * pool recomputes in parallel. Restaurants are read once per run into a
+ * snapshot. Frequency limits of benefit rules are not applied again: they
+ * were enforced, in confirmation order, when the rewards were confirmed. A
+ * reward recorded as nothing at a restaurant whose rule has limits is kept
+ * as it is, as the dining may have been over a limit: only the other
+ * rewards of the dining's period could tell, and a range does not read them.
+ * <p>
+ * A reward that differs from its recomputation gets a corrective row in
+ * <tt>T_REWARD</tt>, holding the difference and the id of the reward in
+ * <tt>CORRECTS_ID</tt>. Rewards are compared including their earlier
+ * corrections, so recomputing again corrects nothing twice. The corrective
+ * rows of a range, their reward totals and a checkpoint of the range are
+ * written in one transaction, and a run restarted under the same job id
+ * skips the ranges it checkpointed. Reads are paced to a maximum number of
+ * rewards per second to leave room for online traffic. A dry run writes
+ * nothing and only reports the differences.
+ */
+public class RewardRecomputation {
+
+	static final String RESTAURANTS_SQL = "select MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY"
+			+ " from T_RESTAURANT";
+
+	static final String ID_RANGE_SQL = "select min(ID) as MIN_ID, max(ID) as MAX_ID from T_REWARD";
+
+	static final String REWARDS_SQL = "select r.ID, r.CONFIRMATION_NUMBER, r.REWARD_AMOUNT, r.ACCOUNT_NUMBER,"
+			+ " r.DINING_MERCHANT_NUMBER, r.DINING_DATE, r.DINING_AMOUNT,"
+			+ " (select coalesce(sum(c.REWARD_AMOUNT), 0) from T_REWARD c where c.CORRECTS_ID = r.ID) as CORRECTIONS"
+			+ " from T_REWARD r where r.ID between ? and ? and r.CORRECTS_ID is null";
+
+	static final String MERCHANT_REWARDS_SQL = REWARDS_SQL + " and r.DINING_MERCHANT_NUMBER = ?";
+
+	static final String INSERT_CORRECTION_SQL = "insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE,"
+			+ " ACCOUNT_NUMBER, DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT, CORRECTS_ID)"
+			+ " values (?, ?, ?, ?, ?, ?, 0, ?)";
+
+	static final String CHECKPOINTS_SQL = "select RANGE_START from T_RECOMPUTE_CHECKPOINT where JOB_ID = ?";
+
+	static final String CHECKPOINT_SQL = "insert into T_RECOMPUTE_CHECKPOINT (JOB_ID, RANGE_START, RANGE_END,"
+			+ " CORRECTIONS) values (?, ?, ?, ?)";
+
+	static final int MAX_DIFFERENCES = 100;
+
+	private static final Logger logger = LoggerFactory.getLogger("spring/academy/restful/config");
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final RewardAggregates aggregates;
+
+	private final int parallelism;
+
+	private final int rangeSize;
+
+	private final Pacer pacer;
+
+	/**
+	 * Creates a new reward recomputation.
+	 *
+	 * @param dataSource
+	 *            the rewards database
+	 * @param transactionManager
+	 *            the transaction manager of the rewards database
+	 * @param parallelism
+	 *            the number of ranges recomputed at the same time, each
+	 *            holding a connection
+	 * @param rangeSize
+	 *            the number of ids in a range, recomputed and checkpointed
+	 *            in one transaction
+	 * @param maxRewardsPerSecond
+	 *            the maximum number of rewards read per second, or 0 for no
+	 *            limit
+	 */
+	public RewardRecomputation(DataSource dataSource, PlatformTransactionManager transactionManager,
+			int parallelism, int rangeSize, int maxRewardsPerSecond) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.aggregates = new RewardAggregates(dataSource);
+		this.parallelism = parallelism;
+		this.rangeSize = rangeSize;
+		this.pacer = new Pacer(maxRewardsPerSecond);
+	}
+
+	/**
+	 * Recomputes all rewards, or those of one restaurant.
+	 *
+	 * @param jobId
+	 *            identifies the recomputation, restarting it under the same
+	 *            id resumes it
+	 * @param merchantNumber
+	 *            the merchant number of the restaurant whose rewards are
+	 *            recomputed, or null for all
+	 * @param dryRun
+	 *            true to only report the differences
+	 * @return what was, or would be, corrected
+	 */
+	public RecomputationReport recompute(String jobId, String merchantNumber, boolean dryRun) {
+		long start = System.nanoTime();
+		Set<String> limited = new HashSet<String>();
+		Run run = new Run(jobId, merchantNumber, dryRun, loadRestaurants(limited), limited,
+				new HashSet<Long>(jdbcTemplate.queryForList(CHECKPOINTS_SQL, Long.class, jobId)));
+		Map<String, Object> ids = jdbcTemplate.queryForMap(ID_RANGE_SQL);
+		if (ids.get("MIN_ID") != null) {
+			long firstRange = ((Number) ids.get("MIN_ID")).longValue() / rangeSize;
+			long lastRange = ((Number) ids.get("MAX_ID")).longValue() / rangeSize;
+			try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+				pool.invoke(new RangeTask(run, firstRange, lastRange + 1));
+			}
+		}
+		RecomputationReport report = run.report();
+		logger.info("{} in {} ms", report, (System.nanoTime() - start) / 1000000);
+		return report;
+	}
+
+	/**
+	 * Reads the restaurants, adding the merchant numbers of those whose rule
+	 * has frequency limits to the given set.
+	 */
+	private Map<String, Restaurant> loadRestaurants(Set<String> limited) {
+		Map<String, Restaurant> restaurants = new HashMap<String, Restaurant>();
+		jdbcTemplate.query(RESTAURANTS_SQL, (RowCallbackHandler) rs -> {
+			Restaurant restaurant = new Restaurant(rs.getString("MERCHANT_NUMBER"), rs.getString("NAME"));
+			String rule = rs.getString("BENEFIT_AVAILABILITY_POLICY");
+			restaurant.setBenefitPercentage(new Percentage(rs.getBigDecimal("BENEFIT_PERCENTAGE")));
+			restaurant.setBenefitAvailabilityPolicy(BenefitRules.compileConditions(rule));
+			restaurants.put(restaurant.getNumber(), restaurant);
+			if (BenefitRules.hasLimits(rule)) {
+				limited.add(restaurant.getNumber());
+			}
+		});
+		return restaurants;
+	}
+
+	private void recomputeRange(Run run, long range) {
+		long firstId = range * rangeSize;
+		long lastId = firstId + rangeSize - 1;
+		if (run.checkpoints.contains(firstId)) {
+			run.rangesSkipped.increment();
+			return;
+		}
+		List<Correction> corrections = new ArrayList<Correction>();
+		int[] scanned = new int[1];
+		RowCallbackHandler recompute = rs -> {
+			scanned[0]++;
+			String merchantNumber = rs.getString("DINING_MERCHANT_NUMBER");
+			Restaurant restaurant = run.restaurants.get(merchantNumber);
+			if (restaurant == null) {
+				return;
+			}
+			Date diningDate = rs.getDate("DINING_DATE");
+			Dining dining = new Dining(new MonetaryAmount(rs.getBigDecimal("DINING_AMOUNT")), null, merchantNumber,
+					SimpleDate.valueOf(diningDate));
+			BigDecimal recorded = rs.getBigDecimal("REWARD_AMOUNT").add(rs.getBigDecimal("CORRECTIONS"));
+			if (recorded.signum() == 0 && run.limited.contains(merchantNumber)) {
+				return;
+			}
+			BigDecimal recomputed = restaurant
+					.calculateBenefitFor(new Account(rs.getString("ACCOUNT_NUMBER"), null), dining).asBigDecimal();
+			if (recomputed.compareTo(recorded) != 0) {
+				corrections.add(new Correction(new RecomputationReport.Difference(rs.getLong("ID"),
+						rs.getString("CONFIRMATION_NUMBER"), rs.getString("ACCOUNT_NUMBER"), merchantNumber, recorded,
+						recomputed), diningDate));
+			}
+		};
+		if (run.merchantNumber == null) {
+			jdbcTemplate.query(REWARDS_SQL, recompute, firstId, lastId);
+		} else {
+			jdbcTemplate.query(MERCHANT_REWARDS_SQL, recompute, firstId, lastId, run.merchantNumber);
+		}
+		run.record(scanned[0], corrections);
+		if (!run.dryRun) {
+			transactionTemplate.executeWithoutResult(status -> write(run, firstId, lastId, corrections));
+		}
+		pacer.acquire(scanned[0]);
+	}
+
+	private void write(Run run, long firstId, long lastId, List<Correction> corrections) {
+		java.util.Date today = SimpleDate.today().asDate();
+		List<Object[]> rows = new ArrayList<Object[]>(corrections.size());
+		RewardAggregates.Batch batch = new RewardAggregates.Batch();
+		for (Correction correction : corrections) {
+			RecomputationReport.Difference difference = correction.difference();
+			rows.add(new Object[] {
+					"R" + Long.toString(difference.getRewardId(), 36) + "-" + Long.toString(run.stamp, 36),
+					difference.getCorrection(), today, difference.getAccountNumber(), difference.getMerchantNumber(),
+					correction.diningDate(), difference.getRewardId() });
+			batch.addCorrection(difference.getAccountNumber(), today, difference.getMerchantNumber(),
+					correction.diningDate(), difference.getCorrection());
+		}
+		if (!rows.isEmpty()) {
+			aggregates.enter();
+			jdbcTemplate.batchUpdate(INSERT_CORRECTION_SQL, rows);
+			aggregates.add(batch);
+		}
+		jdbcTemplate.update(CHECKPOINT_SQL, run.jobId, firstId, lastId, corrections.size());
+	}
+
+	/**
+	 * Recomputes a range of id ranges, splitting it in halves down to single
+	 * ranges.
+	 */
+	private final class RangeTask extends RecursiveAction {
+
+		private final Run run;
+
+		private final long from;
+
+		private final long to;
+
+		RangeTask(Run run, long from, long to) {
+			this.run = run;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				recomputeRange(run, from);
+			} else {
+				long middle = (from + to) >>> 1;
+				invokeAll(new RangeTask(run, from, middle), new RangeTask(run, middle, to));
+			}
+		}
+	}
+
+	private record Correction(RecomputationReport.Difference difference, Date diningDate) {
+	}
+
+	/**
+	 * The state of one recomputation, shared by its tasks.
+	 */
+	private static final class Run {
+
+		final String jobId;
+
+		final String merchantNumber;
+
+		final boolean dryRun;
+
+		final Map<String, Restaurant> restaurants;
+
+		final Set<String> limited;
+
+		final Set<Long> checkpoints;
+
+		final long stamp = System.currentTimeMillis();
+
+		final LongAdder rewardsScanned = new LongAdder();
+
+		final LongAdder rangesSkipped = new LongAdder();
+
+		private final List<RecomputationReport.Difference> differences = new ArrayList<RecomputationReport.Difference>();
+
+		private long rewardsCorrected;
+
+		private BigDecimal totalCorrection = BigDecimal.ZERO;
+
+		Run(String jobId, String merchantNumber, boolean dryRun, Map<String, Restaurant> restaurants,
+				Set<String> limited, Set<Long> checkpoints) {
+			this.jobId = jobId;
+			this.merchantNumber = merchantNumber;
+			this.dryRun = dryRun;
+			this.restaurants = restaurants;
+			this.limited = limited;
+			this.checkpoints = checkpoints;
+		}
+
+		synchronized void record(int scanned, List<Correction> corrections) {
+			rewardsScanned.add(scanned);
+			rewardsCorrected += corrections.size();
+			for (Correction correction : corrections) {
+				totalCorrection = totalCorrection.add(correction.difference().getCorrection());
+				if (differences.size() < MAX_DIFFERENCES) {
+					differences.add(correction.difference());
+				}
+			}
+		}
+
+		synchronized RecomputationReport report() {
+			return new RecomputationReport(jobId, dryRun, rewardsScanned.sum(), rewardsCorrected,
+					rangesSkipped.sum(), totalCorrection, differences);
+		}
+	}
+
+	/**
+	 * Spaces out reads so that on average no more than a number of rewards
+	 * are read per second, across all tasks.
+	 */
+	static final class Pacer {
+
+		private final long nanosPerReward;
+
+		private long next;
+
+		Pacer(int maxRewardsPerSecond) {
+			this.nanosPerReward = maxRewardsPerSecond <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxRewardsPerSecond;
+			this.next = System.nanoTime();
+		}
+
+		/**
+		 * Waits until the given number of rewards just read fits in the rate.
+		 */
+		void acquire(int rewards) {
+			if (nanosPerReward == 0 || rewards == 0) {
+				return;
+			}
+			long wait;
+			synchronized (this) {
+				long now = System.nanoTime();
+				long start = now - next > 0 ? now : next;
+				next = start + rewards * nanosPerReward;
+				wait = start - now;
+			}
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package spring.academy.restful.web;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import spring.academy.restful.accounts.AccountSummary;
+
+/**
+ * A committed change to an account, as sent by the change feed: the state
+ * of the account when the change was first sent to a client, which may
+ * include later changes, or just its id if the account was removed by then.
+ *
+ * A value object. Immutable.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountChange {
+
+	private final long sequence;
+
+	private final Long accountId;
+
+	private final AccountSummary account;
+
+	AccountChange(long sequence, Long accountId, AccountSummary account) {
+		this.sequence = sequence;
+		this.accountId = accountId;
+		this.account = account;
+	}
+
+	/**
+	 * Returns the position of this change in the feed of this node.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public Long getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * Returns the number, name and beneficiaries of the account, or null if
+	 * it was removed.
+	 */
+	public AccountSummary getAccount() {
+		return account;
+	}
+
+	public boolean isRemoved() {
+		return account == null;
+	}
+
+	/**
+	 * Returns the name on the account, used to authorize access to the
+	 * change, or null if the account was removed.
+	 */
+	@JsonIgnore
+	public String getOwner() {
+		return account == null ? null : account.getOwner();
+	}
+
+	public String toString() {
+		return "Change " + sequence + " to account " + accountId;
+	}
+}
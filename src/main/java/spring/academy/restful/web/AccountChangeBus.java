@@ -0,0 +1,270 @@
+package spring.academy.restful.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.accounts.AccountField;
+import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.accounts.AccountSummary;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * In-process bus of committed account changes, feeding
+ * <tt>GET /accounts/changes</tt>.
+ * <p>
+ * Every {@link AccountChangedEvent} that commits gets the next sequence
+ * number and is kept in a bounded ring of recent changes, so long-polling
+ * clients can ask for the changes after the last one they saw. Only the
+ * account id is recorded when the change commits; the account is read the
+ * first time a client is sent the change, once for all clients.
+ * <p>
+ * Streaming subscribers get their own bounded buffer. A subscriber that
+ * falls more than a buffer behind is overflowed: it is dropped and must
+ * read the accounts again, instead of holding changes for everybody.
+ */
+@Component
+@Profile("!reactive")
+public class AccountChangeBus {
+
+	private static final Set<AccountField> CHANGE_FIELDS = EnumSet.of(AccountField.ENTITY_ID, AccountField.NUMBER,
+			AccountField.NAME, AccountField.BENEFICIARIES);
+
+	private final AccountManager accountManager;
+
+	private final Entry[] ring;
+
+	private final int subscriberBufferSize;
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition changed = lock.newCondition();
+
+	private long lastSequence;
+
+	public AccountChangeBus(AccountManager accountManager,
+			@Value("${rewards.accounts.changes.history-size:10000}") int historySize,
+			@Value("${rewards.accounts.changes.subscriber-buffer-size:256}") int subscriberBufferSize) {
+		this.accountManager = accountManager;
+		this.ring = new Entry[historySize];
+		this.subscriberBufferSize = subscriberBufferSize;
+	}
+
+	/**
+	 * Records a change once the transaction making it has committed.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onAccountChanged(AccountChangedEvent event) {
+		Entry entry;
+		lock.lock();
+		try {
+			entry = new Entry(++lastSequence, event.getAccountId());
+			ring[(int) (entry.sequence % ring.length)] = entry;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (Subscription subscription : subscriptions) {
+			subscription.offer(entry);
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the last change recorded.
+	 */
+	public long getLastSequence() {
+		lock.lock();
+		try {
+			return lastSequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the visible changes after the given one, waiting up to the
+	 * given timeout for one if there are none yet.
+	 * 
+	 * @param since
+	 *            the sequence number of the last change the client saw
+	 * @param visible
+	 *            selects the changes the client may see
+	 * @param timeout
+	 *            how long to wait for a visible change
+	 * @return the changes, possibly none, and the last sequence number
+	 *         scanned for them
+	 * @throws ChangeFeedPositionLostException
+	 *             if changes after <tt>since</tt> are no longer kept
+	 */
+	public Scan awaitChanges(long since, Predicate<AccountChange> visible, Duration timeout)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		while (true) {
+			List<Entry> entries = new ArrayList<Entry>();
+			lock.lock();
+			try {
+				long remaining;
+				while (lastSequence == since && (remaining = deadline - System.nanoTime()) > 0) {
+					changed.awaitNanos(remaining);
+				}
+				if (since > lastSequence || since < lastSequence - ring.length) {
+					throw new ChangeFeedPositionLostException("Changes after " + since + " are no longer available");
+				}
+				for (long sequence = since + 1; sequence <= lastSequence; sequence++) {
+					entries.add(ring[(int) (sequence % ring.length)]);
+				}
+			} finally {
+				lock.unlock();
+			}
+			List<AccountChange> changes = new ArrayList<AccountChange>(entries.size());
+			for (Entry entry : entries) {
+				AccountChange change = resolve(entry);
+				if (visible.test(change)) {
+					changes.add(change);
+				}
+			}
+			if (!entries.isEmpty()) {
+				since = entries.get(entries.size() - 1).sequence;
+			}
+			// Otherwise only changes the client may not see: keep waiting after them
+			if (!changes.isEmpty() || entries.isEmpty() || System.nanoTime() >= deadline) {
+				return new Scan(changes, since);
+			}
+		}
+	}
+
+	/**
+	 * Subscribes to the changes recorded from now on.
+	 * 
+	 * @param visible
+	 *            selects the changes the subscriber may see
+	 */
+	public Subscription subscribe(Predicate<AccountChange> visible) {
+		Subscription subscription = new Subscription(visible, subscriberBufferSize);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	private AccountChange resolve(Entry entry) {
+		AccountChange change = entry.change;
+		if (change == null) {
+			AccountSummary summary = accountManager.getAccountSummary(entry.accountId, CHANGE_FIELDS);
+			change = new AccountChange(entry.sequence, entry.accountId, summary);
+			entry.change = change;
+		}
+		return change;
+	}
+
+	/**
+	 * The visible changes found by {@link #awaitChanges}, and the last
+	 * sequence number scanned for them, so the next poll starts after the
+	 * changes the client may not see instead of scanning them again.
+	 * 
+	 * A value object. Immutable.
+	 */
+	public static final class Scan {
+
+		private final List<AccountChange> changes;
+
+		private final long lastSequence;
+
+		Scan(List<AccountChange> changes, long lastSequence) {
+			this.changes = changes;
+			this.lastSequence = lastSequence;
+		}
+
+		public List<AccountChange> getChanges() {
+			return changes;
+		}
+
+		public long getLastSequence() {
+			return lastSequence;
+		}
+	}
+
+	/**
+	 * A recorded change; the account is read on first use.
+	 */
+	private static final class Entry {
+
+		final long sequence;
+
+		final Long accountId;
+
+		volatile AccountChange change;
+
+		Entry(long sequence, Long accountId) {
+			this.sequence = sequence;
+			this.accountId = accountId;
+		}
+	}
+
+	/**
+	 * The changes buffered for one streaming subscriber.
+	 */
+	public final class Subscription implements AutoCloseable {
+
+		private final Predicate<AccountChange> visible;
+
+		private final BlockingQueue<Entry> buffer;
+
+		private volatile boolean overflowed;
+
+		Subscription(Predicate<AccountChange> visible, int bufferSize) {
+			this.visible = visible;
+			this.buffer = new ArrayBlockingQueue<Entry>(bufferSize);
+		}
+
+		void offer(Entry entry) {
+			if (!buffer.offer(entry)) {
+				overflowed = true;
+				close();
+			}
+		}
+
+		/**
+		 * Returns the next visible change, or null if there was none within
+		 * the timeout.
+		 * 
+		 * @throws ChangeFeedPositionLostException
+		 *             if the subscriber fell too far behind and was dropped
+		 */
+		public AccountChange poll(Duration timeout) throws InterruptedException {
+			long deadline = System.nanoTime() + timeout.toNanos();
+			while (true) {
+				if (overflowed) {
+					throw new ChangeFeedPositionLostException("Subscriber fell more than " + subscriberBufferSize
+							+ " changes behind");
+				}
+				Entry entry = buffer.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				if (entry == null) {
+					return null;
+				}
+				AccountChange change = resolve(entry);
+				if (visible.test(change)) {
+					return change;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			subscriptions.remove(this);
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package spring.academy.restful.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A feed of committed account changes, so dashboards no longer need to poll
+ * <tt>GET /accounts</tt>. Bankers see every change; other clients only the
+ * changes to accounts in their name.
+ * <p>
+ * Clients either stream the changes as Server-Sent Events, or long-poll
+ * with the token returned by the previous poll. A token the feed no longer
+ * has the changes for is answered with 410 Gone: the client must read the
+ * accounts again and start over without a token.
+ */
+@RestController
+@Profile("!reactive")
+public class AccountChangesController {
+
+    static final String BANKER = "SCOPE_rewards:BANKER";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AccountChangeBus changeBus;
+
+    private final Duration pollTimeout;
+
+    private final Duration streamTimeout;
+
+    private final Duration heartbeatInterval;
+
+    /**
+     * The feed of a previous run is gone: tokens carry the run they come from.
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    public AccountChangesController(AccountChangeBus changeBus,
+                                    @Value("${rewards.accounts.changes.poll-timeout:PT25S}") Duration pollTimeout,
+                                    @Value("${rewards.accounts.changes.stream-timeout:PT30M}") Duration streamTimeout,
+                                    @Value("${rewards.accounts.changes.heartbeat-interval:PT15S}") Duration heartbeatInterval) {
+        this.changeBus = changeBus;
+        this.pollTimeout = pollTimeout;
+        this.streamTimeout = streamTimeout;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * Long-polls for the changes after the given token, waiting up to the
+     * poll timeout for one. Without a token, returns no changes and the
+     * token of the current position right away.
+     * <p>
+     * The poll waits on a virtual thread of its own, so waiting polls hold
+     * neither a request thread nor one of the MVC async executor.
+     */
+    @GetMapping(value = "/accounts/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<AccountChanges> pollChanges(@RequestParam(required = false) String since,
+                                                      Authentication authentication) {
+        // Completed by the poller well before, the timeout only guards against a lost poller
+        DeferredResult<AccountChanges> result = new DeferredResult<>(pollTimeout.multipliedBy(2).toMillis());
+        if (since == null) {
+            result.setResult(new AccountChanges(List.of(), token(changeBus.getLastSequence())));
+            return result;
+        }
+        long sequence = sequenceOf(since);
+        Predicate<AccountChange> visible = visibleTo(authentication);
+        Thread poller = Thread.ofVirtual().name("account-changes-poll-" + authentication.getName()).unstarted(() -> {
+            try {
+                AccountChangeBus.Scan scan = changeBus.awaitChanges(sequence, visible, pollTimeout);
+                result.setResult(new AccountChanges(scan.getChanges(), token(scan.getLastSequence())));
+            } catch (InterruptedException e) {
+                // Completed
+            } catch (RuntimeException e) {
+                // Resolved like an exception of the handler, 410 for a lost position
+                result.setErrorResult(e);
+            }
+        });
+        result.onCompletion(poller::interrupt);
+        result.onTimeout(poller::interrupt);
+        result.onError(error -> poller.interrupt());
+        poller.start();
+        return result;
+    }
+
+    /**
+     * Streams the changes committed from now on as Server-Sent Events named
+     * <tt>account</tt>. A client that falls too far behind is sent a
+     * <tt>reset</tt> event and disconnected.
+     */
+    @GetMapping(value = "/accounts/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(Authentication authentication) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        AccountChangeBus.Subscription subscription = changeBus.subscribe(visibleTo(authentication));
+        Thread sender = Thread.ofVirtual().name("account-changes-" + authentication.getName()).unstarted(() -> {
+            try {
+                while (true) {
+                    AccountChange change = subscription.poll(heartbeatInterval);
+                    if (change == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().id(token(change.getSequence())).name("account").data(change));
+                    }
+                }
+            } catch (ChangeFeedPositionLostException e) {
+                sendReset(emitter, e.getMessage());
+            } catch (InterruptedException e) {
+                // Completed
+            } catch (IOException e) {
+                logger.debug("Account change stream closed: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                // For instance reading the changed account failed
+                logger.warn("Account change stream failed", e);
+                emitter.completeWithError(e);
+            } finally {
+                subscription.close();
+            }
+        });
+        emitter.onCompletion(sender::interrupt);
+        emitter.onTimeout(sender::interrupt);
+        emitter.onError(error -> sender.interrupt());
+        sender.start();
+        return emitter;
+    }
+
+    @ResponseStatus(HttpStatus.GONE)
+    @ExceptionHandler({ChangeFeedPositionLostException.class})
+    public void handleGone(Exception ex) {
+        logger.info("Change feed position lost: {}", ex.getMessage());
+    }
+
+    private void sendReset(SseEmitter emitter, String reason) {
+        try {
+            emitter.send(SseEmitter.event().name("reset").data(reason));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private String token(long sequence) {
+        return epoch + "." + sequence;
+    }
+
+    private long sequenceOf(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a change feed token '" + token + "'");
+        }
+        if (!token.substring(0, dot).equals(epoch)) {
+            throw new ChangeFeedPositionLostException("Token " + token + " comes from a previous run of the feed");
+        }
+        try {
+            return Long.parseLong(token.substring(dot + 1));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a change feed token '" + token + "'");
+        }
+    }
+
+    static Predicate<AccountChange> visibleTo(Authentication authentication) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (BANKER.equals(authority.getAuthority())) {
+                return change -> true;
+            }
+        }
+        String name = authentication.getName();
+        return change -> name.equals(change.getOwner());
+    }
+
+    /**
+     * The response to a long poll: the visible changes, in order, and the
+     * token to poll with next.
+     *
+     * A value object. Immutable.
+     */
+    public static class AccountChanges {
+
+        private final List<AccountChange> changes;
+
+        private final String next;
+
+        AccountChanges(List<AccountChange> changes, String next) {
+            this.changes = changes;
+            this.next = next;
+        }
+
+        public List<AccountChange> getChanges() {
+            return changes;
+        }
+
+        public String getNext() {
+            return next;
+        }
+    }
+}
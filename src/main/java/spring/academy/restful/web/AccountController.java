@@ -3,11 +3,16 @@ package spring.academy.restful.web;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,55 +20,113 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import spring.academy.restful.accounts.AccountField;
 import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.accounts.AccountSummary;
+import spring.academy.restful.accounts.AccountVersion;
+import spring.academy.restful.accounts.AllocationUpdateResult;
+import spring.academy.restful.web.AccountJsonCache.AccountJson;
 import spring.academy.restful.common.money.Percentage;
 import spring.academy.restful.rewards.internal.account.Account;
-import spring.academy.restful.rewards.internal.account.Beneficiary;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.net.URI;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
 
 /**
  * A controller handling requests for CRUD operations on Accounts and their
  * Beneficiaries.
  */
 @RestController
+@Profile("!reactive")
 public class AccountController {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private AccountManager accountManager;
 
+    private AccountJsonCache accountJsonCache;
+
     /**
-     * Creates a new AccountController with a given account manager.
+     * Creates a new AccountController with a given account manager and a cache
+     * for the serialized accounts.
      */
-    public AccountController(AccountManager accountManager) {
+    public AccountController(AccountManager accountManager, AccountJsonCache accountJsonCache) {
         this.accountManager = accountManager;
+        this.accountJsonCache = accountJsonCache;
     }
 
     /**
-     * Provide a list of all accounts.
+     * Provide a list of all accounts. With a fields parameter (e.g.
+     * ?fields=number,name) only the requested fields are read and returned.
      */
     @GetMapping(value = "/accounts")
-    public List<Account> accountSummary() {
-        return accountManager.getAllAccounts();
+    public List<?> accountSummary(@RequestParam(required = false) Set<String> fields) {
+        if (fields == null) {
+            return accountManager.getAllAccounts();
+        }
+        return accountManager.getAccountSummaries(accountFields(fields));
     }
 
     /**
-     * Provide the details of an account with the given id.
+     * Provide the details of an account with the given id. The pre-serialized
+     * JSON is written as is, so a cache hit neither loads nor serializes the
+     * account. Only the owner of the account may read it.
+     * <p>
+     * The response carries a strong ETag derived from the account version. A
+     * matching If-None-Match is answered with 304 Not Modified; on a cache
+     * miss only the version is read, not the beneficiaries.
      */
-    @PostAuthorize("returnObject.name == authentication.name")
     @GetMapping(value = "/accounts/{id}")
-    public Account accountDetails(@PathVariable int id) {
-        return retrieveAccount(id);
+    public ResponseEntity<byte[]> accountDetails(@PathVariable long id,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                 Authentication authentication) {
+        AccountJson json = accountJsonCache.getIfPresent(id);
+        if (json == null && ifNoneMatch != null) {
+            AccountVersion version = accountManager.getAccountVersion(id);
+            if (version == null) {
+                throw new IllegalArgumentException("No such account with id " + id);
+            }
+            checkOwner(version.getName(), authentication);
+            String eTag = AccountETag.of(version.getVersion(), version.getPendingSavings());
+            if (AccountETag.matchesIfNoneMatch(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
+        if (json == null) {
+            json = accountJsonCache.get(id, this::retrieveAccount);
+        }
+        checkOwner(json.getOwner(), authentication);
+        if (AccountETag.matchesIfNoneMatch(ifNoneMatch, json.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(json.getETag()).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(json.getETag())
+                .body(json.getBody());
+    }
+
+    /**
+     * Provide only the requested fields of an account with the given id, e.g.
+     * /accounts/0?fields=number,name. Only the owner of the account may read
+     * it.
+     */
+    @GetMapping(value = "/accounts/{id}", params = "fields")
+    public AccountSummary accountDetailFields(@PathVariable long id, @RequestParam Set<String> fields,
+                                              Authentication authentication) {
+        AccountSummary summary = accountManager.getAccountSummary(id, accountFields(fields));
+        if (summary == null) {
+            throw new IllegalArgumentException("No such account with id " + id);
+        }
+        checkOwner(summary.getOwner(), authentication);
+        return summary;
     }
 
     /**
@@ -128,32 +191,45 @@ public class AccountController {
 
     /**
      * Removes the Beneficiary with the given name from the Account with the
-     * given id.
+     * given id. Its allocation percentage is handed over to the remaining
+     * beneficiaries.
      */
     @DeleteMapping(value = "/accounts/{accountId}/beneficiaries/{beneficiaryName}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void removeBeneficiary(@PathVariable Long accountId, @PathVariable String beneficiaryName) {
-        Account account = accountManager.getAccount(accountId);
-        if (account == null) {
-            throw new IllegalArgumentException("No such account with id " + accountId);
-        }
-        Beneficiary b = account.getBeneficiary(beneficiaryName);
-
-        // If there are more than one beneficiary and the one that we are deleting has one that is not 0,
-        // we need to reset the allocation percentages.
-        if (account.getBeneficiaries().size() != 1 && (!b.getAllocationPercentage().equals(Percentage.zero()))) {
-            resetAllocationPercentages(accountId, beneficiaryName, account, b);
-        }
-
-        accountManager.removeBeneficiary(accountId, beneficiaryName, new HashMap<String, Percentage>());
+        accountManager.removeBeneficiaryAndRebalance(accountId, beneficiaryName);
     }
 
+    /**
+     * Updates the allocation percentages of the Account with the given id. If
+     * an If-Match header is sent, the update is only applied if the account is
+     * still at the version of that ETag, otherwise 412 Precondition Failed is
+     * returned.
+     */
     @PreAuthorize("@authz.isOwnerOfTheAccount(#accountId)")
     @PutMapping(value = "/accounts/{accountId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateBeneficiaryAllocationPercentages(@RequestBody Map<String, Percentage> allocationPercentages,
-                                                       @PathVariable Long accountId) {
-        accountManager.updateBeneficiaryAllocationPercentages(accountId, allocationPercentages);
+                                                       @PathVariable Long accountId,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = ifMatch == null ? null : AccountETag.versionOf(ifMatch);
+        if (expectedVersion == null) {
+            accountManager.updateBeneficiaryAllocationPercentages(accountId, allocationPercentages);
+        } else {
+            accountManager.updateBeneficiaryAllocationPercentages(accountId, allocationPercentages, expectedVersion);
+        }
+    }
+
+    /**
+     * Updates the allocation percentages of many accounts at once, e.g.
+     * {"0": {"Annabelle": "60%", "Corgan": "40%"}, "1": {...}}. Each account
+     * is validated on its own; the response reports, per account, whether it
+     * was updated or why it was not.
+     */
+    @PutMapping(value = "/accounts/allocations")
+    public List<AllocationUpdateResult> updateAllocationPercentagesInBatch(
+            @RequestBody Map<Long, Map<String, Percentage>> allocationPercentagesByAccount) {
+        return accountManager.updateBeneficiaryAllocationPercentagesInBatch(allocationPercentagesByAccount);
     }
 
     /**
@@ -171,6 +247,30 @@ public class AccountController {
         logger.error("Exception is: ", ex);
     }
 
+    /**
+     * Maps a failed If-Match precondition, or a concurrent update detected
+     * while applying it, to a 412 Precondition Failed HTTP status code.
+     */
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    public void handlePreconditionFailed(Exception ex) {
+        logger.warn("Precondition failed: {}", ex.getMessage());
+    }
+
+
+    private Set<AccountField> accountFields(Set<String> fields) {
+        try {
+            return AccountField.fromJsonNames(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    private void checkOwner(String accountOwner, Authentication authentication) {
+        if (!authentication.getName().equals(accountOwner)) {
+            throw new AccessDeniedException("Access Denied");
+        }
+    }
 
     /**
      * Finds the Account with the given id, throwing an IllegalArgumentException
@@ -184,25 +284,4 @@ public class AccountController {
         return account;
     }
 
-    private void resetAllocationPercentages(Long accountId, String beneficiaryName, Account account, Beneficiary b) {
-        int newNumberOfBeneficiaries = account.getBeneficiaries().size() - 1;
-        BigDecimal removedAllocationPercentage = b.getAllocationPercentage().asBigDecimal();
-        BigDecimal allocationAmountToDistribute = removedAllocationPercentage
-                .divide(BigDecimal.valueOf(newNumberOfBeneficiaries), RoundingMode.DOWN);
-        Map<String, Percentage> allocationPercentages = new HashMap<String, Percentage>();
-        BigDecimal totalOfRebalancedBeneficiariesPercentage = new BigDecimal(0);
-        for (Beneficiary beneficiary : account.getBeneficiaries()) {
-            if (!beneficiaryName.equals(beneficiary.getName())) {
-                Percentage newPercentage = beneficiary.getAllocationPercentage()
-                        .add(Percentage.valueOf(allocationAmountToDistribute.toString()));
-                allocationPercentages.put(beneficiary.getName(), newPercentage);
-                totalOfRebalancedBeneficiariesPercentage = totalOfRebalancedBeneficiariesPercentage.add(newPercentage.asBigDecimal());
-            }
-        }
-        String randomName = (String) allocationPercentages.keySet().toArray()[new Random().nextInt(allocationPercentages.keySet().toArray().length)];
-        allocationPercentages.put(randomName, allocationPercentages.get(randomName)
-                .add(new Percentage(BigDecimal.valueOf(1L).subtract(totalOfRebalancedBeneficiariesPercentage))));
-        accountManager.updateBeneficiaryAllocationPercentages(accountId, allocationPercentages);
-    }
-
 }
@@ -0,0 +1,75 @@
+package spring.academy.restful.web;
+
+import spring.academy.restful.common.money.MonetaryAmount;
+
+/**
+ * Strong entity tags for accounts, derived from the account version. The tag
+ * of version 7 is <tt>"7"</tt>.
+ * <p>
+ * Savings pending in the savings ledger or buffered on this node do not
+ * change the version until they are compacted or flushed, so their total is
+ * appended: version 7 with 4.52 pending is <tt>"7+4.52"</tt>. Only the
+ * version is compared for <tt>If-Match</tt>, as pending savings never
+ * conflict with an update.
+ * <p>
+ * Shared by both stacks, so an ETag served by one is understood by the other.
+ */
+public final class AccountETag {
+
+	private AccountETag() {
+	}
+
+	/**
+	 * Returns the entity tag of an account version with the given savings
+	 * pending, or none if null.
+	 */
+	public static String of(Long version, MonetaryAmount pendingSavings) {
+		String tag = Long.toString(version == null ? 0 : version);
+		if (pendingSavings != null && pendingSavings.asBigDecimal().signum() != 0) {
+			tag += "+" + pendingSavings.asBigDecimal().toPlainString();
+		}
+		return "\"" + tag + "\"";
+	}
+
+	/**
+	 * Returns true if an <tt>If-None-Match</tt> header matches the given entity
+	 * tag, using the weak comparison required for that header.
+	 */
+	public static boolean matchesIfNoneMatch(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the account version carried by an <tt>If-Match</tt> header, any
+	 * pending savings ignored, or null if the header is <tt>*</tt> and matches
+	 * any version. A header that does not hold a single strong account tag
+	 * yields -1, a version no account ever has.
+	 */
+	public static Long versionOf(String ifMatch) {
+		String tag = ifMatch.trim();
+		if (tag.equals("*")) {
+			return null;
+		}
+		if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+			return -1L;
+		}
+		int end = tag.indexOf('+');
+		try {
+			return Long.valueOf(tag.substring(1, end < 0 ? tag.length() - 1 : end));
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+}
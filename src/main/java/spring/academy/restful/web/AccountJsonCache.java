@@ -0,0 +1,145 @@
+package spring.academy.restful.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Caches the serialized JSON (UTF-8 bytes) of single accounts, so repeated
+ * reads of the same account skip both Hibernate and Jackson.
+ * <p>
+ * Entries are filled on first read and evicted once a transaction publishing
+ * an {@link AccountChangedEvent} for the account commits. To avoid caching a
+ * representation loaded before a concurrent change committed, an entry is
+ * only kept if no eviction happened while it was being loaded and stored:
+ * the evictions are counted again after storing it, and it is removed if an
+ * eviction slipped in. Beyond the maximum number of entries, Caffeine evicts
+ * the accounts least likely to be read again.
+ */
+@Component
+public class AccountJsonCache {
+
+	private final ObjectMapper objectMapper;
+
+	private final Cache<Long, AccountJson> entries;
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	public AccountJsonCache(ObjectMapper objectMapper,
+			@Value("${rewards.accounts.json-cache.max-entries:10000}") int maxEntries) {
+		this.objectMapper = objectMapper;
+		this.entries = Caffeine.newBuilder().maximumSize(maxEntries).build();
+	}
+
+	/**
+	 * Returns the cached JSON of an account, or null if it is not cached.
+	 *
+	 * @param accountId
+	 *            the account id
+	 */
+	public AccountJson getIfPresent(long accountId) {
+		return entries.getIfPresent(accountId);
+	}
+
+	/**
+	 * Returns the cached JSON of an account, loading and serializing it on a
+	 * cache miss.
+	 *
+	 * @param accountId
+	 *            the account id
+	 * @param loader
+	 *            loads the account on a cache miss
+	 * @return the serialized account
+	 */
+	public AccountJson get(long accountId, LongFunction<Account> loader) {
+		AccountJson json = entries.getIfPresent(accountId);
+		if (json != null) {
+			return json;
+		}
+		long stamp = evictions.get();
+		Account account = loader.apply(accountId);
+		json = AccountJson.of(account, serialize(account));
+		if (evictions.get() == stamp) {
+			entries.asMap().putIfAbsent(accountId, json);
+			if (evictions.get() != stamp) {
+				entries.asMap().remove(accountId, json);
+			}
+		}
+		return json;
+	}
+
+	/**
+	 * Evicts an account once the change to it has been committed.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onAccountChanged(AccountChangedEvent event) {
+		evictions.incrementAndGet();
+		entries.invalidate(event.getAccountId());
+	}
+
+	private byte[] serialize(Account account) {
+		try {
+			return objectMapper.writeValueAsBytes(account);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Unable to serialize account " + account.getEntityId(), e);
+		}
+	}
+
+	/**
+	 * The serialized form of an account together with what is needed to serve
+	 * it without loading the account again.
+	 *
+	 * A value object. Immutable.
+	 */
+	public static class AccountJson {
+
+		private final byte[] body;
+
+		private final String eTag;
+
+		private final String owner;
+
+		AccountJson(byte[] body, String eTag, String owner) {
+			this.body = body;
+			this.eTag = eTag;
+			this.owner = owner;
+		}
+
+		static AccountJson of(Account account, byte[] body) {
+			return new AccountJson(body, AccountETag.of(account.getVersion(), account.getPendingSavings()),
+					account.getName());
+		}
+
+		/**
+		 * Returns the UTF-8 encoded JSON of the account. Callers must not modify
+		 * the returned array.
+		 */
+		public byte[] getBody() {
+			return body;
+		}
+
+		/**
+		 * Returns the strong entity tag of this representation, derived from
+		 * the account version.
+		 */
+		public String getETag() {
+			return eTag;
+		}
+
+		/**
+		 * Returns the name on the account, used to authorize access to it.
+		 */
+		public String getOwner() {
+			return owner;
+		}
+	}
+}
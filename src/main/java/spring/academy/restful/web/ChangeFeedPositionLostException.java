@@ -0,0 +1,15 @@
+package spring.academy.restful.web;
+
+/**
+ * Thrown when the change feed no longer has the changes after a client's
+ * position: they were dropped from the ring, the client fell too far behind
+ * as a subscriber, or its token comes from a previous run. The client must
+ * read the accounts again and start over.
+ */
+@SuppressWarnings("serial")
+public class ChangeFeedPositionLostException extends RuntimeException {
+
+	public ChangeFeedPositionLostException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,274 @@
+package spring.academy.restful.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import spring.academy.restful.accounts.AccountField;
+import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.accounts.AccountSummary;
+import spring.academy.restful.rewards.RewardRecord;
+import spring.academy.restful.rewards.RewardTotals;
+import spring.academy.restful.rewards.internal.account.StatementGenerator;
+import spring.academy.restful.rewards.internal.reward.RewardAggregateRebuilder;
+import spring.academy.restful.rewards.internal.reward.RewardHistoryRepository;
+import spring.academy.restful.rewards.internal.reward.RewardRecomputation;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * A controller handling requests for the rewards recorded for accounts and
+ * their totals. Bankers may read any reward; other clients only the rewards
+ * of accounts in their name.
+ */
+@RestController
+@Profile("!reactive")
+public class RewardController {
+
+    static final int MAX_LIMIT = 100;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AccountManager accountManager;
+
+    private final RewardHistoryRepository rewardHistoryRepository;
+
+    private final RewardAggregateRebuilder rewardAggregateRebuilder;
+
+    private final RewardRecomputation rewardRecomputation;
+
+    private final StatementGenerator statementGenerator;
+
+    private final RewardJobs rewardJobs;
+
+    public RewardController(AccountManager accountManager, RewardHistoryRepository rewardHistoryRepository,
+                            RewardAggregateRebuilder rewardAggregateRebuilder,
+                            RewardRecomputation rewardRecomputation, StatementGenerator statementGenerator,
+                            RewardJobs rewardJobs) {
+        this.accountManager = accountManager;
+        this.rewardHistoryRepository = rewardHistoryRepository;
+        this.rewardAggregateRebuilder = rewardAggregateRebuilder;
+        this.rewardRecomputation = rewardRecomputation;
+        this.statementGenerator = statementGenerator;
+        this.rewardJobs = rewardJobs;
+    }
+
+    /**
+     * Provide a page of the rewards of an account, most recent first. The
+     * next page is requested with the <tt>next</tt> cursor of the previous
+     * one, e.g. /accounts/0/rewards?after=2024-05-01.42; there are no more
+     * pages when it is absent.
+     */
+    @GetMapping(value = "/accounts/{id}/rewards")
+    public RewardPage accountRewards(@PathVariable long id, @RequestParam(required = false) String after,
+                                     @RequestParam(defaultValue = "20") int limit, Authentication authentication) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        AccountSummary account = findAccessibleAccount(id, authentication);
+
+        LocalDate afterDate = null;
+        long afterId = 0;
+        if (after != null) {
+            int dot = after.lastIndexOf('.');
+            try {
+                afterDate = LocalDate.parse(after.substring(0, Math.max(dot, 0)));
+                afterId = Long.parseLong(after.substring(dot + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a reward cursor '" + after + "'", e);
+            }
+        }
+        // One more than asked for tells whether there is a next page
+        List<RewardRecord> rewards = rewardHistoryRepository.findByAccountNumber(account.getNumber(), afterDate,
+                afterId, limit + 1);
+        if (rewards.size() <= limit) {
+            return new RewardPage(rewards, null);
+        }
+        RewardRecord last = rewards.get(limit - 1);
+        return new RewardPage(rewards.subList(0, limit), last.getRewardDate() + "." + last.getId());
+    }
+
+    /**
+     * Provide the totals of the rewards of an account in a month, e.g.
+     * /accounts/0/rewards/totals/2024-05.
+     */
+    @GetMapping(value = "/accounts/{id}/rewards/totals/{month}")
+    public RewardTotals accountMonthTotals(@PathVariable long id, @PathVariable String month,
+                                           Authentication authentication) {
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a month '" + month + "'", e);
+        }
+        AccountSummary account = findAccessibleAccount(id, authentication);
+        return rewardHistoryRepository.findAccountMonthTotals(account.getNumber(), yearMonth);
+    }
+
+    /**
+     * Provide the totals of the rewards for dinings at a restaurant on a day,
+     * e.g. /merchants/1234567890/rewards/totals/2024-05-01. Bankers only.
+     */
+    @GetMapping(value = "/merchants/{merchantNumber}/rewards/totals/{day}")
+    public RewardTotals merchantDayTotals(@PathVariable String merchantNumber, @PathVariable String day) {
+        LocalDate date;
+        try {
+            date = LocalDate.parse(day);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a date '" + day + "'", e);
+        }
+        return rewardHistoryRepository.findMerchantDayTotals(merchantNumber, date);
+    }
+
+    /**
+     * Start rebuilding all reward totals from the recorded rewards. The job
+     * report is the number of rewards summed. Bankers only.
+     */
+    @PostMapping(value = "/rewards/totals/rebuild")
+    public ResponseEntity<RewardJobs.RewardJob> rebuildTotals() {
+        return accepted(rewardJobs.start("rebuild", rewardAggregateRebuilder::rebuild));
+    }
+
+    /**
+     * Start recomputing the recorded rewards, or those of one restaurant, with
+     * the current benefit percentages and rules, e.g.
+     * /rewards/recompute?job=fix-2024-05&merchant=1234567890&dryRun=false.
+     * Only reports the differences unless dryRun is false; restarting the
+     * same job resumes it. Bankers only.
+     */
+    @PostMapping(value = "/rewards/recompute")
+    public ResponseEntity<RewardJobs.RewardJob> recompute(@RequestParam String job,
+                                                         @RequestParam(required = false) String merchant,
+                                                         @RequestParam(defaultValue = "true") boolean dryRun) {
+        return accepted(rewardJobs.start("recompute", () -> rewardRecomputation.recompute(job, merchant, dryRun)));
+    }
+
+    /**
+     * Start writing the month-end statements of all accounts for a month, e.g.
+     * /rewards/statements/2024-05, replacing those written before for the
+     * same month. Bankers only.
+     */
+    @PostMapping(value = "/rewards/statements/{month}")
+    public ResponseEntity<RewardJobs.RewardJob> writeStatements(@PathVariable String month) {
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a month '" + month + "'", e);
+        }
+        return accepted(rewardJobs.start("statements", () -> statementGenerator.generate(yearMonth)));
+    }
+
+    /**
+     * Provide the status of a reward job started by one of the requests
+     * above, and its report once it is done. Bankers only.
+     */
+    @GetMapping(value = "/rewards/jobs/{id}")
+    public RewardJobs.RewardJob rewardJob(@PathVariable String id) {
+        RewardJobs.RewardJob job = rewardJobs.get(id);
+        if (job == null) {
+            throw new IllegalArgumentException("No such reward job " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Provide the details of the reward with the given confirmation number.
+     */
+    @GetMapping(value = "/rewards/{confirmationNumber}")
+    public RewardRecord reward(@PathVariable String confirmationNumber, Authentication authentication) {
+        RewardRecord reward = rewardHistoryRepository.findByConfirmationNumber(confirmationNumber);
+        if (reward == null) {
+            throw new IllegalArgumentException("No such reward with confirmation number " + confirmationNumber);
+        }
+        checkAccess(reward.getOwner(), authentication);
+        return reward;
+    }
+
+    /**
+     * Answers a job started with 202 Accepted and the location of its status,
+     * or 409 Conflict if another job was still running.
+     */
+    private ResponseEntity<RewardJobs.RewardJob> accepted(RewardJobs.RewardJob job) {
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another reward job is still running");
+        }
+        URI location = ServletUriComponentsBuilder
+                .fromCurrentContextPath()
+                .path("/rewards/jobs/{id}")
+                .buildAndExpand(job.getId()).toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    /**
+     * Maps IllegalArgumentExceptions to a 404 Not Found HTTP status code.
+     */
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler({IllegalArgumentException.class})
+    public void handleNotFound(Exception ex) {
+        logger.info("Not found: {}", ex.getMessage());
+    }
+
+    private AccountSummary findAccessibleAccount(long id, Authentication authentication) {
+        AccountSummary account = accountManager.getAccountSummary(id, EnumSet.of(AccountField.NUMBER, AccountField.NAME));
+        if (account == null) {
+            throw new IllegalArgumentException("No such account with id " + id);
+        }
+        checkAccess(account.getOwner(), authentication);
+        return account;
+    }
+
+    private void checkAccess(String accountOwner, Authentication authentication) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (AccountChangesController.BANKER.equals(authority.getAuthority())) {
+                return;
+            }
+        }
+        if (!authentication.getName().equals(accountOwner)) {
+            throw new AccessDeniedException("Access Denied");
+        }
+    }
+
+    /**
+     * A page of rewards and the cursor of the next page, if any.
+     *
+     * A value object. Immutable.
+     */
+    public static class RewardPage {
+
+        private final List<RewardRecord> rewards;
+
+        private final String next;
+
+        RewardPage(List<RewardRecord> rewards, String next) {
+            this.rewards = rewards;
+            this.next = next;
+        }
+
+        public List<RewardRecord> getRewards() {
+            return rewards;
+        }
+
+        public String getNext() {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package spring.academy.restful.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the long reward jobs started by <tt>POST /rewards/...</tt> in the
+ * background, one at a time, and keeps the status of the most recent ones
+ * for <tt>GET /rewards/jobs/{id}</tt>.
+ * <p>
+ * Rebuilding the totals, recomputing rewards and writing statements all scan
+ * every reward, and the first two write the same totals, so a job is only
+ * started when no other job of any kind is running. Each job runs on a
+ * virtual thread of its own, holding no request thread while it runs.
+ */
+@Component
+@Profile("!reactive")
+public class RewardJobs {
+
+	static final int HISTORY_SIZE = 100;
+
+	private static final Logger logger = LoggerFactory.getLogger(RewardJobs.class);
+
+	private final Map<String, RewardJob> jobs = new LinkedHashMap<String, RewardJob>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, RewardJob> eldest) {
+			return size() > HISTORY_SIZE;
+		}
+	};
+
+	private RewardJob running;
+
+	/**
+	 * Starts a job unless another one is still running.
+	 *
+	 * @param type
+	 *            what the job does, e.g. <tt>recompute</tt>
+	 * @param work
+	 *            the work of the job, returning its report
+	 * @return the job started, or null if another job is running
+	 */
+	public synchronized RewardJob start(String type, Supplier<?> work) {
+		if (running != null && running.getState() == RewardJob.State.RUNNING) {
+			return null;
+		}
+		RewardJob job = new RewardJob(UUID.randomUUID().toString(), type);
+		jobs.put(job.getId(), job);
+		running = job;
+		Thread.ofVirtual().name("reward-job-" + type).start(() -> {
+			try {
+				job.succeeded(work.get());
+			} catch (RuntimeException e) {
+				logger.warn("Reward job {} failed", job, e);
+				job.failed(e);
+			}
+		});
+		return job;
+	}
+
+	/**
+	 * Returns the job with the given id, or null if there is none or it is no
+	 * longer kept.
+	 */
+	public synchronized RewardJob get(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * The status of a reward job, and its report once it succeeded.
+	 */
+	public static class RewardJob {
+
+		public enum State {
+			RUNNING, SUCCEEDED, FAILED
+		}
+
+		private final String id;
+
+		private final String type;
+
+		private final Instant startedAt = Instant.now();
+
+		private volatile State state = State.RUNNING;
+
+		private volatile Instant finishedAt;
+
+		private volatile Object report;
+
+		private volatile String error;
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		RewardJob(String id, String type) {
+			this.id = id;
+			this.type = type;
+		}
+
+		void succeeded(Object report) {
+			this.report = report;
+			this.finishedAt = Instant.now();
+			this.state = State.SUCCEEDED;
+			done.countDown();
+		}
+
+		void failed(Exception e) {
+			this.error = e.getMessage();
+			this.finishedAt = Instant.now();
+			this.state = State.FAILED;
+			done.countDown();
+		}
+
+		/**
+		 * Waits up to the given timeout for the job to finish, returning true
+		 * if it did.
+		 */
+		boolean await(Duration timeout) throws InterruptedException {
+			return done.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		public Instant getStartedAt() {
+			return startedAt;
+		}
+
+		public Instant getFinishedAt() {
+			return finishedAt;
+		}
+
+		public Object getReport() {
+			return report;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public String toString() {
+			return type + " " + id;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package spring.academy.restful.web.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.internal.account.Account;
+import spring.academy.restful.rewards.internal.account.Beneficiary;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Hand-written Jackson serializers for the account graph returned by the
+ * <tt>/accounts</tt> endpoints.
+ * <p>
+ * They produce exactly the same JSON as the default bean serialization, but
+ * write fields straight from the getters without reflection, write decimals
+ * directly from their <code>BigDecimal</code> representation and compute the
+ * <tt>valid</tt> flag while the beneficiaries are being written instead of
+ * calling {@link Account#isValid()} for a second pass.
+ * <p>
+ * Registered automatically by Spring Boot as a {@link JsonComponent}; code
+ * running outside of a Spring context can use {@link #module()} instead.
+ */
+@JsonComponent
+public class AccountJsonSerializers {
+
+	/**
+	 * Returns a Jackson module registering all the serializers in this class.
+	 */
+	public static Module module() {
+		SimpleModule module = new SimpleModule("AccountJsonSerializers");
+		module.addSerializer(Account.class, new AccountSerializer());
+		module.addSerializer(Beneficiary.class, new BeneficiarySerializer());
+		module.addSerializer(Percentage.class, new PercentageSerializer());
+		module.addSerializer(MonetaryAmount.class, new MonetaryAmountSerializer());
+		return module;
+	}
+
+	public static class AccountSerializer extends StdSerializer<Account> {
+
+		public AccountSerializer() {
+			super(Account.class);
+		}
+
+		@Override
+		public void serialize(Account account, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			gen.writeStartObject(account);
+			writeEntityId(account.getEntityId(), gen);
+			gen.writeStringField("number", account.getNumber());
+			gen.writeStringField("name", account.getName());
+			gen.writeArrayFieldStart("beneficiaries");
+			BigDecimal totalAllocation = BigDecimal.ZERO;
+			for (Beneficiary beneficiary : account.getBeneficiaries()) {
+				writeBeneficiary(beneficiary, gen);
+				totalAllocation = totalAllocation.add(beneficiary.getAllocationPercentage().asBigDecimal());
+			}
+			gen.writeEndArray();
+			gen.writeBooleanField("valid", Account.isValidAllocationTotal(totalAllocation));
+			gen.writeEndObject();
+		}
+	}
+
+	public static class BeneficiarySerializer extends StdSerializer<Beneficiary> {
+
+		public BeneficiarySerializer() {
+			super(Beneficiary.class);
+		}
+
+		@Override
+		public void serialize(Beneficiary beneficiary, JsonGenerator gen, SerializerProvider provider)
+				throws IOException {
+			writeBeneficiary(beneficiary, gen);
+		}
+	}
+
+	public static class PercentageSerializer extends StdSerializer<Percentage> {
+
+		public PercentageSerializer() {
+			super(Percentage.class);
+		}
+
+		@Override
+		public void serialize(Percentage percentage, JsonGenerator gen, SerializerProvider provider)
+				throws IOException {
+			gen.writeNumber(percentage.asBigDecimal());
+		}
+	}
+
+	public static class MonetaryAmountSerializer extends StdSerializer<MonetaryAmount> {
+
+		public MonetaryAmountSerializer() {
+			super(MonetaryAmount.class);
+		}
+
+		@Override
+		public void serialize(MonetaryAmount amount, JsonGenerator gen, SerializerProvider provider)
+				throws IOException {
+			gen.writeNumber(amount.asBigDecimal());
+		}
+	}
+
+	private static void writeBeneficiary(Beneficiary beneficiary, JsonGenerator gen) throws IOException {
+		gen.writeStartObject(beneficiary);
+		writeEntityId(beneficiary.getEntityId(), gen);
+		gen.writeStringField("name", beneficiary.getName());
+		writeDecimalField("allocationPercentage",
+				beneficiary.getAllocationPercentage() == null ? null : beneficiary.getAllocationPercentage().asBigDecimal(),
+				gen);
+		writeDecimalField("savings",
+				beneficiary.getSavings() == null ? null : beneficiary.getSavings().asBigDecimal(), gen);
+		gen.writeEndObject();
+	}
+
+	private static void writeEntityId(Long entityId, JsonGenerator gen) throws IOException {
+		if (entityId == null) {
+			gen.writeNullField("entityId");
+		} else {
+			gen.writeNumberField("entityId", entityId.longValue());
+		}
+	}
+
+	private static void writeDecimalField(String name, BigDecimal value, JsonGenerator gen) throws IOException {
+		if (value == null) {
+			gen.writeNullField(name);
+		} else {
+			gen.writeNumberField(name, value);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package spring.academy.restful.web.reactive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.academy.restful.accounts.AccountField;
+import spring.academy.restful.accounts.AccountSummary;
+import spring.academy.restful.accounts.BeneficiarySummary;
+import spring.academy.restful.accounts.ReactiveAccountManager;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.internal.account.Account;
+import spring.academy.restful.web.AccountETag;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles requests for CRUD operations on Accounts and their Beneficiaries in
+ * the <tt>reactive</tt> profile. Serves the same contract as
+ * {@link spring.academy.restful.web.AccountController}; the routes are defined
+ * in {@link spring.academy.restful.config.ReactiveConfig}.
+ * <p>
+ * Account details carry the same {@link AccountETag} as on the servlet stack,
+ * and allocation updates honour <tt>If-Match</tt>. As no savings are buffered
+ * or pending in this profile, the tag is the account version alone. A
+ * <tt>fields</tt> parameter restricts the JSON written; unlike the servlet
+ * stack the whole account is still read, and responses restricted to some
+ * fields carry no ETag.
+ */
+public class ReactiveAccountHandler {
+
+	private static final ParameterizedTypeReference<Map<String, Percentage>> ALLOCATION_PERCENTAGES =
+			new ParameterizedTypeReference<Map<String, Percentage>>() {
+			};
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final ReactiveAccountManager accountManager;
+
+	public ReactiveAccountHandler(ReactiveAccountManager accountManager) {
+		this.accountManager = accountManager;
+	}
+
+	/**
+	 * Streams all accounts. Accounts are written as they are read, either as a
+	 * JSON array or, for <tt>Accept: application/x-ndjson</tt>, one account
+	 * per line. With a fields parameter (e.g. ?fields=number,name) only the
+	 * requested fields are written.
+	 */
+	public Mono<ServerResponse> accountSummary(ServerRequest request) {
+		Set<AccountField> fields = accountFields(request);
+		MediaType mediaType = request.headers().accept().contains(MediaType.APPLICATION_NDJSON)
+				? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON;
+		Flux<AccountSummary> accounts = accountManager.getAllAccounts();
+		if (fields != null) {
+			accounts = accounts.doOnNext(account -> account.includeOnly(fields));
+		}
+		return ServerResponse.ok().contentType(mediaType).body(accounts, AccountSummary.class);
+	}
+
+	/**
+	 * Provide the details of an account with the given id, or only the
+	 * requested fields of it. Only the owner of the account may read it.
+	 * <p>
+	 * The full account carries a strong ETag derived from its version; a
+	 * matching If-None-Match is answered with 304 Not Modified.
+	 */
+	public Mono<ServerResponse> accountDetails(ServerRequest request) {
+		Set<AccountField> fields = accountFields(request);
+		String ifNoneMatch = request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH);
+		return ownedAccount(request)
+				.flatMap(account -> {
+					if (fields != null) {
+						account.includeOnly(fields);
+						return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(account);
+					}
+					String eTag = AccountETag.of(account.getVersion(), null);
+					if (AccountETag.matchesIfNoneMatch(ifNoneMatch, eTag)) {
+						return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+					}
+					return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).eTag(eTag).bodyValue(account);
+				})
+				.onErrorResume(IllegalArgumentException.class, this::notFound);
+	}
+
+	/**
+	 * Creates a new Account, setting its URL as the Location header on the
+	 * response.
+	 */
+	public Mono<ServerResponse> createAccount(ServerRequest request) {
+		return request.bodyToMono(Account.class)
+				.flatMap(accountManager::save)
+				.flatMap(id -> ServerResponse.created(location(request, id)).build())
+				.onErrorResume(DataIntegrityViolationException.class, this::conflict);
+	}
+
+	public Mono<ServerResponse> removeAccount(ServerRequest request) {
+		return accountManager.removeAccount(accountId(request))
+				.then(ServerResponse.noContent().build());
+	}
+
+	/**
+	 * Returns the Beneficiary with the given name for the Account with the
+	 * given id.
+	 */
+	public Mono<ServerResponse> getBeneficiary(ServerRequest request) {
+		String beneficiaryName = request.pathVariable("beneficiaryName");
+		return account(request)
+				.map(account -> beneficiary(account, beneficiaryName))
+				.flatMap(beneficiary -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+						.bodyValue(beneficiary))
+				.onErrorResume(IllegalArgumentException.class, this::notFound);
+	}
+
+	/**
+	 * Adds a Beneficiary with the given name to the Account with the given id,
+	 * setting its URL as the Location header on the response.
+	 */
+	public Mono<ServerResponse> addBeneficiary(ServerRequest request) {
+		return request.bodyToMono(String.class)
+				.flatMap(name -> accountManager.addBeneficiary(accountId(request), name)
+						.then(ServerResponse.created(location(request, name)).build()))
+				.onErrorResume(IllegalArgumentException.class, this::notFound)
+				.onErrorResume(DataIntegrityViolationException.class, this::conflict);
+	}
+
+	/**
+	 * Removes the Beneficiary with the given name from the Account with the
+	 * given id, rebalancing the remaining allocations.
+	 */
+	public Mono<ServerResponse> removeBeneficiary(ServerRequest request) {
+		return accountManager.removeBeneficiary(accountId(request), request.pathVariable("beneficiaryName"))
+				.then(ServerResponse.noContent().build())
+				.onErrorResume(IllegalArgumentException.class, this::notFound);
+	}
+
+	/**
+	 * Updates the allocation percentages of the Account with the given id.
+	 * Only the owner of the account may update it. If an If-Match header is
+	 * sent, the update is only applied if the account is still at the version
+	 * of that ETag, otherwise 412 Precondition Failed is returned.
+	 */
+	public Mono<ServerResponse> updateBeneficiaryAllocationPercentages(ServerRequest request) {
+		Long accountId = accountId(request);
+		String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+		Long expectedVersion = ifMatch == null ? null : AccountETag.versionOf(ifMatch);
+		return ownedAccount(request)
+				.then(request.bodyToMono(ALLOCATION_PERCENTAGES))
+				.flatMap(allocationPercentages -> expectedVersion == null
+						? accountManager.updateBeneficiaryAllocationPercentages(accountId, allocationPercentages)
+						: accountManager.updateBeneficiaryAllocationPercentages(accountId, allocationPercentages,
+								expectedVersion))
+				.then(ServerResponse.noContent().build())
+				.onErrorResume(IllegalArgumentException.class, this::notFound)
+				.onErrorResume(OptimisticLockingFailureException.class, this::preconditionFailed);
+	}
+
+	private Mono<AccountSummary> account(ServerRequest request) {
+		Long accountId = accountId(request);
+		return accountManager.getAccount(accountId)
+				.switchIfEmpty(Mono.error(() -> new IllegalArgumentException("No such account with id " + accountId)));
+	}
+
+	/**
+	 * Finds the account of the request, failing with an
+	 * {@link AccessDeniedException} unless the caller owns it.
+	 */
+	private Mono<AccountSummary> ownedAccount(ServerRequest request) {
+		return request.principal()
+				.map(Principal::getName)
+				.zipWith(account(request))
+				.flatMap(callerAndAccount -> callerAndAccount.getT1().equals(callerAndAccount.getT2().getOwner())
+						? Mono.just(callerAndAccount.getT2())
+						: Mono.error(new AccessDeniedException("Access Denied")));
+	}
+
+	private static BeneficiarySummary beneficiary(AccountSummary account, String beneficiaryName) {
+		for (BeneficiarySummary beneficiary : account.getBeneficiaries()) {
+			if (beneficiary.getName().equals(beneficiaryName)) {
+				return beneficiary;
+			}
+		}
+		throw new IllegalArgumentException("No such beneficiary with name '" + beneficiaryName + "'");
+	}
+
+	private static Long accountId(ServerRequest request) {
+		try {
+			return Long.valueOf(request.pathVariable("accountId"));
+		} catch (NumberFormatException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not an account id", e);
+		}
+	}
+
+	/**
+	 * Returns the account fields requested by the fields parameter, or null
+	 * if there is none.
+	 */
+	private static Set<AccountField> accountFields(ServerRequest request) {
+		List<String> values = request.queryParams().get("fields");
+		if (values == null) {
+			return null;
+		}
+		List<String> names = new ArrayList<String>();
+		for (String value : values) {
+			names.addAll(Arrays.asList(value.split(",")));
+		}
+		try {
+			return AccountField.fromJsonNames(names);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+	}
+
+	private static URI location(ServerRequest request, Object resourceId) {
+		return request.uriBuilder().path("/{resourceId}").build(resourceId);
+	}
+
+	private Mono<ServerResponse> notFound(Throwable ex) {
+		logger.error("Exception is: ", ex);
+		return ServerResponse.notFound().build();
+	}
+
+	private Mono<ServerResponse> conflict(Throwable ex) {
+		logger.error("Exception is: ", ex);
+		return ServerResponse.status(HttpStatus.CONFLICT).build();
+	}
+
+	private Mono<ServerResponse> preconditionFailed(Throwable ex) {
+		logger.warn("Precondition failed: {}", ex.getMessage());
+		return ServerResponse.status(HttpStatus.PRECONDITION_FAILED).build();
+	}
+}
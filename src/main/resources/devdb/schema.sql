@@ -1,20 +1,36 @@
+drop table T_BENEFICIARY_LEDGER if exists;
 drop table T_ACCOUNT_BENEFICIARY if exists;
 drop table T_ACCOUNT_CREDIT_CARD if exists;
 drop table T_ACCOUNT if exists;
 drop table T_RESTAURANT if exists;
 drop table T_REWARD if exists;
+drop table T_REWARD_ACCOUNT_MONTH if exists;
+drop table T_REWARD_MERCHANT_DAY if exists;
 drop sequence S_REWARD_CONFIRMATION_NUMBER if exists;
 drop table DUAL_REWARD_CONFIRMATION_NUMBER if exists;
+drop table T_SAVINGS_CHECKPOINT if exists;
+drop table T_OUTBOX if exists;
+drop table T_RECOMPUTE_CHECKPOINT if exists;
 
-create table T_ACCOUNT (ID integer identity primary key, NUMBER varchar(9), NAME varchar(50) not null, unique(NUMBER));
+create table T_ACCOUNT (ID integer identity primary key, NUMBER varchar(9), NAME varchar(50) not null, VERSION integer default 0 not null, unique(NUMBER));
 create table T_ACCOUNT_CREDIT_CARD (ID integer identity primary key, ACCOUNT_ID integer, NUMBER varchar(16), unique(ACCOUNT_ID, NUMBER));
 create table T_ACCOUNT_BENEFICIARY (ID integer identity primary key, ACCOUNT_ID integer, NAME varchar(50), ALLOCATION_PERCENTAGE decimal(3,2) not null, SAVINGS decimal(8,2) not null, unique(ACCOUNT_ID, NAME));
-create table T_RESTAURANT (ID integer identity primary key, MERCHANT_NUMBER varchar(10) not null, NAME varchar(80) not null, BENEFIT_PERCENTAGE decimal(3,2) not null, BENEFIT_AVAILABILITY_POLICY varchar(1) not null, unique(MERCHANT_NUMBER));
-create table T_REWARD (ID integer identity primary key, CONFIRMATION_NUMBER varchar(25) not null, REWARD_AMOUNT decimal(8,2) not null, REWARD_DATE date not null, ACCOUNT_NUMBER varchar(9) not null, DINING_AMOUNT decimal not null, DINING_MERCHANT_NUMBER varchar(10) not null, DINING_DATE date not null, unique(CONFIRMATION_NUMBER));
+create table T_BENEFICIARY_LEDGER (ID bigint identity primary key, BENEFICIARY_ID integer not null, AMOUNT decimal(8,2) not null);
+create table T_SAVINGS_CHECKPOINT (NODE_ID varchar(64) primary key, SEGMENT bigint not null);
+create table T_OUTBOX (ID bigint identity primary key, EVENT_TYPE varchar(30) not null, AGGREGATE_ID varchar(25) not null, PAYLOAD varchar(1000) not null, CREATED_AT timestamp not null, CLAIMED_BY varchar(64), CLAIMED_AT timestamp);
+create table T_RESTAURANT (ID integer identity primary key, MERCHANT_NUMBER varchar(10) not null, NAME varchar(80) not null, BENEFIT_PERCENTAGE decimal(3,2) not null, BENEFIT_AVAILABILITY_POLICY varchar(200) not null, unique(MERCHANT_NUMBER));
+create table T_REWARD (ID integer identity primary key, CONFIRMATION_NUMBER varchar(25) not null, REWARD_AMOUNT decimal(8,2) not null, REWARD_DATE date not null, ACCOUNT_NUMBER varchar(9) not null, DINING_AMOUNT decimal(8,2) not null, DINING_MERCHANT_NUMBER varchar(10) not null, DINING_DATE date not null, CORRECTS_ID integer, unique(CONFIRMATION_NUMBER));
+create index IX_REWARD_CORRECTS on T_REWARD (CORRECTS_ID);
+create index IX_REWARD_ACCOUNT_DATE on T_REWARD (ACCOUNT_NUMBER, REWARD_DATE, ID);
+create index IX_REWARD_MERCHANT_DATE on T_REWARD (DINING_MERCHANT_NUMBER, DINING_DATE, ID);
+create table T_REWARD_ACCOUNT_MONTH (ACCOUNT_NUMBER varchar(9) not null, REWARD_MONTH date not null, REWARD_COUNT integer not null, REWARD_TOTAL decimal(12,2) not null, DINING_TOTAL decimal(14,2) not null, primary key (ACCOUNT_NUMBER, REWARD_MONTH));
+create table T_RECOMPUTE_CHECKPOINT (JOB_ID varchar(64) not null, RANGE_START bigint not null, RANGE_END bigint not null, CORRECTIONS integer not null, primary key (JOB_ID, RANGE_START));
+create table T_REWARD_MERCHANT_DAY (MERCHANT_NUMBER varchar(10) not null, DINING_DAY date not null, REWARD_COUNT integer not null, REWARD_TOTAL decimal(12,2) not null, DINING_TOTAL decimal(14,2) not null, primary key (MERCHANT_NUMBER, DINING_DAY));
 
 create sequence S_REWARD_CONFIRMATION_NUMBER start with 1;
 create table DUAL_REWARD_CONFIRMATION_NUMBER (ZERO integer);
 insert into DUAL_REWARD_CONFIRMATION_NUMBER values (0);
        
 alter table T_ACCOUNT_CREDIT_CARD add constraint FK_ACCOUNT_CREDIT_CARD foreign key (ACCOUNT_ID) references T_ACCOUNT(ID) on delete cascade;
-alter table T_ACCOUNT_BENEFICIARY add constraint FK_ACCOUNT_BENEFICIARY foreign key (ACCOUNT_ID) references T_ACCOUNT(ID) on delete cascade;
\ No newline at end of file
+alter table T_ACCOUNT_BENEFICIARY add constraint FK_ACCOUNT_BENEFICIARY foreign key (ACCOUNT_ID) references T_ACCOUNT(ID) on delete cascade;
+alter table T_BENEFICIARY_LEDGER add constraint FK_BENEFICIARY_LEDGER foreign key (BENEFICIARY_ID) references T_ACCOUNT_BENEFICIARY(ID) on delete cascade;
@@ -1,15 +1,34 @@
+drop table if exists T_BENEFICIARY_LEDGER;
 drop table if exists T_ACCOUNT_BENEFICIARY;
 drop table if exists T_ACCOUNT_CREDIT_CARD;
 drop table if exists T_ACCOUNT;
 drop table if exists T_RESTAURANT;
 drop table if exists T_REWARD;
+drop table if exists T_REWARD_ACCOUNT_MONTH;
+drop table if exists T_REWARD_MERCHANT_DAY;
+drop table if exists T_REWARD_AGGREGATE_LOCK;
 drop table if exists DUAL_REWARD_CONFIRMATION_NUMBER;
+drop table if exists T_SAVINGS_CHECKPOINT;
+drop table if exists T_OUTBOX;
+drop table if exists T_RECOMPUTE_CHECKPOINT;
 
-create table T_ACCOUNT (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), NUMBER varchar(9), NAME varchar(50));
+create table T_ACCOUNT (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), NUMBER varchar(9), NAME varchar(50), VERSION int NOT NULL DEFAULT 0);
 create table T_ACCOUNT_CREDIT_CARD (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), ACCOUNT_ID integer, NUMBER varchar(16), unique(ACCOUNT_ID, NUMBER));
 create table T_ACCOUNT_BENEFICIARY (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), ACCOUNT_ID integer, NAME varchar(50), ALLOCATION_PERCENTAGE decimal(3,2), SAVINGS decimal(8,2));
-create table T_RESTAURANT (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), MERCHANT_NUMBER varchar(10), NAME varchar(80), BENEFIT_PERCENTAGE decimal(3,2), BENEFIT_AVAILABILITY_POLICY varchar(1));
-create table T_REWARD (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), CONFIRMATION_NUMBER varchar(25), REWARD_AMOUNT decimal(8,2), REWARD_DATE date, ACCOUNT_NUMBER varchar(9), DINING_AMOUNT decimal(8,2), DINING_MERCHANT_NUMBER varchar(10), DINING_DATE date);
+create table T_BENEFICIARY_LEDGER (ID BIGINT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), BENEFICIARY_ID integer NOT NULL, AMOUNT decimal(8,2) NOT NULL, INDEX IX_BENEFICIARY_LEDGER_BENEFICIARY (BENEFICIARY_ID));
+create table T_SAVINGS_CHECKPOINT (NODE_ID varchar(64) NOT NULL, PRIMARY KEY(NODE_ID), SEGMENT BIGINT NOT NULL);
+create table T_OUTBOX (ID BIGINT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), EVENT_TYPE varchar(30) NOT NULL, AGGREGATE_ID varchar(25) NOT NULL, PAYLOAD varchar(1000) NOT NULL, CREATED_AT timestamp(3) NOT NULL, CLAIMED_BY varchar(64), CLAIMED_AT timestamp(3) NULL);
+create table T_RESTAURANT (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), MERCHANT_NUMBER varchar(10), NAME varchar(80), BENEFIT_PERCENTAGE decimal(3,2), BENEFIT_AVAILABILITY_POLICY varchar(200));
+create table T_REWARD (ID INT NOT NULL AUTO_INCREMENT, PRIMARY KEY(ID), CONFIRMATION_NUMBER varchar(25), REWARD_AMOUNT decimal(8,2), REWARD_DATE date, ACCOUNT_NUMBER varchar(9), DINING_AMOUNT decimal(8,2), DINING_MERCHANT_NUMBER varchar(10), DINING_DATE date, CORRECTS_ID int);
+create index IX_REWARD_CORRECTS on T_REWARD (CORRECTS_ID);
+create unique index UX_REWARD_CONFIRMATION_NUMBER on T_REWARD (CONFIRMATION_NUMBER);
+create index IX_REWARD_ACCOUNT_DATE on T_REWARD (ACCOUNT_NUMBER, REWARD_DATE, ID);
+create index IX_REWARD_MERCHANT_DATE on T_REWARD (DINING_MERCHANT_NUMBER, DINING_DATE, ID);
+create table T_REWARD_ACCOUNT_MONTH (ACCOUNT_NUMBER varchar(9) NOT NULL, REWARD_MONTH date NOT NULL, PRIMARY KEY(ACCOUNT_NUMBER, REWARD_MONTH), REWARD_COUNT int NOT NULL, REWARD_TOTAL decimal(12,2) NOT NULL, DINING_TOTAL decimal(14,2) NOT NULL);
+create table T_RECOMPUTE_CHECKPOINT (JOB_ID varchar(64) NOT NULL, RANGE_START BIGINT NOT NULL, PRIMARY KEY(JOB_ID, RANGE_START), RANGE_END BIGINT NOT NULL, CORRECTIONS int NOT NULL);
+create table T_REWARD_MERCHANT_DAY (MERCHANT_NUMBER varchar(10) NOT NULL, DINING_DAY date NOT NULL, PRIMARY KEY(MERCHANT_NUMBER, DINING_DAY), REWARD_COUNT int NOT NULL, REWARD_TOTAL decimal(12,2) NOT NULL, DINING_TOTAL decimal(14,2) NOT NULL);
+create table T_REWARD_AGGREGATE_LOCK (ID int NOT NULL, PRIMARY KEY(ID));
+insert into T_REWARD_AGGREGATE_LOCK (ID) values (1);
 
 create table DUAL_REWARD_CONFIRMATION_NUMBER (ZERO int);
 insert into DUAL_REWARD_CONFIRMATION_NUMBER values (0);
\ No newline at end of file
@@ -0,0 +1,175 @@
+package spring.academy.restful.perf;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.JwtRequestPostProcessor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.rewards.internal.account.Account;
+import spring.academy.restful.rewards.internal.account.Beneficiary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Measures the <tt>/accounts</tt> endpoints, from the security filters to the
+ * serialized response, against the sample data in an in-memory HSQLDB, and
+ * fails when one exceeds its budget, see {@link PerfBudgets}. Requests are
+ * sent through {@link MockMvc}, on the calling thread, so the bytes they
+ * allocate are measured. Run with <tt>./gradlew perfTest</tt>; the
+ * measurements are written to
+ * <tt>build/reports/perf/accountController.json</tt>.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("perf")
+@Import(PerfTestConfig.class)
+public class AccountControllerPerfTests {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountControllerPerfTests.class);
+
+    static final long SEED = 42;
+
+    private static final PerfWorkload workload = new PerfWorkload(SEED, 200, 2000);
+
+    private static final PerfBudgets budgets = PerfBudgets.load();
+
+    private static final List<PerfWorkload.Measurement> measurements = new ArrayList<>();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountManager accountManager;
+
+    private List<Account> accounts;
+
+    private final List<Beneficiary> beneficiaries = new ArrayList<>();
+
+    private final List<Account> beneficiaryAccounts = new ArrayList<>();
+
+    @BeforeEach
+    void loadAccounts() {
+        accounts = accountManager.getAllAccounts().stream()
+                .sorted(Comparator.comparing(Account::getEntityId))
+                .toList();
+        for (Account account : accounts) {
+            account.getBeneficiaries().stream()
+                    .sorted(Comparator.comparing(Beneficiary::getName))
+                    .forEach(beneficiary -> {
+                        beneficiaries.add(beneficiary);
+                        beneficiaryAccounts.add(account);
+                    });
+        }
+    }
+
+    @Test
+    void listAccounts() throws Exception {
+        measure("accountController.listAccounts", random -> mockMvc.perform(get("/accounts")
+                        .with(banker()))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void listAccountFields() throws Exception {
+        measure("accountController.listAccountFields", random -> mockMvc.perform(get("/accounts")
+                        .param("fields", "number,name")
+                        .with(banker()))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void accountDetails() throws Exception {
+        measure("accountController.accountDetails", random -> {
+            Account account = pick(accounts, random);
+            mockMvc.perform(get("/accounts/{id}", account.getEntityId())
+                            .with(owner(account)))
+                    .andExpect(status().isOk());
+        });
+    }
+
+    @Test
+    void accountDetailFields() throws Exception {
+        measure("accountController.accountDetailFields", random -> {
+            Account account = pick(accounts, random);
+            mockMvc.perform(get("/accounts/{id}", account.getEntityId())
+                            .param("fields", "number,name")
+                            .with(owner(account)))
+                    .andExpect(status().isOk());
+        });
+    }
+
+    @Test
+    void getBeneficiary() throws Exception {
+        measure("accountController.getBeneficiary", random -> {
+            int index = random.nextInt(beneficiaries.size());
+            Account account = beneficiaryAccounts.get(index);
+            mockMvc.perform(get("/accounts/{accountId}/beneficiaries/{name}", account.getEntityId(),
+                            beneficiaries.get(index).getName())
+                            .with(owner(account)))
+                    .andExpect(status().isOk());
+        });
+    }
+
+    @Test
+    void addAndRemoveBeneficiary() throws Exception {
+        measure("accountController.addAndRemoveBeneficiary", random -> {
+            Account account = pick(accounts, random);
+            String name = "Perf " + Long.toHexString(random.nextLong());
+            mockMvc.perform(post("/accounts/{accountId}/beneficiaries", account.getEntityId())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(name)
+                            .with(owner(account)))
+                    .andExpect(status().isCreated());
+            mockMvc.perform(delete("/accounts/{accountId}/beneficiaries/{name}", account.getEntityId(), name)
+                            .with(owner(account)))
+                    .andExpect(status().isNoContent());
+        });
+    }
+
+    @AfterAll
+    static void writeReport() throws IOException {
+        Path report = budgets.write("accountController", SEED, measurements, Path.of("build/reports/perf"));
+        log.info("report: {}", report.toAbsolutePath());
+    }
+
+    private static <T> T pick(List<T> values, Random random) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static JwtRequestPostProcessor owner(Account account) {
+        return jwt().jwt(token -> token.subject(account.getName()))
+                .authorities(new SimpleGrantedAuthority("SCOPE_rewards:CUSTOMER"));
+    }
+
+    private static JwtRequestPostProcessor banker() {
+        return jwt().authorities(new SimpleGrantedAuthority("SCOPE_rewards:BANKER"));
+    }
+
+    private void measure(String name, PerfWorkload.Operation operation) throws Exception {
+        PerfWorkload.Measurement measurement = workload.run(name, operation);
+        measurements.add(measurement);
+        log.info("{}", measurement);
+        budgets.assertWithin(measurement);
+    }
+}
@@ -0,0 +1,110 @@
+package spring.academy.restful.perf;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import spring.academy.restful.accounts.AccountField;
+import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures the {@link AccountManager} operations against the sample data in
+ * an in-memory HSQLDB, and fails when one exceeds its budget, see
+ * {@link PerfBudgets}. Run with <tt>./gradlew perfTest</tt>; the
+ * measurements are written to <tt>build/reports/perf/accountManager.json</tt>.
+ */
+@SpringBootTest
+@ActiveProfiles("perf")
+@Import(PerfTestConfig.class)
+public class AccountManagerPerfTests {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountManagerPerfTests.class);
+
+    static final long SEED = 42;
+
+    private static final PerfWorkload workload = new PerfWorkload(SEED, 200, 2000);
+
+    private static final PerfBudgets budgets = PerfBudgets.load();
+
+    private static final List<PerfWorkload.Measurement> measurements = new ArrayList<>();
+
+    private static final Set<AccountField> SUMMARY_FIELDS = EnumSet.of(AccountField.NUMBER, AccountField.NAME);
+
+    @Autowired
+    private AccountManager accountManager;
+
+    private List<Long> accountIds;
+
+    @BeforeEach
+    void loadAccountIds() {
+        accountIds = accountManager.getAllAccounts().stream().map(Account::getEntityId).sorted().toList();
+    }
+
+    @Test
+    void getAllAccounts() throws Exception {
+        measure("accountManager.getAllAccounts", random -> accountManager.getAllAccounts());
+    }
+
+    @Test
+    void getAccountSummaries() throws Exception {
+        measure("accountManager.getAccountSummaries",
+                random -> accountManager.getAccountSummaries(SUMMARY_FIELDS));
+    }
+
+    @Test
+    void getAccount() throws Exception {
+        measure("accountManager.getAccount", random -> accountManager.getAccount(pick(random)));
+    }
+
+    @Test
+    void getAccountSummaryWithBeneficiaries() throws Exception {
+        measure("accountManager.getAccountSummaryWithBeneficiaries", random -> accountManager.getAccountSummary(
+                pick(random), EnumSet.of(AccountField.NAME, AccountField.BENEFICIARIES)));
+    }
+
+    @Test
+    void getAccountVersion() throws Exception {
+        measure("accountManager.getAccountVersion", random -> accountManager.getAccountVersion(pick(random)));
+    }
+
+    @Test
+    void addAndRemoveBeneficiary() throws Exception {
+        measure("accountManager.addAndRemoveBeneficiary", random -> {
+            Long accountId = pick(random);
+            String name = "Perf " + Long.toHexString(random.nextLong());
+            accountManager.addBeneficiary(accountId, name);
+            accountManager.removeBeneficiaryAndRebalance(accountId, name);
+        });
+    }
+
+    @AfterAll
+    static void writeReport() throws IOException {
+        Path report = budgets.write("accountManager", SEED, measurements, Path.of("build/reports/perf"));
+        log.info("report: {}", report.toAbsolutePath());
+    }
+
+    private Long pick(Random random) {
+        return accountIds.get(random.nextInt(accountIds.size()));
+    }
+
+    private void measure(String name, PerfWorkload.Operation operation) throws Exception {
+        PerfWorkload.Measurement measurement = workload.run(name, operation);
+        measurements.add(measurement);
+        log.info("{}", measurement);
+        budgets.assertWithin(measurement);
+    }
+}
@@ -0,0 +1,127 @@
+package spring.academy.restful.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The budgets of the operations measured by the performance tests, read from
+ * <tt>perf-budgets.properties</tt>. Each operation has three:
+ * <ul>
+ * <li><tt>&lt;operation&gt;.p99-millis</tt>, the 99th percentile of its
+ * latency</li>
+ * <li><tt>&lt;operation&gt;.max-statements</tt>, the SQL statements of any one
+ * run</li>
+ * <li><tt>&lt;operation&gt;.allocated-bytes</tt>, the mean bytes allocated by
+ * a run</li>
+ * </ul>
+ * An operation without a budget fails, so a new operation is not measured
+ * without anything to compare with.
+ */
+final class PerfBudgets {
+
+    static final String LOCATION = "perf-budgets.properties";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Properties budgets;
+
+    private PerfBudgets(Properties budgets) {
+        this.budgets = budgets;
+    }
+
+    /**
+     * Reads the budgets from the classpath.
+     */
+    static PerfBudgets load() {
+        try {
+            return new PerfBudgets(PropertiesLoaderUtils.loadProperties(new ClassPathResource(LOCATION)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + LOCATION, e);
+        }
+    }
+
+    /**
+     * Checks a measured operation against its budgets.
+     *
+     * @throws AssertionError
+     *             listing every budget the operation exceeded
+     */
+    void assertWithin(PerfWorkload.Measurement measurement) {
+        List<String> exceeded = new ArrayList<>();
+        double p99Millis = budget(measurement.name, "p99-millis");
+        if (measurement.p99Millis() > p99Millis) {
+            exceeded.add(String.format("p99 latency %.3f ms > %s ms", measurement.p99Millis(), p99Millis));
+        }
+        double maxStatements = budget(measurement.name, "max-statements");
+        if (measurement.maxStatements > maxStatements) {
+            exceeded.add(measurement.maxStatements + " SQL statements > " + (long) maxStatements);
+        }
+        double allocatedBytes = budget(measurement.name, "allocated-bytes");
+        if (measurement.meanAllocatedBytes() > allocatedBytes) {
+            exceeded.add(measurement.meanAllocatedBytes() + " bytes allocated > " + (long) allocatedBytes);
+        }
+        if (!exceeded.isEmpty()) {
+            throw new AssertionError(measurement.name + " is over budget: " + String.join(", ", exceeded)
+                    + "\n  " + measurement);
+        }
+    }
+
+    private double budget(String operation, String name) {
+        String budget = budgets.getProperty(operation + "." + name);
+        if (budget == null) {
+            throw new AssertionError("No " + operation + "." + name + " budget in " + LOCATION);
+        }
+        return Double.parseDouble(budget.trim());
+    }
+
+    /**
+     * Writes the measurements of a test and their budgets to
+     * <tt>&lt;name&gt;.json</tt>, for comparison with other runs.
+     *
+     * @return the JSON report
+     */
+    Path write(String name, long seed, List<PerfWorkload.Measurement> measurements, Path directory)
+            throws IOException {
+        Files.createDirectories(directory);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("name", name);
+        report.put("finishedAt", Instant.now().toString());
+        report.put("seed", seed);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (PerfWorkload.Measurement measurement : measurements) {
+            Map<String, Object> operation = new LinkedHashMap<>();
+            operation.put("iterations", measurement.iterations);
+            operation.put("p50Millis", measurement.latencies.getValueAtPercentile(50) / 1e6);
+            operation.put("p99Millis", measurement.p99Millis());
+            operation.put("maxMillis", measurement.latencies.getMaxValue() / 1e6);
+            operation.put("maxStatements", measurement.maxStatements);
+            operation.put("meanStatements", measurement.meanStatements());
+            operation.put("maxRepetitions", measurement.maxRepetitions);
+            operation.put("allocatedBytes", measurement.meanAllocatedBytes());
+            Map<String, String> budget = new LinkedHashMap<>();
+            for (String key : List.of("p99-millis", "max-statements", "allocated-bytes")) {
+                budget.put(key, budgets.getProperty(measurement.name + "." + key));
+            }
+            operation.put("budget", budget);
+            operations.put(measurement.name, operation);
+        }
+        report.put("operations", operations);
+
+        Path json = directory.resolve(name + ".json");
+        objectMapper.writeValue(json.toFile(), report);
+        return json;
+    }
+}
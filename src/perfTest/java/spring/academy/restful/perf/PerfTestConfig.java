@@ -0,0 +1,23 @@
+package spring.academy.restful.perf;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import spring.academy.restful.config.StatementMetricsConfig;
+import spring.academy.restful.jdbc.StatementCountingDataSource;
+
+/**
+ * Counts the statements sent through the data source, see
+ * {@link StatementCountingDataSource}, with the post-processor of
+ * {@link StatementMetricsConfig} but without its sampled metrics, which would
+ * add to the allocations measured. Either skips a data source the other
+ * wrapped already.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+class PerfTestConfig {
+
+    @Bean
+    static BeanPostProcessor perfStatementCountingDataSourcePostProcessor() {
+        return StatementMetricsConfig.statementCountingDataSourcePostProcessor();
+    }
+}
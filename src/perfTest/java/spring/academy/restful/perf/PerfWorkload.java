@@ -0,0 +1,141 @@
+package spring.academy.restful.perf;
+
+import org.HdrHistogram.Histogram;
+import spring.academy.restful.jdbc.StatementTally;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an operation over and over on the current thread, after a warm-up,
+ * and measures each run: its latency, the SQL statements it executed, see
+ * {@link StatementTally}, and the bytes it allocated on the heap.
+ * <p>
+ * Every operation draws its arguments from a generator seeded with the same
+ * seed, so each run of the workload sends the same sequence of operations.
+ */
+final class PerfWorkload {
+
+    /**
+     * Latencies up to 10 seconds, to 3 significant digits.
+     */
+    static final long HIGHEST_LATENCY = TimeUnit.SECONDS.toNanos(10);
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final long seed;
+
+    private final int warmUp;
+
+    private final int iterations;
+
+    /**
+     * Creates a new workload.
+     *
+     * @param seed
+     *            the seed of the arguments of the operations
+     * @param warmUp
+     *            the number of runs of an operation before it is measured
+     * @param iterations
+     *            the number of measured runs of an operation
+     */
+    PerfWorkload(long seed, int warmUp, int iterations) {
+        this.seed = seed;
+        this.warmUp = warmUp;
+        this.iterations = iterations;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM does not measure the bytes allocated by a thread");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Warms an operation up, then measures it.
+     */
+    Measurement run(String name, Operation operation) throws Exception {
+        Random random = new Random(seed);
+        for (int i = 0; i < warmUp; i++) {
+            operation.run(random);
+        }
+        Measurement measurement = new Measurement(name, iterations);
+        for (int i = 0; i < iterations; i++) {
+            try (StatementTally tally = StatementTally.open("perf")) {
+                long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                operation.run(random);
+                long latency = System.nanoTime() - start;
+                long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                measurement.record(latency, tally, allocated);
+            }
+        }
+        return measurement;
+    }
+
+    /**
+     * One run of an operation.
+     */
+    @FunctionalInterface
+    interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @param random
+         *            draws the arguments of the run, e.g. the account
+         */
+        void run(Random random) throws Exception;
+    }
+
+    /**
+     * The measured runs of an operation.
+     */
+    static final class Measurement {
+
+        final String name;
+
+        final int iterations;
+
+        final Histogram latencies = new Histogram(HIGHEST_LATENCY, 3);
+
+        long maxStatements;
+
+        long totalStatements;
+
+        int maxRepetitions;
+
+        long totalAllocatedBytes;
+
+        Measurement(String name, int iterations) {
+            this.name = name;
+            this.iterations = iterations;
+        }
+
+        void record(long latency, StatementTally statements, long allocatedBytes) {
+            latencies.recordValue(Math.min(latency, HIGHEST_LATENCY));
+            maxStatements = Math.max(maxStatements, statements.getCount());
+            totalStatements += statements.getCount();
+            maxRepetitions = Math.max(maxRepetitions, statements.getMaxRepetitions());
+            totalAllocatedBytes += allocatedBytes;
+        }
+
+        double p99Millis() {
+            return latencies.getValueAtPercentile(99) / 1e6;
+        }
+
+        double meanStatements() {
+            return (double) totalStatements / iterations;
+        }
+
+        long meanAllocatedBytes() {
+            return totalAllocatedBytes / iterations;
+        }
+
+        public String toString() {
+            return String.format("%s: p50 %.3f ms, p99 %.3f ms, max %.3f ms, %d statements at most (%.2f mean),"
+                            + " %d bytes allocated", name, latencies.getValueAtPercentile(50) / 1e6, p99Millis(),
+                    latencies.getMaxValue() / 1e6, maxStatements, meanStatements(), meanAllocatedBytes());
+        }
+    }
+}
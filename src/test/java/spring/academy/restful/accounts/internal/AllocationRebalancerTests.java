@@ -0,0 +1,56 @@
+package spring.academy.restful.accounts.internal;
+
+import org.junit.jupiter.api.Test;
+import spring.academy.restful.common.money.Percentage;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AllocationRebalancerTests {
+
+    @Test
+    public void shouldSplitRemovedAllocationEvenly() {
+        Map<String, Percentage> rebalanced = AllocationRebalancer.rebalance(
+                Map.of("Annabelle", Percentage.valueOf("30%"), "Corgan", Percentage.valueOf("20%")),
+                Percentage.valueOf("50%"));
+
+        assertEquals(Percentage.valueOf("55%"), rebalanced.get("Annabelle"));
+        assertEquals(Percentage.valueOf("45%"), rebalanced.get("Corgan"));
+    }
+
+    @Test
+    public void shouldGiveRemainderToFirstBeneficiaryByName() {
+        Map<String, Percentage> rebalanced = AllocationRebalancer.rebalance(
+                Map.of("Pascal", Percentage.valueOf("25%"), "Cobol", Percentage.valueOf("25%"),
+                        "Ada", Percentage.valueOf("25%")),
+                Percentage.valueOf("25%"));
+
+        assertEquals(List.of("Ada", "Cobol", "Pascal"), List.copyOf(rebalanced.keySet()));
+        assertEquals(Percentage.valueOf("34%"), rebalanced.get("Ada"));
+        assertEquals(Percentage.valueOf("33%"), rebalanced.get("Cobol"));
+        assertEquals(Percentage.valueOf("33%"), rebalanced.get("Pascal"));
+    }
+
+    @Test
+    public void shouldKeepTotalWhenRemovedAllocationIsSmallerThanOnePercentPerBeneficiary() {
+        Map<String, Percentage> rebalanced = AllocationRebalancer.rebalance(
+                Map.of("Ada", Percentage.valueOf("50%"), "Cobol", Percentage.valueOf("49%")),
+                Percentage.valueOf("1%"));
+
+        assertEquals(Percentage.valueOf("51%"), rebalanced.get("Ada"));
+        assertEquals(Percentage.valueOf("49%"), rebalanced.get("Cobol"));
+    }
+
+    @Test
+    public void shouldChangeNothingWhenRemovedAllocationIsZero() {
+        assertTrue(AllocationRebalancer.rebalance(Map.of("Ada", Percentage.oneHundred()), Percentage.zero()).isEmpty());
+    }
+
+    @Test
+    public void shouldChangeNothingWhenNoBeneficiaryRemains() {
+        assertTrue(AllocationRebalancer.rebalance(Map.of(), Percentage.oneHundred()).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package spring.academy.restful.accounts.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import spring.academy.restful.accounts.AllocationUpdateResult;
+import spring.academy.restful.common.money.Percentage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = {
+        "spring.sql.init.schema-locations=classpath:devdb/schema.sql",
+        "spring.sql.init.data-locations=classpath:devdb/data.sql",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@Import(JpaAccountManager.class)
+public class JpaAccountManagerBatchTests {
+
+    @Autowired
+    private JpaAccountManager accountManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The batch update commits, outside of a test transaction, so its
+     * accounts are removed again.
+     */
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID in"
+                + " (select ID from T_ACCOUNT where NUMBER like '9%')");
+        jdbcTemplate.update("delete from T_ACCOUNT where NUMBER like '9%'");
+    }
+
+    /**
+     * Runs outside of a test transaction, so the batch update commits like it
+     * does in production.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void shouldIncrementTheVersionOfEveryAccountAcrossChunks() {
+        int count = JpaAccountManager.CHUNK_SIZE + JpaAccountManager.CHUNK_SIZE / 2;
+        List<Object[]> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Object[] { String.format("9%08d", i), "Batch account " + i });
+        }
+        jdbcTemplate.batchUpdate("insert into T_ACCOUNT (NUMBER, NAME) values (?, ?)", accounts);
+        jdbcTemplate.update("insert into T_ACCOUNT_BENEFICIARY (ACCOUNT_ID, NAME, ALLOCATION_PERCENTAGE, SAVINGS)"
+                + " select ID, 'Batch beneficiary', 1.00, 0.00 from T_ACCOUNT where NUMBER like '9%'");
+        Map<Long, Long> versionsBefore = versions();
+        assertEquals(count, versionsBefore.size());
+
+        Map<Long, Map<String, Percentage>> allocations = new LinkedHashMap<>();
+        for (Long accountId : versionsBefore.keySet()) {
+            allocations.put(accountId, Map.of("Batch beneficiary", Percentage.oneHundred()));
+        }
+        List<AllocationUpdateResult> results = accountManager.updateBeneficiaryAllocationPercentagesInBatch(allocations);
+
+        assertEquals(count, results.size());
+        for (AllocationUpdateResult result : results) {
+            assertEquals(AllocationUpdateResult.Outcome.UPDATED, result.getOutcome(), result.toString());
+        }
+        Map<Long, Long> versionsAfter = versions();
+        for (Map.Entry<Long, Long> before : versionsBefore.entrySet()) {
+            assertEquals(before.getValue() + 1, versionsAfter.get(before.getKey()),
+                    "Version of account " + before.getKey());
+        }
+    }
+
+    private Map<Long, Long> versions() {
+        Map<Long, Long> versions = new LinkedHashMap<>();
+        jdbcTemplate.query("select ID, VERSION from T_ACCOUNT where NUMBER like '9%' order by ID",
+                rs -> {
+                    versions.put(rs.getLong("ID"), rs.getLong("VERSION"));
+                });
+        return versions;
+    }
+}
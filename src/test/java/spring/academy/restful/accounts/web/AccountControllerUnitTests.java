@@ -2,25 +2,31 @@ package spring.academy.restful.accounts.web;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import spring.academy.restful.accounts.AccountField;
 import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.accounts.AccountSummary;
+import spring.academy.restful.accounts.AccountVersion;
+import spring.academy.restful.accounts.AllocationUpdateResult;
+import spring.academy.restful.common.money.MonetaryAmount;
 import spring.academy.restful.common.money.Percentage;
 import spring.academy.restful.config.SecurityConfig;
 import spring.academy.restful.config.authz.AccountAuthorization;
 import spring.academy.restful.jwt.Constants;
 import spring.academy.restful.rewards.internal.account.Account;
-import spring.academy.restful.rewards.internal.account.Beneficiary;
 import spring.academy.restful.web.AccountController;
+import spring.academy.restful.web.AccountJsonCache;
 
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,7 +36,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -43,7 +51,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(AccountController.class)
-@Import({SecurityConfig.class, AccountAuthorization.class})
+@Import({SecurityConfig.class, AccountAuthorization.class, AccountJsonCache.class})
 @WithMockUser(username = Constants.SUBJECT, authorities = {"SCOPE_rewards:BANKER", "SCOPE_rewards:CUSTOMER"})
 public class AccountControllerUnitTests {
 
@@ -70,6 +78,110 @@ public class AccountControllerUnitTests {
 
     }
 
+    @Test
+    @WithMockUser(username = "John Doe", authorities = {"SCOPE_rewards:CUSTOMER"})
+    public void shouldServeRepeatedAccountDetailsFromCache() throws Exception {
+
+        given(accountManager.getAccount(42L))
+                .willReturn(new Account("1234567842", "John Doe"));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/accounts/42"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andExpect(jsonPath("number").value("1234567842"));
+        }
+
+        verify(accountManager, times(1)).getAccount(42L);
+    }
+
+    @Test
+    @WithMockUser(username = "John Doe", authorities = {"SCOPE_rewards:CUSTOMER"})
+    public void matchingIfNoneMatchReturnsNotModifiedWithoutLoadingAccount() throws Exception {
+
+        given(accountManager.getAccountVersion(7L))
+                .willReturn(new AccountVersion(7L, "John Doe", 3L));
+
+        mockMvc.perform(get("/accounts/7").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        verify(accountManager, never()).getAccount(7L);
+    }
+
+    @Test
+    @WithMockUser(username = "John Doe", authorities = {"SCOPE_rewards:CUSTOMER"})
+    public void pendingSavingsShouldChangeTheETag() throws Exception {
+
+        given(accountManager.getAccountVersion(8L))
+                .willReturn(new AccountVersion(8L, "John Doe", 3L).withPendingSavings(MonetaryAmount.valueOf("4.52")));
+
+        mockMvc.perform(get("/accounts/8").header(HttpHeaders.IF_NONE_MATCH, "\"3+4.52\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3+4.52\""));
+
+        given(accountManager.getAccount(8L))
+                .willReturn(new Account("1234567808", "John Doe"));
+
+        mockMvc.perform(get("/accounts/8").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(username = "johnsmith", authorities = {"SCOPE_rewards:CUSTOMER"})
+    public void staleIfMatchReturnsPreconditionFailed() throws Exception {
+        Map<String, Percentage> allocationPercentages = Map.of("Rufo", new Percentage(1.0));
+        Long accountId = 5L;
+
+        given(accountManager.getAccount(accountId)).willReturn(new Account("1234567805", "johnsmith"));
+        doThrow(new OptimisticLockingFailureException("Account 5 is at version 3, expected 2"))
+                .when(accountManager).updateBeneficiaryAllocationPercentages(accountId, allocationPercentages, 2L);
+
+        mockMvc.perform(put("/accounts/{accountId}", accountId)
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(allocationPercentages)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(username = "johnsmith", authorities = {"SCOPE_rewards:BANKER"})
+    public void shouldReportOutcomeOfEachAccountInBatchAllocationUpdate() throws Exception {
+        Map<Long, Map<String, Percentage>> allocationPercentagesByAccount = Map.of(
+                0L, Map.of("Annabelle", new Percentage(0.6), "Corgan", new Percentage(0.4)),
+                1L, Map.of("Annabelle", new Percentage(0.6)),
+                99L, Map.of("Rufo", new Percentage(1.0)));
+
+        given(accountManager.updateBeneficiaryAllocationPercentagesInBatch(allocationPercentagesByAccount))
+                .willReturn(List.of(
+                        AllocationUpdateResult.updated(0L),
+                        AllocationUpdateResult.invalid(1L, "Allocation percentages do not total 100%"),
+                        AllocationUpdateResult.notFound(99L)));
+
+        mockMvc.perform(put("/accounts/allocations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(allocationPercentagesByAccount)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].accountId").value(0))
+                .andExpect(jsonPath("$[0].outcome").value("UPDATED"))
+                .andExpect(jsonPath("$[0].message").doesNotExist())
+                .andExpect(jsonPath("$[1].outcome").value("INVALID"))
+                .andExpect(jsonPath("$[2].outcome").value("NOT_FOUND"));
+
+        verify(accountManager).updateBeneficiaryAllocationPercentagesInBatch(allocationPercentagesByAccount);
+    }
+
+    @Test
+    @WithMockUser(username = "johnsmith", authorities = {"SCOPE_rewards:CUSTOMER"})
+    public void batchAllocationUpdateIsForbiddenToCustomers() throws Exception {
+        mockMvc.perform(put("/accounts/allocations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"0\": {\"Rufo\": 1.0}}"))
+                .andExpect(status().isForbidden());
+
+        verify(accountManager, never()).updateBeneficiaryAllocationPercentagesInBatch(any());
+    }
+
     @Test
     public void nonExistingAccountIdGettingDetailsReturnsNotFound() throws Exception {
 
@@ -140,6 +252,31 @@ public class AccountControllerUnitTests {
         verify(accountManager).getAllAccounts();
     }
 
+    @Test
+    public void shouldGetOnlyRequestedFieldsOfAllAccounts() throws Exception {
+
+        Set<AccountField> fields = EnumSet.of(AccountField.NUMBER, AccountField.NAME);
+        AccountSummary summary = new AccountSummary(0L, "123456789", "John Doe");
+        summary.includeOnly(fields);
+        given(accountManager.getAccountSummaries(fields)).willReturn(List.of(summary));
+
+        mockMvc.perform(get("/accounts").param("fields", "number,name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].number").value("123456789"))
+                .andExpect(jsonPath("$[0].name").value("John Doe"))
+                .andExpect(jsonPath("$[0].entityId").doesNotExist())
+                .andExpect(jsonPath("$[0].beneficiaries").doesNotExist())
+                .andExpect(jsonPath("$[0].valid").doesNotExist());
+
+        verify(accountManager).getAccountSummaries(fields);
+    }
+
+    @Test
+    public void unknownFieldReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/accounts").param("fields", "number,password"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void shouldGetExistingBeneficiary() throws Exception {
 
@@ -193,74 +330,28 @@ public class AccountControllerUnitTests {
 
     @Test
     @WithMockUser(username = "johnsmith", authorities = {"SCOPE_rewards:CUSTOMER"})
-    public void shouldRemoveUniqueBeneficiary() throws Exception {
+    public void shouldRemoveBeneficiaryAndRebalanceInOneCall() throws Exception {
 
         String beneficiaryName = "Rufo";
-        Account account = new Account("1234567890", "John Doe");
-        account.setEntityId(0L);
-        Percentage percentage = new Percentage(1.0);
-        account.addBeneficiary(beneficiaryName, percentage);
-        HashMap<String, Percentage> allocationPercentages = new HashMap<String, Percentage>();
-
-        given(accountManager.getAccount(0L)).willReturn(account);
-
-        doAnswer((a) -> {
-                    assertTrue(account.getEntityId().equals(a.getArgument(0)));
-                    assertTrue(beneficiaryName.equals(a.getArgument(1)));
-                    assertTrue(allocationPercentages.equals(a.getArgument(2)));
-                    return null;
-                }
-        ).when(accountManager).removeBeneficiary(account.getEntityId(), beneficiaryName, allocationPercentages);
 
-        mockMvc.perform(delete("/accounts/{accountId}/beneficiaries/{beneficiaryName}", account.getEntityId(), beneficiaryName))
+        mockMvc.perform(delete("/accounts/{accountId}/beneficiaries/{beneficiaryName}", 0L, beneficiaryName))
                 .andExpect(status().isNoContent());
 
-        verify(accountManager).removeBeneficiary(account.getEntityId(), beneficiaryName, allocationPercentages);
+        verify(accountManager).removeBeneficiaryAndRebalance(0L, beneficiaryName);
+        verify(accountManager, never()).getAccount(anyLong());
+        verify(accountManager, never()).updateBeneficiaryAllocationPercentages(any(), any());
     }
 
-
     @Test
-    @Disabled
-    // With the current implementation this test will fail: AccountController.resetAllocationPercentages makes the
-    // allocation percentages sum equals to 100%. I developed this test assuming equal distribution of the
-    // percentages between the beneficiaries (see solution proposed in the lab 40-boot-test on spring.academy
-    public void shouldRemoveNonUniqueBeneficiary() throws Exception {
-        String beneficiaryName = "Rufo";
-        Percentage percentage = new Percentage(0.25);
-        Beneficiary beneficiaryToBeDeleted = new Beneficiary(beneficiaryName, percentage);
-
-        Set<Beneficiary> beneficiaries = Set.of(
-                new Beneficiary("Pascal", new Percentage(0.25)),
-                new Beneficiary("Ada", new Percentage(0.25)),
-                new Beneficiary("Cobol", new Percentage(0.25)),
-                beneficiaryToBeDeleted);
-
-        Map<String, Percentage> allocationPercentages = Map.of(
-                "Pascal", new Percentage(0.33),
-                "Ada", new Percentage(0.33),
-                "Cobol", new Percentage(0.33));
-
-        Account mockedAccount = mock(Account.class);
-
-        given(accountManager.getAccount(0L)).willReturn(mockedAccount);
-        given(mockedAccount.getBeneficiary(beneficiaryName)).willReturn(beneficiaryToBeDeleted);
-        given(mockedAccount.getBeneficiaries()).willReturn(beneficiaries);
-
-        doAnswer((a) -> {
-                    assertTrue(Long.valueOf(0L).equals(a.getArgument(0)));
-                    assertTrue(beneficiaryName.equals(a.getArgument(1)));
-                    assertTrue(allocationPercentages.equals(a.getArgument(2)));
-                    return null;
-                }
-        ).when(accountManager).removeBeneficiary(0L, beneficiaryName, allocationPercentages);
+    @WithMockUser(username = "johnsmith", authorities = {"SCOPE_rewards:CUSTOMER"})
+    public void removeNonExistingBeneficiaryReturnsNotFound() throws Exception {
 
-        mockMvc.perform(delete("/accounts/{accountId}/beneficiaries/{beneficiaryName}", 0L, beneficiaryName))
-                .andExpect(status().isNoContent());
+        doThrow(IllegalArgumentException.class).when(accountManager).removeBeneficiaryAndRebalance(0L, "Rufox");
 
-        verify(accountManager).removeBeneficiary(0L, beneficiaryName, allocationPercentages);
+        mockMvc.perform(delete("/accounts/{accountId}/beneficiaries/{beneficiaryName}", 0L, "Rufox"))
+                .andExpect(status().isNotFound());
     }
 
-
     @Test
     @WithMockUser(username = "johnsmith", authorities = {"SCOPE_rewards:CUSTOMER"})
     public void updateAllocationPercentagesReturnForbidden() throws Exception {
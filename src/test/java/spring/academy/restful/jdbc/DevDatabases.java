@@ -0,0 +1,46 @@
+package spring.academy.restful.jdbc;
+
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Creates in-memory HSQL databases with the schema of <tt>devdb</tt>, each
+ * under a unique name so tests never share one, e.g.
+ *
+ * <pre>
+ * dataSource = DevDatabases.create();
+ * ...
+ * dataSource.shutdown();
+ * </pre>
+ */
+public final class DevDatabases {
+
+    static final String SCHEMA = "classpath:devdb/schema.sql";
+
+    static final String DATA = "classpath:devdb/data.sql";
+
+    private DevDatabases() {
+    }
+
+    /**
+     * Creates a database with the schema and the sample accounts, restaurants
+     * and rewards of <tt>devdb/data.sql</tt>.
+     */
+    public static EmbeddedDatabase create() {
+        return builder().addScripts(SCHEMA, DATA).build();
+    }
+
+    /**
+     * Creates a database with the schema only.
+     */
+    public static EmbeddedDatabase createEmpty() {
+        return builder().addScript(SCHEMA).build();
+    }
+
+    private static EmbeddedDatabaseBuilder builder() {
+        return new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .generateUniqueName(true);
+    }
+}
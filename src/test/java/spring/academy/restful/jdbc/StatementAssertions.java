@@ -0,0 +1,84 @@
+package spring.academy.restful.jdbc;
+
+import java.util.Map;
+
+/**
+ * Assertions on the SQL statements a block of code executes through a
+ * {@link StatementCountingDataSource}, e.g.
+ *
+ * <pre>
+ * StatementTally tally = StatementAssertions.tally(() -&gt; accountManager.getAllAccounts());
+ * StatementAssertions.assertStatementCount(1, tally);
+ * StatementAssertions.assertNoRepeatedStatements(tally);
+ * </pre>
+ */
+public final class StatementAssertions {
+
+    private StatementAssertions() {
+    }
+
+    /**
+     * Runs a block of code and returns the tally of the statements it executed
+     * on the current thread.
+     */
+    public static StatementTally tally(Block block) throws Exception {
+        try (StatementTally tally = StatementTally.open("test")) {
+            block.run();
+            return tally;
+        }
+    }
+
+    /**
+     * Asserts the number of statements executed.
+     */
+    public static void assertStatementCount(int expected, StatementTally tally) {
+        if (tally.getCount() != expected) {
+            throw new AssertionError("Expected " + expected + " statements but " + tally.getCount()
+                    + " were executed:" + describe(tally.getCounts()));
+        }
+    }
+
+    /**
+     * Asserts that no more than a number of statements were executed.
+     */
+    public static void assertMaxStatementCount(int max, StatementTally tally) {
+        if (tally.getCount() > max) {
+            throw new AssertionError("Expected at most " + max + " statements but " + tally.getCount()
+                    + " were executed:" + describe(tally.getCounts()));
+        }
+    }
+
+    /**
+     * Asserts that no statement shape was executed more than once, as in an
+     * N+1 select.
+     */
+    public static void assertNoRepeatedStatements(StatementTally tally) {
+        assertNoRepeatedStatements(tally, 2);
+    }
+
+    /**
+     * Asserts that no statement shape was executed a number of times or more.
+     */
+    public static void assertNoRepeatedStatements(StatementTally tally, int threshold) {
+        Map<String, Integer> repeated = tally.getRepeated(threshold);
+        if (!repeated.isEmpty()) {
+            throw new AssertionError("Expected no statement executed " + threshold + " times or more:"
+                    + describe(repeated));
+        }
+    }
+
+    private static String describe(Map<String, Integer> counts) {
+        StringBuilder description = new StringBuilder();
+        counts.forEach((shape, count) -> description.append("\n  ").append(count).append(" x ").append(shape));
+        return description.toString();
+    }
+
+    /**
+     * A block of code executing statements.
+     */
+    @FunctionalInterface
+    public interface Block {
+
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,145 @@
+package spring.academy.restful.jdbc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.monitoring.StatementMetrics;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static spring.academy.restful.jdbc.StatementAssertions.assertMaxStatementCount;
+import static spring.academy.restful.jdbc.StatementAssertions.assertNoRepeatedStatements;
+import static spring.academy.restful.jdbc.StatementAssertions.assertStatementCount;
+import static spring.academy.restful.jdbc.StatementAssertions.tally;
+
+public class StatementCountingDataSourceTests {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(new StatementCountingDataSource(database));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldCountStatementsByShape() throws Exception {
+        StatementTally tally = tally(() -> {
+            jdbcTemplate.queryForObject("select NAME from T_ACCOUNT where ID = ?", String.class, 0L);
+            jdbcTemplate.queryForObject("select NAME from T_ACCOUNT where ID = 1", String.class);
+            jdbcTemplate.queryForObject("select NAME from T_ACCOUNT where NUMBER = '123456001'", String.class);
+            jdbcTemplate.queryForObject("select count(*) from T_ACCOUNT", Integer.class);
+        });
+
+        assertStatementCount(4, tally);
+        assertEquals(Map.of(
+                "select NAME from T_ACCOUNT where ID = ?", 2,
+                "select NAME from T_ACCOUNT where NUMBER = ?", 1,
+                "select count(*) from T_ACCOUNT", 1), tally.getCounts());
+    }
+
+    @Test
+    public void shouldNormalizeLiteralsAndInLists() {
+        assertEquals("select * from T_ACCOUNT a1_0 where a1_0.ID in (?) and a1_0.NAME = ?",
+                StatementTally.normalize("select *\n  from T_ACCOUNT a1_0\n  where a1_0.ID in (?, ?,?)"
+                        + " and a1_0.NAME = 'O''Brien'"));
+        assertEquals("update T_ACCOUNT set VERSION = VERSION + ? where ID in (?)",
+                StatementTally.normalize("update T_ACCOUNT set VERSION = VERSION + 1 where ID in (3, 4)"));
+    }
+
+    @Test
+    public void shouldDetectRepeatedStatements() throws Exception {
+        List<Long> accountIds = jdbcTemplate.queryForList("select ID from T_ACCOUNT order by ID", Long.class);
+
+        // One select per account, the N+1 way
+        StatementTally perAccount = tally(() -> {
+            for (Long accountId : accountIds) {
+                jdbcTemplate.queryForList("select NAME from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = ?",
+                        String.class, accountId);
+            }
+        });
+        AssertionError error = assertThrows(AssertionError.class, () -> assertNoRepeatedStatements(perAccount));
+        assertTrue(error.getMessage().contains(accountIds.size()
+                + " x select NAME from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = ?"), error.getMessage());
+        assertEquals(accountIds.size(), perAccount.getMaxRepetitions());
+
+        StatementTally joined = tally(() -> jdbcTemplate.queryForList(
+                "select a.ID, b.NAME from T_ACCOUNT a join T_ACCOUNT_BENEFICIARY b on b.ACCOUNT_ID = a.ID"));
+        assertNoRepeatedStatements(joined);
+        assertMaxStatementCount(1, joined);
+    }
+
+    @Test
+    public void shouldCountABatchOnce() throws Exception {
+        StatementTally tally = tally(() -> jdbcTemplate.batchUpdate(
+                "update T_ACCOUNT_BENEFICIARY set SAVINGS = SAVINGS + ? where ACCOUNT_ID = ?",
+                List.of(new Object[] { 1, 0L }, new Object[] { 1, 1L }, new Object[] { 1, 2L })));
+
+        assertStatementCount(1, tally);
+    }
+
+    @Test
+    public void shouldCountInEveryOpenTally() throws Exception {
+        StatementTally inner;
+        try (StatementTally outer = StatementTally.open("request")) {
+            jdbcTemplate.queryForObject("select count(*) from T_ACCOUNT", Integer.class);
+            try (StatementTally transaction = StatementTally.open("transaction")) {
+                inner = transaction;
+                jdbcTemplate.queryForObject("select count(*) from T_RESTAURANT", Integer.class);
+                assertSame(transaction, StatementTally.current());
+            }
+            assertSame(outer, StatementTally.current());
+            assertStatementCount(2, outer);
+        }
+        assertStatementCount(1, inner);
+        assertNull(StatementTally.current());
+
+        // Nothing is counted, nor fails, without a tally
+        jdbcTemplate.queryForObject("select count(*) from T_ACCOUNT", Integer.class);
+    }
+
+    @Test
+    public void shouldRefuseToCloseAnEnclosingTallyFirst() {
+        try (StatementTally outer = StatementTally.open("request")) {
+            StatementTally inner = StatementTally.open("transaction");
+            assertThrows(IllegalStateException.class, outer::close);
+            inner.close();
+        }
+        assertNull(StatementTally.current());
+    }
+
+    @Test
+    public void shouldReportSampledScopes() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StatementMetrics metrics = new StatementMetrics(registry, 1.0, 3);
+
+        StatementTally tally = metrics.open(StatementMetrics.REQUEST);
+        for (long accountId = 0; accountId < 3; accountId++) {
+            jdbcTemplate.queryForObject("select NAME from T_ACCOUNT where ID = ?", String.class, accountId);
+        }
+        metrics.close(tally);
+
+        assertEquals(3.0, registry.get("rewards.jdbc.statements").tag("scope", "request").summary().totalAmount());
+        assertEquals(1.0, registry.get("rewards.jdbc.statements.repeated").tag("scope", "request").counter().count());
+        assertEquals(1.0, registry.get("rewards.jdbc.statements.repeated.shapes").gauge().value());
+
+        StatementMetrics unsampled = new StatementMetrics(new SimpleMeterRegistry(), 0.0, 3);
+        assertNull(unsampled.open(StatementMetrics.REQUEST));
+    }
+}
@@ -0,0 +1,198 @@
+package spring.academy.restful.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import spring.academy.restful.jwt.Constants;
+import spring.academy.restful.jwt.TokenGenerator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives a mix of the <tt>/accounts</tt> endpoints at a target arrival rate
+ * against the application booted on a random port with the dev HSQLDB, and
+ * writes the latency percentiles to <tt>build/reports/load</tt>, see
+ * {@link LoadReport}. Requests carry tokens minted with the test key: of the
+ * owner for the account endpoints restricted to owners, of a banker for the
+ * others.
+ * <p>
+ * Operations, weighted with <tt>REWARDS_LOAD_MIX</tt>:
+ * <ul>
+ * <li><tt>list</tt>, <tt>GET /accounts?fields=number,name</tt></li>
+ * <li><tt>details</tt>, <tt>GET /accounts/{id}</tt></li>
+ * <li><tt>fields</tt>, <tt>GET /accounts/{id}?fields=number,name</tt></li>
+ * <li><tt>beneficiary</tt>, <tt>GET /accounts/{id}/beneficiaries/{name}</tt></li>
+ * <li><tt>churn</tt>, <tt>POST /accounts/{id}/beneficiaries</tt> then
+ * <tt>DELETE</tt> of the new beneficiary; concurrent changes of an account
+ * may be answered with 409 Conflict</li>
+ * </ul>
+ * Only runs when a rate is given, e.g.
+ *
+ * <pre>
+ * REWARDS_LOAD_RATE=500 REWARDS_LOAD_MIX=details=70,fields=20,churn=10 \
+ *     ./gradlew test --tests '*AccountsLoadTest'
+ * </pre>
+ *
+ * Also <tt>REWARDS_LOAD_DURATION</tt> and <tt>REWARDS_LOAD_WARM_UP</tt> (e.g.
+ * <tt>PT30S</tt>), <tt>REWARDS_LOAD_ARRIVALS</tt> (<tt>poisson</tt> or
+ * <tt>constant</tt>), <tt>REWARDS_LOAD_SEED</tt>,
+ * <tt>REWARDS_LOAD_MAX_IN_FLIGHT</tt> and <tt>REWARDS_LOAD_REPORT_DIR</tt>.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfEnvironmentVariable(named = "REWARDS_LOAD_RATE", matches = "[0-9.]+")
+public class AccountsLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountsLoadTest.class);
+
+    private static final String DEFAULT_MIX = "details=60,fields=25,beneficiary=10,list=5";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtEncoder jwtEncoder;
+
+    private String bankerToken;
+
+    private final List<Target> accounts = new ArrayList<>();
+
+    private final List<Target> beneficiaries = new ArrayList<>();
+
+    @Test
+    void accountsMix() throws Exception {
+        TokenGenerator tokenGenerator = new TokenGenerator(jwtEncoder);
+        bankerToken = tokenGenerator.generate(Constants.EMPTY_BUILDER_COMSUMER);
+        loadTargets(tokenGenerator);
+
+        LoadMix mix = LoadMix.parse(env("REWARDS_LOAD_MIX", DEFAULT_MIX), Map.of(
+                "list", draw -> get("/accounts?fields=number,name", bankerToken),
+                "details", draw -> {
+                    Target account = pick(accounts, draw);
+                    return get("/accounts/" + account.accountId, account.token);
+                },
+                "fields", draw -> {
+                    Target account = pick(accounts, draw);
+                    return get("/accounts/" + account.accountId + "?fields=number,name", account.token);
+                },
+                "beneficiary", draw -> {
+                    Target beneficiary = pick(beneficiaries, draw);
+                    return get("/accounts/" + beneficiary.accountId + "/beneficiaries/"
+                            + pathSegment(beneficiary.beneficiaryName), bankerToken);
+                },
+                "churn", draw -> {
+                    Target account = pick(accounts, draw);
+                    String name = "Load " + Long.toHexString(draw);
+                    int status = send(request("/accounts/" + account.accountId + "/beneficiaries", account.token)
+                            .POST(HttpRequest.BodyPublishers.ofString(name)));
+                    if (status != 201) {
+                        return status;
+                    }
+                    return send(request("/accounts/" + account.accountId + "/beneficiaries/"
+                            + pathSegment(name), account.token)
+                            .DELETE());
+                }));
+        double rate = Double.parseDouble(System.getenv("REWARDS_LOAD_RATE"));
+        boolean poisson = !"constant".equals(env("REWARDS_LOAD_ARRIVALS", "poisson"));
+        long seed = Long.parseLong(env("REWARDS_LOAD_SEED", "42"));
+        int maxInFlight = Integer.parseInt(env("REWARDS_LOAD_MAX_IN_FLIGHT", "10000"));
+
+        OpenModelLoadGenerator generator = new OpenModelLoadGenerator(mix, rate, poisson, seed, maxInFlight);
+        generator.run(Duration.parse(env("REWARDS_LOAD_WARM_UP", "PT10S")));
+        OpenModelLoadGenerator.Result result = generator.run(Duration.parse(env("REWARDS_LOAD_DURATION", "PT30S")));
+
+        Path report = LoadReport.write(result, "accounts", seed,
+                Path.of(env("REWARDS_LOAD_REPORT_DIR", "build/reports/load")));
+        log.info("{} {}\n  {}\n  report: {}", mix, poisson ? "poisson" : "constant", result, report.toAbsolutePath());
+
+        assertEquals(0, result.dropped(), "more arrivals than the maximum in flight were waiting for a response");
+        for (Map.Entry<String, OpenModelLoadGenerator.OperationResult> operation : result.operations.entrySet()) {
+            operation.getValue().statuses.forEach((status, count) -> {
+                if (status == 0 || status >= 500) {
+                    throw new AssertionError(operation.getKey() + " answered " + count + " times with status "
+                            + status);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads the accounts of the sample data and mints a token for the owner
+     * of each.
+     */
+    private void loadTargets(TokenGenerator tokenGenerator) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request("/accounts", bankerToken).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode(), "Unable to list the accounts");
+        for (JsonNode account : objectMapper.readTree(response.body())) {
+            long accountId = account.get("entityId").asLong();
+            String owner = account.get("name").asText();
+            String token = tokenGenerator.generate(claims -> claims.subject(owner));
+            accounts.add(new Target(accountId, token, null));
+            for (JsonNode beneficiary : account.path("beneficiaries")) {
+                beneficiaries.add(new Target(accountId, token, beneficiary.get("name").asText()));
+            }
+        }
+    }
+
+    private int get(String path, String token) throws IOException, InterruptedException {
+        return send(request(path, token).GET());
+    }
+
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json");
+    }
+
+    private static Target pick(List<Target> targets, long draw) {
+        return targets.get((int) Math.floorMod(draw, (long) targets.size()));
+    }
+
+    private static String pathSegment(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static String env(String name, String defaultValue) {
+        return Objects.requireNonNullElse(System.getenv(name), defaultValue);
+    }
+
+    /**
+     * An account, and one of its beneficiaries, with a token of its owner.
+     */
+    private record Target(long accountId, String token, String beneficiaryName) {
+    }
+}
@@ -0,0 +1,122 @@
+package spring.academy.restful.load;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A weighted mix of the operations of a load test, e.g.
+ * <tt>details=60,fields=25,beneficiary=10,list=5</tt>. The operation of each
+ * arrival is drawn according to the weights.
+ */
+final class LoadMix {
+
+    private final Map<String, Integer> weights;
+
+    private final List<String> names = new ArrayList<>();
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    private final int[] cumulativeWeights;
+
+    private LoadMix(Map<String, Integer> weights, Map<String, Operation> available) {
+        this.weights = Collections.unmodifiableMap(weights);
+        this.cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            Operation operation = available.get(weight.getKey());
+            if (operation == null) {
+                throw new IllegalArgumentException("No such operation '" + weight.getKey() + "', expected one of "
+                        + available.keySet());
+            }
+            total += weight.getValue();
+            cumulativeWeights[names.size()] = total;
+            names.add(weight.getKey());
+            operations.add(operation);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The weights of a load mix must not all be 0");
+        }
+    }
+
+    /**
+     * Parses a mix of operations.
+     *
+     * @param mix
+     *            the weight of each operation, e.g. <tt>details=60,list=40</tt>
+     * @param available
+     *            the operations that may be mixed, by name
+     * @throws IllegalArgumentException
+     *             if the mix is not valid
+     */
+    static LoadMix parse(String mix, Map<String, Operation> available) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.trim().split("=");
+            try {
+                int weight = Integer.parseInt(nameAndWeight[1].trim());
+                if (nameAndWeight.length != 2 || weight < 0) {
+                    throw new NumberFormatException();
+                }
+                weights.put(nameAndWeight[0].trim(), weight);
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Not a load mix '" + mix + "': expected name=weight at '"
+                        + entry + "'");
+            }
+        }
+        return new LoadMix(weights, available);
+    }
+
+    /**
+     * Returns the index of the operation of the next arrival.
+     */
+    int pick(SplittableRandom random) {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; ; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    String name(int index) {
+        return names.get(index);
+    }
+
+    Operation operation(int index) {
+        return operations.get(index);
+    }
+
+    Map<String, Integer> getWeights() {
+        return weights;
+    }
+
+    public String toString() {
+        return weights.toString();
+    }
+
+    /**
+     * Sends the requests of one arrival.
+     */
+    @FunctionalInterface
+    interface Operation {
+
+        /**
+         * Sends the requests of an arrival, one after the other.
+         *
+         * @param draw
+         *            a random number drawn for the arrival, so the choice of
+         *            account or beneficiary is reproducible from the seed
+         * @return the HTTP status of the last response
+         */
+        int send(long draw) throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,94 @@
+package spring.academy.restful.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the result of a load test for comparison with other runs:
+ * <ul>
+ * <li><tt>&lt;name&gt;.json</tt>, the rates, status counts and latency
+ * percentiles in milliseconds, in total and per operation</li>
+ * <li><tt>&lt;name&gt;-&lt;operation&gt;.hgrm</tt>, the full latency
+ * distribution of each operation in HdrHistogram's percentile format, which
+ * the HdrHistogram plotter reads</li>
+ * </ul>
+ */
+final class LoadReport {
+
+    static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadReport() {
+    }
+
+    /**
+     * Writes the report of a run.
+     *
+     * @return the JSON report
+     */
+    static Path write(OpenModelLoadGenerator.Result result, String name, long seed, Path directory)
+            throws IOException {
+        Files.createDirectories(directory);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("name", name);
+        report.put("finishedAt", Instant.now().toString());
+        report.put("arrivals", result.poisson ? "poisson" : "constant");
+        report.put("targetRate", result.rate);
+        report.put("achievedRate", result.count() * 1e9 / result.elapsedNanos);
+        report.put("durationSeconds", result.duration.toMillis() / 1000.0);
+        report.put("seed", seed);
+        report.put("mix", result.mix.getWeights());
+        report.put("total", summary(result.totalLatencies(), result.errors(), result.dropped(), null));
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        result.operations.forEach((operation, operationResult) -> {
+            operations.put(operation, summary(operationResult.latencies, operationResult.errors.sum(),
+                    operationResult.dropped.sum(), operationResult.statuses));
+            Path distribution = directory.resolve(name + "-" + operation + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(distribution))) {
+                // In milliseconds
+                operationResult.latencies.outputPercentileDistribution(out, 1e6);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write " + distribution, e);
+            }
+        });
+        report.put("operations", operations);
+
+        Path json = directory.resolve(name + ".json");
+        objectMapper.writeValue(json.toFile(), report);
+        return json;
+    }
+
+    private static Map<String, Object> summary(Histogram latencies, long errors, long dropped,
+                                               Map<Integer, ? extends Number> statuses) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", latencies.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("dropped", dropped);
+        if (statuses != null) {
+            Map<String, Long> counts = new TreeMap<>();
+            statuses.forEach((status, count) -> counts.put(String.valueOf(status), count.longValue()));
+            summary.put("statuses", counts);
+        }
+        Map<String, Double> millis = new LinkedHashMap<>();
+        millis.put("mean", latencies.getTotalCount() == 0 ? 0 : latencies.getMean() / 1e6);
+        for (double percentile : PERCENTILES) {
+            millis.put("p" + String.valueOf(percentile).replace(".0", "").replace(".", "_"),
+                    latencies.getValueAtPercentile(percentile) / 1e6);
+        }
+        millis.put("max", latencies.getMaxValue() / 1e6);
+        summary.put("latencyMillis", millis);
+        return summary;
+    }
+}
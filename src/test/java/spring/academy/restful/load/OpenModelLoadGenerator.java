@@ -0,0 +1,201 @@
+package spring.academy.restful.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the operations of a {@link LoadMix} at a target arrival rate,
+ * whether or not earlier requests completed: an open model, as traffic from
+ * many independent users arrives. Arrivals are evenly spaced or, like
+ * independent users, a Poisson process.
+ * <p>
+ * Each arrival is sent on its own virtual thread. Its latency is measured
+ * from when it was due to be sent, not from when it was sent, so a stalled
+ * server shows up in the percentiles instead of slowing the load down
+ * (coordinated omission). Arrivals beyond the maximum number in flight are
+ * dropped and counted, instead of piling up without bound.
+ * <p>
+ * The operation of each arrival and its random draw come from one seeded
+ * generator, so a run with the same seed sends the same sequence.
+ */
+final class OpenModelLoadGenerator {
+
+    /**
+     * Latencies up to a minute, to 3 significant digits.
+     */
+    static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private final LoadMix mix;
+
+    private final double rate;
+
+    private final boolean poisson;
+
+    private final long seed;
+
+    private final int maxInFlight;
+
+    /**
+     * Creates a new load generator.
+     *
+     * @param mix
+     *            the operations to send
+     * @param rate
+     *            the target number of arrivals per second
+     * @param poisson
+     *            true for exponentially distributed times between arrivals,
+     *            false for evenly spaced arrivals
+     * @param seed
+     *            the seed of the arrivals and of their operations
+     * @param maxInFlight
+     *            the maximum number of arrivals waiting for a response
+     */
+    OpenModelLoadGenerator(LoadMix mix, double rate, boolean poisson, long seed, int maxInFlight) {
+        this.mix = mix;
+        this.rate = rate;
+        this.poisson = poisson;
+        this.seed = seed;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sends arrivals for a while, then waits for the responses of those in
+     * flight.
+     */
+    Result run(Duration duration) throws InterruptedException {
+        Result result = new Result(mix, rate, poisson, duration);
+        SplittableRandom random = new SplittableRandom(seed);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        double meanInterval = TimeUnit.SECONDS.toNanos(1) / rate;
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        double sinceStart = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                sinceStart += poisson ? -Math.log(1 - random.nextDouble()) * meanInterval : meanInterval;
+                long dueAt = start + (long) sinceStart;
+                if (dueAt - end >= 0) {
+                    break;
+                }
+                int index = mix.pick(random);
+                long draw = random.nextLong();
+                for (long wait = dueAt - System.nanoTime(); wait > 0; wait = dueAt - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                OperationResult operation = result.operations.get(mix.name(index));
+                if (!inFlight.tryAcquire()) {
+                    operation.dropped.increment();
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        int status = mix.operation(index).send(draw);
+                        operation.record(System.nanoTime() - dueAt, status);
+                    } catch (IOException e) {
+                        operation.record(System.nanoTime() - dueAt, 0);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * The outcome of a run, per operation.
+     */
+    static final class Result {
+
+        final LoadMix mix;
+
+        final double rate;
+
+        final boolean poisson;
+
+        final Duration duration;
+
+        final Map<String, OperationResult> operations = new TreeMap<>();
+
+        long elapsedNanos;
+
+        Result(LoadMix mix, double rate, boolean poisson, Duration duration) {
+            this.mix = mix;
+            this.rate = rate;
+            this.poisson = poisson;
+            this.duration = duration;
+            for (int i = 0; i < mix.size(); i++) {
+                operations.put(mix.name(i), new OperationResult());
+            }
+        }
+
+        /**
+         * Returns the latencies of all operations.
+         */
+        Histogram totalLatencies() {
+            Histogram total = new Histogram(HIGHEST_LATENCY, 3);
+            operations.values().forEach(operation -> total.add(operation.latencies));
+            return total;
+        }
+
+        long count() {
+            return operations.values().stream().mapToLong(operation -> operation.latencies.getTotalCount()).sum();
+        }
+
+        long errors() {
+            return operations.values().stream().mapToLong(operation -> operation.errors.sum()).sum();
+        }
+
+        long dropped() {
+            return operations.values().stream().mapToLong(operation -> operation.dropped.sum()).sum();
+        }
+
+        public String toString() {
+            Histogram total = totalLatencies();
+            return String.format("%.0f req/s of %.0f, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms,"
+                            + " %d errors, %d dropped", count() * 1e9 / elapsedNanos, rate,
+                    total.getValueAtPercentile(50) / 1e6, total.getValueAtPercentile(99) / 1e6,
+                    total.getValueAtPercentile(99.9) / 1e6, total.getMaxValue() / 1e6, errors(), dropped());
+        }
+    }
+
+    /**
+     * The latencies and statuses of one operation.
+     */
+    static final class OperationResult {
+
+        final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        final LongAdder errors = new LongAdder();
+
+        final LongAdder dropped = new LongAdder();
+
+        void record(long latency, int status) {
+            latencies.recordValue(Math.min(latency, HIGHEST_LATENCY));
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            // 0 when no response was received
+            if (status < 200 || status >= 400) {
+                errors.increment();
+            }
+        }
+    }
+}
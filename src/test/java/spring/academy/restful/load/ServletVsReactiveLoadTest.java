@@ -0,0 +1,167 @@
+package spring.academy.restful.load;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.test.context.TestConstructor;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import spring.academy.restful.config.JwtConfig;
+import spring.academy.restful.jwt.TokenGenerator;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.context.TestConstructor.AutowireMode.ALL;
+
+/**
+ * Compares the servlet and the reactive stacks under the same closed-model
+ * load: a fixed number of clients, each sending its next request as soon as
+ * the previous one completed.
+ * <p>
+ * Both applications must be running: one with the default <tt>dev</tt>
+ * profile and the other with
+ * <tt>--spring.profiles.active=reactive --server.port=8081</tt>. Both load the
+ * same sample data and accept tokens signed with the test key. Only runs when
+ * their base URLs are given:
+ * 
+ * <pre>
+ * REWARDS_LOAD_SERVLET_URL=http://localhost:8080 REWARDS_LOAD_REACTIVE_URL=http://localhost:8081 \
+ *     ./gradlew test --tests '*ServletVsReactiveLoadTest'
+ * </pre>
+ */
+@SpringJUnitConfig(classes = {JwtConfig.class})
+@TestConstructor(autowireMode = ALL)
+@EnabledIfEnvironmentVariable(named = "REWARDS_LOAD_SERVLET_URL", matches = ".+")
+@EnabledIfEnvironmentVariable(named = "REWARDS_LOAD_REACTIVE_URL", matches = ".+")
+public class ServletVsReactiveLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ServletVsReactiveLoadTest.class);
+
+    private static final int CLIENTS = Integer.getInteger("rewards.load.clients", 64);
+
+    private static final Duration WARM_UP = Duration.ofSeconds(10);
+
+    private static final Duration MEASUREMENT = Duration.ofSeconds(30);
+
+    // Owner of account 0 in the sample data
+    private static final String OWNER = "Keith and Keri Donald";
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    private final String token;
+
+    public ServletVsReactiveLoadTest(JwtEncoder jwtEncoder) {
+        this.token = new TokenGenerator(jwtEncoder).generate((claims) -> claims.subject(OWNER));
+    }
+
+    @Test
+    void compareAccountListing() throws Exception {
+        compare("/accounts");
+    }
+
+    @Test
+    void compareAccountDetails() throws Exception {
+        compare("/accounts/0");
+    }
+
+    private void compare(String path) throws Exception {
+        Result servlet = run(System.getenv("REWARDS_LOAD_SERVLET_URL") + path);
+        Result reactive = run(System.getenv("REWARDS_LOAD_REACTIVE_URL") + path);
+        log.info("GET {} with {} clients\n  servlet:  {}\n  reactive: {}", path, CLIENTS, servlet, reactive);
+        assertEquals(0, servlet.errors, "servlet stack answered with errors");
+        assertEquals(0, reactive.errors, "reactive stack answered with errors");
+    }
+
+    private Result run(String url) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        load(request, WARM_UP);
+        return load(request, MEASUREMENT);
+    }
+
+    private Result load(HttpRequest request, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Result>> clients = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(executor.submit(() -> {
+                    Result result = new Result();
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        result.record(System.nanoTime() - start, response.statusCode() == 200);
+                    }
+                    return result;
+                }));
+            }
+        }
+        Result total = new Result();
+        for (Future<Result> client : clients) {
+            total.merge(client.get());
+        }
+        total.seconds = duration.toNanos() / 1e9;
+        return total;
+    }
+
+    /**
+     * Latencies and errors of one client, or of all clients once merged.
+     */
+    private static class Result {
+
+        private long[] latencies = new long[1024];
+
+        private int count;
+
+        private int errors;
+
+        private double seconds;
+
+        void record(long latency, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void merge(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        private double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.ceil(percentile * count) - 1)] / 1e6;
+        }
+
+        public String toString() {
+            return String.format("%.0f req/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d errors",
+                    count / seconds, percentileMillis(0.50), percentileMillis(0.99), percentileMillis(1.0), errors);
+        }
+    }
+}
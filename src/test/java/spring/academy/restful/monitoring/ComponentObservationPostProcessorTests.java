@@ -0,0 +1,121 @@
+package spring.academy.restful.monitoring;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import spring.academy.restful.rewards.internal.restaurant.Restaurant;
+import spring.academy.restful.rewards.internal.restaurant.RestaurantRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ComponentObservationPostProcessorTests {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ObservationRegistry observationRegistry;
+
+    private RestaurantRepository restaurantRepository;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        ComponentObservationPostProcessor postProcessor = new ComponentObservationPostProcessor(() -> observationRegistry);
+        restaurantRepository = (RestaurantRepository) postProcessor.postProcessAfterInitialization(
+                new StubRestaurantRepository(), "restaurantRepository");
+    }
+
+    @Test
+    public void shouldObserveComponentMethods() {
+        assertTrue(AopUtils.isAopProxy(restaurantRepository));
+        assertEquals(21L, restaurantRepository.getRestaurantCount());
+
+        Timer timer = meterRegistry.get(ComponentObservationInterceptor.OBSERVATION_NAME)
+                .tag("component", "RestaurantRepository")
+                .tag("operation", "getRestaurantCount")
+                .tag("implementation", "STUB")
+                .tag("outcome", "SUCCESS")
+                .tag("uri", "none")
+                .timer();
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    public void shouldTagFailures() {
+        assertThrows(IllegalArgumentException.class, () -> restaurantRepository.findByMerchantNumber("unknown"));
+
+        Timer timer = meterRegistry.get(ComponentObservationInterceptor.OBSERVATION_NAME)
+                .tag("operation", "findByMerchantNumber")
+                .tag("outcome", "ERROR")
+                .tag("error", "IllegalArgumentException")
+                .timer();
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    public void shouldNotObserveGetInfo() {
+        assertEquals("STUB", restaurantRepository.getInfo());
+
+        assertNull(meterRegistry.find(ComponentObservationInterceptor.OBSERVATION_NAME).timer());
+    }
+
+    @Test
+    public void shouldTagTheRequestAndNestWithinIt() {
+        ServerRequestObservationContext request = new ServerRequestObservationContext(new MockHttpServletRequest(),
+                new MockHttpServletResponse());
+        request.setPathPattern("/restaurants/{merchantNumber}");
+        Observation requestObservation = Observation.start("http.server.requests", () -> request,
+                observationRegistry);
+        try (Observation.Scope scope = requestObservation.openScope()) {
+            restaurantRepository.getRestaurantCount();
+            assertSame(requestObservation, observationRegistry.getCurrentObservation());
+        } finally {
+            requestObservation.stop();
+        }
+
+        assertEquals(1, meterRegistry.get(ComponentObservationInterceptor.OBSERVATION_NAME)
+                .tag("uri", "/restaurants/{merchantNumber}")
+                .timer().count());
+    }
+
+    @Test
+    public void shouldLeaveOtherBeansAlone() {
+        Object other = new Object();
+        ComponentObservationPostProcessor postProcessor = new ComponentObservationPostProcessor(() -> observationRegistry);
+
+        assertSame(other, postProcessor.postProcessAfterInitialization(other, "other"));
+        assertFalse(AopUtils.isAopProxy(postProcessor.postProcessAfterInitialization(other, "other")));
+    }
+
+    static class StubRestaurantRepository implements RestaurantRepository {
+
+        @Override
+        public String getInfo() {
+            return "STUB";
+        }
+
+        @Override
+        public Restaurant findByMerchantNumber(String merchantNumber) {
+            throw new IllegalArgumentException("No such restaurant " + merchantNumber);
+        }
+
+        @Override
+        public Long getRestaurantCount() {
+            return 21L;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package spring.academy.restful.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.jdbc.DevDatabases;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OutboxPollerTests {
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private OutboxWriter writer;
+
+    private InMemoryOutboxSink sink;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.createEmpty();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        writer = new OutboxWriter(dataSource, new ObjectMapper());
+        sink = new InMemoryOutboxSink();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldOnlyDeliverCommittedEvents() {
+        transactionTemplate.executeWithoutResult(status -> writer.onAccountChanged(new AccountChangedEvent(1L)));
+        transactionTemplate.executeWithoutResult(status -> {
+            writer.onAccountChanged(new AccountChangedEvent(2L));
+            status.setRollbackOnly();
+        });
+        List<OutboxEvent> received = new ArrayList<OutboxEvent>();
+        sink.subscribe(received::add);
+
+        assertEquals(1, newPoller(500, Duration.ofMinutes(1)).drain());
+        assertEquals(1, received.size());
+        assertEquals(OutboxWriter.ACCOUNT_CHANGED, received.get(0).getType());
+        assertEquals("{\"accountId\":1}", received.get(0).getPayload());
+        assertEquals(0, count());
+        assertEquals(1.0, registry.get("rewards.outbox.published").counter().count());
+        assertEquals(1, registry.get("rewards.outbox.lag").timer().count());
+    }
+
+    @Test
+    public void shouldDrainInBatchesInOrder() {
+        for (long i = 1; i <= 7; i++) {
+            writer.onAccountChanged(new AccountChangedEvent(i));
+        }
+        List<String> received = new ArrayList<String>();
+        sink.subscribe(event -> received.add(event.getAggregateId()));
+
+        assertEquals(7, newPoller(3, Duration.ofMinutes(1)).drain());
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7"), received);
+    }
+
+    @Test
+    public void failedDeliveryShouldBeRetriedOnceTheClaimExpires() {
+        writer.onAccountChanged(new AccountChangedEvent(1L));
+        Runnable failing = sink.subscribe(event -> {
+            throw new IllegalStateException("Sink down");
+        });
+        OutboxPoller poller = newPoller(500, Duration.ofMinutes(1));
+
+        assertThrows(IllegalStateException.class, poller::poll);
+        failing.run();
+        // Still leased to the failed attempt
+        assertEquals(0, poller.poll());
+        assertEquals(1, count());
+
+        assertEquals(1, newPoller(500, Duration.ofMillis(-1)).poll());
+        assertEquals(0, count());
+    }
+
+    private OutboxPoller newPoller(int batchSize, Duration claimTimeout) {
+        return new OutboxPoller(dataSource, new DataSourceTransactionManager(dataSource), sink, batchSize,
+                claimTimeout, "test", registry);
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("select count(*) from T_OUTBOX", Integer.class);
+    }
+}
@@ -0,0 +1,149 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.jdbc.DevDatabases;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BufferedSavingsRepositoryTests {
+
+    @TempDir
+    Path walDirectory;
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private BufferedSavingsRepository savingsRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        savingsRepository = newRepository();
+        savingsRepository.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (savingsRepository != null) {
+            savingsRepository.stop();
+        }
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldBufferCreditsWithoutTouchingSavings() {
+        assertTrue(savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("8.05")));
+        assertTrue(savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("1.01")));
+
+        assertEquals(0, savings("Annabelle").signum());
+        assertEquals(MonetaryAmount.valueOf("4.52"), savingsRepository.getPendingSavings(beneficiaryId("Annabelle")));
+        assertEquals(0, count("select VERSION from T_ACCOUNT where ID = 0"));
+    }
+
+    @Test
+    public void shouldReturnPendingSavingsOfAccount() {
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("10.00"));
+
+        Map<Long, MonetaryAmount> pending = savingsRepository.getPendingSavingsOfAccount(0L);
+
+        assertEquals(2, pending.size());
+        assertEquals(MonetaryAmount.valueOf("5.00"), pending.get(beneficiaryId("Annabelle")));
+        assertEquals(pending, savingsRepository.getPendingSavingsOfAccount(null));
+        assertTrue(savingsRepository.getPendingSavingsOfAccount(1L).isEmpty());
+    }
+
+    @Test
+    public void shouldNotBufferForAccountWithoutValidAllocations() {
+        assertFalse(savingsRepository.creditSavings(1L, MonetaryAmount.valueOf("8.05")));
+        assertFalse(savingsRepository.creditSavings(-1L, MonetaryAmount.valueOf("8.05")));
+    }
+
+    @Test
+    public void flushShouldApplyCreditsInOneBatch() {
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("8.05"));
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("1.01"));
+
+        assertEquals(2, savingsRepository.flush());
+        assertEquals(new BigDecimal("4.52"), savings("Annabelle"));
+        assertEquals(new BigDecimal("4.52"), savings("Corgan"));
+        assertEquals(1, count("select VERSION from T_ACCOUNT where ID = 0"));
+        assertEquals(MonetaryAmount.zero(), savingsRepository.getPendingSavings(beneficiaryId("Annabelle")));
+        assertEquals(0, savingsRepository.getBufferedBeneficiaryCount());
+
+        assertEquals(0, savingsRepository.flush());
+        assertEquals(1, count("select VERSION from T_ACCOUNT where ID = 0"));
+    }
+
+    @Test
+    public void onlyFlushedCreditsShouldBePublishedInTheirTransaction() {
+        List<String> events = new ArrayList<String>();
+        savingsRepository.setApplicationEventPublisher(event -> events.add(((AccountChangedEvent) event).isNodeLocal()
+                + " " + TransactionSynchronizationManager.isActualTransactionActive()));
+
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("8.05"));
+        savingsRepository.flush();
+
+        assertEquals(List.of("true false", "false true"), events);
+    }
+
+    @Test
+    public void startShouldReplayCreditsLostInACrash() {
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("8.05"));
+        savingsRepository.flush();
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("1.01"));
+
+        // Crash: the first node never flushes again
+        savingsRepository = null;
+        BufferedSavingsRepository restarted = newRepository();
+        restarted.start();
+
+        assertEquals(new BigDecimal("4.52"), savings("Annabelle"));
+        assertEquals(2, count("select VERSION from T_ACCOUNT where ID = 0"));
+
+        // Replayed segments are checkpointed and never applied again
+        restarted.stop();
+        BufferedSavingsRepository again = newRepository();
+        again.start();
+        again.stop();
+        assertEquals(new BigDecimal("4.52"), savings("Annabelle"));
+    }
+
+    private BufferedSavingsRepository newRepository() {
+        return new BufferedSavingsRepository(dataSource, new DataSourceTransactionManager(dataSource),
+                walDirectory, "test");
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+
+    private Long beneficiaryId(String name) {
+        return jdbcTemplate.queryForObject("select ID from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = 0 and NAME = ?",
+                Long.class, name);
+    }
+
+    private BigDecimal savings(String name) {
+        return jdbcTemplate.queryForObject(
+                "select SAVINGS from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = 0 and NAME = ?",
+                BigDecimal.class, name);
+    }
+}
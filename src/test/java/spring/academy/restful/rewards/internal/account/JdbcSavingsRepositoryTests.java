@@ -0,0 +1,108 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.jdbc.DevDatabases;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JdbcSavingsRepositoryTests {
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcSavingsRepository savingsRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        savingsRepository = new JdbcSavingsRepository(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldRoundLikeMonetaryAmountMultiplyBy() {
+        // Account 0 is split 50/50, account 8 33/33/34 and account 12 75/25:
+        // these amounts hit half-cent ties with both even and odd cents
+        List<String> amounts = List.of("0.01", "0.03", "0.05", "0.10", "1.01", "8.03", "8.05", "12.34", "99.99");
+        for (long accountId : new long[] { 0L, 8L, 12L }) {
+            for (String amount : amounts) {
+                Map<String, BigDecimal> before = savings(accountId);
+                assertTrue(savingsRepository.creditSavings(accountId, MonetaryAmount.valueOf(amount)));
+                Map<String, BigDecimal> after = savings(accountId);
+                for (Map.Entry<String, BigDecimal> entry : after.entrySet()) {
+                    MonetaryAmount expected = MonetaryAmount.valueOf(amount)
+                            .multiplyBy(allocation(accountId, entry.getKey()));
+                    assertEquals(expected.asBigDecimal(), entry.getValue().subtract(before.get(entry.getKey())),
+                            amount + " for " + entry.getKey() + " of account " + accountId);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldIncrementAccountVersion() {
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("10.00"));
+
+        assertEquals(1, jdbcTemplate.queryForObject("select VERSION from T_ACCOUNT where ID = 0", Integer.class));
+    }
+
+    @Test
+    public void shouldNotCreditAccountWithoutValidAllocations() {
+        jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set ALLOCATION_PERCENTAGE = 0.40 where NAME = 'Annabelle'");
+
+        assertFalse(savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("10.00")));
+        assertFalse(savingsRepository.creditSavings(1L, MonetaryAmount.valueOf("10.00")));
+        assertEquals(0, savings(0L).get("Corgan").signum());
+    }
+
+    @Test
+    public void shouldCreditManyAccountsInOneBatch() {
+        Map<Long, MonetaryAmount> amounts = new LinkedHashMap<Long, MonetaryAmount>();
+        amounts.put(0L, MonetaryAmount.valueOf("8.05"));
+        amounts.put(1L, MonetaryAmount.valueOf("8.05"));
+        amounts.put(3L, MonetaryAmount.valueOf("8.05"));
+        amounts.put(17L, MonetaryAmount.valueOf("8.05"));
+
+        Set<Long> credited = savingsRepository.creditSavings(amounts);
+
+        assertEquals(Set.of(0L, 3L, 17L), credited);
+        assertEquals(new BigDecimal("4.02"), savings(0L).get("Annabelle"));
+        assertEquals(new BigDecimal("2.01"), savings(3L).get("Argus"));
+        assertEquals(new BigDecimal("8.05"), savings(17L).get("Daniel"));
+    }
+
+    private Map<String, BigDecimal> savings(long accountId) {
+        Map<String, BigDecimal> savings = new LinkedHashMap<String, BigDecimal>();
+        jdbcTemplate.query("select NAME, SAVINGS from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = ?",
+                rs -> {
+                    savings.put(rs.getString("NAME"), rs.getBigDecimal("SAVINGS"));
+                }, accountId);
+        return savings;
+    }
+
+    private Percentage allocation(long accountId, String name) {
+        return new Percentage(jdbcTemplate.queryForObject(
+                "select ALLOCATION_PERCENTAGE from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = ? and NAME = ?",
+                BigDecimal.class, accountId, name));
+    }
+}
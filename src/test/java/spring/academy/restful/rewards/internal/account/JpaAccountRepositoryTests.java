@@ -0,0 +1,69 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.academy.restful.common.money.MonetaryAmount;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = {
+        "spring.sql.init.schema-locations=classpath:devdb/schema.sql",
+        "spring.sql.init.data-locations=classpath:devdb/data.sql",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@Import(JpaAccountRepository.class)
+public class JpaAccountRepositoryTests {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long versionBefore;
+
+    /**
+     * The contribution commits, outside of a test transaction, so the
+     * account is put back as it was.
+     */
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set SAVINGS = 0 where ACCOUNT_ID = 0");
+        jdbcTemplate.update("update T_ACCOUNT set VERSION = ? where ID = 0", versionBefore);
+    }
+
+    /**
+     * The entity tag of an account is derived from its version.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void contributionShouldChangeTheAccountVersion() {
+        versionBefore = version();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Account account = accountRepository.findByCreditCard("1234123412341234");
+            accountRepository.makeContribution(account, MonetaryAmount.valueOf("100.00"));
+        });
+
+        assertEquals(versionBefore + 1, version());
+        assertEquals(0, new BigDecimal("100.00").compareTo(jdbcTemplate.queryForObject(
+                "select sum(SAVINGS) from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = 0", BigDecimal.class)));
+    }
+
+    private Long version() {
+        return jdbcTemplate.queryForObject("select VERSION from T_ACCOUNT where ID = 0", Long.class);
+    }
+}
@@ -0,0 +1,111 @@
+package spring.academy.restful.rewards.internal.account;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.jdbc.DevDatabases;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LedgerSavingsRepositoryTests {
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private LedgerSavingsRepository savingsRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        savingsRepository = new LedgerSavingsRepository(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldAppendDistributionsWithoutTouchingSavings() {
+        assertTrue(savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("8.05")));
+        assertTrue(savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("1.01")));
+
+        assertEquals(4, count("select count(*) from T_BENEFICIARY_LEDGER"));
+        assertEquals(0, savings("Annabelle").signum());
+        assertEquals(new BigDecimal("4.52"), pending("Annabelle"));
+        assertEquals(MonetaryAmount.valueOf("4.52"), savingsRepository.getPendingSavings(beneficiaryId("Annabelle")));
+        assertEquals(MonetaryAmount.valueOf("4.54"),
+                savingsRepository.getPendingSavingsOfAccount(0L).get(beneficiaryId("Corgan")));
+        assertEquals(2, savingsRepository.getPendingSavingsOfAccount(null).size());
+    }
+
+    @Test
+    public void shouldNotAppendForAccountWithoutValidAllocations() {
+        assertFalse(savingsRepository.creditSavings(1L, MonetaryAmount.valueOf("8.05")));
+
+        assertEquals(0, count("select count(*) from T_BENEFICIARY_LEDGER"));
+        assertEquals(MonetaryAmount.zero(), savingsRepository.getPendingSavings(beneficiaryId("Annabelle")));
+        assertTrue(savingsRepository.getPendingSavingsOfAccount(1L).isEmpty());
+    }
+
+    @Test
+    public void compactionShouldFoldEntriesIntoSavings() {
+        Map<Long, MonetaryAmount> amounts = new LinkedHashMap<Long, MonetaryAmount>();
+        amounts.put(0L, MonetaryAmount.valueOf("8.05"));
+        amounts.put(17L, MonetaryAmount.valueOf("3.00"));
+        savingsRepository.creditSavings(amounts);
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("1.01"));
+
+        int folded = new LedgerCompactor(dataSource, 10000).compact();
+
+        assertEquals(5, folded);
+        assertEquals(0, count("select count(*) from T_BENEFICIARY_LEDGER"));
+        assertEquals(new BigDecimal("4.52"), savings("Annabelle"));
+        assertEquals(new BigDecimal("3.00"), savings("Daniel"));
+        assertEquals(1, count("select VERSION from T_ACCOUNT where ID = 0"));
+    }
+
+    @Test
+    public void compactionShouldFoldAtMostBatchSizeEntries() {
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("8.05"));
+        savingsRepository.creditSavings(0L, MonetaryAmount.valueOf("1.01"));
+        LedgerCompactor compactor = new LedgerCompactor(dataSource, 3);
+
+        assertEquals(3, compactor.compact());
+        assertEquals(1, compactor.compact());
+        assertEquals(0, compactor.compact());
+        assertEquals(new BigDecimal("4.52"), savings("Annabelle"));
+        assertEquals(new BigDecimal("4.52"), savings("Corgan"));
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+
+    private BigDecimal savings(String name) {
+        return jdbcTemplate.queryForObject(
+                "select SAVINGS from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID in (0, 17) and NAME = ?",
+                BigDecimal.class, name);
+    }
+
+    private Long beneficiaryId(String name) {
+        return jdbcTemplate.queryForObject(
+                "select ID from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID in (0, 17) and NAME = ?", Long.class, name);
+    }
+
+    private BigDecimal pending(String name) {
+        return jdbcTemplate.queryForObject("select sum(l.AMOUNT) from T_BENEFICIARY_LEDGER l"
+                + " join T_ACCOUNT_BENEFICIARY b on b.ID = l.BENEFICIARY_ID where b.NAME = ?", BigDecimal.class, name);
+    }
+}
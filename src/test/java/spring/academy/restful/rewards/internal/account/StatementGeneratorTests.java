@@ -0,0 +1,152 @@
+package spring.academy.restful.rewards.internal.account;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.jdbc.DevDatabases;
+import spring.academy.restful.rewards.StatementRunReport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementGeneratorTests {
+
+    private static final YearMonth MAY = YearMonth.of(2024, 5);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry registry;
+
+    private StatementGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        registry = new SimpleMeterRegistry();
+        generator = new StatementGenerator(dataSource, directory, 3, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldWriteOneStatementPerAccount() throws IOException {
+        insertReward("1", "123456789", LocalDate.of(2024, 5, 2), "8.00", null);
+        insertReward("2", "123456789", LocalDate.of(2024, 5, 20), "2.00", null);
+        insertReward("3", "123456789", LocalDate.of(2024, 6, 1), "4.00", null);
+        insertReward("4", "123456789", LocalDate.of(2024, 5, 31), "1.00", 0);
+
+        StatementRunReport report = generator.generate(MAY);
+
+        assertEquals(21, report.getAccounts());
+        assertEquals(3, report.getRewards());
+        assertEquals(3, report.getFiles().size());
+        assertEquals(21, registry.get("rewards.statements.accounts").counter().count());
+        assertEquals(1, registry.get("rewards.statements.run").timer().count());
+
+        Map<String, JsonNode> statements = new HashMap<String, JsonNode>();
+        for (String file : report.getFiles()) {
+            List<JsonNode> shard = read(directory.resolve(file));
+            for (int i = 1; i < shard.size(); i++) {
+                // Each shard is in account order
+                assertTrue(shard.get(i - 1).get("accountNumber").asText()
+                        .compareTo(shard.get(i).get("accountNumber").asText()) < 0);
+            }
+            shard.forEach(statement -> statements.put(statement.get("accountNumber").asText(), statement));
+        }
+        assertEquals(21, statements.size());
+
+        JsonNode statement = statements.get("123456789");
+        assertEquals("2024-05", statement.get("month").asText());
+        assertEquals("Keith and Keri Donald", statement.get("name").asText());
+        assertAmount("11.00", statement.get("rewardTotal"));
+        assertEquals(3, statement.get("rewards").size());
+        assertEquals("1", statement.get("rewards").get(0).get("confirmationNumber").asText());
+        assertTrue(statement.get("rewards").get(2).get("correction").asBoolean());
+        assertEquals(2, statement.get("beneficiaries").size());
+        JsonNode annabelle = statement.get("beneficiaries").get(0);
+        assertEquals("Annabelle", annabelle.get("name").asText());
+        // The correction was not distributed
+        assertAmount("5.00", annabelle.get("contribution"));
+        assertAmount("5.00", statement.get("beneficiaries").get(1).get("contribution"));
+
+        JsonNode withoutRewards = statements.get("123456003");
+        assertEquals(4, withoutRewards.get("beneficiaries").size());
+        assertEquals(0, withoutRewards.get("rewards").size());
+        assertAmount("0.00", withoutRewards.get("beneficiaries").get(0).get("contribution"));
+    }
+
+    @Test
+    public void shouldReplaceStatementsOfEarlierRun() throws IOException {
+        generator.generate(MAY);
+        insertReward("1", "123456789", LocalDate.of(2024, 5, 2), "8.00", null);
+
+        StatementRunReport report = generator.generate(MAY);
+
+        assertEquals(1, report.getRewards());
+        long statements = 0;
+        for (String file : report.getFiles()) {
+            statements += read(directory.resolve(file)).size();
+        }
+        assertEquals(21, statements);
+        try (var files = Files.list(directory)) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".part")));
+        }
+    }
+
+    private static void assertAmount(String expected, JsonNode amount) {
+        assertEquals(0, new BigDecimal(expected).compareTo(amount.decimalValue()), expected + " != " + amount);
+    }
+
+    private List<JsonNode> read(Path file) throws IOException {
+        List<JsonNode> statements = new ArrayList<JsonNode>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                statements.add(objectMapper.readTree(line));
+            }
+        }
+        return statements;
+    }
+
+    private void insertReward(String confirmationNumber, String accountNumber, LocalDate date, String amount,
+                              Integer correctsId) {
+        jdbcTemplate.update("insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER,"
+                        + " DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT, CORRECTS_ID) values (?, ?, ?, ?, ?, ?, ?, ?)",
+                confirmationNumber, new BigDecimal(amount), Date.valueOf(date), accountNumber, "1234567890",
+                Date.valueOf(date), new BigDecimal("100.00"), correctsId);
+    }
+}
@@ -0,0 +1,169 @@
+package spring.academy.restful.rewards.internal.restaurant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import spring.academy.restful.jdbc.DevDatabases;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BenefitRulesTests {
+
+    private static final LocalDate WEDNESDAY = LocalDate.of(2024, 5, 1);
+
+    private static final LocalDate SATURDAY = LocalDate.of(2024, 5, 4);
+
+    private final Account keith = new Account("123456789", "Keith and Keri Donald");
+
+    private final Account dollie = new Account("123456001", "Dollie Adams");
+
+    @AfterEach
+    void tearDown() {
+        DiningCounters.INSTANCE.clear();
+    }
+
+    @Test
+    public void shouldStillUnderstandPolicyCodes() {
+        assertSame(AlwaysAvailable.INSTANCE, BenefitRules.compile("A"));
+        assertSame(NeverAvailable.INSTANCE, BenefitRules.compile("N"));
+        assertSame(AlwaysAvailable.INSTANCE, BenefitRules.compile("always"));
+    }
+
+    @Test
+    public void shouldStoreRulesExactlyAsRead() {
+        Restaurant restaurant = new Restaurant("1234567890", "AppleBees");
+        restaurant.setDbBenefitAvailabilityPolicy("always");
+        assertEquals("always", restaurant.getDbBenefitAvailabilityPolicy());
+        restaurant.setDbBenefitAvailabilityPolicy(" weekdays and  max 3 per month ");
+        assertEquals(" weekdays and  max 3 per month ", restaurant.getDbBenefitAvailabilityPolicy());
+
+        restaurant.setBenefitAvailabilityPolicy(NeverAvailable.INSTANCE);
+        assertEquals("N", restaurant.getDbBenefitAvailabilityPolicy());
+    }
+
+    @Test
+    public void shouldCompileEachRuleOnce() {
+        assertSame(BenefitRules.compile("weekdays"), BenefitRules.compile("weekdays"));
+    }
+
+    @Test
+    public void shouldCombineConditions() {
+        BenefitAvailabilityPolicy policy = BenefitRules.compile("weekdays and min-amount 20.00");
+
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("25.00", WEDNESDAY)));
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("20.00", WEDNESDAY)));
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("19.99", WEDNESDAY)));
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("25.00", SATURDAY)));
+        assertEquals("weekdays and min-amount 20.00", policy.toString());
+    }
+
+    @Test
+    public void shouldHonourPrecedenceAndParentheses() {
+        BenefitAvailabilityPolicy policy = BenefitRules.compile("on SAT, sunday or (not weekends and min-amount 100)");
+
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", SATURDAY)));
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("100.00", WEDNESDAY)));
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("99.99", WEDNESDAY)));
+    }
+
+    @Test
+    public void shouldLimitRewardedDiningsPerAccountRestaurantAndPeriod() {
+        BenefitAvailabilityPolicy policy = BenefitRules.compile("max 2 per month");
+
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY)));
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", SATURDAY)));
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("10.00", SATURDAY)));
+
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY.plusMonths(1))));
+        assertTrue(policy.isBenefitAvailableFor(dollie, dining("10.00", WEDNESDAY)));
+        assertTrue(policy.isBenefitAvailableFor(keith, new Dining(dining("10.00", WEDNESDAY).getAmount(),
+                "1234123412341234", "0000000001", dining("10.00", WEDNESDAY).getDate())));
+    }
+
+    @Test
+    public void shouldOnlyCountDiningsThatAreRewarded() {
+        BenefitAvailabilityPolicy policy = BenefitRules.compile("min-amount 10 and max 2 per week and max 1 per day");
+
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("5.00", WEDNESDAY)));
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY)));
+        // Within the weekly limit but not the daily one, so not counted for the week
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY)));
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY.plusDays(1))));
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY.plusDays(2))));
+    }
+
+    @Test
+    public void shouldUncountDiningsOfRolledBackTransactions() {
+        BenefitAvailabilityPolicy policy = BenefitRules.compile("max 1 per day");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY)));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY)));
+        assertFalse(policy.isBenefitAvailableFor(keith, dining("10.00", WEDNESDAY)));
+    }
+
+    @Test
+    public void shouldRejectInvalidRules() {
+        for (String rule : new String[] { "weekdays and", "on funday", "min-amount lots", "max 3 per year",
+                "max three per day", "(weekdays", "weekdays weekends", "not max 1 per day",
+                "weekdays or max 1 per day" }) {
+            assertThrows(IllegalArgumentException.class, () -> BenefitRules.compile(rule), rule);
+        }
+    }
+
+    @Test
+    public void shouldSeedCountersFromRewardsOfCurrentPeriods() {
+        EmbeddedDatabase dataSource = DevDatabases.create();
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.update("update T_RESTAURANT set BENEFIT_AVAILABILITY_POLICY = 'max 2 per month'"
+                    + " where MERCHANT_NUMBER = '1234567890'");
+            LocalDate today = WEDNESDAY.plusDays(14);
+            insertReward(jdbcTemplate, "1", WEDNESDAY, "8.00");
+            insertReward(jdbcTemplate, "2", WEDNESDAY.plusDays(1), "0.00");
+            insertReward(jdbcTemplate, "3", WEDNESDAY.minusMonths(2), "8.00");
+
+            DiningCounters counters = new DiningCounters();
+            assertEquals(1, new DiningCounterLoader(dataSource, counters).load(today));
+
+            assertEquals(1, counters.count(DiningCounters.Key.of("123456789", "1234567890",
+                    DiningCounters.Period.MONTH, today)));
+        } finally {
+            dataSource.shutdown();
+        }
+    }
+
+    private static void insertReward(JdbcTemplate jdbcTemplate, String confirmationNumber, LocalDate diningDate,
+                                     String amount) {
+        jdbcTemplate.update("insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER,"
+                        + " DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT) values (?, ?, ?, ?, ?, ?, ?)",
+                confirmationNumber, new BigDecimal(amount), Date.valueOf(diningDate), "123456789", "1234567890",
+                Date.valueOf(diningDate), new BigDecimal("100"));
+    }
+
+    private static Dining dining(String amount, LocalDate date) {
+        return Dining.createDining(amount, "1234123412341234", "1234567890", date.getMonthValue(),
+                date.getDayOfMonth(), date.getYear());
+    }
+}
@@ -0,0 +1,78 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.jdbc.DevDatabases;
+import spring.academy.restful.rewards.RewardRecord;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class JdbcRewardHistoryRepositoryTests {
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcRewardHistoryRepository historyRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        historyRepository = new JdbcRewardHistoryRepository(dataSource);
+        // Three rewards a day for three days, plus one for another account
+        for (int day = 1; day <= 3; day++) {
+            for (int i = 0; i < 3; i++) {
+                insertReward("C-" + day + "-" + i, "123456789", LocalDate.of(2024, 5, day));
+            }
+        }
+        insertReward("C-other", "123456001", LocalDate.of(2024, 5, 2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldFindRewardWithItsOwner() {
+        RewardRecord reward = historyRepository.findByConfirmationNumber("C-2-1");
+
+        assertEquals("123456789", reward.getAccountNumber());
+        assertEquals(LocalDate.of(2024, 5, 2), reward.getRewardDate());
+        assertEquals(new BigDecimal("8.00"), reward.getRewardAmount());
+        assertEquals("Keith and Keri Donald", reward.getOwner());
+        assertNull(historyRepository.findByConfirmationNumber("C-none"));
+    }
+
+    @Test
+    public void shouldPageThroughAccountRewardsMostRecentFirst() {
+        List<String> read = new ArrayList<String>();
+        List<RewardRecord> page = historyRepository.findByAccountNumber("123456789", null, 0, 4);
+        while (!page.isEmpty()) {
+            page.forEach(reward -> read.add(reward.getConfirmationNumber()));
+            RewardRecord last = page.get(page.size() - 1);
+            page = historyRepository.findByAccountNumber("123456789", last.getRewardDate(), last.getId(), 4);
+        }
+
+        assertEquals(List.of("C-3-2", "C-3-1", "C-3-0", "C-2-2", "C-2-1", "C-2-0", "C-1-2", "C-1-1", "C-1-0"),
+                read);
+    }
+
+    private void insertReward(String confirmationNumber, String accountNumber, LocalDate date) {
+        jdbcTemplate.update("insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER,"
+                        + " DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT) values (?, ?, ?, ?, ?, ?, ?)",
+                confirmationNumber, new BigDecimal("8.00"), Date.valueOf(date), accountNumber, "1234567890",
+                Date.valueOf(date), new BigDecimal("100"));
+    }
+}
@@ -0,0 +1,126 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.jdbc.DevDatabases;
+import spring.academy.restful.rewards.AccountContribution;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.RewardConfirmation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JournaledRewardRepositoryTests {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private JournaledRewardRepository rewardRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        rewardRepository = newRepository();
+        rewardRepository.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (rewardRepository != null) {
+            rewardRepository.stop();
+        }
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldConfirmBeforeInsertingAndInsertWhenApplied() {
+        RewardConfirmation first = confirm("100.00");
+        RewardConfirmation second = confirm("50.00");
+
+        assertNotEquals(first.getConfirmationNumber(), second.getConfirmationNumber());
+        assertTrue(first.getConfirmationNumber().length() <= 25);
+        assertEquals(0, count());
+
+        assertEquals(2, rewardRepository.applyJournal());
+        assertEquals(2, count());
+        assertEquals(new BigDecimal("8.00"), jdbcTemplate.queryForObject(
+                "select REWARD_AMOUNT from T_REWARD where CONFIRMATION_NUMBER = ?", BigDecimal.class,
+                first.getConfirmationNumber()));
+        assertEquals(0, rewardRepository.applyJournal());
+    }
+
+    @Test
+    public void startShouldReplayRewardsLostInACrash() {
+        confirm("100.00");
+        rewardRepository.applyJournal();
+        confirm("50.00");
+
+        // Crash: the first node never applies its journal again
+        rewardRepository = null;
+        JournaledRewardRepository restarted = newRepository();
+        restarted.start();
+        assertEquals(2, count());
+
+        restarted.stop();
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void readShouldStopAtTornEntry() throws IOException {
+        Path journalDirectory = directory.resolve("torn");
+        List<RewardJournal.Entry> read = new ArrayList<RewardJournal.Entry>();
+        long segment;
+        try (RewardJournal journal = new RewardJournal(journalDirectory, Duration.ZERO)) {
+            journal.append(new RewardJournal.Entry("node-1", new BigDecimal("8.00"), new java.sql.Date(0),
+                    "123456789", "1234567890", new java.sql.Date(0), new BigDecimal("100.00")));
+            segment = journal.seal();
+            try (var files = Files.list(journalDirectory)) {
+                Path file = files.sorted().findFirst().orElseThrow();
+                Files.write(file, new byte[] { 0, 0, 0, 42, 1, 2 }, StandardOpenOption.APPEND);
+            }
+            journal.read(segment, read::add);
+        }
+
+        assertEquals(1, read.size());
+        assertEquals("node-1", read.get(0).confirmationNumber());
+        assertEquals(new BigDecimal("100.00"), read.get(0).diningAmount());
+    }
+
+    private JournaledRewardRepository newRepository() {
+        return new JournaledRewardRepository(dataSource, new DataSourceTransactionManager(dataSource), directory,
+                Duration.ZERO, "test");
+    }
+
+    private RewardConfirmation confirm(String diningAmount) {
+        Dining dining = Dining.createDining(diningAmount, "1234123412341234", "1234567890");
+        AccountContribution contribution = new AccountContribution("123456789",
+                MonetaryAmount.valueOf(diningAmount).multiplyBy(new BigDecimal("0.08")), Collections.emptySet());
+        return rewardRepository.confirmReward(contribution, dining);
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("select count(*) from T_REWARD", Integer.class);
+    }
+}
@@ -0,0 +1,144 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.jdbc.DevDatabases;
+import spring.academy.restful.rewards.AccountContribution;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.RewardTotals;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class RewardAggregateRebuilderTests {
+
+    private static final LocalDate DINING_DAY = LocalDate.of(2024, 5, 1);
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcRewardRepository rewardRepository;
+
+    private JdbcRewardHistoryRepository historyRepository;
+
+    private RewardAggregateRebuilder rebuilder;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        rewardRepository = new JdbcRewardRepository(dataSource);
+        historyRepository = new JdbcRewardHistoryRepository(dataSource);
+        // Ranges of two ids, so even a few rewards are scanned in parallel
+        rebuilder = new RewardAggregateRebuilder(dataSource, new DataSourceTransactionManager(dataSource), 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldAddConfirmedRewardsToTotals() {
+        confirmReward("123456789", "8.00", "100.00");
+        confirmReward("123456789", "4.00", "50.00");
+        confirmReward("123456001", "8.00", "100.00");
+
+        assertTotals(2, "12.00", "150.00", historyRepository.findAccountMonthTotals("123456789", YearMonth.now()));
+        assertTotals(1, "8.00", "100.00", historyRepository.findAccountMonthTotals("123456001", YearMonth.now()));
+        assertTotals(3, "20.00", "250.00", historyRepository.findMerchantDayTotals("1234567890", DINING_DAY));
+        assertSame(RewardTotals.NONE, historyRepository.findAccountMonthTotals("123456789", YearMonth.of(2000, 1)));
+        assertSame(RewardTotals.NONE, historyRepository.findMerchantDayTotals("1234567890", DINING_DAY.plusDays(1)));
+    }
+
+    @Test
+    public void shouldRebuildTotalsFromRewards() {
+        confirmReward("123456789", "8.00", "100.00");
+        confirmReward("123456789", "4.00", "50.00");
+        // Inserted behind the back of the totals, as before they existed
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.update("insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER,"
+                            + " DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT) values (?, ?, ?, ?, ?, ?, ?)",
+                    "OLD-" + i, new BigDecimal("1.00"), Date.valueOf(LocalDate.of(2023, 12, 31)), "123456789",
+                    "1234567890", Date.valueOf(DINING_DAY), new BigDecimal("10"));
+        }
+        jdbcTemplate.update("update T_REWARD_MERCHANT_DAY set REWARD_COUNT = 99");
+
+        assertEquals(7, rebuilder.rebuild());
+
+        assertTotals(2, "12.00", "150.00", historyRepository.findAccountMonthTotals("123456789", YearMonth.now()));
+        assertTotals(5, "5.00", "50.00", historyRepository.findAccountMonthTotals("123456789", YearMonth.of(2023, 12)));
+        assertTotals(7, "17.00", "200.00", historyRepository.findMerchantDayTotals("1234567890", DINING_DAY));
+    }
+
+    @Test
+    public void shouldWaitForRewardsBeingInserted() throws Exception {
+        confirmReward("123456789", "8.00", "100.00");
+        Future<Long> rebuilt;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE,"
+                        + " ACCOUNT_NUMBER, DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT)"
+                        + " values ('LATE', 1.00, date '2023-12-31', '123456789', '1234567890', date '2024-05-01', 10)");
+            }
+            CountDownLatch started = new CountDownLatch(1);
+            try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+                rebuilt = executor.submit(() -> {
+                    started.countDown();
+                    return rebuilder.rebuild();
+                });
+                started.await();
+                // Cannot be done before the commit, however far the rebuild got
+                assertFalse(rebuilt.isDone());
+                connection.commit();
+            }
+        }
+
+        assertEquals(2, rebuilt.get());
+        assertTotals(1, "1.00", "10.00", historyRepository.findAccountMonthTotals("123456789", YearMonth.of(2023, 12)));
+        assertTotals(2, "9.00", "110.00", historyRepository.findMerchantDayTotals("1234567890", DINING_DAY));
+    }
+
+    @Test
+    public void shouldRebuildEmptyTotals() {
+        jdbcTemplate.update("insert into T_REWARD_ACCOUNT_MONTH values ('123456789', ?, 1, 1.00, 10.00)",
+                Date.valueOf(DINING_DAY));
+
+        assertEquals(0, rebuilder.rebuild());
+
+        assertSame(RewardTotals.NONE, historyRepository.findAccountMonthTotals("123456789", YearMonth.from(DINING_DAY)));
+    }
+
+    private void confirmReward(String accountNumber, String reward, String dining) {
+        rewardRepository.confirmReward(
+                new AccountContribution(accountNumber, MonetaryAmount.valueOf(reward), Collections.emptySet()),
+                Dining.createDining(dining, "1234123412341234", "1234567890", DINING_DAY.getMonthValue(),
+                        DINING_DAY.getDayOfMonth(), DINING_DAY.getYear()));
+    }
+
+    private static void assertTotals(long count, String rewardTotal, String diningTotal, RewardTotals totals) {
+        assertEquals(count, totals.getRewardCount());
+        assertEquals(0, new BigDecimal(rewardTotal).compareTo(totals.getRewardTotal()), totals.toString());
+        assertEquals(0, new BigDecimal(diningTotal).compareTo(totals.getDiningTotal()), totals.toString());
+    }
+}
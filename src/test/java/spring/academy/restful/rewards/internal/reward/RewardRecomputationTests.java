@@ -0,0 +1,110 @@
+package spring.academy.restful.rewards.internal.reward;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.jdbc.DevDatabases;
+import spring.academy.restful.rewards.AccountContribution;
+import spring.academy.restful.rewards.Dining;
+import spring.academy.restful.rewards.RecomputationReport;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RewardRecomputationTests {
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private RewardRecomputation recomputation;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabases.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // Ranges of three ids, not paced
+        recomputation = new RewardRecomputation(dataSource, new DataSourceTransactionManager(dataSource), 2, 3, 0);
+        // AppleBees rewards 8%, and did so for all but one dining
+        JdbcRewardRepository rewardRepository = new JdbcRewardRepository(dataSource);
+        for (int i = 0; i < 7; i++) {
+            confirmReward(rewardRepository, "123456789", "8.00", "100.00");
+        }
+        confirmReward(rewardRepository, "123456001", "1.00", "50.00");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void shouldOnlyReportDifferencesInDryRun() {
+        RecomputationReport report = recomputation.recompute("dry", null, true);
+
+        assertEquals(8, report.getRewardsScanned());
+        assertEquals(1, report.getRewardsCorrected());
+        assertEquals(0, new BigDecimal("3.00").compareTo(report.getTotalCorrection()));
+        assertEquals("123456001", report.getDifferences().get(0).getAccountNumber());
+        assertEquals(0, countCorrections());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from T_RECOMPUTE_CHECKPOINT", Integer.class));
+    }
+
+    @Test
+    public void shouldCorrectRewardsAfterRetroactivePercentageChange() {
+        jdbcTemplate.update("update T_RESTAURANT set BENEFIT_PERCENTAGE = .10 where MERCHANT_NUMBER = '1234567890'");
+
+        RecomputationReport report = recomputation.recompute("ten-percent", "1234567890", false);
+
+        assertEquals(8, report.getRewardsCorrected());
+        assertEquals(0, new BigDecimal("18.00").compareTo(report.getTotalCorrection()));
+        assertEquals(8, countCorrections());
+        assertEquals(0, new BigDecimal("75.00").compareTo(jdbcTemplate.queryForObject(
+                "select sum(REWARD_AMOUNT) from T_REWARD", BigDecimal.class)));
+        // Corrections change the reward total, not the number of rewards
+        JdbcRewardHistoryRepository historyRepository = new JdbcRewardHistoryRepository(dataSource);
+        assertEquals(7, historyRepository.findAccountMonthTotals("123456789", YearMonth.now()).getRewardCount());
+        assertEquals(0, new BigDecimal("70.00").compareTo(
+                historyRepository.findAccountMonthTotals("123456789", YearMonth.now()).getRewardTotal()));
+
+        // Resuming the same job skips all ranges, a new one finds nothing left to correct
+        assertEquals(0, recomputation.recompute("ten-percent", null, false).getRewardsScanned());
+        assertEquals(0, recomputation.recompute("ten-percent-again", null, false).getRewardsCorrected());
+        assertEquals(8, countCorrections());
+    }
+
+    @Test
+    public void shouldKeepRewardsDeniedByAFrequencyLimit() {
+        // Over the limit when it was confirmed, so rewarded nothing
+        confirmReward(new JdbcRewardRepository(dataSource), "123456789", "0.00", "100.00");
+        jdbcTemplate.update("update T_RESTAURANT set BENEFIT_AVAILABILITY_POLICY = 'max 7 per month'"
+                + " where MERCHANT_NUMBER = '1234567890'");
+
+        RecomputationReport report = recomputation.recompute("limited", "1234567890", false);
+
+        assertEquals(9, report.getRewardsScanned());
+        assertEquals(1, report.getRewardsCorrected());
+        assertEquals("123456001", report.getDifferences().get(0).getAccountNumber());
+        assertEquals(0, new BigDecimal("3.00").compareTo(report.getTotalCorrection()));
+        assertEquals(1, countCorrections());
+    }
+
+    private int countCorrections() {
+        return jdbcTemplate.queryForObject("select count(*) from T_REWARD where CORRECTS_ID is not null",
+                Integer.class);
+    }
+
+    private static void confirmReward(JdbcRewardRepository rewardRepository, String accountNumber, String reward,
+                                      String dining) {
+        rewardRepository.confirmReward(
+                new AccountContribution(accountNumber, MonetaryAmount.valueOf(reward), Collections.emptySet()),
+                Dining.createDining(dining, "1234123412341234", "1234567890"));
+    }
+}
@@ -0,0 +1,120 @@
+package spring.academy.restful.web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spring.academy.restful.accounts.AccountChangedEvent;
+import spring.academy.restful.accounts.AccountManager;
+import spring.academy.restful.accounts.AccountSummary;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AccountChangeBusTests {
+
+    private static final Predicate<AccountChange> KEITH = change -> "Keith".equals(change.getOwner());
+
+    private AccountManager accountManager;
+
+    private AccountChangeBus changeBus;
+
+    @BeforeEach
+    void setUp() {
+        accountManager = mock(AccountManager.class);
+        when(accountManager.getAccountSummary(eq(1L), any())).thenReturn(new AccountSummary(1L, "123456789", "Keith"));
+        when(accountManager.getAccountSummary(eq(2L), any())).thenReturn(new AccountSummary(2L, "123456001", "Dollie"));
+        changeBus = new AccountChangeBus(accountManager, 4, 2);
+    }
+
+    @Test
+    public void shouldReturnOnlyVisibleChangesSinceToken() throws Exception {
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+        changeBus.onAccountChanged(new AccountChangedEvent(2L));
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+
+        List<AccountChange> changes = changeBus.awaitChanges(1, KEITH, Duration.ZERO).getChanges();
+
+        assertEquals(1, changes.size());
+        assertEquals(3, changes.get(0).getSequence());
+        assertEquals(3, changeBus.awaitChanges(0, change -> true, Duration.ZERO).getChanges().size());
+    }
+
+    @Test
+    public void shouldMovePastChangesThatAreNotVisible() throws Exception {
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+        changeBus.onAccountChanged(new AccountChangedEvent(2L));
+        changeBus.onAccountChanged(new AccountChangedEvent(2L));
+
+        AccountChangeBus.Scan scan = changeBus.awaitChanges(1, KEITH, Duration.ZERO);
+
+        assertTrue(scan.getChanges().isEmpty());
+        assertEquals(3, scan.getLastSequence());
+    }
+
+    @Test
+    public void shouldReadEachChangedAccountOnceForAllClients() throws Exception {
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+
+        changeBus.awaitChanges(0, KEITH, Duration.ZERO);
+        changeBus.awaitChanges(0, change -> true, Duration.ZERO);
+
+        verify(accountManager, times(1)).getAccountSummary(eq(1L), any());
+    }
+
+    @Test
+    public void shouldWaitForAVisibleChange() throws Exception {
+        Thread.ofVirtual().start(() -> {
+            changeBus.onAccountChanged(new AccountChangedEvent(2L));
+            changeBus.onAccountChanged(new AccountChangedEvent(1L));
+        });
+
+        List<AccountChange> changes = changeBus.awaitChanges(0, KEITH, Duration.ofSeconds(5)).getChanges();
+
+        assertEquals(1, changes.size());
+        assertEquals(1L, changes.get(0).getAccountId());
+    }
+
+    @Test
+    public void shouldRejectTokenOlderThanHistory() {
+        for (int i = 0; i < 6; i++) {
+            changeBus.onAccountChanged(new AccountChangedEvent(1L));
+        }
+
+        assertThrows(ChangeFeedPositionLostException.class, () -> changeBus.awaitChanges(1, KEITH, Duration.ZERO));
+        assertThrows(ChangeFeedPositionLostException.class, () -> changeBus.awaitChanges(7, KEITH, Duration.ZERO));
+    }
+
+    @Test
+    public void slowSubscriberShouldOverflow() throws Exception {
+        AccountChangeBus.Subscription subscription = changeBus.subscribe(KEITH);
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+        assertEquals(1, subscription.poll(Duration.ZERO).getSequence());
+
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+        changeBus.onAccountChanged(new AccountChangedEvent(1L));
+
+        assertThrows(ChangeFeedPositionLostException.class, () -> subscription.poll(Duration.ZERO));
+    }
+
+    @Test
+    public void removedAccountsShouldOnlyBeVisibleToBankers() throws Exception {
+        AccountChangeBus.Subscription subscription = changeBus.subscribe(KEITH);
+        changeBus.onAccountChanged(new AccountChangedEvent(3L));
+
+        assertNull(subscription.poll(Duration.ZERO));
+        AccountChange removed = changeBus.awaitChanges(0, change -> true, Duration.ZERO).getChanges().get(0);
+        assertTrue(removed.isRemoved());
+    }
+}
@@ -0,0 +1,53 @@
+package spring.academy.restful.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RewardJobsTests {
+
+    private final RewardJobs rewardJobs = new RewardJobs();
+
+    @Test
+    public void shouldRunOneJobAtATime() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RewardJobs.RewardJob rebuild = rewardJobs.start("rebuild", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 42L;
+        });
+
+        assertNotNull(rebuild);
+        assertEquals(RewardJobs.RewardJob.State.RUNNING, rebuild.getState());
+        assertNull(rewardJobs.start("recompute", () -> "other job id"));
+
+        release.countDown();
+        assertTrue(rebuild.await(Duration.ofSeconds(5)));
+        assertEquals(RewardJobs.RewardJob.State.SUCCEEDED, rebuild.getState());
+        assertEquals(42L, rebuild.getReport());
+        assertSame(rebuild, rewardJobs.get(rebuild.getId()));
+        assertNotNull(rewardJobs.start("recompute", () -> "next"));
+    }
+
+    @Test
+    public void shouldReportFailedJobs() throws Exception {
+        RewardJobs.RewardJob job = rewardJobs.start("statements", () -> {
+            throw new IllegalStateException("Disk full");
+        });
+
+        assertTrue(job.await(Duration.ofSeconds(5)));
+        assertEquals(RewardJobs.RewardJob.State.FAILED, job.getState());
+        assertEquals("Disk full", job.getError());
+        assertNull(rewardJobs.get("unknown"));
+    }
+}
@@ -0,0 +1,47 @@
+package spring.academy.restful.web.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import spring.academy.restful.common.money.MonetaryAmount;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.rewards.internal.account.Account;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests that make sure the hand-written serializers produce the same JSON
+ * as the default bean serialization.
+ */
+public class AccountJsonSerializersTests {
+
+	private final ObjectMapper reflectiveMapper = new ObjectMapper();
+
+	private final ObjectMapper customMapper = new ObjectMapper().registerModule(AccountJsonSerializers.module());
+
+	@Test
+	public void validAccountSerializesLikeTheBeanSerializer() throws Exception {
+		Account account = new Account("123456789", "Keith and Keri Donald");
+		account.setEntityId(0L);
+		account.addBeneficiary("Annabelle", Percentage.valueOf("50%"));
+		account.addBeneficiary("Corgan", Percentage.valueOf("50%"));
+		account.makeContribution(MonetaryAmount.valueOf("100.00"));
+
+		JsonNode custom = customMapper.readTree(customMapper.writeValueAsString(account));
+		assertEquals(reflectiveMapper.readTree(reflectiveMapper.writeValueAsString(account)), custom);
+		assertTrue(custom.get("valid").asBoolean());
+	}
+
+	@Test
+	public void invalidTransientAccountSerializesLikeTheBeanSerializer() throws Exception {
+		Account account = new Account("123456789", "John Doe");
+		account.addBeneficiary("Annabelle", Percentage.valueOf("50%"));
+		account.addBeneficiary("Corgan", Percentage.valueOf("25%"));
+
+		JsonNode custom = customMapper.readTree(customMapper.writeValueAsString(account));
+		assertEquals(reflectiveMapper.readTree(reflectiveMapper.writeValueAsString(account)), custom);
+		assertFalse(custom.get("valid").asBoolean());
+	}
+}
@@ -0,0 +1,218 @@
+package spring.academy.restful.web.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import spring.academy.restful.accounts.AccountSummary;
+import spring.academy.restful.accounts.BeneficiarySummary;
+import spring.academy.restful.accounts.ReactiveAccountManager;
+import spring.academy.restful.common.money.Percentage;
+import spring.academy.restful.config.ReactiveConfig;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@WebFluxTest
+@ActiveProfiles("reactive")
+@Import(ReactiveConfig.class)
+@WithMockUser(username = "Keith and Keri Donald", authorities = {"SCOPE_rewards:BANKER", "SCOPE_rewards:CUSTOMER"})
+public class ReactiveAccountHandlerTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveAccountManager accountManager;
+
+    @Test
+    public void shouldStreamAllAccounts() {
+        given(accountManager.getAllAccounts()).willReturn(Flux.just(account(0L), account(1L)));
+
+        webTestClient.get().uri("/accounts")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("Keith and Keri Donald")
+                .jsonPath("$[0].beneficiaries[0].name").isEqualTo("Annabelle")
+                .jsonPath("$[0].valid").isEqualTo(true);
+    }
+
+    @Test
+    public void shouldStreamAllAccountsAsNdjson() {
+        given(accountManager.getAllAccounts()).willReturn(Flux.just(account(0L), account(1L)));
+
+        webTestClient.get().uri("/accounts")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .returnResult(AccountSummary.class);
+    }
+
+    @Test
+    public void shouldGetAccountDetails() {
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+
+        webTestClient.get().uri("/accounts/0")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.entityId").isEqualTo(0)
+                .jsonPath("$.number").isEqualTo("123456789");
+    }
+
+    @Test
+    public void accountDetailsShouldCarryTheVersionAsETag() {
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+
+        webTestClient.get().uri("/accounts/0")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"");
+    }
+
+    @Test
+    public void matchingIfNoneMatchReturnsNotModified() {
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+
+        webTestClient.get().uri("/accounts/0")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"3\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody().isEmpty();
+
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+
+        webTestClient.get().uri("/accounts/0")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    public void shouldGetOnlyRequestedFieldsOfAccount() {
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+
+        webTestClient.get().uri("/accounts/0?fields=number,name")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.ETAG)
+                .expectBody()
+                .jsonPath("$.number").isEqualTo("123456789")
+                .jsonPath("$.name").isEqualTo("Keith and Keri Donald")
+                .jsonPath("$.entityId").doesNotExist()
+                .jsonPath("$.beneficiaries").doesNotExist();
+    }
+
+    @Test
+    public void shouldStreamOnlyRequestedFieldsOfAllAccounts() {
+        given(accountManager.getAllAccounts()).willReturn(Flux.just(account(0L), account(1L)));
+
+        webTestClient.get().uri("/accounts?fields=entityId")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].entityId").isEqualTo(1)
+                .jsonPath("$[1].number").doesNotExist();
+    }
+
+    @Test
+    public void unknownFieldReturnsBadRequest() {
+        webTestClient.get().uri("/accounts?fields=number,password")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/accounts/0?fields=password")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void ifMatchShouldBePassedOnAsExpectedVersion() {
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+        given(accountManager.updateBeneficiaryAllocationPercentages(eq(0L), anyMap(), eq(3L)))
+                .willReturn(Mono.empty());
+
+        webTestClient.put().uri("/accounts/0")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("Annabelle", new Percentage(0.6), "Corgan", new Percentage(0.4)))
+                .exchange()
+                .expectStatus().isNoContent();
+
+        verify(accountManager).updateBeneficiaryAllocationPercentages(eq(0L), anyMap(), eq(3L));
+    }
+
+    @Test
+    public void staleIfMatchReturnsPreconditionFailed() {
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+        given(accountManager.updateBeneficiaryAllocationPercentages(eq(0L), anyMap(), eq(2L)))
+                .willReturn(Mono.error(new OptimisticLockingFailureException("Account 0 is no longer at version 2")));
+
+        webTestClient.put().uri("/accounts/0")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("Annabelle", new Percentage(0.6), "Corgan", new Percentage(0.4)))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    @WithMockUser(username = "John Doe", authorities = {"SCOPE_rewards:CUSTOMER"})
+    public void onlyOwnerGetsAccountDetails() {
+        given(accountManager.getAccount(0L)).willReturn(Mono.just(account(0L)));
+
+        webTestClient.get().uri("/accounts/0")
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    public void nonExistingAccountIdGettingDetailsReturnsNotFound() {
+        given(accountManager.getAccount(any(Long.class))).willReturn(Mono.empty());
+
+        webTestClient.get().uri("/accounts/9999")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void shouldRemoveBeneficiary() {
+        given(accountManager.removeBeneficiary(0L, "Corgan")).willReturn(Mono.empty());
+
+        webTestClient.delete().uri("/accounts/0/beneficiaries/Corgan")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        verify(accountManager).removeBeneficiary(0L, "Corgan");
+    }
+
+    private static AccountSummary account(Long id) {
+        AccountSummary account = new AccountSummary(id, "123456789", "Keith and Keri Donald");
+        account.setVersion(3L);
+        account.addBeneficiary(new BeneficiarySummary(id, 0L, "Annabelle", new BigDecimal("0.50"), BigDecimal.ZERO));
+        account.addBeneficiary(new BeneficiarySummary(id, 1L, "Corgan", new BigDecimal("0.50"), BigDecimal.ZERO));
+        return account;
+    }
+}